@@ -19,35 +19,46 @@ package org.ops4j.dadl.generator;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.annotation.Generated;
 
+import org.ops4j.dadl.metamodel.gen.BinaryNumberRepresentation;
 import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.ChoiceElement;
+import org.ops4j.dadl.metamodel.gen.ContentType;
 import org.ops4j.dadl.metamodel.gen.DadlType;
 import org.ops4j.dadl.metamodel.gen.Element;
 import org.ops4j.dadl.metamodel.gen.Enumeration;
 import org.ops4j.dadl.metamodel.gen.EnumerationElement;
+import org.ops4j.dadl.metamodel.gen.Justification;
 import org.ops4j.dadl.metamodel.gen.Model;
+import org.ops4j.dadl.metamodel.gen.Representation;
 import org.ops4j.dadl.metamodel.gen.Sequence;
 import org.ops4j.dadl.metamodel.gen.SequenceElement;
 import org.ops4j.dadl.metamodel.gen.SimpleType;
 import org.ops4j.dadl.metamodel.gen.TaggedSequence;
+import org.ops4j.dadl.model.FixedLayout;
 import org.ops4j.dadl.model.ValidatedModel;
 
 import com.sun.codemodel.JBlock;
 import com.sun.codemodel.JClass;
 import com.sun.codemodel.JClassAlreadyExistsException;
 import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JConditional;
 import com.sun.codemodel.JDefinedClass;
 import com.sun.codemodel.JExpr;
 import com.sun.codemodel.JExpression;
 import com.sun.codemodel.JFieldRef;
 import com.sun.codemodel.JFieldVar;
+import com.sun.codemodel.JInvocation;
 import com.sun.codemodel.JMethod;
 import com.sun.codemodel.JMod;
 import com.sun.codemodel.JPackage;
@@ -59,7 +70,17 @@ import com.sun.codemodel.writer.FileCodeWriter;
  * Generates Java source files from a given model. There will be one POJO for each complex type and
  * one Java enum for each enumeration type.
  * <p>
+ * A choice POJO has an {@code int} constant for each branch and keeps track of the selected branch,
+ * which can be queried by {@code getSelectedBranch()}. Setting a branch clears all other branches.
+ * <p>
  * The source will be output when the {@link #generateJavaModel()} method is called.
+ * <p>
+ * Optionally, repeated elements of simple types mapped to primitive Java types are represented by
+ * primitive arrays like {@code int[]} instead of lists of wrapper objects.
+ * <p>
+ * Optionally, a flyweight view class named {@code <Type>View} is generated for each sequence or
+ * tagged sequence with a fixed layout. A view decodes its fields on demand from an underlying
+ * buffer and extends {@code org.ops4j.dadl.io.BufferView} from the DADL processor.
  *
  * @author hwellmann
  *
@@ -67,9 +88,19 @@ import com.sun.codemodel.writer.FileCodeWriter;
 public class JavaModelGenerator {
 
     private static final String VALUE = "value";
+    private static final String VIEW_SUFFIX = "View";
+    private static final String SELECTED_BRANCH = "selectedBranch";
+    private static final String NO_BRANCH = "NO_BRANCH";
+    private static final String BUFFER_VIEW = "org.ops4j.dadl.io.BufferView";
+    private static final String ENUMERATION_MAPPING = "org.ops4j.dadl.io.EnumerationMapping";
+    private static final int BYTE_SIZE = 8;
+    private static final int NIBBLE_SIZE = 4;
+    private static final int MAX_LONG_DIGITS = 19;
     private ValidatedModel model;
     private String packageName;
     private Path outputDir;
+    private boolean generateViews;
+    private boolean primitiveArrays;
     private JCodeModel codeModel;
     private JPackage pkg;
 
@@ -110,6 +141,10 @@ public class JavaModelGenerator {
         rawModel.getSequence().stream().forEach(s -> fillSequencePojo(s));
         rawModel.getChoice().stream().forEach(s -> fillChoicePojo(s));
 
+        if (generateViews) {
+            generateViews();
+        }
+
         File dir = outputDir.toFile();
         if (!dir.exists()) {
             boolean created = dir.mkdirs();
@@ -120,6 +155,46 @@ public class JavaModelGenerator {
         codeModel.build(new FileCodeWriter(dir));
     }
 
+    /**
+     * Enables or disables generation of flyweight view classes. Views are disabled by default.
+     *
+     * @param generateViews
+     *            generate views?
+     */
+    public void setGenerateViews(boolean generateViews) {
+        this.generateViews = generateViews;
+    }
+
+    /**
+     * Checks if flyweight view classes will be generated.
+     *
+     * @return true if views are generated
+     */
+    public boolean isGenerateViews() {
+        return generateViews;
+    }
+
+    /**
+     * Enables or disables primitive arrays for repeated elements of simple types mapped to
+     * primitive Java types. When disabled (the default), these elements are represented by lists
+     * of wrapper objects.
+     *
+     * @param primitiveArrays
+     *            use primitive arrays?
+     */
+    public void setPrimitiveArrays(boolean primitiveArrays) {
+        this.primitiveArrays = primitiveArrays;
+    }
+
+    /**
+     * Checks if primitive arrays are used for repeated elements of primitive simple types.
+     *
+     * @return true if primitive arrays are used
+     */
+    public boolean isPrimitiveArrays() {
+        return primitiveArrays;
+    }
+
     private void createType(Object type) {
         try {
             JDefinedClass klass = null;
@@ -194,7 +269,91 @@ public class JavaModelGenerator {
 
     private void fillChoicePojo(Choice choice) {
         JDefinedClass klass = pkg._getClass(choice.getName());
-        choice.getElement().forEach(e -> generateFieldAndAccessors(klass, e));
+        List<ChoiceElement> elements = choice.getElement();
+        checkChoiceMemberNames(choice);
+        JFieldVar noBranch = klass.field(JMod.PUBLIC | JMod.STATIC | JMod.FINAL, codeModel.INT,
+            NO_BRANCH, JExpr.lit(-1));
+        List<JFieldVar> branches = new ArrayList<>();
+        for (int i = 0; i < elements.size(); i++) {
+            branches.add(klass.field(JMod.PUBLIC | JMod.STATIC | JMod.FINAL, codeModel.INT,
+                getConstantName(elements.get(i).getName()), JExpr.lit(i)));
+        }
+        JFieldVar selected = klass.field(JMod.PRIVATE, codeModel.INT, SELECTED_BRANCH, noBranch);
+        JMethod getter = klass.method(JMod.PUBLIC, codeModel.INT, getGetterName(SELECTED_BRANCH));
+        getter.body()._return(selected);
+
+        for (int i = 0; i < elements.size(); i++) {
+            generateChoiceFieldAndAccessors(klass, elements, i, branches, selected, noBranch);
+        }
+    }
+
+    /**
+     * Checks that the branch fields and the branch index constants of a choice do not clash with
+     * each other or with the generated members for the selected branch.
+     */
+    private void checkChoiceMemberNames(Choice choice) {
+        Set<String> memberNames = new HashSet<>();
+        memberNames.add(SELECTED_BRANCH);
+        memberNames.add(NO_BRANCH);
+        for (Element element : choice.getElement()) {
+            String fieldName = element.getName();
+            if (!memberNames.add(fieldName)) {
+                throw new IllegalArgumentException("choice element name clashes with a generated "
+                    + "member: " + choice.getName() + "." + fieldName);
+            }
+            String constantName = getConstantName(fieldName);
+            if (!memberNames.add(constantName)) {
+                throw new IllegalArgumentException("branch constant " + constantName
+                    + " for choice element " + choice.getName() + "." + fieldName
+                    + " clashes with another member");
+            }
+        }
+    }
+
+    /**
+     * Generates a branch field of a choice with its getter and setter. Setting a branch selects it
+     * and clears all other branches. Setting a branch to null deselects it.
+     */
+    private void generateChoiceFieldAndAccessors(JDefinedClass klass,
+        List<ChoiceElement> elements, int index, List<JFieldVar> branches, JFieldVar selected,
+        JFieldVar noBranch) {
+        Element element = elements.get(index);
+        String fieldName = element.getName();
+        JType jtype = getJavaType(element);
+        JFieldVar field = klass.field(JMod.PRIVATE, jtype, fieldName);
+
+        JMethod getter = klass.method(JMod.PUBLIC, jtype, getGetterName(fieldName));
+        getter.body()._return(field);
+
+        JMethod setter = klass.method(JMod.PUBLIC, codeModel.VOID, getSetterName(fieldName));
+        JVar p1 = setter.param(jtype, fieldName);
+        JBlock body = setter.body();
+        body.assign(JExpr._this().ref(fieldName), p1);
+        JBlock select = body;
+        if (!jtype.isPrimitive()) {
+            JConditional isSet = body._if(p1.ne(JExpr._null()));
+            select = isSet._then();
+            isSet._else()._if(selected.eq(branches.get(index)))._then().assign(selected,
+                noBranch);
+        }
+        select.assign(selected, branches.get(index));
+        for (int i = 0; i < elements.size(); i++) {
+            if (i != index) {
+                String otherName = elements.get(i).getName();
+                JType otherType = getJavaType(elements.get(i));
+                select.assign(JExpr._this().ref(otherName), getDefaultValue(otherType));
+            }
+        }
+    }
+
+    private JExpression getDefaultValue(JType jtype) {
+        if (!jtype.isPrimitive()) {
+            return JExpr._null();
+        }
+        if (jtype == codeModel.BOOLEAN) {
+            return JExpr.FALSE;
+        }
+        return JExpr.lit(0);
     }
 
     private void generateEnumerationElement(JDefinedClass klass, EnumerationElement element) {
@@ -213,7 +372,12 @@ public class JavaModelGenerator {
 
     private void generateSequenceFieldAndAccessors(JDefinedClass klass, SequenceElement element) {
         if (model.isList(element)) {
-            generateListFieldAndAccessors(klass, element);
+            if (primitiveArrays && isPrimitive(element)) {
+                generateArrayFieldAndAccessors(klass, element);
+            }
+            else {
+                generateListFieldAndAccessors(klass, element);
+            }
         }
         else {
             generateFieldAndAccessors(klass, element);
@@ -232,6 +396,28 @@ public class JavaModelGenerator {
         getter.body()._return(field);
     }
 
+    private boolean isPrimitive(Element element) {
+        DadlType type = model.getType(element.getType());
+        return type instanceof SimpleType && !(type instanceof Enumeration)
+            && getJavaType((SimpleType) type).isPrimitive();
+    }
+
+    private void generateArrayFieldAndAccessors(JDefinedClass klass, SequenceElement element) {
+        String fieldName = element.getName();
+        JType elementType = getJavaType(element);
+        JType arrayType = elementType.array();
+        JFieldVar field = klass.field(JMod.PRIVATE, arrayType, fieldName);
+
+        JMethod getter = klass.method(JMod.PUBLIC, arrayType, getGetterName(fieldName));
+        getter.body()._if(field.eq(JExpr._null()))._then()
+            .assign(field, JExpr.newArray(elementType, 0));
+        getter.body()._return(field);
+
+        JMethod setter = klass.method(JMod.PUBLIC, codeModel.VOID, getSetterName(fieldName));
+        JVar p1 = setter.param(arrayType, fieldName);
+        setter.body().assign(JExpr._this().ref(fieldName), p1);
+    }
+
     private void generateFieldAndAccessors(JDefinedClass klass, Element element) {
         String fieldName = element.getName();
         JType jtype = getJavaType(element);
@@ -245,6 +431,192 @@ public class JavaModelGenerator {
         setter.body().assign(JExpr._this().ref(fieldName), p1);
     }
 
+    private void generateViews() {
+        List<DadlType> viewTypes = new ArrayList<>();
+        model.getTypeMap().values().stream()
+            .filter(t -> t instanceof Sequence || t instanceof TaggedSequence)
+            .filter(t -> model.getFixedLayout(t.getName()) != null)
+            .forEach(t -> viewTypes.add(t));
+        viewTypes.forEach(t -> createView(t));
+        viewTypes.forEach(t -> fillView(t));
+    }
+
+    private void createView(DadlType type) {
+        try {
+            JDefinedClass klass = pkg._class(type.getName() + VIEW_SUFFIX);
+            klass._extends(codeModel.directClass(BUFFER_VIEW).narrow(klass));
+            klass.annotate(Generated.class).param(VALUE, getClass().getName())
+                .param("date", LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).toString());
+        }
+        catch (JClassAlreadyExistsException exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    private void fillView(DadlType type) {
+        JDefinedClass klass = pkg._getClass(type.getName() + VIEW_SUFFIX);
+        FixedLayout layout = model.getFixedLayout(type.getName());
+
+        JMethod bitLength = klass.method(JMod.PUBLIC, codeModel.LONG, "getBitLength");
+        bitLength.annotate(Override.class);
+        bitLength.body()._return(JExpr.lit(layout.getBitLength()));
+
+        List<SequenceElement> elements = (type instanceof Sequence) ? ((Sequence) type)
+            .getElement() : ((TaggedSequence) type).getElement();
+        for (int i = 0; i < layout.getNumFields(); i++) {
+            generateViewGetter(klass, elements.get(i), layout.getFieldOffset(i),
+                (int) layout.getFieldLength(i));
+        }
+    }
+
+    /**
+     * Generates a getter decoding the given element at the given offset. Elements with a
+     * representation not supported by views do not get a getter.
+     */
+    private void generateViewGetter(JDefinedClass klass, SequenceElement element, long offset,
+        int numBits) {
+        String fieldName = element.getName();
+        DadlType type = model.getType(element.getType());
+        if (type instanceof SimpleType) {
+            JExpression value = readSimpleValue(klass, (SimpleType) type, element, offset,
+                numBits);
+            if (value != null) {
+                JMethod getter = klass.method(JMod.PUBLIC, getViewType(element),
+                    getGetterName(fieldName));
+                getter.body()._return(value);
+            }
+        }
+        else {
+            JDefinedClass viewClass = pkg._getClass(type.getName() + VIEW_SUFFIX);
+            JFieldVar field = klass.field(JMod.PRIVATE, viewClass, fieldName);
+            JMethod getter = klass.method(JMod.PUBLIC, viewClass, getGetterName(fieldName));
+            getter.body()._if(field.eq(JExpr._null()))._then()
+                .assign(field, JExpr._new(viewClass));
+            getter.body()._return(field.invoke("wrapBits").arg(JExpr.invoke("getBuffer"))
+                .arg(JExpr.invoke("getBitOffset").plus(JExpr.lit(offset))));
+        }
+    }
+
+    /**
+     * Gets the constant holding the character set with the given name in the given view class,
+     * so that the character set is looked up only once when the class is loaded.
+     */
+    private JFieldVar getCharsetField(JDefinedClass klass, String encoding) {
+        String fieldName = "CHARSET_" + encoding.toUpperCase().replaceAll("[^A-Z0-9]", "_");
+        JFieldVar field = klass.fields().get(fieldName);
+        if (field == null) {
+            field = klass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, Charset.class,
+                fieldName, codeModel.ref(Charset.class).staticInvoke("forName")
+                    .arg(JExpr.lit(encoding)));
+        }
+        return field;
+    }
+
+    /**
+     * Gets the constant holding the mapping of the given enumeration class in the given view
+     * class. Views share the runtime mapping of the processor instead of scanning the constants.
+     */
+    private JFieldVar getEnumerationMappingField(JDefinedClass klass, JClass enumClass) {
+        String fieldName = "MAPPING_" + getConstantName(enumClass.name());
+        JFieldVar field = klass.fields().get(fieldName);
+        if (field == null) {
+            JClass mappingClass = codeModel.directClass(ENUMERATION_MAPPING);
+            field = klass.field(JMod.PRIVATE | JMod.STATIC | JMod.FINAL, mappingClass,
+                fieldName, mappingClass.staticInvoke("of").arg(enumClass.dotclass()));
+        }
+        return field;
+    }
+
+    private JExpression readSimpleValue(JDefinedClass klass, SimpleType type,
+        SequenceElement element, long offset, int numBits) {
+        if (type.getContentType() == ContentType.TEXT) {
+            if (type instanceof Enumeration || numBits % BYTE_SIZE != 0) {
+                return null;
+            }
+            String encoding = (element.getEncoding() == null) ? "UTF-8" : element.getEncoding();
+            return JExpr.invoke("readText").arg(JExpr.lit(offset))
+                .arg(JExpr.lit(numBits / BYTE_SIZE)).arg(getCharsetField(klass, encoding));
+        }
+        if (type.getContentType() == ContentType.OPAQUE) {
+            if (numBits % BYTE_SIZE != 0) {
+                return null;
+            }
+            return JExpr.invoke("readBytes").arg(JExpr.lit(offset))
+                .arg(JExpr.lit(numBits / BYTE_SIZE));
+        }
+        JType jtype = getJavaType(type);
+        if (!jtype.isPrimitive() || numBits > getMaxBitLength(type, element)) {
+            return null;
+        }
+        JInvocation bits;
+        if (type.getRepresentation() == Representation.TEXT) {
+            if (type instanceof Enumeration || numBits % BYTE_SIZE != 0) {
+                return null;
+            }
+            String padCharacter = element.getTextNumberPadCharacter();
+            Justification justification = (element.getTextNumberJustification() == null)
+                ? Justification.RIGHT : element.getTextNumberJustification();
+            bits = JExpr.invoke("readTextNumber").arg(JExpr.lit(offset))
+                .arg(JExpr.lit(numBits / BYTE_SIZE))
+                .arg(JExpr.lit((padCharacter == null || padCharacter.isEmpty())
+                    ? ' ' : padCharacter.charAt(0)))
+                .arg(JExpr.lit(justification != Justification.LEFT))
+                .arg(JExpr.lit(justification != Justification.RIGHT));
+        }
+        else if (element.getBinaryNumberRep() == BinaryNumberRepresentation.BCD) {
+            bits = JExpr.invoke("readBcd").arg(JExpr.lit(offset)).arg(JExpr.lit(numBits));
+        }
+        else if (element.getBinaryNumberRep() == BinaryNumberRepresentation.PACKED) {
+            bits = JExpr.invoke("readPacked").arg(JExpr.lit(offset)).arg(JExpr.lit(numBits));
+        }
+        else {
+            String method = Boolean.TRUE.equals(element.isUnsigned()) ? "readBits"
+                : "readSignedBits";
+            bits = JExpr.invoke(method).arg(JExpr.lit(offset)).arg(JExpr.lit(numBits));
+        }
+        if (type instanceof Enumeration) {
+            JClass enumClass = codeModel._getClass(String.format("%s.%s", packageName,
+                type.getName()));
+            return JExpr.cast(enumClass,
+                getEnumerationMappingField(klass, enumClass).invoke("fromValue").arg(bits));
+        }
+        return (jtype == codeModel.LONG) ? bits : JExpr.cast(jtype, bits);
+    }
+
+    /**
+     * Gets the maximum bit length of an integer element which can be read as {@code long}.
+     */
+    private long getMaxBitLength(DadlType type, Element element) {
+        if (type.getRepresentation() == Representation.TEXT) {
+            return Long.SIZE;
+        }
+        if (element.getBinaryNumberRep() == BinaryNumberRepresentation.BCD) {
+            return MAX_LONG_DIGITS * NIBBLE_SIZE;
+        }
+        if (element.getBinaryNumberRep() == BinaryNumberRepresentation.PACKED) {
+            return (MAX_LONG_DIGITS + 1) * NIBBLE_SIZE;
+        }
+        return Long.SIZE;
+    }
+
+    private JType getViewType(Element element) {
+        DadlType type = model.getType(element.getType());
+        if (type instanceof Enumeration) {
+            return codeModel._getClass(String.format("%s.%s", packageName, type.getName()));
+        }
+        if (type instanceof SimpleType) {
+            SimpleType simpleType = (SimpleType) type;
+            if (simpleType.getContentType() == ContentType.TEXT) {
+                return codeModel.ref(String.class);
+            }
+            if (simpleType.getContentType() == ContentType.OPAQUE) {
+                return codeModel.BYTE.array();
+            }
+            return getJavaType(simpleType);
+        }
+        return pkg._getClass(type.getName() + VIEW_SUFFIX);
+    }
+
     private JType getJavaType(Element element) {
         DadlType type = model.getType(element.getType());
         JType jtype = null;
@@ -278,6 +650,19 @@ public class JavaModelGenerator {
         return getAccessorName("set", fieldName);
     }
 
+    private String getConstantName(String fieldName) {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < fieldName.length(); i++) {
+            char c = fieldName.charAt(i);
+            if (i > 0 && Character.isUpperCase(c)
+                && !Character.isUpperCase(fieldName.charAt(i - 1))) {
+                buffer.append('_');
+            }
+            buffer.append(Character.toUpperCase(c));
+        }
+        return buffer.toString();
+    }
+
     private String getAccessorName(String prefix, String fieldName) {
         StringBuilder buffer = new StringBuilder(prefix);
         buffer.append(fieldName.substring(0, 1).toUpperCase());
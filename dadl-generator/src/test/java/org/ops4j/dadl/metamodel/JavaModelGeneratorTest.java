@@ -17,13 +17,20 @@
  */
 package org.ops4j.dadl.metamodel;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.ops4j.dadl.generator.JavaModelGenerator;
 import org.ops4j.dadl.metamodel.gen.Model;
 import org.ops4j.dadl.model.ValidatedModel;
@@ -34,6 +41,29 @@ import org.ops4j.dadl.model.ValidatedModel;
  */
 public class JavaModelGeneratorTest {
 
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private void generateChoice(String... elementNames) throws Exception {
+        StringBuilder xml = new StringBuilder("<model xmlns=\"urn:dadl:0.1\">");
+        xml.append("<simpleType name=\"Int8\" contentType=\"integer\" mappedType=\"int\" ");
+        xml.append("representation=\"binary\" lengthKind=\"explicit\" length=\"8\" ");
+        xml.append("lengthUnit=\"bit\"/>");
+        xml.append("<choice name=\"Clash\">");
+        for (String elementName : elementNames) {
+            xml.append("<element name=\"").append(elementName).append("\" type=\"Int8\"/>");
+        }
+        xml.append("</choice></model>");
+
+        JAXBContext context = JAXBContext.newInstance(Model.class);
+        Model model = (Model) context.createUnmarshaller().unmarshal(
+            new StringReader(xml.toString()));
+        ValidatedModel validatedModel = new ValidatedModel(model);
+        validatedModel.validate();
+        new JavaModelGenerator(validatedModel, "demo.clash", Paths.get("target", "clash"))
+            .generateJavaModel();
+    }
+
     @Test
     public void shouldGenerateJavaModel() throws Exception {
         JAXBContext context = JAXBContext.newInstance(Model.class);
@@ -45,4 +75,52 @@ public class JavaModelGeneratorTest {
         JavaModelGenerator generator = new JavaModelGenerator(validatedModel, "demo.simple", Paths.get("target", "out"));
         generator.generateJavaModel();
     }
+
+    @Test
+    public void shouldGenerateViews() throws Exception {
+        JAXBContext context = JAXBContext.newInstance(Model.class);
+        Unmarshaller unmarshaller = context.createUnmarshaller();
+        Model model = (Model) unmarshaller.unmarshal(new File("src/test/resources/simpleModel.xml"));
+        ValidatedModel validatedModel = new ValidatedModel(model);
+        validatedModel.validate();
+
+        Path outputDir = Paths.get("target", "views");
+        JavaModelGenerator generator = new JavaModelGenerator(validatedModel, "demo.simple", outputDir);
+        generator.setGenerateViews(true);
+        generator.generateJavaModel();
+
+        Path pkgDir = outputDir.resolve(Paths.get("demo", "simple"));
+        assertTrue(pkgDir.resolve("AllNumbersView.java").toFile().exists());
+        assertTrue(pkgDir.resolve("ShortNumbersView.java").toFile().exists());
+        assertFalse(pkgDir.resolve("NumberListView.java").toFile().exists());
+    }
+
+    @Test
+    public void shouldRejectBranchNamedLikeNoBranchConstant() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("branch constant NO_BRANCH for choice element Clash.noBranch");
+        generateChoice("noBranch");
+    }
+
+    @Test
+    public void shouldRejectBranchNamedLikeItsConstant() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("branch constant OPT for choice element Clash.OPT");
+        generateChoice("OPT");
+    }
+
+    @Test
+    public void shouldRejectBranchesWithSameConstant() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("branch constant FOO_BAR for choice element Clash.foo_bar");
+        generateChoice("fooBar", "foo_bar");
+    }
+
+    @Test
+    public void shouldRejectReservedBranchName() throws Exception {
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("choice element name clashes with a generated member: "
+            + "Clash.selectedBranch");
+        generateChoice("selectedBranch");
+    }
 }
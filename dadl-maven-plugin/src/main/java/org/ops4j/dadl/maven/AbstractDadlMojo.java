@@ -46,6 +46,18 @@ public abstract class AbstractDadlMojo extends AbstractMojo {
     @Parameter(name = "package", required = true)
     private String packageName;
 
+    /**
+     * Generate flyweight view classes for types with a fixed layout?
+     */
+    @Parameter(defaultValue = "false")
+    private boolean generateViews;
+
+    /**
+     * Use primitive arrays for repeated elements of primitive simple types?
+     */
+    @Parameter(defaultValue = "false")
+    private boolean primitiveArrays;
+
     @Parameter(readonly = true, defaultValue = "${project}")
     protected MavenProject project;
 
@@ -62,6 +74,8 @@ public abstract class AbstractDadlMojo extends AbstractMojo {
 
             JavaModelGenerator generator = new JavaModelGenerator(validatedModel, packageName,
                 getOutputDir().toPath());
+            generator.setGenerateViews(generateViews);
+            generator.setPrimitiveArrays(primitiveArrays);
             try {
                 generator.generateJavaModel();
                 refreshGeneratedSources();
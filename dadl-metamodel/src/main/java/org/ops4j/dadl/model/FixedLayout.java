@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.model;
+
+import java.util.List;
+
+/**
+ * Layout of a complex type where all elements have a fixed length known at model load. The bit
+ * offset of each element relative to the start of the type is constant.
+ * <p>
+ * Element indexes correspond to the order of elements in the model. For tagged sequences, offsets
+ * include the tag and the length field.
+ *
+ * @author hwellmann
+ *
+ */
+public class FixedLayout {
+
+    private long bitLength;
+    private List<String> fieldNames;
+    private long[] fieldOffsets;
+    private long[] fieldLengths;
+
+    FixedLayout(long bitLength, List<String> fieldNames, long[] fieldOffsets,
+        long[] fieldLengths) {
+        this.bitLength = bitLength;
+        this.fieldNames = fieldNames;
+        this.fieldOffsets = fieldOffsets;
+        this.fieldLengths = fieldLengths;
+    }
+
+    /**
+     * Gets the total bit length of the type, including any padding.
+     *
+     * @return bit length
+     */
+    public long getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Gets the number of fields.
+     *
+     * @return number of fields
+     */
+    public int getNumFields() {
+        return fieldNames.size();
+    }
+
+    /**
+     * Gets the index of the field with the given name.
+     *
+     * @param fieldName
+     *            field name
+     * @return field index, or -1 if there is no such field
+     */
+    public int getFieldIndex(String fieldName) {
+        return fieldNames.indexOf(fieldName);
+    }
+
+    /**
+     * Gets the name of the field with the given index.
+     *
+     * @param index
+     *            field index
+     * @return field name
+     */
+    public String getFieldName(int index) {
+        return fieldNames.get(index);
+    }
+
+    /**
+     * Gets the bit offset of the field with the given index, relative to the start of the type.
+     *
+     * @param index
+     *            field index
+     * @return bit offset
+     */
+    public long getFieldOffset(int index) {
+        return fieldOffsets[index];
+    }
+
+    /**
+     * Gets the bit length of the field with the given index.
+     *
+     * @param index
+     *            field index
+     * @return bit length
+     */
+    public long getFieldLength(int index) {
+        return fieldLengths[index];
+    }
+}
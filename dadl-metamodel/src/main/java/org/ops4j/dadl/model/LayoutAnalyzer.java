@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.ops4j.dadl.metamodel.gen.DadlType;
+import org.ops4j.dadl.metamodel.gen.Element;
+import org.ops4j.dadl.metamodel.gen.LengthField;
+import org.ops4j.dadl.metamodel.gen.LengthKind;
+import org.ops4j.dadl.metamodel.gen.LengthUnit;
+import org.ops4j.dadl.metamodel.gen.Sequence;
+import org.ops4j.dadl.metamodel.gen.SequenceElement;
+import org.ops4j.dadl.metamodel.gen.SimpleType;
+import org.ops4j.dadl.metamodel.gen.Tag;
+import org.ops4j.dadl.metamodel.gen.TaggedSequence;
+
+/**
+ * Computes the fixed layouts of all types of a linked model. A type has a fixed length if its
+ * length can be determined from literal representation properties, without evaluating any
+ * expressions and without reading any data.
+ *
+ * @author hwellmann
+ *
+ */
+class LayoutAnalyzer {
+
+    private static final Pattern LITERAL = Pattern.compile("\\d+");
+
+    private static final int BYTE_SIZE = 8;
+
+    private Map<String, DadlType> typeMap;
+
+    private Map<String, Long> bitLengths = new HashMap<>();
+
+    private Map<String, FixedLayout> layouts = new HashMap<>();
+
+    private Set<String> variable = new HashSet<>();
+
+    private Set<String> inProgress = new HashSet<>();
+
+    LayoutAnalyzer(Map<String, DadlType> typeMap) {
+        this.typeMap = typeMap;
+    }
+
+    /**
+     * Analyzes all types of the model.
+     */
+    void analyze() {
+        typeMap.keySet().forEach(this::getTypeBitLength);
+    }
+
+    FixedLayout getLayout(String typeName) {
+        return layouts.get(typeName);
+    }
+
+    Long getTypeBitLength(String typeName) {
+        if (bitLengths.containsKey(typeName)) {
+            return bitLengths.get(typeName);
+        }
+        if (variable.contains(typeName) || !inProgress.add(typeName)) {
+            return null;
+        }
+        DadlType type = typeMap.get(typeName);
+        Long bitLength = null;
+        if (type instanceof SimpleType) {
+            bitLength = getSimpleBitLength(type, type);
+        }
+        else if (type instanceof Sequence) {
+            Sequence sequence = (Sequence) type;
+            bitLength = computeLayout(sequence, null, null, sequence.getElement());
+        }
+        else if (type instanceof TaggedSequence && ((TaggedSequence) type).getChecksum() == null) {
+            // sequences with a checksum are never read at fixed offsets, to verify the checksum
+            TaggedSequence sequence = (TaggedSequence) type;
+            bitLength = computeLayout(sequence, sequence.getTag(), sequence.getLengthField(),
+                sequence.getElement());
+        }
+        inProgress.remove(typeName);
+        if (bitLength == null) {
+            variable.add(typeName);
+        }
+        else {
+            bitLengths.put(typeName, bitLength);
+        }
+        return bitLength;
+    }
+
+    Long getElementBitLength(Element element) {
+        DadlType type = typeMap.get(element.getType());
+        if (type instanceof SimpleType) {
+            return getSimpleBitLength(element, type);
+        }
+        return getTypeBitLength(type.getName());
+    }
+
+    private Long getSimpleBitLength(DadlType representation, DadlType type) {
+        if (type.getAdapter() != null || representation.getMinLength() != null) {
+            return null;
+        }
+        if (representation.getLengthKind() != LengthKind.EXPLICIT) {
+            return null;
+        }
+        return getLiteralBitLength(representation);
+    }
+
+    private Long getLiteralBitLength(DadlType type) {
+        String length = type.getLength();
+        if (length == null || !LITERAL.matcher(length.trim()).matches()) {
+            return null;
+        }
+        long bitLength = Long.parseLong(length.trim());
+        if (type.getLengthUnit() == LengthUnit.BYTE) {
+            bitLength *= BYTE_SIZE;
+        }
+        else if (type.getLengthUnit() == LengthUnit.CHAR) {
+            return null;
+        }
+        return bitLength;
+    }
+
+    private Long computeLayout(DadlType type, Tag tag, LengthField lengthField,
+        List<SequenceElement> elements) {
+        if (type.getAdapter() != null || type.getMinLength() != null) {
+            return null;
+        }
+        long offset = 0;
+        if (tag != null) {
+            Long tagLength = getTypeBitLength(tag.getType());
+            if (tagLength == null) {
+                return null;
+            }
+            offset += tagLength;
+        }
+        if (lengthField != null) {
+            Long lengthFieldLength = getTypeBitLength(lengthField.getType());
+            if (lengthFieldLength == null) {
+                return null;
+            }
+            offset += lengthFieldLength;
+        }
+        long payloadStart = offset;
+        List<String> fieldNames = new ArrayList<>();
+        long[] fieldOffsets = new long[elements.size()];
+        long[] fieldLengths = new long[elements.size()];
+        int index = 0;
+        for (SequenceElement element : elements) {
+            if (element.getMinOccurs() != 1 || element.getMaxOccurs() != 1
+                || element.getOccursCount() != null) {
+                return null;
+            }
+            Long elementLength = getElementBitLength(element);
+            if (elementLength == null) {
+                return null;
+            }
+            fieldNames.add(element.getName());
+            fieldOffsets[index] = offset;
+            fieldLengths[index] = elementLength;
+            offset += elementLength;
+            index++;
+        }
+        if (lengthField != null) {
+            // the length field counts bytes, so the payload is padded to a byte boundary
+            long payloadLength = offset - payloadStart;
+            offset = payloadStart + (payloadLength + BYTE_SIZE - 1) / BYTE_SIZE * BYTE_SIZE;
+        }
+        long bitLength = offset;
+        if (type.getLengthKind() == LengthKind.EXPLICIT) {
+            Long explicitLength = getLiteralBitLength(type);
+            if (explicitLength == null || explicitLength < offset) {
+                return null;
+            }
+            bitLength = explicitLength;
+        }
+        layouts.put(type.getName(),
+            new FixedLayout(bitLength, fieldNames, fieldOffsets, fieldLengths));
+        return bitLength;
+    }
+}
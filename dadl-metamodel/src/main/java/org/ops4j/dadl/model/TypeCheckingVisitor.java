@@ -23,6 +23,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.ChoiceElement;
 import org.ops4j.dadl.metamodel.gen.DadlType;
 import org.ops4j.dadl.metamodel.gen.Element;
 import org.ops4j.dadl.metamodel.gen.Enumeration;
@@ -61,6 +62,12 @@ class TypeCheckingVisitor extends BaseVisitor {
         return VisitorAction.CONTINUE;
     }
 
+    @Override
+    public VisitorAction enter(ChoiceElement element) {
+        linkElement(element);
+        return VisitorAction.CONTINUE;
+    }
+
     private void linkElement(Element element) {
         DadlType type = typeMap.get(element.getType());
         if (type == null) {
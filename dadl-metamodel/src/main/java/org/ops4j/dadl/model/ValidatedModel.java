@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.ops4j.dadl.metamodel.gen.DadlType;
+import org.ops4j.dadl.metamodel.gen.Element;
 import org.ops4j.dadl.metamodel.gen.Model;
 import org.ops4j.dadl.metamodel.gen.SequenceElement;
 
@@ -37,6 +38,8 @@ public class ValidatedModel {
 
     private Map<String, DadlType> typeMap = new HashMap<>();
 
+    private LayoutAnalyzer layoutAnalyzer;
+
     /**
      * Creates a validated model for the given raw model. The validation must be executed by
      * invoking the {{@link #validate()} method.
@@ -55,6 +58,8 @@ public class ValidatedModel {
         typeMap = typeCollectingVisitor.getTypeMap();
         TypeCheckingVisitor typeCheckingVisitor = new TypeCheckingVisitor(typeMap);
         model.accept(typeCheckingVisitor);
+        layoutAnalyzer = new LayoutAnalyzer(typeMap);
+        layoutAnalyzer.analyze();
     }
 
     /**
@@ -84,6 +89,34 @@ public class ValidatedModel {
         return typeMap.get(typeName);
     }
 
+    /**
+     * Gets the fixed layout of the given complex type. Only sequences and tagged sequences where
+     * all elements have a fixed length have a fixed layout.
+     *
+     * @param typeName
+     *            type name
+     * @return fixed layout, or null if the type does not have a fixed layout
+     */
+    public FixedLayout getFixedLayout(String typeName) {
+        return layoutAnalyzer.getLayout(typeName);
+    }
+
+    /**
+     * Gets the fixed bit length of the given type or element. For elements, the representation
+     * properties of the element are taken into account, and the result is the length of a single
+     * occurrence, even if the element is optional or a list.
+     *
+     * @param type
+     *            type or element
+     * @return bit length, or null if the length is not fixed
+     */
+    public Long getFixedBitLength(DadlType type) {
+        if (type instanceof Element) {
+            return layoutAnalyzer.getElementBitLength((Element) type);
+        }
+        return layoutAnalyzer.getTypeBitLength(type.getName());
+    }
+
     /**
      * Gets the raw model.
      *
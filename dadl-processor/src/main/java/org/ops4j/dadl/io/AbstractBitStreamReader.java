@@ -27,6 +27,7 @@ import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.zip.Checksum;
 
 import javax.imageio.stream.ImageInputStreamImpl;
 
@@ -41,8 +42,15 @@ import javax.imageio.stream.ImageInputStreamImpl;
 public abstract class AbstractBitStreamReader extends ImageInputStreamImpl implements
     BitStreamReader {
 
+    private static final int CHECKSUM_BUFFER_SIZE = 4096;
+
     private ByteBuffer buffer = ByteBuffer.allocate(2048);
 
+    private byte[] arrayBuffer = new byte[0];
+
+    /** Running checksums, created when the first checksum is started. */
+    private RunningChecksums runningChecksums;
+
     @Override
     public long getBitPosition() {
         return BYTE_SIZE * streamPos + bitOffset;
@@ -209,12 +217,125 @@ public abstract class AbstractBitStreamReader extends ImageInputStreamImpl imple
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The inherited implementation accumulates all bytes touched in a single {@code long}, which
+     * loses the leading bits when reading 57 or more bits from a position which is not byte
+     * aligned. This implementation reads the bits up to the next byte boundary first in that
+     * case.
+     */
+    @Override
+    public long readBits(int numBits) throws IOException {
+        if (numBits + bitOffset <= Long.SIZE) {
+            return super.readBits(numBits);
+        }
+        int numHighBits = BYTE_SIZE - bitOffset;
+        long high = super.readBits(numHighBits);
+        int numLowBits = numBits - numHighBits;
+        return (high << numLowBits) | super.readBits(numLowBits);
+    }
+
     @Override
     public long readSignedBits(int numBits) throws IOException {
         long result = readBits(numBits);
-        if (result >= (1L << (numBits - 1))) {
-            result -= 1L << numBits;
+        if (numBits > 0 && numBits < Long.SIZE) {
+            int shift = Long.SIZE - numBits;
+            result = (result << shift) >> shift;
         }
         return result;
     }
+
+    @Override
+    public long readBitsAt(long bitPosition, int numBits) throws IOException {
+        long currentPosition = getBitPosition();
+        setBitPosition(bitPosition);
+        try {
+            return readBits(numBits);
+        }
+        finally {
+            setBitPosition(currentPosition);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation reads all bytes containing the items into a buffer and then decodes the
+     * items from the buffer.
+     */
+    @Override
+    public void readArray(Object array, int numItems, int numBits, boolean signed)
+        throws IOException {
+        if (numItems == 0) {
+            return;
+        }
+        long start = getBitPosition();
+        long numArrayBits = (long) numItems * numBits;
+        int shift = bitOffset;
+        int numBytes = (int) ((shift + numArrayBits + BYTE_SIZE - 1) / BYTE_SIZE);
+        if (arrayBuffer.length < numBytes) {
+            arrayBuffer = new byte[numBytes];
+        }
+        readFully(arrayBuffer, 0, numBytes);
+        BitArrays.decode(arrayBuffer, shift, array, numItems, numBits, signed);
+        setBitPosition(start + numArrayBits);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation reads the range in chunks into a buffer and restores the position.
+     */
+    @Override
+    public void updateChecksum(Checksum checksum, long startBit, long endBit)
+        throws IOException {
+        BitArrays.checkByteRange(startBit, endBit);
+        long currentPosition = getBitPosition();
+        if (arrayBuffer.length < CHECKSUM_BUFFER_SIZE) {
+            arrayBuffer = new byte[CHECKSUM_BUFFER_SIZE];
+        }
+        setBitPosition(startBit);
+        try {
+            long remaining = (endBit - startBit) / BYTE_SIZE;
+            while (remaining > 0) {
+                int numBytes = (int) Math.min(arrayBuffer.length, remaining);
+                readFully(arrayBuffer, 0, numBytes);
+                checksum.update(arrayBuffer, 0, numBytes);
+                remaining -= numBytes;
+            }
+        }
+        finally {
+            setBitPosition(currentPosition);
+        }
+    }
+
+    @Override
+    public void startChecksum(Checksum checksum) {
+        BitArrays.checkByteRange(getBitPosition(), getBitPosition());
+        if (runningChecksums == null) {
+            runningChecksums = new RunningChecksums(this::updateChecksum);
+        }
+        runningChecksums.start(checksum, streamPos);
+    }
+
+    @Override
+    public void endChecksum(Checksum checksum) throws IOException {
+        if (runningChecksums != null) {
+            runningChecksums.end(checksum, streamPos);
+        }
+    }
+
+    /**
+     * Adds the bytes passed so far to the running checksums, if enough bytes are pending.
+     * Derived classes call this method whenever they have read bytes.
+     *
+     * @throws IOException
+     *             on read error
+     */
+    protected final void trackChecksums() throws IOException {
+        if (runningChecksums != null) {
+            runningChecksums.track(streamPos);
+        }
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.ops4j.dadl.io.Constants.DEC_BASE;
+import static org.ops4j.dadl.io.Constants.NIBBLE_SIZE;
+
+/**
+ * Lookup tables for binary coded decimals, converting two digits per byte.
+ * <p>
+ * In packed decimal representation, the digits are followed by a sign nibble, which is one of
+ * {@code C} (positive), {@code D} (negative) or {@code F} (unsigned). The alternative sign
+ * nibbles {@code A} and {@code E} (positive) and {@code B} (negative) are accepted when decoding.
+ *
+ * @author hwellmann
+ *
+ */
+public final class Bcd {
+
+    /** Sign nibble of positive packed decimals. */
+    public static final int SIGN_POSITIVE = 0xC;
+
+    /** Sign nibble of negative packed decimals. */
+    public static final int SIGN_NEGATIVE = 0xD;
+
+    /** Sign nibble of unsigned packed decimals. */
+    public static final int SIGN_UNSIGNED = 0xF;
+
+    /** Number of two-digit values of a byte. */
+    private static final int NUM_PAIRS = DEC_BASE * DEC_BASE;
+
+    private static final int NUM_BYTES = 256;
+
+    private static final int NIBBLE_MASK = 0x0F;
+
+    /** Decimal value of each byte, or -1 if the byte contains a nibble greater than 9. */
+    private static final byte[] DECODE = new byte[NUM_BYTES];
+
+    /** BCD byte of each two-digit value. */
+    private static final byte[] ENCODE = new byte[NUM_PAIRS];
+
+    static {
+        for (int b = 0; b < NUM_BYTES; b++) {
+            int high = b >>> NIBBLE_SIZE;
+            int low = b & NIBBLE_MASK;
+            DECODE[b] = (byte) ((high < DEC_BASE && low < DEC_BASE) ? high * DEC_BASE + low : -1);
+        }
+        for (int i = 0; i < NUM_PAIRS; i++) {
+            ENCODE[i] = (byte) (((i / DEC_BASE) << NIBBLE_SIZE) | (i % DEC_BASE));
+        }
+    }
+
+    private Bcd() {
+        // hidden utility class constructor
+    }
+
+    /**
+     * Decodes a byte with two BCD digits.
+     *
+     * @param b
+     *            byte value (only the lower 8 bits are used)
+     * @return decimal value from 0 to 99
+     * @throws IllegalArgumentException
+     *             if any nibble is not a decimal digit
+     */
+    public static int decodeByte(int b) {
+        int value = DECODE[b & (NUM_BYTES - 1)];
+        if (value < 0) {
+            throw new IllegalArgumentException("illegal BCD byte: " + Integer.toHexString(b));
+        }
+        return value;
+    }
+
+    /**
+     * Decodes a nibble with one BCD digit.
+     *
+     * @param nibble
+     *            nibble value
+     * @return decimal value from 0 to 9
+     * @throws IllegalArgumentException
+     *             if the nibble is not a decimal digit
+     */
+    public static int decodeNibble(int nibble) {
+        if (nibble < 0 || nibble >= DEC_BASE) {
+            throw new IllegalArgumentException("illegal digit: " + nibble);
+        }
+        return nibble;
+    }
+
+    /**
+     * Encodes a two-digit decimal value as BCD byte.
+     *
+     * @param value
+     *            value from 0 to 99
+     * @return BCD byte value, from 0 to 0x99
+     */
+    public static int encodeByte(int value) {
+        return ENCODE[value] & (NUM_BYTES - 1);
+    }
+
+    /**
+     * Decodes the sign nibble of a packed decimal.
+     *
+     * @param nibble
+     *            sign nibble
+     * @return true if the sign is negative, false if positive or unsigned
+     * @throws IllegalArgumentException
+     *             if the nibble is not a sign nibble
+     */
+    public static boolean isNegative(int nibble) {
+        switch (nibble) {
+            case 0xA:
+            case 0xC:
+            case 0xE:
+            case 0xF:
+                return false;
+            case 0xB:
+            case 0xD:
+                return true;
+            default:
+                throw new IllegalArgumentException("illegal sign nibble: " + nibble);
+        }
+    }
+}
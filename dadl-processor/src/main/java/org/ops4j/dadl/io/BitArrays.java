@@ -0,0 +1,320 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Extracts bit fields from byte arrays, and decodes and encodes arrays of integers with a common
+ * bit width. The bits of each byte are numbered from the most significant bit.
+ * <p>
+ * Packed items narrower than a byte or not byte aligned, like 4, 10 or 12-bit samples, are
+ * unpacked and packed through a 64-bit accumulator, so that each source or target byte is
+ * accessed only once.
+ *
+ * @author hwellmann
+ *
+ */
+final class BitArrays {
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int BYTES_PER_LONG = Long.SIZE / BYTE_SIZE;
+
+    /**
+     * Maximum item width for the accumulator. Up to 7 pending bits plus one item must fit into 64
+     * bits.
+     */
+    private static final int MAX_ACCUMULATED_BITS = Long.SIZE - BYTE_SIZE;
+
+    private BitArrays() {
+        // hidden utility class constructor
+    }
+
+    /**
+     * Gets up to 64 bits from a byte buffer, starting at an arbitrary bit position. At most 9
+     * bytes are read by absolute gets, so the position and the byte order of the buffer are
+     * ignored.
+     *
+     * @param source
+     *            source bytes
+     * @param bitPosition
+     *            position of first bit, relative to the start of the buffer
+     * @param numBits
+     *            number of bits, from 1 to 64
+     * @return bits as unsigned value
+     */
+    static long bitsAt(ByteBuffer source, long bitPosition, int numBits) {
+        int index = (int) (bitPosition / BYTE_SIZE);
+        int shift = (int) (bitPosition % BYTE_SIZE);
+        int numBytes = (shift + numBits + BYTE_SIZE - 1) / BYTE_SIZE;
+        int numWordBytes = Math.min(numBytes, BYTES_PER_LONG);
+        long word = 0;
+        for (int i = 0; i < numWordBytes; i++) {
+            word = (word << BYTE_SIZE) | (source.get(index + i) & BYTE_MASK);
+        }
+        long mask = mask(numBits);
+        if (numBytes > numWordBytes) {
+            int extra = shift + numBits - Long.SIZE;
+            int last = source.get(index + numWordBytes) & BYTE_MASK;
+            return ((word << extra) | (last >>> (BYTE_SIZE - extra))) & mask;
+        }
+        return (word >>> (BYTE_SIZE * numWordBytes - shift - numBits)) & mask;
+    }
+
+    private static long mask(int numBits) {
+        return (numBits == Long.SIZE) ? -1L : (1L << numBits) - 1;
+    }
+
+    /**
+     * Decodes a number of integers with a common bit width into a primitive array. Values are
+     * narrowed to the component type of the array.
+     * <p>
+     * Byte aligned items of 8, 16, 32 or 64 bits are read through a big endian {@link ByteBuffer}.
+     * If the item width equals the width of the component type, the items are copied by a bulk
+     * get of a view buffer. Other items are extracted from the bytes with 64-bit shifts.
+     *
+     * @param source
+     *            source bytes
+     * @param bitPosition
+     *            position of the first bit of the first item
+     * @param array
+     *            target array, one of {@code byte[]}, {@code short[]}, {@code int[]} or
+     *            {@code long[]}
+     * @param numItems
+     *            number of items, stored from index 0
+     * @param numBits
+     *            number of bits per item, from 1 to 64
+     * @param signed
+     *            are the items signed in two's complement?
+     */
+    static void decode(byte[] source, long bitPosition, Object array, int numItems, int numBits,
+        boolean signed) {
+        if (numBits < 1 || numBits > Long.SIZE) {
+            throw new IllegalArgumentException("Bad value for numBits!");
+        }
+        if (bitPosition % BYTE_SIZE == 0 && isWordSize(numBits)) {
+            int numBytes = numBits / BYTE_SIZE;
+            ByteBuffer buffer = ByteBuffer.wrap(source, (int) (bitPosition / BYTE_SIZE),
+                numItems * numBytes).slice();
+            if (!copyView(buffer, array, numItems, numBits)) {
+                long mask = signed ? -1L : mask(numBits);
+                for (int i = 0; i < numItems; i++) {
+                    PrimitiveArrays.set(array, i, getWord(buffer, i * numBytes, numBits) & mask);
+                }
+            }
+            return;
+        }
+        if (numBits <= MAX_ACCUMULATED_BITS) {
+            unpack(source, bitPosition, array, numItems, numBits, signed);
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(source);
+        int shift = Long.SIZE - numBits;
+        long pos = bitPosition;
+        for (int i = 0; i < numItems; i++) {
+            long value = bitsAt(bytes, pos, numBits);
+            if (signed) {
+                value = (value << shift) >> shift;
+            }
+            PrimitiveArrays.set(array, i, value);
+            pos += numBits;
+        }
+    }
+
+    /**
+     * Unpacks items of up to 56 bits. Bytes are shifted into an accumulator until it holds the
+     * next item, which is then taken from the most significant pending bits.
+     */
+    private static void unpack(byte[] source, long bitPosition, Object array, int numItems,
+        int numBits, boolean signed) {
+        int index = (int) (bitPosition / BYTE_SIZE);
+        int numPendingBits = 0;
+        long accumulator = 0;
+        int skipBits = (int) (bitPosition % BYTE_SIZE);
+        if (skipBits != 0) {
+            accumulator = source[index++] & (BYTE_MASK >>> skipBits);
+            numPendingBits = BYTE_SIZE - skipBits;
+        }
+        long mask = mask(numBits);
+        int shift = Long.SIZE - numBits;
+        for (int i = 0; i < numItems; i++) {
+            while (numPendingBits < numBits) {
+                accumulator = (accumulator << BYTE_SIZE) | (source[index++] & BYTE_MASK);
+                numPendingBits += BYTE_SIZE;
+            }
+            numPendingBits -= numBits;
+            long value = (accumulator >>> numPendingBits) & mask;
+            if (signed) {
+                value = (value << shift) >> shift;
+            }
+            PrimitiveArrays.set(array, i, value);
+        }
+    }
+
+    /**
+     * Checks that a bit range starts and ends on a byte boundary.
+     *
+     * @param startBit
+     *            first bit position
+     * @param endBit
+     *            bit position after the range
+     * @throws IllegalArgumentException
+     *             if the range is not byte aligned or has negative length
+     */
+    static void checkByteRange(long startBit, long endBit) {
+        if (startBit % BYTE_SIZE != 0 || endBit % BYTE_SIZE != 0 || endBit < startBit) {
+            throw new IllegalArgumentException("not a byte aligned range: " + startBit + ".."
+                + endBit);
+        }
+    }
+
+    /**
+     * Encodes items of a primitive array with a common bit width. The items are packed without
+     * gaps, starting at bit 0 of the target array. Unused bits of the last byte are 0.
+     *
+     * @param array
+     *            source array, one of {@code byte[]}, {@code short[]}, {@code int[]} or
+     *            {@code long[]}
+     * @param numItems
+     *            number of items, starting at index 0
+     * @param numBits
+     *            number of bits per item, from 1 to 64. Items are truncated to this width.
+     * @param target
+     *            target bytes, with at least {@code ceil(numItems * numBits / 8)} elements
+     */
+    static void pack(Object array, int numItems, int numBits, byte[] target) {
+        if (numBits < 1 || numBits > Long.SIZE) {
+            throw new IllegalArgumentException("Bad value for numBits!");
+        }
+        if (isWordSize(numBits)) {
+            ByteBuffer buffer = ByteBuffer.wrap(target, 0, numItems * (numBits / BYTE_SIZE));
+            if (!putView(buffer, array, numItems, numBits)) {
+                for (int i = 0; i < numItems; i++) {
+                    putWord(buffer, PrimitiveArrays.get(array, i), numBits);
+                }
+            }
+            return;
+        }
+        int index = 0;
+        int numPendingBits = 0;
+        long accumulator = 0;
+        long mask = mask(numBits);
+        for (int i = 0; i < numItems; i++) {
+            long value = PrimitiveArrays.get(array, i) & mask;
+            if (numBits > MAX_ACCUMULATED_BITS) {
+                // split wide items, so that the accumulator cannot overflow
+                int numHighBits = numBits - Integer.SIZE;
+                accumulator = (accumulator << numHighBits) | (value >>> Integer.SIZE);
+                numPendingBits += numHighBits;
+                while (numPendingBits >= BYTE_SIZE) {
+                    numPendingBits -= BYTE_SIZE;
+                    target[index++] = (byte) (accumulator >>> numPendingBits);
+                }
+                accumulator = (accumulator << Integer.SIZE) | (value & mask(Integer.SIZE));
+                numPendingBits += Integer.SIZE;
+            }
+            else {
+                accumulator = (accumulator << numBits) | value;
+                numPendingBits += numBits;
+            }
+            while (numPendingBits >= BYTE_SIZE) {
+                numPendingBits -= BYTE_SIZE;
+                target[index++] = (byte) (accumulator >>> numPendingBits);
+            }
+        }
+        if (numPendingBits > 0) {
+            target[index] = (byte) (accumulator << (BYTE_SIZE - numPendingBits));
+        }
+    }
+
+    private static boolean isWordSize(int numBits) {
+        return numBits == Byte.SIZE || numBits == Short.SIZE || numBits == Integer.SIZE
+            || numBits == Long.SIZE;
+    }
+
+    private static boolean copyView(ByteBuffer buffer, Object array, int numItems, int numBits) {
+        if (numBits == Long.SIZE && array instanceof long[]) {
+            buffer.asLongBuffer().get((long[]) array, 0, numItems);
+        }
+        else if (numBits == Integer.SIZE && array instanceof int[]) {
+            buffer.asIntBuffer().get((int[]) array, 0, numItems);
+        }
+        else if (numBits == Short.SIZE && array instanceof short[]) {
+            buffer.asShortBuffer().get((short[]) array, 0, numItems);
+        }
+        else if (numBits == Byte.SIZE && array instanceof byte[]) {
+            buffer.get((byte[]) array, 0, numItems);
+        }
+        else {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean putView(ByteBuffer buffer, Object array, int numItems, int numBits) {
+        if (numBits == Long.SIZE && array instanceof long[]) {
+            buffer.asLongBuffer().put((long[]) array, 0, numItems);
+        }
+        else if (numBits == Integer.SIZE && array instanceof int[]) {
+            buffer.asIntBuffer().put((int[]) array, 0, numItems);
+        }
+        else if (numBits == Short.SIZE && array instanceof short[]) {
+            buffer.asShortBuffer().put((short[]) array, 0, numItems);
+        }
+        else if (numBits == Byte.SIZE && array instanceof byte[]) {
+            buffer.put((byte[]) array, 0, numItems);
+        }
+        else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void putWord(ByteBuffer buffer, long value, int numBits) {
+        switch (numBits) {
+            case Byte.SIZE:
+                buffer.put((byte) value);
+                break;
+            case Short.SIZE:
+                buffer.putShort((short) value);
+                break;
+            case Integer.SIZE:
+                buffer.putInt((int) value);
+                break;
+            default:
+                buffer.putLong(value);
+                break;
+        }
+    }
+
+    private static long getWord(ByteBuffer buffer, int index, int numBits) {
+        switch (numBits) {
+            case Byte.SIZE:
+                return buffer.get(index);
+            case Short.SIZE:
+                return buffer.getShort(index);
+            case Integer.SIZE:
+                return buffer.getInt(index);
+            default:
+                return buffer.getLong(index);
+        }
+    }
+}
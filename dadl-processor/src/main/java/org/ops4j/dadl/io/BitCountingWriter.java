@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+import static org.ops4j.dadl.io.Constants.INT_SIZE;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Checksum;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+
+/**
+ * A bit stream writer which discards all data written to it and only keeps track of the bit
+ * position. This is used to compute the exact size of a representation without allocating any
+ * buffers.
+ * <p>
+ * Bit positions are advanced exactly as in {@link OutputStreamBitStreamWriter}, so the final bit
+ * position of this writer equals the number of bits that would have been written to a real
+ * stream.
+ *
+ * @author hwellmann
+ *
+ */
+public class BitCountingWriter extends ImageOutputStreamImpl implements BitStreamWriter {
+
+    @Override
+    public long getBitPosition() {
+        return BYTE_SIZE * streamPos + bitOffset;
+    }
+
+    @Override
+    public void setBitPosition(long pos) throws IOException {
+        int newBitOffset = (int) (pos % BYTE_SIZE);
+        long newBytePos = pos / BYTE_SIZE;
+        seek(newBytePos);
+        if (newBitOffset != 0) {
+            setBitOffset(newBitOffset);
+        }
+    }
+
+    /**
+     * Advances the bit position by the given number of bits, as if these bits had been written.
+     *
+     * @param numBits
+     *            number of bits
+     * @throws IOException
+     */
+    public void count(long numBits) throws IOException {
+        setBitPosition(getBitPosition() + numBits);
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        return -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        return -1;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        flushBits();
+        streamPos++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        flushBits();
+        streamPos += len;
+    }
+
+    @Override
+    public void writeByte(int value) throws IOException {
+        count(BYTE_SIZE);
+    }
+
+    @Override
+    public void writeBytes(String value) throws IOException {
+        count((long) BYTE_SIZE * value.length());
+    }
+
+    @Override
+    public void writeShort(int value) throws IOException {
+        count(2L * BYTE_SIZE);
+    }
+
+    @Override
+    public void writeInt(int value) throws IOException {
+        count(INT_SIZE);
+    }
+
+    @Override
+    public void writeUnsignedInt(long value) throws IOException {
+        count(INT_SIZE);
+    }
+
+    @Override
+    public void writeLong(long value) throws IOException {
+        count(2L * INT_SIZE);
+    }
+
+    @Override
+    public void writeBits(long bits, int numBits) throws IOException {
+        if (numBits < 0 || numBits > Long.SIZE) {
+            throw new IllegalArgumentException("Bad value for numBits!");
+        }
+        count(numBits);
+    }
+
+    @Override
+    public void byteAlign() throws IOException {
+        if (bitOffset != 0) {
+            count(BYTE_SIZE - bitOffset);
+        }
+    }
+
+    @Override
+    public void writeBigInteger(BigInteger value, int numBits) throws IOException {
+        count(numBits);
+    }
+
+    @Override
+    public void writeZeroTerminatedString(String value) throws IOException {
+        int numBytes = value.getBytes(StandardCharsets.UTF_8).length + 1;
+        count((long) BYTE_SIZE * numBytes);
+    }
+
+    @Override
+    public void skipBits(int bitCnt) throws IOException {
+        count(bitCnt);
+    }
+
+    @Override
+    public void writeBits(byte[] source, long sourceOffset, long numBits) throws IOException {
+        count(numBits);
+    }
+
+    @Override
+    public void writeBits(BitStreamReader source, long sourceOffset, long numBits)
+        throws IOException {
+        source.setBitPosition(sourceOffset + numBits);
+        count(numBits);
+    }
+
+    @Override
+    public void fillBits(int fillByte, long numBits) throws IOException {
+        count(numBits);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation has no data and leaves the checksum unchanged.
+     */
+    @Override
+    public void updateChecksum(Checksum checksum, long startBit, long endBit) {
+        // nothing to do
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation has no data and leaves the checksum unchanged.
+     */
+    @Override
+    public void startChecksum(Checksum checksum) {
+        // nothing to do
+    }
+
+    @Override
+    public void endChecksum(Checksum checksum) {
+        // nothing to do
+    }
+
+    @Override
+    public void writeArray(Object array, int numItems, int numBits) throws IOException {
+        count((long) numItems * numBits);
+    }
+
+    @Override
+    public void alignTo(int alignVal) throws IOException {
+        long bitPosition = getBitPosition();
+        if (bitPosition % alignVal != 0) {
+            setBitPosition(((bitPosition / alignVal) + 1) * alignVal);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.ops4j.dadl.io;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.zip.Checksum;
 
 import javax.imageio.stream.ImageInputStream;
 
@@ -103,4 +104,78 @@ public interface BitStreamReader extends ImageInputStream {
      * @throws IOException
      */
     long readSignedBits(int numBits) throws IOException;
+
+    /**
+     * Reads the given number of bits at the given absolute bit position, interpreted as an
+     * unsigned binary number. The current position of the stream is not changed.
+     *
+     * @param bitPosition
+     *            bit position of the first bit to be read
+     * @param numBits
+     *            number of bits to be read (64 or less)
+     * @return unsigned value
+     * @throws IOException
+     */
+    long readBitsAt(long bitPosition, int numBits) throws IOException;
+
+    /**
+     * Reads a number of integers with the same bit width into a primitive array, in a single
+     * pass. Values are narrowed to the component type of the array.
+     *
+     * @param array
+     *            target array, one of {@code byte[]}, {@code short[]}, {@code int[]} or
+     *            {@code long[]}
+     * @param numItems
+     *            number of items, stored from index 0
+     * @param numBits
+     *            number of bits per item (64 or less)
+     * @param signed
+     *            are the items signed in two's complement?
+     * @throws IOException
+     *             on read error
+     */
+    void readArray(Object array, int numItems, int numBits, boolean signed) throws IOException;
+
+    /**
+     * Updates the given checksum with a byte aligned range of bytes, which may already have been
+     * read. The stream position is not changed.
+     *
+     * @param checksum
+     *            checksum
+     * @param startBit
+     *            bit position of the first byte of the range
+     * @param endBit
+     *            bit position after the last byte of the range
+     * @throws IOException
+     *             on read error
+     * @throws IllegalArgumentException
+     *             if the range does not start and end on a byte boundary
+     */
+    void updateChecksum(Checksum checksum, long startBit, long endBit) throws IOException;
+
+    /**
+     * Starts a running checksum at the current position. All bytes passed by this reader from
+     * now on, including skipped bytes, are added to the checksum while reading, until the
+     * checksum is ended. Running checksums may be nested.
+     *
+     * @param checksum
+     *            checksum, reset to its initial value
+     * @throws IOException
+     *             on read error
+     * @throws IllegalArgumentException
+     *             if the current position is not on a byte boundary
+     */
+    void startChecksum(Checksum checksum) throws IOException;
+
+    /**
+     * Ends a running checksum after adding all bytes up to the current byte position. Running
+     * checksums started after the given one are discarded. Nothing happens if the checksum is
+     * not running, so this method may be used to clean up after an error.
+     *
+     * @param checksum
+     *            running checksum
+     * @throws IOException
+     *             on read error
+     */
+    void endChecksum(Checksum checksum) throws IOException;
 }
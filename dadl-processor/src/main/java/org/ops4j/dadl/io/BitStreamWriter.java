@@ -19,6 +19,7 @@ package org.ops4j.dadl.io;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.zip.Checksum;
 
 import javax.imageio.stream.ImageOutputStream;
 
@@ -103,4 +104,109 @@ public interface BitStreamWriter extends ImageOutputStream {
      * @throws IOException
      */
     void alignTo(int alignment) throws IOException;
+
+    /**
+     * Writes a range of bits from the given byte array. The bits of each byte are numbered from the
+     * most significant bit, so bit 0 is the most significant bit of {@code source[0]}. Neither the
+     * start of the range nor the current position of this stream need to be byte aligned.
+     *
+     * @param source
+     *            source bytes
+     * @param sourceOffset
+     *            position of the first bit to be written
+     * @param numBits
+     *            number of bits to be written
+     * @throws IOException
+     *             on write error
+     */
+    void writeBits(byte[] source, long sourceOffset, long numBits) throws IOException;
+
+    /**
+     * Copies a range of bits from the given reader to this stream. After copying, the reader is
+     * positioned after the end of the range. Neither the start of the range nor the current
+     * position of this stream need to be byte aligned.
+     *
+     * @param source
+     *            bit stream reader
+     * @param sourceOffset
+     *            position of the first bit to be copied
+     * @param numBits
+     *            number of bits to be copied
+     * @throws IOException
+     *             on read or write error
+     */
+    void writeBits(BitStreamReader source, long sourceOffset, long numBits) throws IOException;
+
+    /**
+     * Writes the given number of bits, repeating the given fill byte. The pattern starts at the
+     * current position, so that the first 8 bits written are the bits of the fill byte.
+     *
+     * @param fillByte
+     *            fill byte (only the lower 8 bits are used)
+     * @param numBits
+     *            number of bits to be written
+     * @throws IOException
+     *             on write error
+     */
+    void fillBits(int fillByte, long numBits) throws IOException;
+
+    /**
+     * Writes the items of a primitive array with a common bit width, without gaps. Each item is
+     * truncated to the given number of bits.
+     *
+     * @param array
+     *            source array, one of {@code byte[]}, {@code short[]}, {@code int[]} or
+     *            {@code long[]}
+     * @param numItems
+     *            number of items, starting at index 0
+     * @param numBits
+     *            number of bits per item (64 or less)
+     * @throws IOException
+     *             on write error
+     */
+    void writeArray(Object array, int numItems, int numBits) throws IOException;
+
+    /**
+     * Updates the given checksum with a byte aligned range of bytes already written to this
+     * stream. The stream position is not changed.
+     *
+     * @param checksum
+     *            checksum
+     * @param startBit
+     *            bit position of the first byte of the range
+     * @param endBit
+     *            bit position after the last byte of the range
+     * @throws IOException
+     *             on read error, or if the bytes are no longer
+     *             available
+     * @throws IllegalArgumentException
+     *             if the range does not start and end on a byte boundary
+     */
+    void updateChecksum(Checksum checksum, long startBit, long endBit) throws IOException;
+
+    /**
+     * Starts a running checksum at the current position. All bytes written to this stream from
+     * now on are added to the checksum while writing, until the checksum is ended. Bytes must
+     * not be overwritten after being written. Running checksums may be nested.
+     *
+     * @param checksum
+     *            checksum, reset to its initial value
+     * @throws IOException
+     *             on write error
+     * @throws IllegalArgumentException
+     *             if the current position is not on a byte boundary
+     */
+    void startChecksum(Checksum checksum) throws IOException;
+
+    /**
+     * Ends a running checksum after adding all bytes up to the current byte position. Running
+     * checksums started after the given one are discarded. Nothing happens if the checksum is
+     * not running, so this method may be used to clean up after an error.
+     *
+     * @param checksum
+     *            running checksum
+     * @throws IOException
+     *             on write error
+     */
+    void endChecksum(Checksum checksum) throws IOException;
 }
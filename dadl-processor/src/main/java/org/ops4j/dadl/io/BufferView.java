@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+import static org.ops4j.dadl.io.Constants.NIBBLE_SIZE;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Base class of generated flyweight views. A view decodes the fields of a type with a fixed
+ * layout on demand, directly from an underlying buffer, without creating an info model object.
+ * <p>
+ * A view can be re-pointed at another position or buffer by calling one of the {@code wrap}
+ * methods. Bit positions passed to the {@code read} methods are relative to the start of the
+ * view.
+ *
+ * @param <V>
+ *            concrete view type
+ *
+ * @author hwellmann
+ *
+ */
+public abstract class BufferView<V extends BufferView<V>> {
+
+    private static final int BCD_PAIR_BASE = 100;
+
+    private ByteBuffer buffer;
+    private long bitOffset;
+    private TextNumbers.Parser textNumberParser;
+    private TextCodec textCodec;
+
+    /**
+     * Points this view at the given byte offset in the given byte array.
+     *
+     * @param bytes
+     *            byte array
+     * @param offset
+     *            byte offset of the start of the view
+     * @return this view
+     */
+    public V wrap(byte[] bytes, int offset) {
+        return wrapBits(ByteBuffer.wrap(bytes), (long) BYTE_SIZE * offset);
+    }
+
+    /**
+     * Points this view at the given absolute byte offset in the given buffer. The position of the
+     * buffer is not used or modified.
+     *
+     * @param buf
+     *            buffer
+     * @param offset
+     *            byte offset of the start of the view
+     * @return this view
+     */
+    public V wrap(ByteBuffer buf, int offset) {
+        return wrapBits(buf, (long) BYTE_SIZE * offset);
+    }
+
+    /**
+     * Points this view at the given absolute bit offset in the given buffer.
+     *
+     * @param buf
+     *            buffer
+     * @param offset
+     *            bit offset of the start of the view
+     * @return this view
+     */
+    @SuppressWarnings("unchecked")
+    public V wrapBits(ByteBuffer buf, long offset) {
+        this.buffer = buf;
+        this.bitOffset = offset;
+        return (V) this;
+    }
+
+    /**
+     * Gets the underlying buffer.
+     *
+     * @return buffer
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Gets the absolute bit offset of this view in the underlying buffer.
+     *
+     * @return bit offset
+     */
+    public long getBitOffset() {
+        return bitOffset;
+    }
+
+    /**
+     * Gets the bit length of the viewed type.
+     *
+     * @return bit length
+     */
+    public abstract long getBitLength();
+
+    /**
+     * Reads the given number of bits at the given position, interpreted as an unsigned binary
+     * number.
+     *
+     * @param bitPosition
+     *            bit position relative to the start of the view
+     * @param numBits
+     *            number of bits (64 or less)
+     * @return unsigned value
+     */
+    protected long readBits(long bitPosition, int numBits) {
+        if (numBits == 0) {
+            return 0;
+        }
+        return BitArrays.bitsAt(buffer, bitOffset + bitPosition, numBits);
+    }
+
+    /**
+     * Reads the given number of bits at the given position, interpreted as a signed binary number
+     * in two's complement.
+     *
+     * @param bitPosition
+     *            bit position relative to the start of the view
+     * @param numBits
+     *            number of bits (64 or less)
+     * @return signed value
+     */
+    protected long readSignedBits(long bitPosition, int numBits) {
+        long value = readBits(bitPosition, numBits);
+        if (numBits > 0 && numBits < Long.SIZE) {
+            int shift = Long.SIZE - numBits;
+            value = (value << shift) >> shift;
+        }
+        return value;
+    }
+
+    /**
+     * Reads a non-negative BCD number with the given number of bits at the given position.
+     *
+     * @param bitPosition
+     *            bit position relative to the start of the view
+     * @param numBits
+     *            number of bits, divisible by 4
+     * @return decimal value
+     */
+    protected long readBcd(long bitPosition, int numBits) {
+        long value = 0;
+        int i = 0;
+        if (numBits % BYTE_SIZE != 0) {
+            value = Bcd.decodeNibble((int) readBits(bitPosition, NIBBLE_SIZE));
+            i = NIBBLE_SIZE;
+        }
+        for (; i < numBits; i += BYTE_SIZE) {
+            int pair = Bcd.decodeByte((int) readBits(bitPosition + i, BYTE_SIZE));
+            value = value * BCD_PAIR_BASE + pair;
+        }
+        return value;
+    }
+
+    /**
+     * Reads a packed decimal number with the given number of bits at the given position. The
+     * last nibble is the sign.
+     *
+     * @param bitPosition
+     *            bit position relative to the start of the view
+     * @param numBits
+     *            number of bits, divisible by 4, including the sign nibble
+     * @return decimal value
+     */
+    protected long readPacked(long bitPosition, int numBits) {
+        long value = readBcd(bitPosition, numBits - NIBBLE_SIZE);
+        int sign = (int) readBits(bitPosition + numBits - NIBBLE_SIZE, NIBBLE_SIZE);
+        return Bcd.isNegative(sign) ? -value : value;
+    }
+
+    /**
+     * Reads the given number of bytes at the given position.
+     *
+     * @param bitPosition
+     *            bit position relative to the start of the view
+     * @param numBytes
+     *            number of bytes
+     * @return byte array
+     */
+    protected byte[] readBytes(long bitPosition, int numBytes) {
+        byte[] bytes = new byte[numBytes];
+        for (int i = 0; i < numBytes; i++) {
+            bytes[i] = (byte) readBits(bitPosition + (long) BYTE_SIZE * i, BYTE_SIZE);
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads a string with the given number of bytes in the given encoding at the given position.
+     *
+     * @param bitPosition
+     *            bit position relative to the start of the view
+     * @param numBytes
+     *            number of bytes
+     * @param encoding
+     *            character encoding
+     * @return string
+     */
+    protected String readText(long bitPosition, int numBytes, String encoding) {
+        return readText(bitPosition, numBytes, TextCodec.charset(encoding));
+    }
+
+    /**
+     * Reads a string with the given number of bytes in the given character set at the given
+     * position.
+     *
+     * @param bitPosition
+     *            bit position relative to the start of the view
+     * @param numBytes
+     *            number of bytes
+     * @param charset
+     *            character set
+     * @return string
+     */
+    protected String readText(long bitPosition, int numBytes, Charset charset) {
+        if (textCodec == null) {
+            textCodec = new TextCodec();
+        }
+        byte[] bytes = textCodec.getByteBuffer(numBytes);
+        for (int i = 0; i < numBytes; i++) {
+            bytes[i] = (byte) readBits(bitPosition + (long) BYTE_SIZE * i, BYTE_SIZE);
+        }
+        return textCodec.decode(bytes, numBytes, charset);
+    }
+
+    /**
+     * Reads a decimal number in text representation with the given number of bytes at the given
+     * position. Leading and trailing blanks are ignored.
+     *
+     * @param bitPosition
+     *            bit position relative to the start of the view
+     * @param numBytes
+     *            number of bytes
+     * @return decimal value
+     */
+    protected long readTextNumber(long bitPosition, int numBytes) {
+        return readTextNumber(bitPosition, numBytes, ' ', true, true);
+    }
+
+    /**
+     * Reads a decimal number in text representation with the given number of bytes at the given
+     * position, skipping the given pad character on the padded sides of the number.
+     *
+     * @param bitPosition
+     *            bit position relative to the start of the view
+     * @param numBytes
+     *            number of bytes
+     * @param padCharacter
+     *            pad character
+     * @param leftPadded
+     *            is the number padded on the left, i.e. right justified or centered?
+     * @param rightPadded
+     *            is the number padded on the right, i.e. left justified or centered?
+     * @return decimal value
+     */
+    protected long readTextNumber(long bitPosition, int numBytes, char padCharacter,
+        boolean leftPadded, boolean rightPadded) {
+        if (textNumberParser == null) {
+            textNumberParser = new TextNumbers.Parser();
+        }
+        textNumberParser.reset(padCharacter, leftPadded, rightPadded);
+        for (int i = 0; i < numBytes; i++) {
+            textNumberParser.accept((int) readBits(bitPosition + (long) BYTE_SIZE * i, BYTE_SIZE));
+        }
+        return textNumberParser.getValue();
+    }
+}
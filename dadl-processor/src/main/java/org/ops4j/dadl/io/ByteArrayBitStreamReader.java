@@ -17,8 +17,12 @@
  */
 package org.ops4j.dadl.io;
 
-import java.io.ByteArrayInputStream;
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
 
 /**
  * A {@link BitStreamReader} backed by a byte array in memory.
@@ -28,8 +32,12 @@ import java.io.IOException;
  */
 public class ByteArrayBitStreamReader extends AbstractBitStreamReader {
 
-    private ByteArrayInputStream bais;
-    private long numBytes;
+    private static final int BYTE_MASK = 0xFF;
+
+    private byte[] buf;
+    private ByteBuffer bytes;
+    private int offset;
+    private int numBytes;
 
     /**
      * Constructs a bit stream reader reading from a segment of the given byte array.
@@ -42,8 +50,10 @@ public class ByteArrayBitStreamReader extends AbstractBitStreamReader {
      *            length of the segment
      */
     public ByteArrayBitStreamReader(byte[] b, int offset, int length) {
-        bais = new ByteArrayInputStream(b, offset, length);
-        this.numBytes = length;
+        this.buf = b;
+        this.bytes = ByteBuffer.wrap(b);
+        this.offset = offset;
+        this.numBytes = Math.min(length, b.length - offset);
     }
 
     /**
@@ -53,29 +63,32 @@ public class ByteArrayBitStreamReader extends AbstractBitStreamReader {
      *            byte array
      */
     public ByteArrayBitStreamReader(byte[] b) {
-        bais = new ByteArrayInputStream(b);
-        numBytes = b.length;
+        this(b, 0, b.length);
     }
 
     @Override
     public int read() throws IOException {
         checkClosed();
         bitOffset = 0;
-        int val = bais.read();
-        if (val != -1) {
-            ++streamPos;
+        if (streamPos >= numBytes) {
+            return -1;
         }
-        return val;
+        int value = buf[offset + (int) streamPos++] & BYTE_MASK;
+        trackChecksums();
+        return value;
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
         checkClosed();
         bitOffset = 0;
-        int nbytes = bais.read(b, off, len);
-        if (nbytes != -1) {
-            streamPos += nbytes;
+        if (streamPos >= numBytes) {
+            return -1;
         }
+        int nbytes = (int) Math.min(len, numBytes - streamPos);
+        System.arraycopy(buf, offset + (int) streamPos, b, off, nbytes);
+        streamPos += nbytes;
+        trackChecksums();
         return nbytes;
     }
 
@@ -91,12 +104,69 @@ public class ByteArrayBitStreamReader extends AbstractBitStreamReader {
             throw new IndexOutOfBoundsException("pos < flushedPos!");
         }
         bitOffset = 0;
-        bais.reset();
-        long numSkippedBytes = bais.skip(pos);
-        if (numSkippedBytes != pos) {
+        if (pos > numBytes) {
             throw new IOException("could not skip requested number of bytes: " + pos);
         }
 
         streamPos = pos;
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation reads directly from the underlying array without touching the stream
+     * position.
+     */
+    @Override
+    public long readBitsAt(long bitPosition, int numBits) throws IOException {
+        if (numBits < 0 || numBits > Long.SIZE) {
+            throw new IllegalArgumentException("Bad value for numBits!");
+        }
+        if (bitPosition < 0 || bitPosition + numBits > (long) BYTE_SIZE * numBytes) {
+            throw new EOFException();
+        }
+        if (numBits == 0) {
+            return 0;
+        }
+        return BitArrays.bitsAt(bytes, (long) BYTE_SIZE * offset + bitPosition, numBits);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation decodes the items directly from the underlying array.
+     */
+    @Override
+    public void readArray(Object array, int numItems, int numBits, boolean signed)
+        throws IOException {
+        checkClosed();
+        if (numItems == 0) {
+            return;
+        }
+        long start = getBitPosition();
+        long end = start + (long) numItems * numBits;
+        if (end > (long) BYTE_SIZE * numBytes) {
+            throw new EOFException();
+        }
+        BitArrays.decode(buf, (long) BYTE_SIZE * offset + start, array, numItems, numBits,
+            signed);
+        setBitPosition(end);
+        trackChecksums();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation passes the range of the underlying array to the checksum.
+     */
+    @Override
+    public void updateChecksum(Checksum checksum, long startBit, long endBit)
+        throws IOException {
+        BitArrays.checkByteRange(startBit, endBit);
+        if (startBit < 0 || endBit > (long) BYTE_SIZE * numBytes) {
+            throw new EOFException();
+        }
+        checksum.update(buf, offset + (int) (startBit / BYTE_SIZE),
+            (int) ((endBit - startBit) / BYTE_SIZE));
+    }
 }
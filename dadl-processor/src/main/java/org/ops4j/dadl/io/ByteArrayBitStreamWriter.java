@@ -17,6 +17,8 @@
  */
 package org.ops4j.dadl.io;
 
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
@@ -58,6 +60,51 @@ public class ByteArrayBitStreamWriter extends OutputStreamBitStreamWriter {
         return getStream().toByteArray();
     }
 
+    /**
+     * Writes the first bits written to this writer to the given writer, without copying them to
+     * a new byte array.
+     *
+     * @param target
+     *            target writer
+     * @param numBits
+     *            number of bits to be copied
+     * @throws IOException
+     *             on read or write error
+     */
+    public void writeTo(BitStreamWriter target, long numBits) throws IOException {
+        long currentPosition = getBitPosition();
+        byte[] buffer = getCopyBuffer();
+        seek(0);
+        try {
+            long remaining = numBits;
+            while (remaining > 0) {
+                int numBytes = (int) Math.min(buffer.length, (remaining + BYTE_SIZE - 1)
+                    / BYTE_SIZE);
+                readFully(buffer, 0, numBytes);
+                long chunk = Math.min(remaining, (long) BYTE_SIZE * numBytes);
+                target.writeBits(buffer, 0, chunk);
+                remaining -= chunk;
+            }
+        }
+        finally {
+            setBitPosition(currentPosition);
+        }
+    }
+
+    /**
+     * Discards all bits written so far, so that this writer and its memory cache can be reused.
+     * The bytes written before are cleared, so that skipped bits are zero, as in a new writer.
+     *
+     * @throws IOException
+     *             on write error
+     */
+    public void reset() throws IOException {
+        long numBytes = length();
+        seek(0);
+        fillBits(0, BYTE_SIZE * numBytes);
+        seek(0);
+    }
+
     @Override
     public void close() throws IOException {
         if (!isClosed) {
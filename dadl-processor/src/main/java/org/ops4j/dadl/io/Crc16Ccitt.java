@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import java.util.zip.Checksum;
+
+/**
+ * 16-bit CCITT checksum with polynomial {@code 0x1021} and initial value {@code 0xFFFF}, most
+ * significant bit first and without final XOR (also known as CRC-16/CCITT-FALSE). The
+ * computation is table driven, processing one byte per step.
+ *
+ * @author hwellmann
+ *
+ */
+public final class Crc16Ccitt implements Checksum {
+
+    private static final int POLYNOMIAL = 0x1021;
+
+    private static final int INITIAL_VALUE = 0xFFFF;
+
+    private static final int TABLE_SIZE = 256;
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int VALUE_MASK = 0xFFFF;
+
+    private static final int HIGH_BIT = 0x8000;
+
+    private static final int SHIFT = 8;
+
+    private static final char[] TABLE = new char[TABLE_SIZE];
+
+    static {
+        for (int b = 0; b < TABLE_SIZE; b++) {
+            int crc = b << SHIFT;
+            for (int i = 0; i < Byte.SIZE; i++) {
+                crc = ((crc & HIGH_BIT) == 0) ? (crc << 1) : ((crc << 1) ^ POLYNOMIAL);
+            }
+            TABLE[b] = (char) crc;
+        }
+    }
+
+    private int crc = INITIAL_VALUE;
+
+    @Override
+    public void update(int b) {
+        crc = ((crc << SHIFT) ^ TABLE[((crc >>> SHIFT) ^ b) & BYTE_MASK]) & VALUE_MASK;
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int c = crc;
+        for (int i = off; i < off + len; i++) {
+            c = ((c << SHIFT) ^ TABLE[((c >>> SHIFT) ^ b[i]) & BYTE_MASK]) & VALUE_MASK;
+        }
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return crc;
+    }
+
+    @Override
+    public void reset() {
+        crc = INITIAL_VALUE;
+    }
+}
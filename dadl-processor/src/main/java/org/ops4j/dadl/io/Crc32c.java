@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) checksum, as used by iSCSI, SCTP and many storage formats. The
+ * computation is table driven, processing four bytes per step.
+ * <p>
+ * This is equivalent to {@code java.util.zip.CRC32C}, which is not available before Java 9.
+ *
+ * @author hwellmann
+ *
+ */
+public final class Crc32c implements Checksum {
+
+    /** Reversed Castagnoli polynomial. */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private static final int NUM_TABLES = 4;
+
+    private static final int TABLE_SIZE = 256;
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final long INT_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Table {@code k} maps a byte to the CRC of this byte followed by {@code k} zero bytes.
+     */
+    private static final int[][] TABLES = new int[NUM_TABLES][TABLE_SIZE];
+
+    static {
+        for (int b = 0; b < TABLE_SIZE; b++) {
+            int crc = b;
+            for (int i = 0; i < Byte.SIZE; i++) {
+                crc = ((crc & 1) == 0) ? (crc >>> 1) : ((crc >>> 1) ^ POLYNOMIAL);
+            }
+            TABLES[0][b] = crc;
+        }
+        for (int k = 1; k < NUM_TABLES; k++) {
+            for (int b = 0; b < TABLE_SIZE; b++) {
+                int crc = TABLES[k - 1][b];
+                TABLES[k][b] = (crc >>> Byte.SIZE) ^ TABLES[0][crc & BYTE_MASK];
+            }
+        }
+    }
+
+    private int crc = ~0;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> Byte.SIZE) ^ TABLES[0][(crc ^ b) & BYTE_MASK];
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int c = crc;
+        int index = off;
+        int end = off + len;
+        int[] t0 = TABLES[0];
+        int[] t1 = TABLES[1];
+        int[] t2 = TABLES[2];
+        int[] t3 = TABLES[3];
+        while (end - index >= NUM_TABLES) {
+            c ^= (b[index] & BYTE_MASK) | (b[index + 1] & BYTE_MASK) << Byte.SIZE
+                | (b[index + 2] & BYTE_MASK) << (2 * Byte.SIZE)
+                | (b[index + 3] & BYTE_MASK) << (3 * Byte.SIZE);
+            c = t3[c & BYTE_MASK] ^ t2[(c >>> Byte.SIZE) & BYTE_MASK]
+                ^ t1[(c >>> (2 * Byte.SIZE)) & BYTE_MASK] ^ t0[c >>> (3 * Byte.SIZE)];
+            index += NUM_TABLES;
+        }
+        while (index < end) {
+            c = (c >>> Byte.SIZE) ^ t0[(c ^ b[index++]) & BYTE_MASK];
+        }
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & INT_MASK;
+    }
+
+    @Override
+    public void reset() {
+        crc = ~0;
+    }
+}
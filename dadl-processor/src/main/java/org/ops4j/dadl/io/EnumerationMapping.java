@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ops4j.dadl.exc.Exceptions;
+
+/**
+ * Maps the constants of a generated Java enumeration class to their DADL values and back. The
+ * mapping is built once per class and shared by the processor and by generated views.
+ * <p>
+ * Integer values spanning a dense range are looked up in an array indexed by value. Sparse or
+ * text values are looked up in a hash map. Constants are mapped to their values by ordinal.
+ *
+ * @author hwellmann
+ *
+ */
+public final class EnumerationMapping {
+
+    /** Maximum ratio of table size and number of constants for a dense lookup table. */
+    private static final int DENSITY = 4;
+
+    private static final ClassValue<EnumerationMapping> MAPPINGS =
+        new ClassValue<EnumerationMapping>() {
+
+        @Override
+        protected EnumerationMapping computeValue(Class<?> type) {
+            return new EnumerationMapping(type);
+        }
+    };
+
+    /** DADL value of each enumeration constant, indexed by ordinal. */
+    private final Object[] values;
+
+    /** Constants indexed by integer value - {@code minValue}, or null if not dense. */
+    private Object[] table;
+
+    private long minValue;
+
+    /** Constants keyed by value, with integer values normalized to {@code Long}. */
+    private Map<Object, Object> valueMap;
+
+    private EnumerationMapping(Class<?> enumClass) {
+        Object[] constants = enumClass.getEnumConstants();
+        if (constants == null) {
+            throw new IllegalArgumentException(enumClass.getName() + " is not an enum");
+        }
+        this.values = new Object[constants.length];
+        try {
+            Method getter = enumClass.getMethod("getValue");
+            for (int i = 0; i < constants.length; i++) {
+                values[i] = getter.invoke(constants[i]);
+            }
+        }
+        catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException exc) {
+            throw Exceptions.unchecked(exc);
+        }
+        buildLookup(constants);
+    }
+
+    private void buildLookup(Object[] constants) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        boolean integral = true;
+        for (Object value : values) {
+            if (value instanceof Number) {
+                long v = ((Number) value).longValue();
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            else {
+                integral = false;
+            }
+        }
+        if (integral && constants.length > 0 && max - min < (long) DENSITY * constants.length) {
+            minValue = min;
+            table = new Object[(int) (max - min + 1)];
+            for (int i = 0; i < constants.length; i++) {
+                table[(int) (((Number) values[i]).longValue() - min)] = constants[i];
+            }
+        }
+        else {
+            valueMap = new HashMap<>();
+            for (int i = 0; i < constants.length; i++) {
+                valueMap.put(normalize(values[i]), constants[i]);
+            }
+        }
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+
+    /**
+     * Gets the mapping for the given enumeration class.
+     *
+     * @param enumClass
+     *            Java enum generated from a DADL enumeration type
+     * @return mapping
+     */
+    public static EnumerationMapping of(Class<?> enumClass) {
+        return MAPPINGS.get(enumClass);
+    }
+
+    /**
+     * Gets the enumeration constant with the given integer value.
+     *
+     * @param value
+     *            DADL value
+     * @return enumeration constant, or null if there is no constant with this value
+     */
+    public Object fromValue(long value) {
+        if (table == null) {
+            return valueMap.get(value);
+        }
+        long index = value - minValue;
+        if (index < 0 || index >= table.length) {
+            return null;
+        }
+        return table[(int) index];
+    }
+
+    /**
+     * Gets the enumeration constant with the given integer or text value.
+     *
+     * @param value
+     *            DADL value
+     * @return enumeration constant, or null if there is no constant with this value
+     */
+    public Object fromValue(Object value) {
+        if (value instanceof Number) {
+            return fromValue(((Number) value).longValue());
+        }
+        return (valueMap == null) ? null : valueMap.get(value);
+    }
+
+    /**
+     * Gets the DADL value of the given enumeration constant.
+     *
+     * @param constant
+     *            enumeration constant
+     * @return DADL value
+     */
+    public Object toValue(Object constant) {
+        return values[((Enum<?>) constant).ordinal()];
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link BitStreamReader} reading from a file through a buffer window, for files too large to
+ * be held in memory. Seeking within the window does not access the file.
+ *
+ * @author hwellmann
+ *
+ */
+public class FileBitStreamReader extends AbstractBitStreamReader {
+
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private FileChannel channel;
+
+    private long fileLength;
+
+    private byte[] window;
+
+    /** File position of the first byte of the window. */
+    private long windowStart;
+
+    /** Number of valid bytes in the window. */
+    private int windowLength;
+
+    /**
+     * Constructs a bit stream reader for the given file.
+     *
+     * @param path
+     *            file path
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public FileBitStreamReader(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructs a bit stream reader for the given file channel. The channel is closed when this
+     * reader is closed. Reading does not change the position of the channel.
+     *
+     * @param channel
+     *            file channel
+     * @param windowSize
+     *            size of the buffer window in bytes
+     * @throws IOException
+     *             on read error
+     */
+    public FileBitStreamReader(FileChannel channel, int windowSize) throws IOException {
+        this.channel = channel;
+        this.fileLength = channel.size();
+        this.window = new byte[windowSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= fileLength) {
+            return -1;
+        }
+        if (streamPos < windowStart || streamPos >= windowStart + windowLength) {
+            fillWindow(streamPos);
+        }
+        int value = window[(int) (streamPos++ - windowStart)] & BYTE_MASK;
+        trackChecksums();
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= fileLength) {
+            return -1;
+        }
+        int numBytes = (int) Math.min(len, fileLength - streamPos);
+        if (numBytes >= window.length) {
+            // large reads bypass the window
+            readAt(ByteBuffer.wrap(b, off, numBytes), streamPos - off);
+        }
+        else {
+            if (streamPos < windowStart || streamPos + numBytes > windowStart + windowLength) {
+                fillWindow(streamPos);
+            }
+            System.arraycopy(window, (int) (streamPos - windowStart), b, off, numBytes);
+        }
+        streamPos += numBytes;
+        trackChecksums();
+        return numBytes;
+    }
+
+    private void fillWindow(long position) throws IOException {
+        windowStart = position;
+        windowLength = (int) Math.min(window.length, fileLength - position);
+        readAt(ByteBuffer.wrap(window, 0, windowLength), position);
+    }
+
+    /**
+     * Fills the remaining bytes of the target buffer from the file. The file position of each
+     * byte is the given base position plus the index of the byte in the buffer.
+     */
+    private void readAt(ByteBuffer target, long basePosition) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, basePosition + target.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    @Override
+    public long length() {
+        return fileLength;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+        checkClosed();
+        if (pos < flushedPos) {
+            throw new IndexOutOfBoundsException("pos < flushedPos!");
+        }
+        bitOffset = 0;
+        if (pos > fileLength) {
+            throw new IOException("could not skip requested number of bytes: " + pos);
+        }
+        streamPos = pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        channel.close();
+    }
+}
@@ -25,7 +25,10 @@ import static org.ops4j.dadl.io.Constants.SHORT_SIZE;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Checksum;
 
 import javax.imageio.stream.MemoryCacheImageOutputStream;
 
@@ -38,8 +41,23 @@ import javax.imageio.stream.MemoryCacheImageOutputStream;
 public class OutputStreamBitStreamWriter extends MemoryCacheImageOutputStream implements
     BitStreamWriter {
 
+    /** Size of the buffer for copying or filling byte aligned ranges. */
+    private static final int COPY_BUFFER_SIZE = 4096;
+
+    /** Multiplied by a byte value, gives a long with 8 copies of this byte. */
+    private static final long FILL_PATTERN = 0x0101010101010101L;
+
+    private static final int BYTE_MASK = 0xFF;
+
     private OutputStream os;
 
+    private byte[] copyBuffer;
+
+    private byte[] arrayBuffer = new byte[0];
+
+    /** Running checksums, created when the first checksum is started. */
+    private RunningChecksums runningChecksums;
+
     /**
      * Creates a bit stream writer wrapping the given output stream.
      *
@@ -51,6 +69,18 @@ public class OutputStreamBitStreamWriter extends MemoryCacheImageOutputStream im
         this.os = os;
     }
 
+    @Override
+    public void write(int b) throws IOException {
+        super.write(b);
+        trackChecksums();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        trackChecksums();
+    }
+
     @Override
     public long getBitPosition() {
         return BYTE_SIZE * streamPos + bitOffset;
@@ -200,6 +230,154 @@ public class OutputStreamBitStreamWriter extends MemoryCacheImageOutputStream im
         }
     }
 
+    @Override
+    public void writeBits(byte[] source, long sourceOffset, long numBits) throws IOException {
+        if (sourceOffset < 0 || numBits < 0
+            || sourceOffset + numBits > (long) BYTE_SIZE * source.length) {
+            throw new IndexOutOfBoundsException("bit range exceeds source array");
+        }
+        long pos = sourceOffset;
+        long remaining = numBits;
+        if (bitOffset == 0 && pos % BYTE_SIZE == 0) {
+            int numBytes = (int) (remaining / BYTE_SIZE);
+            write(source, (int) (pos / BYTE_SIZE), numBytes);
+            pos += (long) BYTE_SIZE * numBytes;
+            remaining -= (long) BYTE_SIZE * numBytes;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(source);
+        while (remaining >= LONG_SIZE) {
+            writeBits(BitArrays.bitsAt(bytes, pos, LONG_SIZE), LONG_SIZE);
+            pos += LONG_SIZE;
+            remaining -= LONG_SIZE;
+        }
+        if (remaining > 0) {
+            writeBits(BitArrays.bitsAt(bytes, pos, (int) remaining), (int) remaining);
+        }
+    }
+
+    @Override
+    public void writeBits(BitStreamReader source, long sourceOffset, long numBits)
+        throws IOException {
+        source.setBitPosition(sourceOffset);
+        long remaining = numBits;
+        if (bitOffset == 0 && sourceOffset % BYTE_SIZE == 0) {
+            byte[] buffer = getCopyBuffer();
+            while (remaining >= BYTE_SIZE) {
+                int numBytes = (int) Math.min(buffer.length, remaining / BYTE_SIZE);
+                source.readFully(buffer, 0, numBytes);
+                write(buffer, 0, numBytes);
+                remaining -= (long) BYTE_SIZE * numBytes;
+            }
+        }
+        while (remaining >= LONG_SIZE) {
+            writeBits(source.readBits(LONG_SIZE), LONG_SIZE);
+            remaining -= LONG_SIZE;
+        }
+        if (remaining > 0) {
+            writeBits(source.readBits((int) remaining), (int) remaining);
+        }
+    }
+
+    @Override
+    public void fillBits(int fillByte, long numBits) throws IOException {
+        long remaining = numBits;
+        if (bitOffset == 0 && remaining >= BYTE_SIZE) {
+            byte[] buffer = getCopyBuffer();
+            int numBytes = (int) Math.min(buffer.length, remaining / BYTE_SIZE);
+            Arrays.fill(buffer, 0, numBytes, (byte) fillByte);
+            while (remaining >= BYTE_SIZE) {
+                int chunk = (int) Math.min(numBytes, remaining / BYTE_SIZE);
+                write(buffer, 0, chunk);
+                remaining -= (long) BYTE_SIZE * chunk;
+            }
+        }
+        long pattern = (fillByte & BYTE_MASK) * FILL_PATTERN;
+        while (remaining >= LONG_SIZE) {
+            writeBits(pattern, LONG_SIZE);
+            remaining -= LONG_SIZE;
+        }
+        if (remaining > 0) {
+            writeBits(pattern >>> (LONG_SIZE - remaining), (int) remaining);
+        }
+    }
+
+    @Override
+    public void writeArray(Object array, int numItems, int numBits) throws IOException {
+        long numArrayBits = (long) numItems * numBits;
+        int numBytes = (int) ((numArrayBits + BYTE_SIZE - 1) / BYTE_SIZE);
+        if (arrayBuffer.length < numBytes) {
+            arrayBuffer = new byte[numBytes];
+        }
+        BitArrays.pack(array, numItems, numBits, arrayBuffer);
+        writeBits(arrayBuffer, 0, numArrayBits);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This implementation reads the range back from the memory cache of this stream, which
+     * retains all bytes until the stream is flushed.
+     */
+    @Override
+    public void updateChecksum(Checksum checksum, long startBit, long endBit)
+        throws IOException {
+        BitArrays.checkByteRange(startBit, endBit);
+        long currentPosition = getBitPosition();
+        byte[] buffer = getCopyBuffer();
+        seek(startBit / BYTE_SIZE);
+        try {
+            long remaining = (endBit - startBit) / BYTE_SIZE;
+            while (remaining > 0) {
+                int numBytes = (int) Math.min(buffer.length, remaining);
+                readFully(buffer, 0, numBytes);
+                checksum.update(buffer, 0, numBytes);
+                remaining -= numBytes;
+            }
+        }
+        finally {
+            setBitPosition(currentPosition);
+        }
+    }
+
+    @Override
+    public void startChecksum(Checksum checksum) {
+        BitArrays.checkByteRange(getBitPosition(), getBitPosition());
+        if (runningChecksums == null) {
+            runningChecksums = new RunningChecksums(this::updateChecksum);
+        }
+        runningChecksums.start(checksum, streamPos);
+    }
+
+    @Override
+    public void endChecksum(Checksum checksum) throws IOException {
+        if (runningChecksums != null) {
+            runningChecksums.end(checksum, streamPos);
+        }
+    }
+
+    /**
+     * Adds the bytes written so far to the running checksums, if enough bytes are pending. The
+     * last byte written is not added yet, since it may be a partial byte which is still being
+     * filled by bit writes.
+     */
+    private void trackChecksums() throws IOException {
+        if (runningChecksums != null) {
+            runningChecksums.track(streamPos - 1);
+        }
+    }
+
+    /**
+     * Gets a buffer for copying bytes, which is allocated once per writer.
+     *
+     * @return copy buffer
+     */
+    protected byte[] getCopyBuffer() {
+        if (copyBuffer == null) {
+            copyBuffer = new byte[COPY_BUFFER_SIZE];
+        }
+        return copyBuffer;
+    }
+
     protected OutputStream getStream() {
         return os;
     }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accesses primitive integer arrays of all sizes through {@code long} values, without boxing.
+ *
+ * @author hwellmann
+ *
+ */
+public final class PrimitiveArrays {
+
+    private PrimitiveArrays() {
+        // hidden utility class constructor
+    }
+
+    /**
+     * Gets the primitive integer type corresponding to the given wrapper type.
+     *
+     * @param wrapperType
+     *            Java class
+     * @return one of {@code byte}, {@code short}, {@code int}, {@code long}, or null if the given
+     *         class is not an integer wrapper type
+     */
+    public static Class<?> getPrimitiveType(Class<?> wrapperType) {
+        if (wrapperType == Integer.class) {
+            return int.class;
+        }
+        if (wrapperType == Long.class) {
+            return long.class;
+        }
+        if (wrapperType == Short.class) {
+            return short.class;
+        }
+        if (wrapperType == Byte.class) {
+            return byte.class;
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new array.
+     *
+     * @param componentType
+     *            one of {@code byte}, {@code short}, {@code int}, {@code long}
+     * @param length
+     *            array length
+     * @return new array
+     */
+    public static Object newArray(Class<?> componentType, int length) {
+        return Array.newInstance(componentType, length);
+    }
+
+    /**
+     * Creates a new array with the given values, converted to the given component type.
+     *
+     * @param componentType
+     *            one of {@code byte}, {@code short}, {@code int}, {@code long}
+     * @param values
+     *            values
+     * @param length
+     *            number of values to be copied
+     * @return new array
+     */
+    public static Object toArray(Class<?> componentType, long[] values, int length) {
+        if (componentType == long.class) {
+            return Arrays.copyOf(values, length);
+        }
+        Object array = newArray(componentType, length);
+        for (int i = 0; i < length; i++) {
+            set(array, i, values[i]);
+        }
+        return array;
+    }
+
+    /**
+     * Sets an array item, narrowing the given value to the component type.
+     *
+     * @param array
+     *            primitive array
+     * @param index
+     *            item index
+     * @param value
+     *            item value
+     */
+    public static void set(Object array, int index, long value) {
+        if (array instanceof int[]) {
+            ((int[]) array)[index] = (int) value;
+        }
+        else if (array instanceof long[]) {
+            ((long[]) array)[index] = value;
+        }
+        else if (array instanceof short[]) {
+            ((short[]) array)[index] = (short) value;
+        }
+        else if (array instanceof byte[]) {
+            ((byte[]) array)[index] = (byte) value;
+        }
+        else {
+            throw new IllegalArgumentException("not a primitive integer array: " + array);
+        }
+    }
+
+    /**
+     * Gets an array item.
+     *
+     * @param array
+     *            primitive array
+     * @param index
+     *            item index
+     * @return item value
+     */
+    public static long get(Object array, int index) {
+        if (array instanceof int[]) {
+            return ((int[]) array)[index];
+        }
+        if (array instanceof long[]) {
+            return ((long[]) array)[index];
+        }
+        if (array instanceof short[]) {
+            return ((short[]) array)[index];
+        }
+        if (array instanceof byte[]) {
+            return ((byte[]) array)[index];
+        }
+        throw new IllegalArgumentException("not a primitive integer array: " + array);
+    }
+
+    /**
+     * Adds all items of the given array to the given list, boxing them to the wrapper type of the
+     * component type.
+     *
+     * @param list
+     *            list
+     * @param array
+     *            primitive array
+     */
+    public static void addAll(List<Object> list, Object array) {
+        if (array instanceof int[]) {
+            for (int value : (int[]) array) {
+                list.add(value);
+            }
+        }
+        else if (array instanceof long[]) {
+            for (long value : (long[]) array) {
+                list.add(value);
+            }
+        }
+        else if (array instanceof short[]) {
+            for (short value : (short[]) array) {
+                list.add(value);
+            }
+        }
+        else if (array instanceof byte[]) {
+            for (byte value : (byte[]) array) {
+                list.add(value);
+            }
+        }
+        else {
+            throw new IllegalArgumentException("not a primitive integer array: " + array);
+        }
+    }
+}
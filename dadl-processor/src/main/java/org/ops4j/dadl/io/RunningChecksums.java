@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * Checksums updated with the bytes passed by a bit stream reader or writer, each from the byte
+ * position where it was started. Pending bytes are added in chunks while the stream advances, so
+ * that the region of a checksum need not be read again when it ends. Running checksums may be
+ * nested.
+ *
+ * @author hwellmann
+ *
+ */
+final class RunningChecksums {
+
+    /** Number of pending bytes after which the checksums are updated. */
+    private static final int CHUNK_SIZE = 256;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Updates a checksum with a byte aligned range of the underlying stream.
+     */
+    @FunctionalInterface
+    interface ByteSource {
+
+        void updateChecksum(Checksum checksum, long startBit, long endBit) throws IOException;
+    }
+
+    private final ByteSource source;
+
+    private Checksum[] checksums = new Checksum[INITIAL_CAPACITY];
+
+    /** Byte position where each checksum was started. */
+    private long[] starts = new long[INITIAL_CAPACITY];
+
+    /** Byte position of the first byte not yet added to each checksum. */
+    private long[] positions = new long[INITIAL_CAPACITY];
+
+    private int size;
+
+    /** Smallest position of all checksums, or {@code Long.MAX_VALUE} if there are none. */
+    private long minPosition = Long.MAX_VALUE;
+
+    /** Are we reading from the source? Reads do not update the checksums recursively. */
+    private boolean updating;
+
+    RunningChecksums(ByteSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Starts the given checksum at the given byte position.
+     */
+    void start(Checksum checksum, long bytePos) {
+        if (size == checksums.length) {
+            checksums = Arrays.copyOf(checksums, 2 * size);
+            starts = Arrays.copyOf(starts, 2 * size);
+            positions = Arrays.copyOf(positions, 2 * size);
+        }
+        checksums[size] = checksum;
+        starts[size] = bytePos;
+        positions[size] = bytePos;
+        size++;
+        minPosition = Math.min(minPosition, bytePos);
+    }
+
+    /**
+     * Adds the bytes up to the given position to all checksums, if at least a chunk of bytes is
+     * pending.
+     */
+    void track(long bytePos) throws IOException {
+        if (bytePos - minPosition < CHUNK_SIZE || updating) {
+            return;
+        }
+        updating = true;
+        try {
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                if (positions[i] < bytePos) {
+                    source.updateChecksum(checksums[i], BYTE_SIZE * positions[i],
+                        BYTE_SIZE * bytePos);
+                    positions[i] = bytePos;
+                }
+                min = Math.min(min, positions[i]);
+            }
+            minPosition = min;
+        }
+        finally {
+            updating = false;
+        }
+    }
+
+    /**
+     * Ends the given checksum at the given byte position. Checksums started after the given one
+     * and not yet ended are discarded. Nothing happens if the checksum is not running.
+     * <p>
+     * If the stream has passed beyond the end position before, e.g. when backtracking, the
+     * checksum is computed again from its start.
+     */
+    void end(Checksum checksum, long bytePos) throws IOException {
+        int index = size - 1;
+        while (index >= 0 && checksums[index] != checksum) {
+            index--;
+        }
+        if (index < 0) {
+            return;
+        }
+        updating = true;
+        try {
+            long position = positions[index];
+            if (position > bytePos) {
+                checksum.reset();
+                position = starts[index];
+            }
+            if (position < bytePos) {
+                source.updateChecksum(checksum, BYTE_SIZE * position, BYTE_SIZE * bytePos);
+            }
+        }
+        finally {
+            updating = false;
+            Arrays.fill(checksums, index, size, null);
+            size = index;
+            minPosition = Long.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                minPosition = Math.min(minPosition, positions[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes and encodes text in a given character set, reusing its buffers, decoders and encoders.
+ * <p>
+ * Text in US-ASCII or ISO-8859-1, and UTF-8 text consisting of ASCII characters only, is converted
+ * directly between bytes and chars without a decoder or encoder. As with
+ * {@link String#String(byte[], Charset)} and {@link String#getBytes(Charset)}, malformed input
+ * and unmappable characters are replaced.
+ * <p>
+ * A codec is not thread-safe. Each reader or writer should have its own codec.
+ *
+ * @author hwellmann
+ *
+ */
+public final class TextCodec {
+
+    private static final int MAX_ASCII = 0x7F;
+
+    private static final int MAX_LATIN1 = 0xFF;
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private static final Map<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+
+    private byte[] bytes = new byte[0];
+
+    private char[] chars = new char[0];
+
+    private Map<Charset, CharsetDecoder> decoders = new HashMap<>();
+
+    private Map<Charset, CharsetEncoder> encoders = new HashMap<>();
+
+    /**
+     * Gets the character set with the given name. Character sets are looked up once per name and
+     * then cached.
+     *
+     * @param encoding
+     *            name of character set, or null for UTF-8
+     * @return character set
+     * @throws java.nio.charset.UnsupportedCharsetException
+     *             if the character set is not supported
+     */
+    public static Charset charset(String encoding) {
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+        Charset charset = CHARSETS.get(encoding);
+        if (charset == null) {
+            charset = Charset.forName(encoding);
+            CHARSETS.put(encoding, charset);
+        }
+        return charset;
+    }
+
+    /**
+     * Gets a buffer of at least the given length, to be filled with bytes and passed to
+     * {@link #decode(byte[], int, Charset)}. The buffer is reused by subsequent calls.
+     *
+     * @param length
+     *            minimum length
+     * @return byte buffer
+     */
+    public byte[] getByteBuffer(int length) {
+        if (bytes.length < length) {
+            bytes = new byte[length];
+        }
+        return bytes;
+    }
+
+    private char[] getCharBuffer(int length) {
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        return chars;
+    }
+
+    /**
+     * Checks if the given bytes are all in the ASCII range.
+     *
+     * @param source
+     *            byte array
+     * @param length
+     *            number of bytes to be checked, starting at index 0
+     * @return true if all bytes are ASCII
+     */
+    public static boolean isAscii(byte[] source, int length) {
+        int bits = 0;
+        for (int i = 0; i < length; i++) {
+            bits |= source[i];
+        }
+        return bits >= 0;
+    }
+
+    /**
+     * Decodes the given bytes.
+     *
+     * @param source
+     *            byte array
+     * @param length
+     *            number of bytes to be decoded, starting at index 0
+     * @param charset
+     *            character set
+     * @return decoded string
+     */
+    public String decode(byte[] source, int length, Charset charset) {
+        if (charset.equals(StandardCharsets.ISO_8859_1)) {
+            return decodeLatin1(source, length);
+        }
+        if (charset.equals(StandardCharsets.US_ASCII)) {
+            return decodeAscii(source, length);
+        }
+        if (charset.equals(StandardCharsets.UTF_8) && isAscii(source, length)) {
+            return decodeLatin1(source, length);
+        }
+        return decodeWithDecoder(source, length, charset);
+    }
+
+    private String decodeLatin1(byte[] source, int length) {
+        char[] target = getCharBuffer(length);
+        for (int i = 0; i < length; i++) {
+            target[i] = (char) (source[i] & MAX_LATIN1);
+        }
+        return new String(target, 0, length);
+    }
+
+    private String decodeAscii(byte[] source, int length) {
+        char[] target = getCharBuffer(length);
+        for (int i = 0; i < length; i++) {
+            byte b = source[i];
+            target[i] = (b >= 0) ? (char) b : REPLACEMENT;
+        }
+        return new String(target, 0, length);
+    }
+
+    private String decodeWithDecoder(byte[] source, int length, Charset charset) {
+        CharsetDecoder decoder = decoders.get(charset);
+        if (decoder == null) {
+            decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            decoders.put(charset, decoder);
+        }
+        int maxChars = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        CharBuffer target = CharBuffer.wrap(getCharBuffer(maxChars));
+        decoder.reset();
+        CoderResult result = decoder.decode(ByteBuffer.wrap(source, 0, length), target, true);
+        if (result.isUnderflow()) {
+            result = decoder.flush(target);
+        }
+        throwOnError(result);
+        return new String(chars, 0, target.position());
+    }
+
+    /**
+     * Encodes the given text and writes the encoded bytes.
+     *
+     * @param text
+     *            text to be encoded
+     * @param charset
+     *            character set
+     * @param writer
+     *            bit stream writer
+     * @return number of bytes written
+     * @throws IOException
+     *             on write error
+     */
+    public int encode(String text, Charset charset, BitStreamWriter writer) throws IOException {
+        int length = text.length();
+        if (charset.equals(StandardCharsets.ISO_8859_1)) {
+            return encodeSingleByte(text, MAX_LATIN1, writer);
+        }
+        if (charset.equals(StandardCharsets.US_ASCII)) {
+            return encodeSingleByte(text, MAX_ASCII, writer);
+        }
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            byte[] target = getByteBuffer(length);
+            int i = 0;
+            while (i < length && text.charAt(i) <= MAX_ASCII) {
+                target[i] = (byte) text.charAt(i);
+                i++;
+            }
+            if (i == length) {
+                writer.write(target, 0, length);
+                return length;
+            }
+        }
+        return encodeWithEncoder(text, charset, writer);
+    }
+
+    private int encodeSingleByte(String text, int maxChar, BitStreamWriter writer)
+        throws IOException {
+        int length = text.length();
+        byte[] target = getByteBuffer(length);
+        int numBytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(text.charAt(i + 1))) {
+                // a supplementary character is replaced by a single byte
+                i++;
+            }
+            target[numBytes++] = (byte) ((c <= maxChar) ? c : '?');
+        }
+        writer.write(target, 0, numBytes);
+        return numBytes;
+    }
+
+    private int encodeWithEncoder(String text, Charset charset, BitStreamWriter writer)
+        throws IOException {
+        CharsetEncoder encoder = encoders.get(charset);
+        if (encoder == null) {
+            encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            encoders.put(charset, encoder);
+        }
+        int maxBytes = (int) Math.ceil(text.length() * (double) encoder.maxBytesPerChar());
+        ByteBuffer target = ByteBuffer.wrap(getByteBuffer(maxBytes));
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(text), target, true);
+        if (result.isUnderflow()) {
+            result = encoder.flush(target);
+        }
+        throwOnError(result);
+        writer.write(bytes, 0, target.position());
+        return target.position();
+    }
+
+    private static void throwOnError(CoderResult result) {
+        if (!result.isUnderflow()) {
+            try {
+                result.throwException();
+            }
+            catch (CharacterCodingException exc) {
+                throw new IllegalStateException(exc);
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.ops4j.dadl.io.Constants.DEC_BASE;
+
+import java.io.IOException;
+
+/**
+ * Formats and parses decimal integers in ASCII text representation, one byte at a time, without
+ * creating intermediate strings.
+ * <p>
+ * Digits are accumulated as negative values internally, so that the full range of {@code long}
+ * including {@link Long#MIN_VALUE} can be represented.
+ *
+ * @author hwellmann
+ *
+ */
+public final class TextNumbers {
+
+    /** Maximum number of decimal digits of a {@code long} value. */
+    public static final int MAX_DIGITS = 19;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_DIGITS];
+
+    private static final long MULTIPLY_LIMIT = Long.MIN_VALUE / DEC_BASE;
+
+    static {
+        long power = 1;
+        for (int i = 0; i < MAX_DIGITS; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= DEC_BASE;
+        }
+    }
+
+    private TextNumbers() {
+        // hidden utility class constructor
+    }
+
+    /**
+     * Gets the number of characters of the given value in text representation, including the
+     * minus sign of negative values.
+     *
+     * @param value
+     *            integer value
+     * @return number of characters
+     */
+    public static int length(long value) {
+        if (value < 0) {
+            return numDigits(value) + 1;
+        }
+        return numDigits(-value);
+    }
+
+    private static int numDigits(long negativeValue) {
+        int digits = 1;
+        while (digits < MAX_DIGITS && negativeValue <= -POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Writes the given value in text representation, with a leading minus sign for negative
+     * values. The number of bytes written is {@link #length(long)}.
+     *
+     * @param value
+     *            integer value
+     * @param writer
+     *            bit stream writer
+     * @throws IOException
+     *             on write error
+     */
+    public static void write(long value, BitStreamWriter writer) throws IOException {
+        long v = value;
+        if (value < 0) {
+            writer.writeByte('-');
+        }
+        else {
+            v = -value;
+        }
+        for (int i = numDigits(v) - 1; i >= 0; i--) {
+            long power = POWERS_OF_TEN[i];
+            writer.writeByte('0' - (int) (v / power));
+            v %= power;
+        }
+    }
+
+    /**
+     * Checks if the given byte is an ASCII decimal digit.
+     *
+     * @param b
+     *            byte value
+     * @return true if {@code b} is a digit
+     */
+    public static boolean isDigit(int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Parses a decimal integer in text representation from a sequence of bytes passed to
+     * {@link #accept(int)}. An optional sign may precede the digits. Pad characters are skipped
+     * before the number if it is padded on the left, and after the number if it is padded on the
+     * right.
+     * <p>
+     * A parser can be reused for any number of values by calling
+     * {@link #reset(int, boolean, boolean)}. It is not thread-safe.
+     */
+    public static final class Parser {
+
+        private int padCharacter = ' ';
+        private boolean leftPadded = true;
+        private boolean rightPadded = true;
+
+        private long value;
+        private boolean negative;
+        private boolean started;
+        private boolean hasDigits;
+        private int pendingPadding;
+
+        /**
+         * Resets this parser for a new value.
+         *
+         * @param pad
+         *            pad character
+         * @param left
+         *            skip pad characters before the number?
+         * @param right
+         *            skip pad characters after the number?
+         * @return this parser
+         */
+        public Parser reset(int pad, boolean left, boolean right) {
+            this.padCharacter = pad;
+            this.leftPadded = left;
+            this.rightPadded = right;
+            this.value = 0;
+            this.negative = false;
+            this.started = false;
+            this.hasDigits = false;
+            this.pendingPadding = 0;
+            return this;
+        }
+
+        /**
+         * Accepts the next byte of the text representation.
+         *
+         * @param b
+         *            byte value
+         * @throws IllegalArgumentException
+         *             if the byte is not a digit, a sign or padding in the expected place, or if
+         *             the value does not fit into a {@code long}
+         */
+        public void accept(int b) {
+            if (b == padCharacter) {
+                if (!started && leftPadded) {
+                    return;
+                }
+                if (started && rightPadded) {
+                    pendingPadding++;
+                    return;
+                }
+            }
+            // pad characters followed by anything else are part of the number after all
+            for (; pendingPadding > 0; pendingPadding--) {
+                acceptContent(padCharacter);
+            }
+            acceptContent(b);
+        }
+
+        private void acceptContent(int b) {
+            if (isDigit(b)) {
+                int digit = b - '0';
+                if (value < MULTIPLY_LIMIT || value * DEC_BASE < Long.MIN_VALUE + digit) {
+                    throw new IllegalArgumentException("text number out of range");
+                }
+                value = value * DEC_BASE - digit;
+                hasDigits = true;
+                started = true;
+            }
+            else if (!started && (b == '-' || b == '+')) {
+                negative = (b == '-');
+                started = true;
+            }
+            else {
+                throw new IllegalArgumentException("illegal character in text number: " + b);
+            }
+        }
+
+        /**
+         * Gets the value parsed from all bytes accepted since the last reset. A value consisting
+         * of padding only is zero when the pad character is a digit.
+         *
+         * @return parsed value
+         * @throws IllegalArgumentException
+         *             if there are no digits, or if the value does not fit into a {@code long}
+         */
+        public long getValue() {
+            if (!hasDigits) {
+                if (!started && isDigit(padCharacter)) {
+                    return 0;
+                }
+                throw new IllegalArgumentException("text number without digits");
+            }
+            if (negative) {
+                return value;
+            }
+            if (value == Long.MIN_VALUE) {
+                throw new IllegalArgumentException("text number out of range");
+            }
+            return -value;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes variable length integer encodings:
+ * <ul>
+ * <li>BER definite lengths (ASN.1): values below 128 in a single byte, otherwise a byte
+ * {@code 0x80 | n} followed by the value in {@code n} big endian bytes.</li>
+ * <li>LEB128 (protobuf varints): 7 bits per byte, least significant group first, with the high
+ * bit set on all bytes except the last one.</li>
+ * <li>Zigzag varints: signed values mapped to unsigned values by
+ * {@code (n << 1) ^ (n >> 63)}, then encoded as LEB128.</li>
+ * <li>BER tag numbers (ASN.1): 7 bits per byte, most significant group first, with the high bit
+ * set on all bytes except the last one. These are the subsequent octets of a high tag number form
+ * identifier.</li>
+ * </ul>
+ * Where the underlying stream has a known length, up to 8 bytes are fetched with a single call of
+ * {@link BitStreamReader#readBitsAt(long, int)}, and the terminating byte of a varint is located
+ * with a bit mask instead of testing byte by byte.
+ *
+ * @author hwellmann
+ *
+ */
+public final class VarInts {
+
+    /** Maximum number of bytes of a LEB128 encoded {@code long}. */
+    public static final int MAX_LEB128_BYTES = 10;
+
+    /** Maximum number of value bytes of a BER length. */
+    public static final int MAX_BER_LENGTH_BYTES = 8;
+
+    private static final int GROUP_SIZE = 7;
+
+    private static final int GROUP_MASK = 0x7F;
+
+    private static final int CONTINUATION = 0x80;
+
+    private static final long CONTINUATION_BITS = 0x8080808080808080L;
+
+    private static final int BYTES_PER_WORD = Long.SIZE / BYTE_SIZE;
+
+    private VarInts() {
+        // hidden utility class constructor
+    }
+
+    /**
+     * Reads a BER definite length.
+     *
+     * @param reader
+     *            bit stream reader
+     * @return length
+     * @throws IOException
+     *             on read error
+     * @throws IllegalArgumentException
+     *             for the indefinite form, or if the length does not fit into a {@code long}
+     */
+    public static long readBerLength(BitStreamReader reader) throws IOException {
+        int first = reader.readUnsignedByte();
+        if (first < CONTINUATION) {
+            return first;
+        }
+        int numBytes = first & GROUP_MASK;
+        if (numBytes == 0) {
+            throw new IllegalArgumentException("indefinite length is not supported");
+        }
+        if (numBytes > MAX_BER_LENGTH_BYTES) {
+            throw new IllegalArgumentException("illegal number of length bytes: " + numBytes);
+        }
+        long value = reader.readBits(numBytes * BYTE_SIZE);
+        if (value < 0) {
+            throw new IllegalArgumentException("length out of range");
+        }
+        return value;
+    }
+
+    /**
+     * Writes a BER definite length, in the shortest form.
+     *
+     * @param value
+     *            length
+     * @param writer
+     *            bit stream writer
+     * @throws IOException
+     *             on write error
+     * @throws IllegalArgumentException
+     *             if the value is negative
+     */
+    public static void writeBerLength(long value, BitStreamWriter writer) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("length must not be negative: " + value);
+        }
+        if (value < CONTINUATION) {
+            writer.writeBits(value, BYTE_SIZE);
+            return;
+        }
+        int numBytes = numBytes(value);
+        writer.writeBits(CONTINUATION | numBytes, BYTE_SIZE);
+        writer.writeBits(value, numBytes * BYTE_SIZE);
+    }
+
+    /**
+     * Computes the number of bits of a BER definite length.
+     *
+     * @param value
+     *            length, not negative
+     * @return number of bits
+     */
+    public static long sizeOfBerLength(long value) {
+        if (value >= 0 && value < CONTINUATION) {
+            return BYTE_SIZE;
+        }
+        return BYTE_SIZE * (1 + numBytes(value));
+    }
+
+    private static int numBytes(long value) {
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(value);
+        return (bits + BYTE_SIZE - 1) / BYTE_SIZE;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     *
+     * @param reader
+     *            bit stream reader
+     * @return value, which may be negative if the encoding has more than 63 value bits
+     * @throws IOException
+     *             on read error
+     * @throws IllegalArgumentException
+     *             if the encoding exceeds 10 bytes
+     */
+    public static long readLeb128(BitStreamReader reader) throws IOException {
+        long bitPosition = reader.getBitPosition();
+        if (hasWord(reader, bitPosition)) {
+            long word = reader.readBitsAt(bitPosition, Long.SIZE);
+            long stops = ~word & CONTINUATION_BITS;
+            if (stops != 0) {
+                int numBytes = (Long.numberOfLeadingZeros(stops) / BYTE_SIZE) + 1;
+                long value = 0;
+                for (int i = 0; i < numBytes; i++) {
+                    long group = (word >>> (Long.SIZE - BYTE_SIZE * (i + 1))) & GROUP_MASK;
+                    value |= group << (GROUP_SIZE * i);
+                }
+                reader.setBitPosition(bitPosition + (long) BYTE_SIZE * numBytes);
+                return value;
+            }
+        }
+        long value = 0;
+        for (int i = 0; i < MAX_LEB128_BYTES; i++) {
+            int b = reader.readUnsignedByte();
+            value |= (long) (b & GROUP_MASK) << (GROUP_SIZE * i);
+            if (b < CONTINUATION) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint exceeds " + MAX_LEB128_BYTES + " bytes");
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint. Negative values are treated as unsigned and take 10
+     * bytes.
+     *
+     * @param value
+     *            value
+     * @param writer
+     *            bit stream writer
+     * @throws IOException
+     *             on write error
+     */
+    public static void writeLeb128(long value, BitStreamWriter writer) throws IOException {
+        long remaining = value;
+        long word = 0;
+        int numBytes = 0;
+        while (true) {
+            int group = (int) (remaining & GROUP_MASK);
+            remaining >>>= GROUP_SIZE;
+            int b = (remaining == 0) ? group : (group | CONTINUATION);
+            word = (word << BYTE_SIZE) | b;
+            numBytes++;
+            if (remaining == 0) {
+                break;
+            }
+            if (numBytes == BYTES_PER_WORD) {
+                writer.writeBits(word, Long.SIZE);
+                word = 0;
+                numBytes = 0;
+            }
+        }
+        writer.writeBits(word, numBytes * BYTE_SIZE);
+    }
+
+    /**
+     * Computes the number of bits of an unsigned LEB128 varint.
+     *
+     * @param value
+     *            value
+     * @return number of bits
+     */
+    public static long sizeOfLeb128(long value) {
+        int bits = Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(value));
+        return BYTE_SIZE * ((bits + GROUP_SIZE - 1) / GROUP_SIZE);
+    }
+
+    /**
+     * Maps a signed value to an unsigned value, such that values of small magnitude have short
+     * encodings.
+     *
+     * @param value
+     *            signed value
+     * @return zigzag encoded value
+     */
+    public static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> (Long.SIZE - 1));
+    }
+
+    /**
+     * Inverts {@link #encodeZigZag(long)}.
+     *
+     * @param value
+     *            zigzag encoded value
+     * @return signed value
+     */
+    public static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a BER tag number in base 128, most significant group first.
+     *
+     * @param reader
+     *            bit stream reader
+     * @return tag number
+     * @throws IOException
+     *             on read error
+     * @throws IllegalArgumentException
+     *             if the tag number does not fit into a {@code long}
+     */
+    public static long readBerTagNumber(BitStreamReader reader) throws IOException {
+        long bitPosition = reader.getBitPosition();
+        if (hasWord(reader, bitPosition)) {
+            long word = reader.readBitsAt(bitPosition, Long.SIZE);
+            long stops = ~word & CONTINUATION_BITS;
+            if (stops != 0) {
+                int numBytes = (Long.numberOfLeadingZeros(stops) / BYTE_SIZE) + 1;
+                long value = 0;
+                for (int i = 0; i < numBytes; i++) {
+                    long group = (word >>> (Long.SIZE - BYTE_SIZE * (i + 1))) & GROUP_MASK;
+                    value = (value << GROUP_SIZE) | group;
+                }
+                reader.setBitPosition(bitPosition + (long) BYTE_SIZE * numBytes);
+                return value;
+            }
+        }
+        long value = 0;
+        for (int i = 0; i < MAX_LEB128_BYTES; i++) {
+            int b = reader.readUnsignedByte();
+            if (value >>> (Long.SIZE - 1 - GROUP_SIZE) != 0) {
+                throw new IllegalArgumentException("tag number out of range");
+            }
+            value = (value << GROUP_SIZE) | (b & GROUP_MASK);
+            if (b < CONTINUATION) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("tag number out of range");
+    }
+
+    /**
+     * Writes a BER tag number in base 128, most significant group first.
+     *
+     * @param value
+     *            tag number
+     * @param writer
+     *            bit stream writer
+     * @throws IOException
+     *             on write error
+     * @throws IllegalArgumentException
+     *             if the value is negative
+     */
+    public static void writeBerTagNumber(long value, BitStreamWriter writer) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("tag number must not be negative: " + value);
+        }
+        int numBytes = (int) (sizeOfLeb128(value) / BYTE_SIZE);
+        for (int i = numBytes - 1; i >= 0; i--) {
+            int group = (int) (value >>> (GROUP_SIZE * i)) & GROUP_MASK;
+            writer.writeBits((i == 0) ? group : (group | CONTINUATION), BYTE_SIZE);
+        }
+    }
+
+    /**
+     * Computes the number of bits of a BER tag number.
+     *
+     * @param value
+     *            tag number, not negative
+     * @return number of bits
+     */
+    public static long sizeOfBerTagNumber(long value) {
+        return sizeOfLeb128(value);
+    }
+
+    private static boolean hasWord(BitStreamReader reader, long bitPosition) throws IOException {
+        long length = reader.length();
+        return length >= 0 && bitPosition + Long.SIZE <= BYTE_SIZE * length;
+    }
+}
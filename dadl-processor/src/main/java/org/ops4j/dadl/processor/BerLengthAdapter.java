@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.io.IOException;
+
+import org.ops4j.dadl.exc.MarshalException;
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.BitStreamWriter;
+import org.ops4j.dadl.io.VarInts;
+
+/**
+ * Built-in adapter named {@code berLength} for lengths encoded as BER definite lengths (ASN.1).
+ * <p>
+ * Values below 128 take a single byte. Larger values are encoded as a byte {@code 0x80 | n},
+ * followed by the value in {@code n} big endian bytes, with {@code n} at most 8. The indefinite
+ * form is not supported.
+ *
+ * @author hwellmann
+ *
+ */
+public class BerLengthAdapter implements LongDadlAdapter {
+
+    @Override
+    public void marshalLong(long value, BitStreamWriter writer) throws IOException {
+        try {
+            VarInts.writeBerLength(value, writer);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new MarshalException(exc.getMessage());
+        }
+    }
+
+    @Override
+    public long unmarshalLong(BitStreamReader reader) throws IOException {
+        try {
+            return VarInts.readBerLength(reader);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(exc.getMessage());
+        }
+    }
+
+    @Override
+    public long sizeOfLong(long value) {
+        return VarInts.sizeOfBerLength(value);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.BitStreamWriter;
+import org.ops4j.dadl.io.Crc16Ccitt;
+import org.ops4j.dadl.io.Crc32c;
+import org.ops4j.dadl.metamodel.gen.ChecksumAlgorithm;
+
+/**
+ * Computes the values of checksum fields while the bytes of their regions are read or written.
+ * A running checksum is started on the reader or writer at the start of each region and ended at
+ * the checksum field. Regions may be nested, and checksums are reused for each nesting depth and
+ * supported algorithm.
+ * <p>
+ * Each marshaller and unmarshaller has its own calculator, so this class is not thread-safe.
+ *
+ * @author hwellmann
+ *
+ */
+final class ChecksumCalculator {
+
+    /** Reusable checksums for each nesting depth, by algorithm. */
+    private List<Map<ChecksumAlgorithm, Checksum>> checksums = new ArrayList<>();
+
+    /** Running checksums, innermost last. */
+    private List<Checksum> running = new ArrayList<>();
+
+    /**
+     * Gets a checksum for the given algorithm at the next nesting depth, reset to its initial
+     * value.
+     */
+    private Checksum getChecksum(ChecksumAlgorithm algorithm) {
+        int depth = running.size();
+        if (depth == checksums.size()) {
+            checksums.add(new EnumMap<>(ChecksumAlgorithm.class));
+        }
+        Map<ChecksumAlgorithm, Checksum> checksumMap = checksums.get(depth);
+        Checksum checksum = checksumMap.get(algorithm);
+        if (checksum == null) {
+            checksum = createChecksum(algorithm);
+            checksumMap.put(algorithm, checksum);
+        }
+        else {
+            checksum.reset();
+        }
+        return checksum;
+    }
+
+    /**
+     * Gets the number of running checksums.
+     *
+     * @return nesting depth
+     */
+    int getDepth() {
+        return running.size();
+    }
+
+    /**
+     * Starts a checksum region at the current position of the given writer.
+     *
+     * @param algorithm
+     *            checksum algorithm
+     * @param writer
+     *            bit stream writer
+     * @throws IOException
+     *             on write error
+     * @throws IllegalArgumentException
+     *             if the current position is not on a byte boundary
+     */
+    void start(ChecksumAlgorithm algorithm, BitStreamWriter writer) throws IOException {
+        Checksum checksum = getChecksum(algorithm);
+        writer.startChecksum(checksum);
+        running.add(checksum);
+    }
+
+    /**
+     * Starts a checksum region at the current position of the given reader.
+     *
+     * @param algorithm
+     *            checksum algorithm
+     * @param reader
+     *            bit stream reader
+     * @throws IOException
+     *             on read error
+     * @throws IllegalArgumentException
+     *             if the current position is not on a byte boundary
+     */
+    void start(ChecksumAlgorithm algorithm, BitStreamReader reader) throws IOException {
+        Checksum checksum = getChecksum(algorithm);
+        reader.startChecksum(checksum);
+        running.add(checksum);
+    }
+
+    /**
+     * Ends the innermost checksum region at the current position of the given writer.
+     *
+     * @param writer
+     *            bit stream writer
+     * @return checksum value
+     * @throws IOException
+     *             on write error
+     * @throws IllegalArgumentException
+     *             if the current position is not on a byte boundary
+     */
+    long end(BitStreamWriter writer) throws IOException {
+        checkByteBoundary(writer.getBitPosition());
+        Checksum checksum = running.remove(running.size() - 1);
+        writer.endChecksum(checksum);
+        return checksum.getValue();
+    }
+
+    /**
+     * Ends the innermost checksum region at the current position of the given reader.
+     *
+     * @param reader
+     *            bit stream reader
+     * @return checksum value
+     * @throws IOException
+     *             on read error
+     * @throws IllegalArgumentException
+     *             if the current position is not on a byte boundary
+     */
+    long end(BitStreamReader reader) throws IOException {
+        checkByteBoundary(reader.getBitPosition());
+        Checksum checksum = running.remove(running.size() - 1);
+        reader.endChecksum(checksum);
+        return checksum.getValue();
+    }
+
+    /**
+     * Discards the checksum regions started on the given writer beyond the given nesting depth,
+     * which are left over from an error.
+     *
+     * @param depth
+     *            nesting depth to return to
+     * @param writer
+     *            bit stream writer
+     * @throws IOException
+     *             on write error
+     */
+    void unwind(int depth, BitStreamWriter writer) throws IOException {
+        if (running.size() > depth) {
+            writer.endChecksum(running.get(depth));
+            running.subList(depth, running.size()).clear();
+        }
+    }
+
+    /**
+     * Discards the checksum regions started on the given reader beyond the given nesting depth,
+     * which are left over from an error or from backtracking.
+     *
+     * @param depth
+     *            nesting depth to return to
+     * @param reader
+     *            bit stream reader
+     * @throws IOException
+     *             on read error
+     */
+    void unwind(int depth, BitStreamReader reader) throws IOException {
+        if (running.size() > depth) {
+            reader.endChecksum(running.get(depth));
+            running.subList(depth, running.size()).clear();
+        }
+    }
+
+    private static void checkByteBoundary(long bitPosition) {
+        if (bitPosition % BYTE_SIZE != 0) {
+            throw new IllegalArgumentException("not on a byte boundary: " + bitPosition);
+        }
+    }
+
+    private static Checksum createChecksum(ChecksumAlgorithm algorithm) {
+        switch (algorithm) {
+            case CRC_32:
+                return new CRC32();
+            case CRC_32_C:
+                return new Crc32c();
+            case CRC_16_CCITT:
+                return new Crc16Ccitt();
+            default:
+                throw new IllegalArgumentException("unsupported checksum algorithm: " + algorithm);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import org.ops4j.dadl.metamodel.gen.Checksum;
+
+/**
+ * Part of a tagged sequence where the region of its checksum field starts. The region ends
+ * before the checksum field.
+ *
+ * @author hwellmann
+ *
+ */
+enum ChecksumRegion {
+
+    /** The region starts with the tag. */
+    TAG,
+
+    /** The region starts with the length field. */
+    LENGTH_FIELD,
+
+    /** The region starts with the payload. */
+    PAYLOAD;
+
+    /**
+     * Gets the part where the region of the given checksum field starts.
+     *
+     * @param checksum
+     *            checksum field
+     * @return start of region
+     */
+    static ChecksumRegion startOf(Checksum checksum) {
+        if (checksum.isIncludesTag()) {
+            return TAG;
+        }
+        return checksum.isIncludesLengthField() ? LENGTH_FIELD : PAYLOAD;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.lang.reflect.Field;
+
+import org.ops4j.dadl.exc.Exceptions;
+
+/**
+ * Reads and writes the selected branch of a generated choice class. The generator adds a field
+ * {@code selectedBranch} holding the index of the branch which is set, or -1 if no branch is set.
+ * Choice classes without this field are supported, but the selected branch has to be found by
+ * testing each branch for null.
+ * <p>
+ * The field is looked up once per class.
+ *
+ * @author hwellmann
+ *
+ */
+final class ChoiceBranches {
+
+    /** Name of the generated field holding the selected branch. */
+    static final String SELECTED_BRANCH = "selectedBranch";
+
+    /** Value of the selected branch field when no branch is set. */
+    static final int NO_BRANCH = -1;
+
+    private static final ClassValue<ChoiceBranches> BRANCHES =
+        new ClassValue<ChoiceBranches>() {
+
+        @Override
+        protected ChoiceBranches computeValue(Class<?> type) {
+            return new ChoiceBranches(type);
+        }
+    };
+
+    /** Selected branch field, or null if the class does not have one. */
+    private final Field selectedBranch;
+
+    private ChoiceBranches(Class<?> choiceClass) {
+        Field field = null;
+        try {
+            field = choiceClass.getDeclaredField(SELECTED_BRANCH);
+            if (field.getType() == int.class) {
+                field.setAccessible(true);
+            }
+            else {
+                field = null;
+            }
+        }
+        catch (NoSuchFieldException exc) {
+            // not generated by a recent version, or not a choice class
+        }
+        this.selectedBranch = field;
+    }
+
+    /**
+     * Gets the branch accessor for the given choice class.
+     *
+     * @param choiceClass
+     *            Java class generated from a DADL choice type
+     * @return branch accessor
+     */
+    static ChoiceBranches of(Class<?> choiceClass) {
+        return BRANCHES.get(choiceClass);
+    }
+
+    /**
+     * Checks if the choice class keeps track of the selected branch.
+     *
+     * @return true if there is a selected branch field
+     */
+    boolean isTracked() {
+        return selectedBranch != null;
+    }
+
+    /**
+     * Gets the index of the selected branch of the given choice.
+     *
+     * @param choice
+     *            choice object
+     * @return branch index, or {@link #NO_BRANCH}
+     */
+    int getSelectedBranch(Object choice) {
+        try {
+            return selectedBranch.getInt(choice);
+        }
+        catch (IllegalAccessException exc) {
+            throw Exceptions.unchecked(exc);
+        }
+    }
+
+    /**
+     * Sets the index of the selected branch of the given choice. Does nothing if the choice class
+     * does not keep track of the selected branch.
+     *
+     * @param choice
+     *            choice object
+     * @param branch
+     *            branch index, or {@link #NO_BRANCH}
+     */
+    void setSelectedBranch(Object choice, int branch) {
+        if (selectedBranch == null) {
+            return;
+        }
+        try {
+            selectedBranch.setInt(choice, branch);
+        }
+        catch (IllegalAccessException exc) {
+            throw Exceptions.unchecked(exc);
+        }
+    }
+}
@@ -26,7 +26,8 @@ import org.ops4j.dadl.io.BitStreamWriter;
  * An adapter for overriding the default (un)marshalling of a given type.
  * <p>
  * Users should implement this interface for any type with non-standard encoding, e.g. to map a
- * complex type to a simple type in a special way.
+ * complex type to a simple type in a special way. Adapters for integer types should implement
+ * {@link LongDadlAdapter} to avoid boxing.
  *
  * @param <T>
  *            information model type
@@ -58,4 +59,19 @@ public interface DadlAdapter<T> {
      *             on read error
      */
     T unmarshal(BitStreamReader reader) throws IOException;
+
+    /**
+     * Computes the number of bits required for marshalling the given info model. Adapters should
+     * override this method when the size can be computed more cheaply than by marshalling.
+     * <p>
+     * The default implementation returns -1. In this case, the size is determined by marshalling
+     * the info model to a {@link org.ops4j.dadl.io.BitCountingWriter}.
+     *
+     * @param info
+     *            information model
+     * @return number of bits, or a negative value if the size is unknown
+     */
+    default long sizeOf(T info) {
+        return -1;
+    }
 }
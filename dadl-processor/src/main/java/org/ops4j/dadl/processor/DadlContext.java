@@ -18,18 +18,36 @@ package org.ops4j.dadl.processor;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 
 import org.ops4j.dadl.exc.DadlException;
+import org.ops4j.dadl.io.BitCountingWriter;
 import org.ops4j.dadl.io.BitStreamReader;
 import org.ops4j.dadl.io.BitStreamWriter;
+import org.ops4j.dadl.io.TextCodec;
 import org.ops4j.dadl.metamodel.gen.BinaryNumberRepresentation;
+import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.ChoiceElement;
+import org.ops4j.dadl.metamodel.gen.ContentType;
 import org.ops4j.dadl.metamodel.gen.DadlType;
+import org.ops4j.dadl.metamodel.gen.Element;
+import org.ops4j.dadl.metamodel.gen.Enumeration;
+import org.ops4j.dadl.metamodel.gen.Justification;
 import org.ops4j.dadl.metamodel.gen.Model;
+import org.ops4j.dadl.metamodel.gen.Representation;
+import org.ops4j.dadl.metamodel.gen.Sequence;
+import org.ops4j.dadl.metamodel.gen.SimpleType;
+import org.ops4j.dadl.metamodel.gen.TaggedSequence;
 import org.ops4j.dadl.model.ValidatedModel;
 
 /**
@@ -47,8 +65,74 @@ public class DadlContext {
 
     private Map<String, DadlAdapter<?>> adapters = new HashMap<>();
 
+    /** Adapters of all model types referencing a registered adapter, resolved by type. */
+    private Map<DadlType, DadlAdapter<?>> typeAdapters = new IdentityHashMap<>();
+
+    /** Primitive adapters of all elements having one, resolved by element. */
+    private Map<Element, LongDadlAdapter> elementAdapters = new IdentityHashMap<>();
+
+    /** Elements which can be read or written as primitive integers, resolved by element. */
+    private Set<Element> primitiveIntegers = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** Record schemas compiled on demand, depending on the registered adapters. */
+    private Map<String, RecordSchema> recordSchemas = new ConcurrentHashMap<>();
+
     protected DadlContext(ValidatedModel model) {
         this.model = model;
+        registerBuiltinAdapters();
+        resolveAdapters();
+        resolveCharsets();
+    }
+
+    private void registerBuiltinAdapters() {
+        adapters.put("berLength", new BerLengthAdapter());
+        adapters.put("berTagNumber", new BerTagNumberAdapter());
+        adapters.put("leb128", new Leb128Adapter());
+        adapters.put("zigzag", new ZigZagAdapter());
+    }
+
+    /**
+     * Resolves the adapters of all model types, so that adapters need not be looked up by name
+     * for each value.
+     */
+    private void resolveAdapters() {
+        Map<DadlType, DadlAdapter<?>> resolved = new IdentityHashMap<>();
+        for (DadlType type : model.getTypeMap().values()) {
+            if (type.getAdapter() != null) {
+                DadlAdapter<?> adapter = adapters.get(type.getAdapter());
+                if (adapter != null) {
+                    resolved.put(type, adapter);
+                }
+            }
+        }
+        typeAdapters = resolved;
+        resolveElementAdapters();
+        recordSchemas.clear();
+    }
+
+    /**
+     * Resolves the primitive adapters of all elements, so that the marshaller and unmarshaller
+     * need not check the element and its type for each value.
+     */
+    private void resolveElementAdapters() {
+        Map<Element, LongDadlAdapter> resolved = new IdentityHashMap<>();
+        Set<Element> primitive = Collections.newSetFromMap(new IdentityHashMap<>());
+        forEachElement(element -> {
+            DadlType fieldType = model.getType(element.getType());
+            if (fieldType == null
+                || (fieldType.getAdapter() != null && !typeAdapters.containsKey(fieldType))) {
+                return;
+            }
+            LongDadlAdapter adapter = getLongAdapter(fieldType, element);
+            if (adapter != null) {
+                resolved.put(element, adapter);
+            }
+            if (adapter != null || isPlainBinaryInteger(fieldType, element)) {
+                primitive.add(element);
+            }
+        });
+        elementAdapters = resolved;
+        primitiveIntegers = primitive;
     }
 
     /**
@@ -116,6 +200,9 @@ public class DadlContext {
 
     /**
      * Sets an adapter with the given name.
+     * <p>
+     * The built-in adapters {@code berLength}, {@code berTagNumber}, {@code leb128} and
+     * {@code zigzag} are registered by default and may be replaced by this method.
      *
      * @param name
      *            adapter name, referenced in the XML model
@@ -124,6 +211,7 @@ public class DadlContext {
      */
     public void setAdapter(String name, DadlAdapter<?> adapter) {
         adapters.put(name, adapter);
+        resolveAdapters();
     }
 
     /**
@@ -135,6 +223,29 @@ public class DadlContext {
         return new Unmarshaller(this, model);
     }
 
+    /**
+     * Creates an event parser for the current model.
+     *
+     * @return event parser
+     */
+    public EventParser createEventParser() {
+        return new EventParser(this, model);
+    }
+
+    /**
+     * Creates a cursor reading an instance of the given type from the current position of the
+     * given reader.
+     *
+     * @param reader
+     *            bit stream reader
+     * @param typeName
+     *            name of a type of the current model
+     * @return cursor positioned before the first event
+     */
+    public DadlCursor createCursor(BitStreamReader reader, String typeName) {
+        return new DadlCursor(this, model, reader, typeName);
+    }
+
     /**
      * Creates a marshaller for the current model.
      *
@@ -144,6 +255,49 @@ public class DadlContext {
         return new Marshaller(this, model);
     }
 
+    /**
+     * Creates a writer cursor writing an instance of the given type at the current position of
+     * the given writer.
+     *
+     * @param writer
+     *            bit stream writer
+     * @param typeName
+     *            name of a complex type of the current model
+     * @return writer cursor expecting the root element
+     */
+    public DadlWriterCursor createWriterCursor(BitStreamWriter writer, String typeName) {
+        return new DadlWriterCursor(this, model, writer, typeName);
+    }
+
+    /**
+     * Gets the record schema of the given type, for reading and writing {@link GenericRecord}
+     * instances.
+     *
+     * @param typeName
+     *            name of a sequence or choice type of the current model
+     * @return record schema
+     * @throws DadlException
+     *             if there is no such type, or if the type is simple or has an adapter
+     */
+    public RecordSchema getRecordSchema(String typeName) {
+        return recordSchemas.computeIfAbsent(typeName, name -> {
+            DadlType type = model.getType(name);
+            if (type == null) {
+                throw new DadlException("unknown type " + name);
+            }
+            return new RecordSchema(this, model, type);
+        });
+    }
+
+    /**
+     * Gets the validated model of this context.
+     *
+     * @return validated model
+     */
+    public ValidatedModel getModel() {
+        return model;
+    }
+
     /**
      * Gets an adapter for the given DADL type and the given Java model class.
      *
@@ -157,13 +311,74 @@ public class DadlContext {
         if (adapterName == null) {
             return null;
         }
-        DadlAdapter<?> adapter = adapters.get(adapterName);
+        DadlAdapter<?> adapter = typeAdapters.get(type);
         if (adapter == null) {
-            throw new DadlException("no adapter named " + adapterName);
+            adapter = adapters.get(adapterName);
+            if (adapter == null) {
+                throw new DadlException("no adapter named " + adapterName);
+            }
         }
         return (DadlAdapter<T>) adapter;
     }
 
+    /**
+     * Gets the primitive adapter of the given element of the given type, if the element value
+     * can be read or written directly as a primitive value.
+     *
+     * @param fieldType
+     *            type of element
+     * @param element
+     *            element, or null
+     * @return primitive adapter, or null if the type has no primitive adapter, or if the type is
+     *         an enumeration or has a discriminator
+     */
+    /**
+     * Gets the primitive adapter of the given model element, as resolved when loading the model
+     * or registering an adapter.
+     *
+     * @param element
+     *            model element
+     * @return primitive adapter, or null
+     * @see #getLongAdapter(DadlType, Element)
+     */
+    LongDadlAdapter getLongAdapter(Element element) {
+        return elementAdapters.get(element);
+    }
+
+    /**
+     * Checks if the given model element can be read or written as a primitive integer, either in
+     * plain binary representation or via a primitive adapter.
+     *
+     * @param element
+     *            model element
+     * @return true if the element has a primitive integer representation
+     */
+    boolean isPrimitiveInteger(Element element) {
+        return primitiveIntegers.contains(element);
+    }
+
+    LongDadlAdapter getLongAdapter(DadlType fieldType, Element element) {
+        if (fieldType.getAdapter() == null || !(fieldType instanceof SimpleType)
+            || fieldType instanceof Enumeration || fieldType.getDiscriminator() != null
+            || (element != null && element.getDiscriminator() != null)) {
+            return null;
+        }
+        DadlAdapter<?> adapter = getAdapter(fieldType);
+        return (adapter instanceof LongDadlAdapter) ? (LongDadlAdapter) adapter : null;
+    }
+
+    void writeLongViaAdapter(LongDadlAdapter adapter, long value, BitStreamWriter writer)
+        throws IOException {
+        if (writer instanceof BitCountingWriter) {
+            long numBits = adapter.sizeOfLong(value);
+            if (numBits >= 0) {
+                ((BitCountingWriter) writer).count(numBits);
+                return;
+            }
+        }
+        adapter.marshalLong(value, writer);
+    }
+
     <T> T readValueViaAdapter(DadlType type, BitStreamReader reader)
         throws IOException {
         DadlAdapter<T> adapter = getAdapter(type);
@@ -180,14 +395,119 @@ public class DadlContext {
         if (adapter == null) {
             return false;
         }
-        else {
-            adapter.marshal(info, writer);
-            return true;
+        if (writer instanceof BitCountingWriter) {
+            long numBits = adapter.sizeOf(info);
+            if (numBits >= 0) {
+                ((BitCountingWriter) writer).count(numBits);
+                return true;
+            }
+        }
+        adapter.marshal(info, writer);
+        return true;
+    }
+
+    /**
+     * Checks if the given element of the given type is an integer in standard binary
+     * representation, without adapter or discriminator, which can be read or written directly as a
+     * primitive value.
+     *
+     * @param fieldType
+     *            type of element
+     * @param element
+     *            element, with representation properties merged from its type
+     * @return true if element is a plain binary integer
+     */
+    boolean isPlainBinaryInteger(DadlType fieldType, Element element) {
+        if (!(fieldType instanceof SimpleType) || fieldType instanceof Enumeration) {
+            return false;
         }
+        SimpleType simpleType = (SimpleType) fieldType;
+        return simpleType.getContentType() == ContentType.INTEGER
+            && simpleType.getRepresentation() == Representation.BINARY
+            && getBinaryNumberRep(element) == BinaryNumberRepresentation.BINARY
+            && simpleType.getAdapter() == null && simpleType.getDiscriminator() == null
+            && element.getDiscriminator() == null;
     }
 
     BinaryNumberRepresentation getBinaryNumberRep(DadlType simpleType) {
         return simpleType.getBinaryNumberRep() == null
             ? BinaryNumberRepresentation.BINARY : simpleType.getBinaryNumberRep();
     }
+
+    /**
+     * Resolves the character sets of all types and elements of the model, so that unsupported
+     * encodings are detected on loading the model, and the character sets are cached for
+     * marshalling and unmarshalling.
+     */
+    private void resolveCharsets() {
+        model.getTypeMap().values().forEach(this::resolveCharset);
+        forEachElement(this::resolveCharset);
+    }
+
+    /**
+     * Performs the given action for each element of each sequence, tagged sequence or choice of
+     * the model.
+     */
+    private void forEachElement(Consumer<Element> action) {
+        for (DadlType type : model.getTypeMap().values()) {
+            if (type instanceof Sequence) {
+                ((Sequence) type).getElement().forEach(action);
+            }
+            else if (type instanceof TaggedSequence) {
+                ((TaggedSequence) type).getElement().forEach(action);
+            }
+            else if (type instanceof Choice) {
+                for (ChoiceElement element : ((Choice) type).getElement()) {
+                    action.accept(element);
+                    element.getElement().forEach(action);
+                }
+            }
+        }
+    }
+
+    private void resolveCharset(DadlType type) {
+        try {
+            getCharset(type);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new DadlException("unsupported encoding " + type.getEncoding() + " of "
+                + type.getName(), exc);
+        }
+    }
+
+    /**
+     * Gets the character set of the given type or element. The default is UTF-8.
+     *
+     * @param type
+     *            type or element with text representation
+     * @return character set
+     */
+    Charset getCharset(DadlType type) {
+        return TextCodec.charset(type.getEncoding());
+    }
+
+    /**
+     * Gets the pad character of integers in text representation. The default is a blank.
+     *
+     * @param type
+     *            type or element with text representation
+     * @return pad character
+     */
+    int getTextNumberPadCharacter(DadlType type) {
+        String padCharacter = type.getTextNumberPadCharacter();
+        return (padCharacter == null || padCharacter.isEmpty()) ? ' ' : padCharacter.charAt(0);
+    }
+
+    /**
+     * Gets the justification of integers in text representation. The default is right
+     * justification.
+     *
+     * @param type
+     *            type or element with text representation
+     * @return justification
+     */
+    Justification getTextNumberJustification(DadlType type) {
+        return type.getTextNumberJustification() == null
+            ? Justification.RIGHT : type.getTextNumberJustification();
+    }
 }
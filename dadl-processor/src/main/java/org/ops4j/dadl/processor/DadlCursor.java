@@ -0,0 +1,658 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.metamodel.gen.Checksum;
+import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.ChoiceElement;
+import org.ops4j.dadl.metamodel.gen.ContentType;
+import org.ops4j.dadl.metamodel.gen.DadlType;
+import org.ops4j.dadl.metamodel.gen.Element;
+import org.ops4j.dadl.metamodel.gen.OccursCountKind;
+import org.ops4j.dadl.metamodel.gen.Sequence;
+import org.ops4j.dadl.metamodel.gen.SequenceElement;
+import org.ops4j.dadl.metamodel.gen.SimpleType;
+import org.ops4j.dadl.metamodel.gen.TaggedSequence;
+import org.ops4j.dadl.model.ValidatedModel;
+
+/**
+ * A pull parser over a bit stream, reading an instance of a given type of a DADL model one event
+ * at a time, without creating info model objects.
+ * <p>
+ * The caller advances the cursor with {@link #next()}, which returns the current event. The name
+ * and the type of the current element are available for every event except
+ * {@link Event#END_DOCUMENT}. For a {@link Event#VALUE}, the value is obtained by
+ * {@link #getLong()}, {@link #getText()} or {@link #getByteArray()}. At the start of a sequence,
+ * choice or list, {@link #skipElement()} skips its content, using the length field of a tagged
+ * sequence or the fixed length of a type where possible.
+ * <p>
+ * Choice branches, optional elements and list items without an occurs count are checked before
+ * their start is reported, so the cursor never enters an element which does not match. A simple
+ * value is read only once and backtracked if it does not match. A tagged sequence is selected by
+ * its tag alone, so an error in its content is reported instead of trying the next alternative.
+ * Other complex values are parsed without events to check if they match. As with the
+ * {@link EventParser}, discriminators are evaluated on raw values.
+ * <p>
+ * After an exception, the state of a cursor is undefined. A cursor is not thread-safe.
+ *
+ * @author hwellmann
+ *
+ */
+public class DadlCursor {
+
+    /**
+     * Events reported by a cursor.
+     */
+    public enum Event {
+        START_SEQUENCE,
+        END_SEQUENCE,
+        START_CHOICE,
+        END_CHOICE,
+        START_LIST,
+        END_LIST,
+        VALUE,
+        END_DOCUMENT
+    }
+
+    /**
+     * Parsing state of a sequence, choice or list entered by the cursor. Frames are reused.
+     */
+    private static final class Frame {
+
+        private Event endEvent;
+        private String name;
+        private DadlType type;
+        private Element element;
+        private List<? extends Element> elements;
+
+        /** Number of elements or list items started. */
+        private long index;
+
+        private long startPos;
+
+        /** Number of checksum regions being read when a tagged sequence was entered. */
+        private int checksumDepth;
+
+        /** End of a tagged sequence given by its length field, or end of parent of a list. */
+        private long end;
+
+        private long numItems;
+
+        private boolean skipped;
+    }
+
+    private DadlContext context;
+    private ValidatedModel model;
+    private EventParser engine;
+    private Evaluator evaluator;
+    private BitStreamReader reader;
+    private DadlType rootType;
+
+    private List<Frame> frames = new ArrayList<>();
+    private int numFrames;
+
+    private Event event;
+    private String name;
+    private DadlType type;
+    private DadlType representation;
+
+    private long longValue;
+    private byte[] byteArray;
+    private int byteOffset;
+    private int byteLength;
+    private Object value;
+
+    DadlCursor(DadlContext context, ValidatedModel model, BitStreamReader reader,
+        String typeName) {
+        this.context = context;
+        this.model = model;
+        this.reader = reader;
+        this.rootType = model.getType(typeName);
+        if (rootType == null) {
+            throw new UnmarshalException("unknown type " + typeName);
+        }
+        this.engine = new EventParser(context, model);
+        this.evaluator = engine.getEvaluator();
+        engine.setHandler(new DadlEventHandler() {
+
+            @Override
+            public void integer(String elementName, long integerValue) {
+                longValue = integerValue;
+                value = null;
+            }
+
+            @Override
+            public void text(String elementName, byte[] bytes, int offset, int length) {
+                setBytes(bytes, offset, length);
+            }
+
+            @Override
+            public void opaque(String elementName, byte[] bytes, int offset, int length) {
+                setBytes(bytes, offset, length);
+            }
+
+            @Override
+            public void value(String elementName, Object adaptedValue) {
+                value = adaptedValue;
+            }
+        });
+    }
+
+    private void setBytes(byte[] bytes, int offset, int length) {
+        byteArray = bytes;
+        byteOffset = offset;
+        byteLength = length;
+        value = null;
+    }
+
+    /**
+     * Checks if there are more events.
+     *
+     * @return false if the current event is {@link Event#END_DOCUMENT}
+     */
+    public boolean hasNext() {
+        return event != Event.END_DOCUMENT;
+    }
+
+    /**
+     * Advances to the next event.
+     *
+     * @return next event
+     * @throws IOException
+     *             on read error
+     * @throws UnmarshalException
+     *             if the input does not match the model
+     * @throws NoSuchElementException
+     *             after {@link Event#END_DOCUMENT}
+     */
+    public Event next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            event = advance();
+        }
+        catch (AssertionError exc) {
+            throw new UnmarshalException(exc.getMessage(), exc);
+        }
+        return event;
+    }
+
+    /**
+     * Restarts the cursor at the current position of the reader, to read another instance of the
+     * same type.
+     *
+     * @throws IllegalStateException
+     *             if the current event is not {@link Event#END_DOCUMENT}
+     */
+    public void restart() {
+        if (hasNext()) {
+            throw new IllegalStateException("instance has not been read completely");
+        }
+        event = null;
+    }
+
+    /**
+     * Gets the current event.
+     *
+     * @return current event, or null before the first call of {@link #next()}
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Gets the name of the current element. For the root type, this is the type name.
+     *
+     * @return element name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the type name of the current element.
+     *
+     * @return type name
+     */
+    public String getTypeName() {
+        return type.getName();
+    }
+
+    /**
+     * Gets the nesting depth of the current event. The start and the end of the root type have
+     * depth 0.
+     *
+     * @return depth
+     */
+    public int getDepth() {
+        return isStart() ? numFrames - 1 : numFrames;
+    }
+
+    /**
+     * Gets the current integer value, including the integer content of an enumeration.
+     *
+     * @return integer value
+     * @throws IllegalStateException
+     *             if the current event is not an integer value
+     */
+    public long getLong() {
+        checkValue(isInteger());
+        return longValue;
+    }
+
+    /**
+     * Gets the current text value, decoded with the encoding of the element.
+     *
+     * @return text value
+     * @throws IllegalStateException
+     *             if the current event is not a text value
+     */
+    public String getText() {
+        checkValue(hasContentType(ContentType.TEXT));
+        return new String(byteArray, byteOffset, byteLength, context.getCharset(representation));
+    }
+
+    /**
+     * Gets the buffer holding the bytes of the current text or opaque value. The buffer is reused
+     * for subsequent values. The bytes of a text value are not decoded.
+     *
+     * @return byte array
+     * @throws IllegalStateException
+     *             if the current event is not a text or opaque value
+     */
+    public byte[] getByteArray() {
+        checkValue(hasContentType(ContentType.TEXT) || hasContentType(ContentType.OPAQUE));
+        return byteArray;
+    }
+
+    /**
+     * Gets the offset of the current text or opaque value in {@link #getByteArray()}.
+     *
+     * @return offset
+     */
+    public int getByteOffset() {
+        return byteOffset;
+    }
+
+    /**
+     * Gets the length in bytes of the current text or opaque value in {@link #getByteArray()}.
+     *
+     * @return number of bytes
+     */
+    public int getByteLength() {
+        return byteLength;
+    }
+
+    /**
+     * Gets the current value as an object. Integers are boxed, text values are decoded and
+     * opaque values are copied. Values read by a user-defined adapter are returned unchanged.
+     *
+     * @return value
+     * @throws IllegalStateException
+     *             if the current event is not {@link Event#VALUE}
+     */
+    public Object getValue() {
+        checkValue(true);
+        if (value != null) {
+            return value;
+        }
+        if (isInteger()) {
+            return longValue;
+        }
+        if (hasContentType(ContentType.TEXT)) {
+            return getText();
+        }
+        return Arrays.copyOfRange(byteArray, byteOffset, byteOffset + byteLength);
+    }
+
+    /**
+     * Skips the content of the current sequence, choice or list. The next call of
+     * {@link #next()} returns its end event. The content is not validated, except for the
+     * checksum of a tagged sequence.
+     *
+     * @throws IOException
+     *             on read error
+     * @throws IllegalStateException
+     *             if the current event is not the start of a sequence, choice or list
+     */
+    public void skipElement() throws IOException {
+        if (!isStart()) {
+            throw new IllegalStateException("current event is not the start of an element");
+        }
+        Frame frame = frames.get(numFrames - 1);
+        try {
+            switch (frame.endEvent) {
+                case END_SEQUENCE:
+                    skipSequence(frame);
+                    break;
+                case END_CHOICE:
+                    engine.discard(() -> engine.parseBranch((Choice) frame.type, reader));
+                    break;
+                default:
+                    skipList(frame);
+            }
+        }
+        catch (AssertionError exc) {
+            throw new UnmarshalException(exc.getMessage(), exc);
+        }
+        frame.skipped = true;
+    }
+
+    private void skipSequence(Frame frame) throws IOException {
+        Long bitLength = model.getFixedBitLength((frame.element == null) ? frame.type
+            : frame.element);
+        if (frame.end >= 0) {
+            reader.setBitPosition(frame.end);
+        }
+        else if (bitLength != null) {
+            reader.setBitPosition(frame.startPos + bitLength);
+        }
+        else {
+            List<? extends Element> elements = frame.elements;
+            engine.discard(() -> {
+                for (Element element : elements) {
+                    engine.parseSequenceField((SequenceElement) element, reader);
+                }
+            });
+        }
+    }
+
+    private void skipList(Frame frame) throws IOException {
+        SequenceElement element = (SequenceElement) frame.element;
+        Long itemLength = model.getFixedBitLength(element);
+        if (element.getOccursCountKind() == OccursCountKind.EXPRESSION && itemLength != null) {
+            reader.skipBits(frame.numItems * itemLength);
+        }
+        else {
+            engine.discard(() -> engine.parseListItems(element, frame.type, reader));
+        }
+    }
+
+    private Event advance() throws IOException {
+        if (event == null) {
+            return startValue(rootType.getName(), rootType, rootType, null);
+        }
+        if (numFrames == 0) {
+            return Event.END_DOCUMENT;
+        }
+        Frame frame = frames.get(numFrames - 1);
+        switch (frame.endEvent) {
+            case END_SEQUENCE:
+                return nextSequenceEvent(frame);
+            case END_CHOICE:
+                return nextChoiceEvent(frame);
+            default:
+                return nextListEvent(frame);
+        }
+    }
+
+    private Event nextSequenceEvent(Frame frame) throws IOException {
+        while (!frame.skipped && frame.index < frame.elements.size()) {
+            SequenceElement element = (SequenceElement) frame.elements.get((int) frame.index++);
+            DadlType elementType = model.getType(element.getType());
+            if (model.isList(element)) {
+                return startList(element, elementType);
+            }
+            if (model.isOptional(element)) {
+                Long end = evaluator.getVariable("$end", Long.class);
+                Event next = (end != null && reader.getBitPosition() >= end) ? null
+                    : tryStartValue(element, elementType);
+                if (next == null) {
+                    continue;
+                }
+                return next;
+            }
+            return startValue(element.getName(), element, elementType, element);
+        }
+        return endComplexValue(frame);
+    }
+
+    private Event nextChoiceEvent(Frame frame) throws IOException {
+        if (frame.skipped || frame.index > 0) {
+            return endComplexValue(frame);
+        }
+        frame.index++;
+        for (ChoiceElement element : ((Choice) frame.type).getElement()) {
+            Event next = tryStartValue(element, model.getType(element.getType()));
+            if (next != null) {
+                return next;
+            }
+        }
+        throw new UnmarshalException("no branch matched on " + frame.type.getName());
+    }
+
+    private Event nextListEvent(Frame frame) throws IOException {
+        SequenceElement element = (SequenceElement) frame.element;
+        Event next = frame.skipped ? null : startNextItem(frame, element);
+        if (next != null) {
+            return next;
+        }
+        numFrames--;
+        setCurrent(element.getName(), frame.type, element);
+        return Event.END_LIST;
+    }
+
+    /**
+     * Starts the next item of the given list, if there is one.
+     *
+     * @return start event of the item, or null at the end of the list
+     */
+    private Event startNextItem(Frame frame, SequenceElement element) throws IOException {
+        Event next;
+        switch (element.getOccursCountKind()) {
+            case EXPRESSION:
+                next = (frame.index < frame.numItems)
+                    ? startValue(element.getName(), element, frame.type, element) : null;
+                break;
+            case PARSED:
+                next = tryStartValue(element, frame.type);
+                break;
+            default:
+                next = (reader.getBitPosition() < frame.end)
+                    ? tryStartValue(element, frame.type) : null;
+        }
+        if (next != null) {
+            frame.index++;
+        }
+        return next;
+    }
+
+    /**
+     * Starts the given optional element, choice branch or list item, if it matches at the
+     * current position. A simple value is read only once, and the reader is reset if it does not
+     * match. A tagged sequence is selected by its tag. Other complex values are parsed without
+     * events to check if they match before they are started.
+     *
+     * @return start event, or null if the element does not match
+     */
+    private Event tryStartValue(Element element, DadlType elementType) throws IOException {
+        String elementName = element.getName();
+        if (elementType instanceof SimpleType) {
+            long startPos = reader.getBitPosition();
+            try {
+                return startValue(elementName, element, elementType, element);
+            }
+            catch (AssertionError | Exception exc) {
+                reader.setBitPosition(startPos);
+                return null;
+            }
+        }
+        boolean matches = EventParser.hasTag(elementType)
+            ? engine.matchesTag((TaggedSequence) elementType, reader)
+            : engine.matches(element, elementType, reader);
+        return matches ? startValue(elementName, element, elementType, element) : null;
+    }
+
+    private Event startList(SequenceElement element, DadlType elementType) {
+        Frame frame = pushFrame(Event.END_LIST, element.getName(), elementType, element);
+        switch (element.getOccursCountKind()) {
+            case EXPRESSION:
+                frame.numItems = evaluator.evaluate(element.getOccursCount(), Long.class);
+                break;
+            case PARSED:
+                break;
+            case END_OF_PARENT:
+                frame.end = evaluator.getEndOfParent();
+                break;
+            default:
+                throw new UnsupportedOperationException(element.getOccursCountKind().toString());
+        }
+        setCurrent(element.getName(), elementType, element);
+        return Event.START_LIST;
+    }
+
+    private Event startValue(String valueName, DadlType valueRepresentation,
+        DadlType valueType, Element element) throws IOException {
+        setCurrent(valueName, valueType, valueRepresentation);
+        if (valueType instanceof SimpleType) {
+            engine.parseSimpleValue(valueName, (SimpleType) valueType, valueRepresentation,
+                reader);
+            return Event.VALUE;
+        }
+        long startPos = reader.getBitPosition();
+        if (valueType.getAdapter() != null) {
+            value = context.readValueViaAdapter(valueType, reader);
+            engine.skipPadding(valueType, startPos, reader);
+            return Event.VALUE;
+        }
+        engine.enterComplexType();
+        evaluator.pushStack();
+        if (valueType instanceof Sequence) {
+            Frame frame = pushFrame(Event.END_SEQUENCE, valueName, valueType, element);
+            frame.elements = ((Sequence) valueType).getElement();
+            return Event.START_SEQUENCE;
+        }
+        if (valueType instanceof TaggedSequence) {
+            Frame frame = pushFrame(Event.END_SEQUENCE, valueName, valueType, element);
+            frame.elements = ((TaggedSequence) valueType).getElement();
+            startTaggedSequence(frame, (TaggedSequence) valueType);
+            return Event.START_SEQUENCE;
+        }
+        if (valueType instanceof Choice) {
+            pushFrame(Event.END_CHOICE, valueName, valueType, element);
+            return Event.START_CHOICE;
+        }
+        throw new UnmarshalException("cannot parse type " + valueType.getName());
+    }
+
+    private void startTaggedSequence(Frame frame, TaggedSequence sequence) throws IOException {
+        Checksum checksum = sequence.getChecksum();
+        frame.checksumDepth = engine.getChecksumDepth();
+        engine.startChecksum(checksum, ChecksumRegion.TAG, reader);
+        if (sequence.getTag() != null) {
+            engine.parseTag(sequence.getTag(), reader);
+        }
+        engine.startChecksum(checksum, ChecksumRegion.LENGTH_FIELD, reader);
+        if (sequence.getLengthField() != null) {
+            long length = engine.parseLengthField(sequence.getLengthField(), reader);
+            evaluator.setVariable("$length", length);
+            frame.end = reader.getBitPosition() + length * BYTE_SIZE;
+            evaluator.setVariable("$end", frame.end);
+        }
+        engine.startChecksum(checksum, ChecksumRegion.PAYLOAD, reader);
+    }
+
+    private Event endComplexValue(Frame frame) throws IOException {
+        if (frame.type instanceof TaggedSequence) {
+            endTaggedSequence(frame, (TaggedSequence) frame.type);
+        }
+        evaluator.popStack();
+        engine.exitComplexType();
+        engine.skipPadding(frame.type, frame.startPos, reader);
+        if (!frame.skipped) {
+            evaluator.checkDiscriminator(frame.element);
+        }
+        numFrames--;
+        setCurrent(frame.name, frame.type, (frame.element == null) ? frame.type
+            : frame.element);
+        return frame.endEvent;
+    }
+
+    private void endTaggedSequence(Frame frame, TaggedSequence sequence) throws IOException {
+        long numPaddingBits = frame.end - reader.getBitPosition();
+        if (frame.end >= 0 && numPaddingBits > 0 && numPaddingBits < BYTE_SIZE) {
+            reader.setBitPosition(frame.end);
+        }
+        Checksum checksum = sequence.getChecksum();
+        try {
+            if (checksum != null) {
+                engine.verifyChecksum(sequence, checksum, reader);
+            }
+        }
+        finally {
+            engine.unwindChecksums(frame.checksumDepth, reader);
+        }
+    }
+
+    private Frame pushFrame(Event endEvent, String frameName, DadlType frameType,
+        Element element) {
+        if (numFrames == frames.size()) {
+            frames.add(new Frame());
+        }
+        Frame frame = frames.get(numFrames++);
+        frame.endEvent = endEvent;
+        frame.name = frameName;
+        frame.type = frameType;
+        frame.element = element;
+        frame.elements = null;
+        frame.index = 0;
+        frame.startPos = reader.getBitPosition();
+        frame.end = -1;
+        frame.numItems = 0;
+        frame.skipped = false;
+        return frame;
+    }
+
+    private void setCurrent(String currentName, DadlType currentType,
+        DadlType currentRepresentation) {
+        this.name = currentName;
+        this.type = currentType;
+        this.representation = currentRepresentation;
+        this.value = null;
+    }
+
+    private boolean isStart() {
+        return event == Event.START_SEQUENCE || event == Event.START_CHOICE
+            || event == Event.START_LIST;
+    }
+
+    private boolean hasContentType(ContentType contentType) {
+        return type instanceof SimpleType && ((SimpleType) type).getContentType() == contentType;
+    }
+
+    private void checkValue(boolean condition) {
+        if (event != Event.VALUE || !condition) {
+            throw new IllegalStateException("current event is not a value of the requested kind");
+        }
+    }
+
+    private boolean isInteger() {
+        return value == null && hasContentType(ContentType.INTEGER);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+/**
+ * Receives the content of a bit stream parsed by an {@link EventParser}, in document order,
+ * without info model objects being created.
+ * <p>
+ * Each event carries the name of the element. For the root type, this is the type name. Each
+ * item of a list is reported with the name of the list element. Tags, length fields, checksums
+ * and padding are not reported.
+ * <p>
+ * All methods have an empty default implementation, so a handler only needs to override the
+ * events it is interested in. Byte arrays passed to a handler are only valid until the method
+ * returns, since the parser reuses them for subsequent events.
+ *
+ * @author hwellmann
+ *
+ */
+public interface DadlEventHandler {
+
+    /**
+     * Starts a sequence or a tagged sequence.
+     *
+     * @param name
+     *            element name
+     * @param typeName
+     *            name of the sequence type
+     */
+    default void startSequence(String name, String typeName) {
+        // empty
+    }
+
+    /**
+     * Ends a sequence or a tagged sequence.
+     *
+     * @param name
+     *            element name
+     */
+    default void endSequence(String name) {
+        // empty
+    }
+
+    /**
+     * Starts a choice. The only event before the matching {@link #endChoice(String)} is the
+     * matched branch.
+     *
+     * @param name
+     *            element name
+     * @param typeName
+     *            name of the choice type
+     */
+    default void startChoice(String name, String typeName) {
+        // empty
+    }
+
+    /**
+     * Ends a choice.
+     *
+     * @param name
+     *            element name
+     */
+    default void endChoice(String name) {
+        // empty
+    }
+
+    /**
+     * Starts a list. The items follow as individual events with the same name.
+     *
+     * @param name
+     *            element name
+     */
+    default void startList(String name) {
+        // empty
+    }
+
+    /**
+     * Ends a list.
+     *
+     * @param name
+     *            element name
+     */
+    default void endList(String name) {
+        // empty
+    }
+
+    /**
+     * Reports an integer value, including the integer content of an enumeration.
+     *
+     * @param name
+     *            element name
+     * @param value
+     *            integer value
+     */
+    default void integer(String name, long value) {
+        // empty
+    }
+
+    /**
+     * Reports a text value, including the text content of an enumeration. The bytes are not
+     * decoded and are in the encoding of the element.
+     *
+     * @param name
+     *            element name
+     * @param bytes
+     *            buffer containing the encoded text
+     * @param offset
+     *            offset of the first byte
+     * @param length
+     *            number of bytes
+     */
+    default void text(String name, byte[] bytes, int offset, int length) {
+        // empty
+    }
+
+    /**
+     * Reports an opaque value. Trailing bits not filling a byte are stored left aligned in an
+     * extra byte.
+     *
+     * @param name
+     *            element name
+     * @param bytes
+     *            buffer containing the value
+     * @param offset
+     *            offset of the first byte
+     * @param length
+     *            number of bytes
+     */
+    default void opaque(String name, byte[] bytes, int offset, int length) {
+        // empty
+    }
+
+    /**
+     * Reports a value read by a user-defined adapter which is not a {@link LongDadlAdapter}.
+     *
+     * @param name
+     *            element name
+     * @param value
+     *            value created by the adapter
+     */
+    default void value(String name, Object value) {
+        // empty
+    }
+}
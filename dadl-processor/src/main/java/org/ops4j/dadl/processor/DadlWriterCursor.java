@@ -0,0 +1,647 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ops4j.dadl.exc.MarshalException;
+import org.ops4j.dadl.io.BitStreamWriter;
+import org.ops4j.dadl.io.ByteArrayBitStreamWriter;
+import org.ops4j.dadl.metamodel.gen.Checksum;
+import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.ContentType;
+import org.ops4j.dadl.metamodel.gen.DadlType;
+import org.ops4j.dadl.metamodel.gen.Element;
+import org.ops4j.dadl.metamodel.gen.OccursCountKind;
+import org.ops4j.dadl.metamodel.gen.Sequence;
+import org.ops4j.dadl.metamodel.gen.SequenceElement;
+import org.ops4j.dadl.metamodel.gen.SimpleType;
+import org.ops4j.dadl.metamodel.gen.TaggedSequence;
+import org.ops4j.dadl.model.ValidatedModel;
+
+/**
+ * A push-style writer encoding an instance of a given type of a DADL model from a series of
+ * calls, without info model objects.
+ * <p>
+ * The caller starts and ends each sequence, choice and list, and writes each simple value, in
+ * the order of the model. Each call is validated against the model: the name must match the next
+ * element, omitting optional elements only, and the kind of call must match the element type. For
+ * the root type, the name is the type name. Each item of a list is written with the name of the
+ * list element.
+ * <p>
+ * Tags, length fields, checksums and padding are written automatically. The payload of a tagged
+ * sequence with a length field is buffered until the sequence ends. Elements with an
+ * {@code outputValueCalc} expression are not calculated and must be written by the caller. The
+ * number of items of a list with an occurs count expression is checked when the list ends.
+ * Discriminators are not evaluated.
+ * <p>
+ * After an exception, the state of a writer cursor is undefined. A writer cursor is not
+ * thread-safe.
+ *
+ * @author hwellmann
+ *
+ */
+public class DadlWriterCursor {
+
+    private enum Kind {
+        SEQUENCE,
+        CHOICE,
+        LIST
+    }
+
+    /**
+     * Writing state of a sequence, choice or list. Frames are reused.
+     */
+    private static final class Frame {
+
+        private Kind kind;
+        private String name;
+        private DadlType type;
+        private SequenceElement listElement;
+        private List<? extends Element> elements;
+
+        /** Number of elements or list items started. */
+        private int index;
+
+        private long startPos;
+
+        /** Number of checksum regions being written when a tagged sequence was started. */
+        private int checksumDepth;
+
+        /** Writer of the enclosing structure, while the payload is buffered. */
+        private BitStreamWriter parentWriter;
+
+        /** Buffer for the payload of a tagged sequence at this nesting level, reused. */
+        private ByteArrayBitStreamWriter payloadWriter;
+    }
+
+    private DadlContext context;
+    private ValidatedModel model;
+    private Marshaller engine;
+    private Evaluator evaluator;
+    private SimpleTypeWriter simpleTypeWriter;
+    private DadlType rootType;
+
+    /** Writer of the current structure, which is a buffer within a tagged sequence. */
+    private BitStreamWriter writer;
+
+    /**
+     * Identifiers occurring in any expression of the model. Only values of elements with these
+     * names are retained.
+     */
+    private Set<String> referencedNames;
+
+    /** Element values of the enclosing complex types, reused for each nesting level. */
+    private List<Map<String, Object>> scopes = new ArrayList<>();
+
+    private int depth;
+
+    private List<Frame> frames = new ArrayList<>();
+    private int numFrames;
+
+    private boolean started;
+
+    DadlWriterCursor(DadlContext context, ValidatedModel model, BitStreamWriter writer,
+        String typeName) {
+        this(context, model, new Marshaller(context, model));
+        DadlType type = model.getType(typeName);
+        if (type == null) {
+            throw new MarshalException("unknown type " + typeName);
+        }
+        reset(writer, type);
+    }
+
+    /**
+     * Creates a writer cursor using the helpers of the given marshaller. The cursor must be
+     * {@link #reset(BitStreamWriter, DadlType) reset} before writing.
+     */
+    DadlWriterCursor(DadlContext context, ValidatedModel model, Marshaller engine) {
+        this.context = context;
+        this.model = model;
+        this.engine = engine;
+        this.evaluator = engine.getEvaluator();
+        this.simpleTypeWriter = engine.getSimpleTypeWriter();
+        this.referencedNames = ModelExpressions.findReferencedNames(model);
+    }
+
+    /**
+     * Resets this writer cursor to write an instance of the given type to the given writer,
+     * discarding any incomplete instance.
+     */
+    void reset(BitStreamWriter bitStreamWriter, DadlType type) {
+        if (type instanceof SimpleType) {
+            throw new MarshalException("root type must be complex: " + type.getName());
+        }
+        for (; depth > 0; depth--) {
+            evaluator.popStack();
+        }
+        if (writer != null) {
+            try {
+                engine.unwindChecksums(0, writer);
+            }
+            catch (IOException exc) {
+                throw new MarshalException(exc);
+            }
+        }
+        this.writer = bitStreamWriter;
+        this.rootType = type;
+        this.numFrames = 0;
+        this.started = false;
+    }
+
+    /**
+     * Checks if the instance of the root type has been written completely.
+     *
+     * @return true if the root element has ended
+     */
+    public boolean isComplete() {
+        return started && numFrames == 0;
+    }
+
+    /**
+     * Restarts the writer cursor to write another instance of the same type, at the current
+     * position of the underlying writer.
+     *
+     * @throws IllegalStateException
+     *             if the current instance is not complete
+     */
+    public void restart() {
+        if (!isComplete()) {
+            throw new IllegalStateException("instance has not been written completely");
+        }
+        started = false;
+    }
+
+    /**
+     * Starts a sequence or a tagged sequence. The tag of a tagged sequence is written
+     * immediately.
+     *
+     * @param name
+     *            element name, or type name for the root type
+     * @throws IOException
+     *             on write error
+     * @throws MarshalException
+     *             if the next element of the model does not have this name or is not a sequence
+     */
+    public void startSequence(String name) throws IOException {
+        Element element = nextElement(name);
+        DadlType type = getType(element);
+        if (!(type instanceof Sequence || type instanceof TaggedSequence)) {
+            throw new MarshalException(name + " is not a sequence");
+        }
+        Frame frame = startComplexValue(Kind.SEQUENCE, element, name, type);
+        if (type instanceof Sequence) {
+            frame.elements = ((Sequence) type).getElement();
+        }
+        else {
+            TaggedSequence sequence = (TaggedSequence) type;
+            frame.elements = sequence.getElement();
+            Checksum checksum = sequence.getChecksum();
+            frame.checksumDepth = engine.getChecksumDepth();
+            engine.startChecksum(checksum, ChecksumRegion.TAG, writer);
+            if (sequence.getTag() != null) {
+                engine.marshalTag(sequence.getTag(), writer);
+            }
+            if (sequence.getLengthField() == null) {
+                engine.startChecksum(checksum, ChecksumRegion.LENGTH_FIELD, writer);
+                engine.startChecksum(checksum, ChecksumRegion.PAYLOAD, writer);
+            }
+            else {
+                frame.parentWriter = writer;
+                writer = obtainPayloadWriter(frame);
+            }
+        }
+    }
+
+    /**
+     * Ends the current sequence. The length field, the payload, the checksum and padding of a
+     * tagged sequence are written.
+     *
+     * @throws IOException
+     *             on write error
+     * @throws MarshalException
+     *             if the current structure is not a sequence, or if a mandatory element is
+     *             missing
+     */
+    public void endSequence() throws IOException {
+        Frame frame = currentFrame(Kind.SEQUENCE);
+        while (frame.index < frame.elements.size()) {
+            SequenceElement element = (SequenceElement) frame.elements.get(frame.index++);
+            if (!isOmissible(element)) {
+                throw new MarshalException("missing element " + element.getName() + " in "
+                    + frame.type.getName());
+            }
+        }
+        if (frame.type instanceof TaggedSequence) {
+            endTaggedSequence(frame, (TaggedSequence) frame.type);
+        }
+        endComplexValue(frame);
+    }
+
+    private void endTaggedSequence(Frame frame, TaggedSequence sequence) throws IOException {
+        Checksum checksum = sequence.getChecksum();
+        if (frame.parentWriter != null) {
+            // a payload not ending on a byte boundary is padded with zero bits
+            long numPayloadBits = writer.getBitPosition();
+            long numPaddingBits = (BYTE_SIZE - numPayloadBits % BYTE_SIZE) % BYTE_SIZE;
+            writer = frame.parentWriter;
+            frame.parentWriter = null;
+            engine.startChecksum(checksum, ChecksumRegion.LENGTH_FIELD, writer);
+            engine.marshalLengthField(sequence.getLengthField(), numPayloadBits + numPaddingBits,
+                writer);
+            engine.startChecksum(checksum, ChecksumRegion.PAYLOAD, writer);
+            frame.payloadWriter.writeTo(writer, numPayloadBits);
+            writer.fillBits(0, numPaddingBits);
+        }
+        try {
+            if (checksum != null) {
+                engine.marshalChecksum(checksum, writer);
+            }
+        }
+        finally {
+            engine.unwindChecksums(frame.checksumDepth, writer);
+        }
+    }
+
+    /**
+     * Starts a choice. Exactly one branch must be written before the choice ends.
+     *
+     * @param name
+     *            element name, or type name for the root type
+     * @throws IOException
+     *             on write error
+     * @throws MarshalException
+     *             if the next element of the model does not have this name or is not a choice
+     */
+    public void startChoice(String name) throws IOException {
+        Element element = nextElement(name);
+        DadlType type = getType(element);
+        if (!(type instanceof Choice)) {
+            throw new MarshalException(name + " is not a choice");
+        }
+        Frame frame = startComplexValue(Kind.CHOICE, element, name, type);
+        frame.elements = ((Choice) type).getElement();
+    }
+
+    /**
+     * Ends the current choice.
+     *
+     * @throws IOException
+     *             on write error
+     * @throws MarshalException
+     *             if the current structure is not a choice, or if no branch has been written
+     */
+    public void endChoice() throws IOException {
+        Frame frame = currentFrame(Kind.CHOICE);
+        if (frame.index == 0) {
+            throw new MarshalException("no branch written in choice " + frame.type.getName());
+        }
+        endComplexValue(frame);
+    }
+
+    /**
+     * Starts a list. The items are written with the name of the list.
+     *
+     * @param name
+     *            element name
+     * @throws MarshalException
+     *             if the next element of the model does not have this name or is not a list
+     */
+    public void startList(String name) {
+        Element element = nextElement(name);
+        if (!(element instanceof SequenceElement && model.isList((SequenceElement) element))) {
+            throw new MarshalException(name + " is not a list");
+        }
+        Frame frame = pushFrame(Kind.LIST, name, getType(element));
+        frame.listElement = (SequenceElement) element;
+    }
+
+    /**
+     * Ends the current list.
+     *
+     * @throws MarshalException
+     *             if the current structure is not a list, or if the number of items does not
+     *             match the occurs count
+     */
+    public void endList() {
+        Frame frame = currentFrame(Kind.LIST);
+        SequenceElement element = frame.listElement;
+        if (element.getOccursCountKind() == OccursCountKind.EXPRESSION) {
+            long numItems = evaluator.evaluate(element.getOccursCount(), Long.class);
+            if (numItems != frame.index) {
+                throw new MarshalException(String.format(
+                    "list %s has %d items, occurs count is %d", frame.name, frame.index,
+                    numItems));
+            }
+        }
+        numFrames--;
+    }
+
+    /**
+     * Writes an integer value, including the integer content of an enumeration.
+     *
+     * @param name
+     *            element name
+     * @param value
+     *            integer value
+     * @throws IOException
+     *             on write error
+     * @throws MarshalException
+     *             if the next element of the model does not have this name or is not an integer
+     */
+    public void writeInt(String name, int value) throws IOException {
+        writeLong(name, value);
+    }
+
+    /**
+     * Writes an integer value, including the integer content of an enumeration.
+     *
+     * @param name
+     *            element name
+     * @param value
+     *            integer value
+     * @throws IOException
+     *             on write error
+     * @throws MarshalException
+     *             if the next element of the model does not have this name or is not an integer
+     */
+    public void writeLong(String name, long value) throws IOException {
+        Element element = nextElement(name);
+        SimpleType type = getSimpleType(element, ContentType.INTEGER);
+        LongDadlAdapter adapter = context.getLongAdapter(element);
+        if (adapter != null) {
+            context.writeLongViaAdapter(adapter, value, writer);
+        }
+        else if (type.getAdapter() != null) {
+            context.writeValueViaAdapter(type, value, writer);
+        }
+        else if (context.isPlainBinaryInteger(type, element)) {
+            simpleTypeWriter.writeStandardBinary(element, value, writer);
+        }
+        else {
+            simpleTypeWriter.marshalIntegerField(value, element, type, writer);
+        }
+        retain(name, value);
+    }
+
+    /**
+     * Writes a text value, including the text content of an enumeration.
+     *
+     * @param name
+     *            element name
+     * @param text
+     *            text value
+     * @throws IOException
+     *             on write error
+     * @throws MarshalException
+     *             if the next element of the model does not have this name or is not a text, or
+     *             if the length of the text does not match the length of the element
+     */
+    public void writeText(String name, String text) throws IOException {
+        Element element = nextElement(name);
+        SimpleType type = getSimpleType(element, ContentType.TEXT);
+        if (!context.writeValueViaAdapter(type, text, writer)) {
+            simpleTypeWriter.marshalTextField(text, element, writer);
+        }
+        retain(name, text);
+    }
+
+    /**
+     * Writes an opaque value. A length in bits which is not a multiple of 8 is taken from the
+     * leading bits of the last byte.
+     *
+     * @param name
+     *            element name
+     * @param bytes
+     *            opaque value
+     * @throws IOException
+     *             on write error
+     * @throws MarshalException
+     *             if the next element of the model does not have this name or is not opaque, or
+     *             if the length of the value does not match the length of the element
+     */
+    public void writeBytes(String name, byte[] bytes) throws IOException {
+        Element element = nextElement(name);
+        SimpleType type = getSimpleType(element, ContentType.OPAQUE);
+        if (!context.writeValueViaAdapter(type, bytes, writer)) {
+            simpleTypeWriter.marshalOpaqueField(bytes, element, writer);
+        }
+        retain(name, bytes);
+    }
+
+    /**
+     * Writes a value of a type with a user-defined adapter, simple or complex.
+     *
+     * @param name
+     *            element name
+     * @param value
+     *            value accepted by the adapter
+     * @throws IOException
+     *             on write error
+     * @throws MarshalException
+     *             if the next element of the model does not have this name or has no adapter
+     */
+    public void writeValue(String name, Object value) throws IOException {
+        Element element = nextElement(name);
+        DadlType type = getType(element);
+        if (element != null) {
+            checkNotList(element);
+        }
+        long startPos = writer.getBitPosition();
+        if (!context.writeValueViaAdapter(type, value, writer)) {
+            throw new MarshalException(name + " does not have an adapter");
+        }
+        engine.fillPadding(type, startPos, writer);
+        retain(name, value);
+    }
+
+    /**
+     * Finds the next element with the given name in the current structure.
+     *
+     * @return element, or null for the root type
+     */
+    private Element nextElement(String name) {
+        if (numFrames == 0) {
+            if (started) {
+                throw new MarshalException("instance of " + rootType.getName()
+                    + " is already complete");
+            }
+            if (!rootType.getName().equals(name)) {
+                throw new MarshalException("expected root type " + rootType.getName()
+                    + ", found " + name);
+            }
+            started = true;
+            return null;
+        }
+        Frame frame = frames.get(numFrames - 1);
+        switch (frame.kind) {
+            case LIST:
+                if (!frame.name.equals(name)) {
+                    throw new MarshalException("expected item of list " + frame.name + ", found "
+                        + name);
+                }
+                frame.index++;
+                return frame.listElement;
+            case CHOICE:
+                if (frame.index > 0) {
+                    throw new MarshalException("branch of choice " + frame.type.getName()
+                        + " already written");
+                }
+                frame.index++;
+                for (Element element : frame.elements) {
+                    if (element.getName().equals(name)) {
+                        return element;
+                    }
+                }
+                throw new MarshalException("no branch " + name + " in choice "
+                    + frame.type.getName());
+            default:
+                return nextSequenceElement(frame, name);
+        }
+    }
+
+    private Element nextSequenceElement(Frame frame, String name) {
+        while (frame.index < frame.elements.size()) {
+            SequenceElement element = (SequenceElement) frame.elements.get(frame.index++);
+            if (element.getName().equals(name)) {
+                return element;
+            }
+            if (!isOmissible(element)) {
+                throw new MarshalException("expected element " + element.getName() + " in "
+                    + frame.type.getName() + ", found " + name);
+            }
+        }
+        throw new MarshalException("unexpected element " + name + " in "
+            + frame.type.getName());
+    }
+
+    private boolean isOmissible(SequenceElement element) {
+        return model.isOptional(element)
+            || (model.isList(element) && element.getMinOccurs() == 0);
+    }
+
+    private DadlType getType(Element element) {
+        return (element == null) ? rootType : model.getType(element.getType());
+    }
+
+    /**
+     * Gets the simple type of the given element, which must not be a list unless the current
+     * structure is a list.
+     */
+    private SimpleType getSimpleType(Element element, ContentType contentType) {
+        DadlType type = getType(element);
+        if (!(type instanceof SimpleType)
+            || ((SimpleType) type).getContentType() != contentType) {
+            throw new MarshalException(type.getName() + " does not have content type "
+                + contentType.value());
+        }
+        checkNotList(element);
+        return (SimpleType) type;
+    }
+
+    private void checkNotList(Element element) {
+        Frame frame = frames.get(numFrames - 1);
+        if (frame.kind != Kind.LIST && element instanceof SequenceElement
+            && model.isList((SequenceElement) element)) {
+            throw new MarshalException(element.getName() + " is a list");
+        }
+    }
+
+    private Frame startComplexValue(Kind kind, Element element, String name, DadlType type) {
+        if (element != null) {
+            checkNotList(element);
+        }
+        Frame frame = pushFrame(kind, name, type);
+        evaluator.setSelf(obtainScope());
+        depth++;
+        evaluator.pushStack();
+        return frame;
+    }
+
+    private void endComplexValue(Frame frame) throws IOException {
+        evaluator.popStack();
+        depth--;
+        engine.fillPadding(frame.type, frame.startPos, writer);
+        numFrames--;
+    }
+
+    private Frame currentFrame(Kind kind) {
+        if (numFrames == 0 || frames.get(numFrames - 1).kind != kind) {
+            throw new MarshalException("current structure is not a " + kind.name().toLowerCase());
+        }
+        return frames.get(numFrames - 1);
+    }
+
+    /**
+     * Gets an empty payload buffer for the tagged sequence of the given frame. The buffer is
+     * created once per nesting level and reset for each tagged sequence.
+     */
+    private BitStreamWriter obtainPayloadWriter(Frame frame) throws IOException {
+        if (frame.payloadWriter == null) {
+            frame.payloadWriter = new ByteArrayBitStreamWriter();
+        }
+        else {
+            frame.payloadWriter.reset();
+        }
+        return frame.payloadWriter;
+    }
+
+    private Frame pushFrame(Kind kind, String name, DadlType type) {
+        if (numFrames == frames.size()) {
+            frames.add(new Frame());
+        }
+        Frame frame = frames.get(numFrames++);
+        frame.kind = kind;
+        frame.name = name;
+        frame.type = type;
+        frame.listElement = null;
+        frame.elements = null;
+        frame.index = 0;
+        frame.startPos = writer.getBitPosition();
+        frame.parentWriter = null;
+        return frame;
+    }
+
+    /**
+     * Gets an empty map for the element values of the complex type at the current nesting level.
+     */
+    private Map<String, Object> obtainScope() {
+        if (depth == scopes.size()) {
+            scopes.add(new HashMap<>());
+        }
+        Map<String, Object> scope = scopes.get(depth);
+        scope.clear();
+        return scope;
+    }
+
+    /**
+     * Retains the value of the given element, if it is referenced by an expression.
+     */
+    private void retain(String name, Object value) {
+        if (depth > 0 && referencedNames.contains(name)) {
+            scopes.get(depth - 1).put(name, value);
+        }
+    }
+}
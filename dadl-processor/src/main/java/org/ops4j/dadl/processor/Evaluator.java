@@ -19,9 +19,6 @@ package org.ops4j.dadl.processor;
 
 import static org.ops4j.dadl.io.Constants.HEX_BASE;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,9 +26,8 @@ import javax.el.ELProcessor;
 import javax.el.PropertyNotFoundException;
 
 import org.ops4j.dadl.exc.DadlException;
-import org.ops4j.dadl.exc.Exceptions;
-import org.ops4j.dadl.exc.UnmarshalException;
 import org.ops4j.dadl.io.Constants;
+import org.ops4j.dadl.io.EnumerationMapping;
 import org.ops4j.dadl.metamodel.gen.DadlType;
 import org.ops4j.dadl.metamodel.gen.Discriminator;
 import org.ops4j.dadl.metamodel.gen.LengthKind;
@@ -118,18 +114,9 @@ public final class Evaluator {
      * @return Java enumeration value
      */
     public Object setSelfEnumeration(Object info, Class<?> klass) {
-        try {
-            Method method = getMethod("fromValue", klass);
-            processor.defineFunction("", "fromValue", method);
-            processor.setValue(SELF, info);
-            Object enumValue = processor.eval("fromValue(self)");
-            processor.setValue(SELF, enumValue);
-            infoStack.set(0, enumValue);
-            return enumValue;
-        }
-        catch (NoSuchMethodException exc) {
-            throw new UnmarshalException(exc);
-        }
+        Object enumValue = EnumerationMapping.of(klass).fromValue(info);
+        setSelf(enumValue);
+        return enumValue;
     }
 
     /**
@@ -140,17 +127,7 @@ public final class Evaluator {
      * @return content value
      */
     public Object getEnumerationValue(Object info) {
-        processor.setValue("$enum", info);
-        return processor.eval("$enum.value");
-    }
-
-    private Method getMethod(String name, Class<?> klass) {
-        for (Method method : klass.getDeclaredMethods()) {
-            if (method.getName().equals(name)) {
-                return method;
-            }
-        }
-        throw new IllegalStateException();
+        return EnumerationMapping.of(((Enum<?>) info).getDeclaringClass()).toValue(info);
     }
 
     /**
@@ -242,6 +219,15 @@ public final class Evaluator {
         return (Integer) processor.getValue(type.getMinLength(), Integer.class);
     }
 
+    /**
+     * Gets the parent of the current object.
+     *
+     * @return parent object
+     */
+    public Object getParent() {
+        return infoStack.get(1);
+    }
+
     /**
      * Sets the property with the given name of the current object's parent to the given value.
      *
@@ -252,38 +238,21 @@ public final class Evaluator {
      */
     public void setParentProperty(String propertyName, Object value) {
         Object parent = infoStack.get(1);
-        try {
-            Field field = getField(parent, propertyName);
-            field.set(parent, value);
-        }
-        catch (IllegalArgumentException | IllegalAccessException | NoSuchFieldException exc) {
-            throw Exceptions.unchecked(exc);
-        }
-    }
-
-    private Field getField(Object parent, String propertyName) throws NoSuchFieldException {
-        Class<?> klass = parent.getClass();
-        Field field = klass.getDeclaredField(propertyName);
-        field.setAccessible(true);
-        return field;
-    }
-
-    private String getAccessorName(String prefix, String fieldName) {
-        StringBuilder buffer = new StringBuilder(prefix);
-        buffer.append(fieldName.substring(0, 1).toUpperCase());
-        buffer.append(fieldName.substring(1));
-        return buffer.toString();
+        PropertyAccessor.of(parent.getClass(), propertyName).set(parent, value);
     }
 
-    private Method getGetter(Object parent, String propertyName) {
-        Class<?> klass = parent.getClass();
-        String methodName = getAccessorName("get", propertyName);
-        try {
-            return klass.getDeclaredMethod(methodName);
-        }
-        catch (NoSuchMethodException | SecurityException exc) {
-            throw Exceptions.unchecked(exc);
-        }
+    /**
+     * Sets the integer property with the given name of the current object's parent to the given
+     * value, without boxing if the property is primitive.
+     *
+     * @param propertyName
+     *            property name
+     * @param value
+     *            value to be set
+     */
+    public void setParentLong(String propertyName, long value) {
+        Object parent = infoStack.get(1);
+        PropertyAccessor.of(parent.getClass(), propertyName).setLong(parent, value);
     }
 
     /**
@@ -295,14 +264,20 @@ public final class Evaluator {
      */
     public Object getParentProperty(String propertyName) {
         Object parent = infoStack.get(1);
-        try {
-            Method getter = getGetter(parent, propertyName);
-            return getter.invoke(parent);
-        }
-        catch (SecurityException | IllegalArgumentException | IllegalAccessException
-            | InvocationTargetException exc) {
-            throw Exceptions.unchecked(exc);
-        }
+        return PropertyAccessor.of(parent.getClass(), propertyName).get(parent);
+    }
+
+    /**
+     * Gets the integer property with the given name of the current object's parent, without boxing
+     * if the property is primitive.
+     *
+     * @param propertyName
+     *            property name
+     * @return property value
+     */
+    public long getParentLong(String propertyName) {
+        Object parent = infoStack.get(1);
+        return PropertyAccessor.of(parent.getClass(), propertyName).getLong(parent);
     }
 
     /**
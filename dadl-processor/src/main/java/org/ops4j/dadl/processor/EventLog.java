@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.util.Arrays;
+
+/**
+ * Records the events of an {@link EventParser} while it is not yet known if the parsed part of
+ * the input matches, so that the events can be replayed to the actual handler on a match
+ * without parsing the input again.
+ * <p>
+ * Events are stored in parallel arrays, and the bytes of text and opaque values are copied to a
+ * shared byte array. All arrays are reused. A log can be truncated to a previous size to discard
+ * the events of a nested part which did not match.
+ *
+ * @author hwellmann
+ *
+ */
+final class EventLog implements DadlEventHandler {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private enum Kind {
+        START_SEQUENCE, END_SEQUENCE, START_CHOICE, END_CHOICE, START_LIST, END_LIST, INTEGER,
+        TEXT, OPAQUE, VALUE
+    }
+
+    private Kind[] kinds = new Kind[INITIAL_CAPACITY];
+
+    private String[] names = new String[INITIAL_CAPACITY];
+
+    /** Type name of a start event, or value reported by an adapter. */
+    private Object[] objects = new Object[INITIAL_CAPACITY];
+
+    /** Integer value, or offset of text and opaque values in the byte array. */
+    private long[] longs = new long[INITIAL_CAPACITY];
+
+    /** Number of bytes of text and opaque values. */
+    private int[] lengths = new int[INITIAL_CAPACITY];
+
+    /** Number of bytes used before each event. */
+    private int[] byteStarts = new int[INITIAL_CAPACITY];
+
+    private int size;
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+    private int numBytes;
+
+    /**
+     * Gets the number of recorded events.
+     *
+     * @return number of events
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Discards all events recorded after the given number of events.
+     *
+     * @param newSize
+     *            number of events to keep
+     */
+    void truncate(int newSize) {
+        if (newSize < size) {
+            Arrays.fill(names, newSize, size, null);
+            Arrays.fill(objects, newSize, size, null);
+            numBytes = byteStarts[newSize];
+            size = newSize;
+        }
+    }
+
+    /**
+     * Reports the events recorded after the given number of events to the given handler, and
+     * discards them from this log.
+     *
+     * @param from
+     *            number of events not to be replayed
+     * @param handler
+     *            event handler
+     */
+    void replay(int from, DadlEventHandler handler) {
+        try {
+            replayEvents(from, handler);
+        }
+        finally {
+            truncate(from);
+        }
+    }
+
+    private void replayEvents(int from, DadlEventHandler handler) {
+        for (int i = from; i < size; i++) {
+            String name = names[i];
+            switch (kinds[i]) {
+                case START_SEQUENCE:
+                    handler.startSequence(name, (String) objects[i]);
+                    break;
+                case END_SEQUENCE:
+                    handler.endSequence(name);
+                    break;
+                case START_CHOICE:
+                    handler.startChoice(name, (String) objects[i]);
+                    break;
+                case END_CHOICE:
+                    handler.endChoice(name);
+                    break;
+                case START_LIST:
+                    handler.startList(name);
+                    break;
+                case END_LIST:
+                    handler.endList(name);
+                    break;
+                case INTEGER:
+                    handler.integer(name, longs[i]);
+                    break;
+                case TEXT:
+                    handler.text(name, bytes, (int) longs[i], lengths[i]);
+                    break;
+                case OPAQUE:
+                    handler.opaque(name, bytes, (int) longs[i], lengths[i]);
+                    break;
+                default:
+                    handler.value(name, objects[i]);
+            }
+        }
+    }
+
+    @Override
+    public void startSequence(String name, String typeName) {
+        add(Kind.START_SEQUENCE, name).objects[size - 1] = typeName;
+    }
+
+    @Override
+    public void endSequence(String name) {
+        add(Kind.END_SEQUENCE, name);
+    }
+
+    @Override
+    public void startChoice(String name, String typeName) {
+        add(Kind.START_CHOICE, name).objects[size - 1] = typeName;
+    }
+
+    @Override
+    public void endChoice(String name) {
+        add(Kind.END_CHOICE, name);
+    }
+
+    @Override
+    public void startList(String name) {
+        add(Kind.START_LIST, name);
+    }
+
+    @Override
+    public void endList(String name) {
+        add(Kind.END_LIST, name);
+    }
+
+    @Override
+    public void integer(String name, long value) {
+        add(Kind.INTEGER, name).longs[size - 1] = value;
+    }
+
+    @Override
+    public void text(String name, byte[] source, int offset, int length) {
+        add(Kind.TEXT, name).copyBytes(source, offset, length);
+    }
+
+    @Override
+    public void opaque(String name, byte[] source, int offset, int length) {
+        add(Kind.OPAQUE, name).copyBytes(source, offset, length);
+    }
+
+    @Override
+    public void value(String name, Object value) {
+        add(Kind.VALUE, name).objects[size - 1] = value;
+    }
+
+    private EventLog add(Kind kind, String name) {
+        if (size == kinds.length) {
+            int capacity = 2 * size;
+            kinds = Arrays.copyOf(kinds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+            longs = Arrays.copyOf(longs, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            byteStarts = Arrays.copyOf(byteStarts, capacity);
+        }
+        kinds[size] = kind;
+        byteStarts[size] = numBytes;
+        names[size] = name;
+        size++;
+        return this;
+    }
+
+    private void copyBytes(byte[] source, int offset, int length) {
+        if (numBytes + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(numBytes + length, 2 * bytes.length));
+        }
+        System.arraycopy(source, offset, bytes, numBytes, length);
+        longs[size - 1] = numBytes;
+        lengths[size - 1] = length;
+        numBytes += length;
+    }
+}
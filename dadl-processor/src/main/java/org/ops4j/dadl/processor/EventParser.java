@@ -0,0 +1,749 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+import static org.ops4j.dadl.io.Constants.HEX_BASE;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.ByteArrayBitStreamReader;
+import org.ops4j.dadl.metamodel.gen.Checksum;
+import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.ChoiceElement;
+import org.ops4j.dadl.metamodel.gen.DadlType;
+import org.ops4j.dadl.metamodel.gen.Element;
+import org.ops4j.dadl.metamodel.gen.LengthField;
+import org.ops4j.dadl.metamodel.gen.LengthKind;
+import org.ops4j.dadl.metamodel.gen.LengthUnit;
+import org.ops4j.dadl.metamodel.gen.Sequence;
+import org.ops4j.dadl.metamodel.gen.SequenceElement;
+import org.ops4j.dadl.metamodel.gen.SimpleType;
+import org.ops4j.dadl.metamodel.gen.Tag;
+import org.ops4j.dadl.metamodel.gen.TaggedSequence;
+import org.ops4j.dadl.model.ValidatedModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An event parser walks a bit stream using the formatting rules of a given DADL model and reports
+ * its content to a {@link DadlEventHandler}, without creating info model objects. Integer values
+ * are reported as primitives, text and opaque values as byte ranges of a reused buffer.
+ * <p>
+ * Values of elements referenced by expressions of the model are kept in a map for each enclosing
+ * sequence or choice, so that expressions like {@code up[1].numItems} are evaluated as with the
+ * {@link Unmarshaller}. Discriminators are evaluated on the raw value of a simple element, i.e.
+ * enumeration values are not mapped to Java enumeration constants.
+ * <p>
+ * Choice branches, optional elements and list items without an occurs count may be backtracked.
+ * Their events are recorded in a reused event log while they are parsed, and are replayed to the
+ * handler when they match, so that the input is parsed only once. Thus, a handler never receives
+ * events from a branch which did not match.
+ * <p>
+ * An event parser is not thread-safe.
+ *
+ * @author hwellmann
+ *
+ */
+public class EventParser {
+
+    private static Logger log = LoggerFactory.getLogger(EventParser.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /** Handler used while checking if an element matches. */
+    private static final DadlEventHandler DISCARD = new DadlEventHandler() {
+    };
+
+    private DadlContext context;
+    private ValidatedModel model;
+    private Evaluator evaluator;
+    private SimpleTypeReader simpleTypeReader;
+    private ChecksumCalculator checksums = new ChecksumCalculator();
+
+    /**
+     * Identifiers occurring in any expression of the model. Only values of elements with these
+     * names are retained.
+     */
+    private Set<String> referencedNames;
+
+    /** Element values of the enclosing complex types, reused for each nesting level. */
+    private List<Map<String, Object>> scopes = new ArrayList<>();
+
+    /** Nesting level of the current complex type. */
+    private int depth;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    private DadlEventHandler handler;
+
+    /** Events of the parts being parsed which may still be backtracked. */
+    private EventLog eventLog = new EventLog();
+
+    /**
+     * A part of the input which may be parsed more than once.
+     */
+    @FunctionalInterface
+    interface Step {
+
+        void parse() throws IOException;
+    }
+
+    EventParser(DadlContext context, ValidatedModel model) {
+        this.context = context;
+        this.model = model;
+        this.evaluator = new Evaluator();
+        this.simpleTypeReader = new SimpleTypeReader(context, evaluator);
+        this.referencedNames = ModelExpressions.findReferencedNames(model);
+    }
+
+    Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Sets the handler receiving the events of subsequent calls of package-private methods.
+     */
+    void setHandler(DadlEventHandler eventHandler) {
+        this.handler = eventHandler;
+    }
+
+    /**
+     * Parses the given byte array as an instance of the given type, reporting its content to the
+     * given handler.
+     *
+     * @param bytes
+     *            byte array
+     * @param typeName
+     *            name of a type of the current DADL model
+     * @param eventHandler
+     *            event handler
+     * @throws IOException
+     *             on read error
+     */
+    public void parse(byte[] bytes, String typeName, DadlEventHandler eventHandler)
+        throws IOException {
+        try (BitStreamReader reader = new ByteArrayBitStreamReader(bytes)) {
+            parse(reader, typeName, eventHandler);
+        }
+    }
+
+    /**
+     * Parses an instance of the given type from the current position of the given reader,
+     * reporting its content to the given handler. After returning, the reader is positioned at
+     * the end of the instance. The reader is not closed.
+     *
+     * @param reader
+     *            bit stream reader
+     * @param typeName
+     *            name of a type of the current DADL model
+     * @param eventHandler
+     *            event handler
+     * @throws IOException
+     *             on read error
+     */
+    public void parse(BitStreamReader reader, String typeName, DadlEventHandler eventHandler)
+        throws IOException {
+        DadlType type = model.getType(typeName);
+        if (type == null) {
+            throw new UnmarshalException("unknown type " + typeName);
+        }
+        this.handler = eventHandler;
+        this.depth = 0;
+        eventLog.truncate(0);
+        try {
+            parseValue(typeName, type, type, reader);
+        }
+        finally {
+            this.handler = null;
+        }
+    }
+
+    private void parseValue(String name, DadlType representation, DadlType type,
+        BitStreamReader reader) throws IOException {
+        if (type instanceof SimpleType) {
+            parseSimpleValue(name, (SimpleType) type, representation, reader);
+        }
+        else {
+            parseComplexValue(name, type, reader);
+        }
+    }
+
+    private void parseComplexValue(String name, DadlType type, BitStreamReader reader)
+        throws IOException {
+        long startPos = reader.getBitPosition();
+        if (type.getAdapter() != null) {
+            handler.value(name, context.readValueViaAdapter(type, reader));
+        }
+        else {
+            enterComplexType();
+            try {
+                if (type instanceof Sequence) {
+                    handler.startSequence(name, type.getName());
+                    parseSequence((Sequence) type, reader);
+                    handler.endSequence(name);
+                }
+                else if (type instanceof TaggedSequence) {
+                    handler.startSequence(name, type.getName());
+                    parseTaggedSequence((TaggedSequence) type, reader);
+                    handler.endSequence(name);
+                }
+                else if (type instanceof Choice) {
+                    handler.startChoice(name, type.getName());
+                    parseChoice((Choice) type, reader);
+                    handler.endChoice(name);
+                }
+                else {
+                    throw new UnmarshalException("cannot parse type " + type.getName());
+                }
+            }
+            finally {
+                exitComplexType();
+            }
+        }
+        skipPadding(type, startPos, reader);
+    }
+
+    /**
+     * Enters a complex value. {@code self} is set to an empty map for the element values.
+     */
+    void enterComplexType() {
+        evaluator.setSelf(obtainScope());
+        depth++;
+    }
+
+    void exitComplexType() {
+        depth--;
+    }
+
+    /**
+     * Gets an empty map for the element values of the complex type at the current nesting level.
+     */
+    private Map<String, Object> obtainScope() {
+        if (depth == scopes.size()) {
+            scopes.add(new HashMap<>());
+        }
+        Map<String, Object> scope = scopes.get(depth);
+        scope.clear();
+        return scope;
+    }
+
+    /**
+     * Retains the value of the given element, if it is referenced by an expression.
+     */
+    private void retain(String name, Object value) {
+        if (depth > 0 && referencedNames.contains(name)) {
+            scopes.get(depth - 1).put(name, value);
+        }
+    }
+
+    private void parseSequence(Sequence sequence, BitStreamReader reader) throws IOException {
+        log.debug("parsing sequence {}", sequence.getName());
+        evaluator.pushStack();
+        try {
+            for (SequenceElement element : sequence.getElement()) {
+                parseSequenceField(element, reader);
+            }
+        }
+        finally {
+            evaluator.popStack();
+        }
+    }
+
+    private void parseTaggedSequence(TaggedSequence sequence, BitStreamReader reader)
+        throws IOException {
+        log.debug("parsing tagged sequence {}", sequence.getName());
+        Checksum checksum = sequence.getChecksum();
+        int checksumDepth = checksums.getDepth();
+        evaluator.pushStack();
+        try {
+            startChecksum(checksum, ChecksumRegion.TAG, reader);
+            if (sequence.getTag() != null) {
+                parseTag(sequence.getTag(), reader);
+            }
+            startChecksum(checksum, ChecksumRegion.LENGTH_FIELD, reader);
+            long end = -1;
+            if (sequence.getLengthField() != null) {
+                long length = parseLengthField(sequence.getLengthField(), reader);
+                evaluator.setVariable("$length", length);
+                end = reader.getBitPosition() + length * BYTE_SIZE;
+                evaluator.setVariable("$end", end);
+            }
+            startChecksum(checksum, ChecksumRegion.PAYLOAD, reader);
+            for (SequenceElement element : sequence.getElement()) {
+                parseSequenceField(element, reader);
+            }
+            long numPaddingBits = end - reader.getBitPosition();
+            if (end >= 0 && numPaddingBits > 0 && numPaddingBits < BYTE_SIZE) {
+                reader.setBitPosition(end);
+            }
+            if (checksum != null) {
+                verifyChecksum(sequence, checksum, reader);
+            }
+        }
+        finally {
+            checksums.unwind(checksumDepth, reader);
+            evaluator.popStack();
+        }
+    }
+
+    void parseTag(Tag tag, BitStreamReader reader) throws IOException {
+        long actualTag = readTag(tag, reader);
+        long expectedTag = Long.parseUnsignedLong(tag.getHexValue(), HEX_BASE);
+        if (actualTag != expectedTag) {
+            String msg = String.format("tag mismatch: actual = %X, expected = %X", actualTag,
+                expectedTag);
+            throw new AssertionError(msg);
+        }
+    }
+
+    private long readTag(Tag tag, BitStreamReader reader) throws IOException {
+        DadlType type = model.getType(tag.getType());
+        if (!(type instanceof SimpleType)) {
+            throw new UnmarshalException("tag type is not a simple type: " + tag.getType());
+        }
+        return simpleTypeReader.readSimpleValue((SimpleType) type, null, Long.class, reader);
+    }
+
+    long parseLengthField(LengthField lengthField, BitStreamReader reader)
+        throws IOException {
+        DadlType type = model.getType(lengthField.getType());
+        if (!(type instanceof SimpleType)) {
+            throw new UnmarshalException("length field must have simple type");
+        }
+        LongDadlAdapter adapter = context.getLongAdapter(type, null);
+        if (adapter != null) {
+            return adapter.unmarshalLong(reader);
+        }
+        return simpleTypeReader.readSimpleValue((SimpleType) type, null, Long.class, reader);
+    }
+
+    /**
+     * Starts the region of the given checksum field at the current position, if the region
+     * starts at the given part of the tagged sequence.
+     */
+    void startChecksum(Checksum checksum, ChecksumRegion part, BitStreamReader reader)
+        throws IOException {
+        if (checksum == null || ChecksumRegion.startOf(checksum) != part) {
+            return;
+        }
+        try {
+            checksums.start(checksum.getAlgorithm(), reader);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(
+                "checksum region must start and end on a byte boundary", exc);
+        }
+    }
+
+    /**
+     * Gets the number of checksum regions being read.
+     */
+    int getChecksumDepth() {
+        return checksums.getDepth();
+    }
+
+    /**
+     * Discards the checksum regions started beyond the given nesting depth.
+     */
+    void unwindChecksums(int depth, BitStreamReader reader) throws IOException {
+        checksums.unwind(depth, reader);
+    }
+
+    void verifyChecksum(TaggedSequence sequence, Checksum checksum, BitStreamReader reader)
+        throws IOException {
+        DadlType type = model.getType(checksum.getType());
+        if (!(type instanceof SimpleType)) {
+            throw new UnmarshalException("checksum field must have simple type");
+        }
+        long expected;
+        try {
+            expected = checksums.end(reader);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(
+                "checksum region must start and end on a byte boundary", exc);
+        }
+        long actual = simpleTypeReader.readSimpleValue((SimpleType) type, null, Long.class,
+            reader);
+        if (actual != expected) {
+            String msg = String.format("checksum mismatch in %s: actual = %X, expected = %X",
+                sequence.getName(), actual, expected);
+            throw new UnmarshalException(msg);
+        }
+    }
+
+    void parseSequenceField(SequenceElement element, BitStreamReader reader)
+        throws IOException {
+        log.debug("parsing sequence element {}", element.getName());
+        DadlType type = model.getType(element.getType());
+        if (model.isList(element)) {
+            parseList(element, type, reader);
+        }
+        else if (model.isOptional(element)) {
+            Long end = evaluator.getVariable("$end", Long.class);
+            if (end == null || reader.getBitPosition() < end) {
+                tryParse(() -> parseElement(element, type, reader), reader);
+            }
+        }
+        else {
+            parseElement(element, type, reader);
+        }
+    }
+
+    private void parseElement(Element element, DadlType type, BitStreamReader reader)
+        throws IOException {
+        parseValue(element.getName(), element, type, reader);
+        if (!(type instanceof SimpleType)) {
+            evaluator.checkDiscriminator(element);
+        }
+    }
+
+    private void parseList(SequenceElement element, DadlType type, BitStreamReader reader)
+        throws IOException {
+        String name = element.getName();
+        handler.startList(name);
+        parseListItems(element, type, reader);
+        handler.endList(name);
+    }
+
+    void parseListItems(SequenceElement element, DadlType type, BitStreamReader reader)
+        throws IOException {
+        Step item = () -> parseElement(element, type, reader);
+        switch (element.getOccursCountKind()) {
+            case EXPRESSION:
+                long numItems = evaluator.evaluate(element.getOccursCount(), Long.class);
+                for (long i = 0; i < numItems; i++) {
+                    item.parse();
+                }
+                break;
+            case PARSED:
+                while (tryParse(item, reader)) {
+                    // next item
+                }
+                break;
+            case END_OF_PARENT:
+                long end = evaluator.getEndOfParent();
+                while (reader.getBitPosition() < end && tryParse(item, reader)) {
+                    // next item
+                }
+                break;
+            default:
+                throw new UnsupportedOperationException(element.getOccursCountKind().toString());
+        }
+    }
+
+    private void parseChoice(Choice choice, BitStreamReader reader) throws IOException {
+        log.debug("parsing choice {}", choice.getName());
+        evaluator.pushStack();
+        try {
+            parseBranch(choice, reader);
+        }
+        finally {
+            evaluator.popStack();
+        }
+    }
+
+    void parseBranch(Choice choice, BitStreamReader reader) throws IOException {
+        for (ChoiceElement element : choice.getElement()) {
+            DadlType type = model.getType(element.getType());
+            if (tryParse(() -> parseElement(element, type, reader), reader)) {
+                log.debug("matched branch {}", element.getName());
+                return;
+            }
+        }
+        throw new UnmarshalException("no branch matched on " + choice.getName());
+    }
+
+    /**
+     * Parses the given step, recording its events in the event log. If the step matches, the
+     * recorded events are reported to the current handler, unless the step is nested in another
+     * step whose events are still being recorded. If the step does not match, its events are
+     * discarded and the reader is reset to the current position.
+     *
+     * @return true if the step matches
+     */
+    private boolean tryParse(Step step, BitStreamReader reader) throws IOException {
+        if (handler == DISCARD) {
+            return check(step, reader, true);
+        }
+        DadlEventHandler target = handler;
+        int mark = eventLog.size();
+        long startPos = reader.getBitPosition();
+        handler = eventLog;
+        boolean matched = false;
+        try {
+            step.parse();
+            matched = true;
+        }
+        catch (AssertionError | Exception exc) {
+            log.debug("no match: {}", exc.getMessage());
+        }
+        finally {
+            handler = target;
+            if (!matched) {
+                eventLog.truncate(mark);
+                reader.setBitPosition(startPos);
+            }
+        }
+        if (matched && target != eventLog) {
+            eventLog.replay(mark, target);
+        }
+        return matched;
+    }
+
+    /**
+     * Checks if the given element matches at the current position, without reporting events.
+     * The reader is reset to the current position.
+     *
+     * @return true if the element matches
+     */
+    boolean matches(Element element, DadlType type, BitStreamReader reader)
+        throws IOException {
+        long startPos = reader.getBitPosition();
+        DadlEventHandler target = handler;
+        handler = DISCARD;
+        try {
+            parseElement(element, type, reader);
+            return true;
+        }
+        catch (AssertionError | Exception exc) {
+            log.debug("no match: {}", exc.getMessage());
+            return false;
+        }
+        finally {
+            handler = target;
+            reader.setBitPosition(startPos);
+        }
+    }
+
+    /**
+     * Checks if the given type is a tagged sequence with a tag.
+     */
+    static boolean hasTag(DadlType type) {
+        return type instanceof TaggedSequence && ((TaggedSequence) type).getTag() != null;
+    }
+
+    /**
+     * Checks if the tag of the given tagged sequence occurs at the current position. Only the
+     * tag is read, and the reader is reset to the current position.
+     *
+     * @return true if the tag matches
+     */
+    boolean matchesTag(TaggedSequence sequence, BitStreamReader reader) throws IOException {
+        Tag tag = sequence.getTag();
+        long startPos = reader.getBitPosition();
+        try {
+            return readTag(tag, reader) == Long.parseUnsignedLong(tag.getHexValue(), HEX_BASE);
+        }
+        catch (IOException exc) {
+            log.debug("no tag: {}", exc.getMessage());
+            return false;
+        }
+        finally {
+            reader.setBitPosition(startPos);
+        }
+    }
+
+    /**
+     * Parses the given step without reporting events. The reader is reset to the current
+     * position if the step does not match, or if the position is not to be kept.
+     */
+    private boolean check(Step step, BitStreamReader reader, boolean keepPosition)
+        throws IOException {
+        long startPos = reader.getBitPosition();
+        DadlEventHandler target = handler;
+        handler = DISCARD;
+        boolean matched = false;
+        try {
+            step.parse();
+            matched = true;
+        }
+        catch (AssertionError | Exception exc) {
+            log.debug("no match: {}", exc.getMessage());
+        }
+        finally {
+            handler = target;
+            if (!(matched && keepPosition)) {
+                reader.setBitPosition(startPos);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Parses the given step without reporting events.
+     */
+    void discard(Step step) throws IOException {
+        DadlEventHandler target = handler;
+        handler = DISCARD;
+        try {
+            step.parse();
+        }
+        finally {
+            handler = target;
+        }
+    }
+
+    void parseSimpleValue(String name, SimpleType type, DadlType representation,
+        BitStreamReader reader) throws IOException {
+        Element element = (representation instanceof Element) ? (Element) representation : null;
+        LongDadlAdapter longAdapter = (element == null) ? context.getLongAdapter(type, null)
+            : context.getLongAdapter(element);
+        if (longAdapter != null) {
+            reportInteger(name, longAdapter.unmarshalLong(reader));
+        }
+        else if (type.getAdapter() != null) {
+            Object value = context.readValueViaAdapter(type, reader);
+            checkDiscriminator(element, value);
+            retain(name, value);
+            handler.value(name, value);
+        }
+        else if (element != null && context.isPlainBinaryInteger(type, element)) {
+            reportInteger(name, simpleTypeReader.readStandardBinary(element, reader));
+        }
+        else {
+            switch (type.getContentType()) {
+                case INTEGER:
+                    long value = simpleTypeReader.readIntegerValue(type, element, Long.class,
+                        reader).longValue();
+                    checkDiscriminator(element, value);
+                    reportInteger(name, value);
+                    break;
+                case TEXT:
+                    int numBytes = readText(representation, reader);
+                    if (hasDiscriminator(element) || referencedNames.contains(name)) {
+                        String text = new String(buffer, 0, numBytes,
+                            context.getCharset(representation));
+                        checkDiscriminator(element, text);
+                        retain(name, text);
+                    }
+                    handler.text(name, buffer, 0, numBytes);
+                    break;
+                case OPAQUE:
+                    handler.opaque(name, buffer, 0, readOpaque(type, representation, reader));
+                    break;
+                default:
+                    throw new UnsupportedOperationException(type.getContentType().toString());
+            }
+        }
+    }
+
+    private void reportInteger(String name, long value) {
+        if (depth > 0 && referencedNames.contains(name)) {
+            retain(name, value);
+        }
+        handler.integer(name, value);
+    }
+
+    private boolean hasDiscriminator(Element element) {
+        return element != null && element.getDiscriminator() != null;
+    }
+
+    private void checkDiscriminator(Element element, Object value) {
+        if (hasDiscriminator(element)) {
+            evaluator.setSelf(value);
+            evaluator.checkDiscriminator(element);
+        }
+    }
+
+    /**
+     * Reads a text value into the buffer.
+     *
+     * @return number of bytes
+     */
+    private int readText(DadlType representation, BitStreamReader reader) throws IOException {
+        if (representation.getLengthKind() == LengthKind.IMPLICIT) {
+            throw new UnsupportedOperationException();
+        }
+        long length = evaluator.computeBitLength(representation, reader.getBitPosition());
+        int numBytes = (int) (length / BYTE_SIZE);
+        ensureBuffer(numBytes);
+        int numRead = reader.read(buffer, 0, numBytes);
+        if (numRead < numBytes) {
+            String msg = String.format("expected %d bytes, read %d bytes", numBytes, numRead);
+            throw new UnmarshalException(msg);
+        }
+        return numBytes;
+    }
+
+    /**
+     * Reads an opaque value into the buffer. Trailing bits are stored left aligned in an extra
+     * byte.
+     *
+     * @return number of bytes
+     */
+    private int readOpaque(SimpleType type, DadlType representation, BitStreamReader reader)
+        throws IOException {
+        if (type.getLengthKind() != LengthKind.EXPLICIT) {
+            throw new UnsupportedOperationException();
+        }
+        long length = evaluator.computeBitLength(representation, reader.getBitPosition());
+        int numFullBytes = (int) (length / BYTE_SIZE);
+        int numTailBits = (int) (length % BYTE_SIZE);
+        int numBytes = (numTailBits == 0) ? numFullBytes : numFullBytes + 1;
+        ensureBuffer(numBytes);
+        int numRead = reader.read(buffer, 0, numFullBytes);
+        if (numRead < numFullBytes) {
+            String msg = String.format("expected %d bytes, read %d bytes", numFullBytes,
+                numRead);
+            throw new UnmarshalException(msg);
+        }
+        if (numTailBits > 0) {
+            long tail = reader.readBits(numTailBits);
+            buffer[numFullBytes] = (byte) (tail << (BYTE_SIZE - numTailBits));
+        }
+        return numBytes;
+    }
+
+    private void ensureBuffer(int numBytes) {
+        if (numBytes > buffer.length) {
+            buffer = new byte[Math.max(numBytes, 2 * buffer.length)];
+        }
+    }
+
+    void skipPadding(DadlType type, long startPos, BitStreamReader reader)
+        throws IOException {
+        boolean hasExactLength = (type.getLengthKind() == LengthKind.EXPLICIT);
+        boolean hasMinLength = (type.getMinLength() != null);
+        if (!(hasExactLength || hasMinLength)) {
+            return;
+        }
+        long numBits = hasExactLength ? evaluator.computeLength(type) : evaluator
+            .computeMinLength(type);
+        if (type.getLengthUnit() == LengthUnit.BYTE) {
+            numBits *= BYTE_SIZE;
+        }
+        long actualNumBits = reader.getBitPosition() - startPos;
+        if (actualNumBits > numBits) {
+            if (hasMinLength) {
+                return;
+            }
+            throw new UnmarshalException("actual length of " + type.getName()
+                + " exceeds explicit length of " + numBits + " bits");
+        }
+        reader.skipBits(numBits - actualNumBits);
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.ops4j.dadl.processor.RecordSchema.FieldKind;
+
+/**
+ * An instance of a complex type of a DADL model without a generated info model class, for
+ * models loaded at runtime.
+ * <p>
+ * The fields of a record are defined by its {@link RecordSchema}. They can be accessed by
+ * element name, or by field index, which avoids a lookup for each access. Integer fields are
+ * stored in a {@code long[]}, other fields in an {@code Object[]}. A field not present in the
+ * input, e.g. an optional element or a choice branch not taken, is not set. Setting a branch of
+ * a choice clears all other branches.
+ * <p>
+ * Generic records are read by {@link Unmarshaller#unmarshal(byte[], String)} and written by
+ * {@link Marshaller#marshal(GenericRecord, java.io.OutputStream)}. A record is not thread-safe.
+ *
+ * @author hwellmann
+ *
+ */
+public final class GenericRecord {
+
+    private RecordSchema schema;
+
+    private long[] longs;
+
+    private Object[] refs;
+
+    /** Presence bits of the primitive slots. */
+    private long[] present;
+
+    /**
+     * Creates a record with no fields set.
+     *
+     * @param schema
+     *            record schema
+     */
+    public GenericRecord(RecordSchema schema) {
+        this.schema = schema;
+        this.longs = new long[schema.getNumLongSlots()];
+        this.refs = new Object[schema.getNumRefSlots()];
+        this.present = new long[(longs.length + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    /**
+     * Gets the schema of this record.
+     *
+     * @return record schema
+     */
+    public RecordSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Checks if the given field is set.
+     *
+     * @param field
+     *            field index
+     * @return true if the field is set
+     */
+    public boolean isSet(int field) {
+        int slot = schema.getSlot(field);
+        if (schema.isPrimitive(field)) {
+            return (present[slot / Long.SIZE] & (1L << slot)) != 0;
+        }
+        return refs[slot] != null;
+    }
+
+    /**
+     * Checks if the given field is set.
+     *
+     * @param name
+     *            element name
+     * @return true if the field is set
+     */
+    public boolean isSet(String name) {
+        return isSet(schema.fieldIndex(name));
+    }
+
+    /**
+     * Gets the value of the given integer field.
+     *
+     * @param field
+     *            field index
+     * @return integer value
+     * @throws IllegalStateException
+     *             if the field is not set
+     */
+    public long getLong(int field) {
+        if (!schema.isPrimitive(field)) {
+            Object value = get(field);
+            if (!(value instanceof Number)) {
+                throw new IllegalStateException(describe(field) + " is not an integer");
+            }
+            return ((Number) value).longValue();
+        }
+        if (!isSet(field)) {
+            throw new IllegalStateException(describe(field) + " is not set");
+        }
+        return longs[schema.getSlot(field)];
+    }
+
+    /**
+     * Gets the value of the given integer field.
+     *
+     * @param name
+     *            element name
+     * @return integer value
+     * @throws IllegalStateException
+     *             if the field is not set
+     */
+    public long getLong(String name) {
+        return getLong(schema.fieldIndex(name));
+    }
+
+    /**
+     * Sets the value of the given integer field.
+     *
+     * @param field
+     *            field index
+     * @param value
+     *            integer value
+     */
+    public void setLong(int field, long value) {
+        if (!schema.isPrimitive(field)) {
+            set(field, value);
+            return;
+        }
+        clearOtherBranches(field);
+        int slot = schema.getSlot(field);
+        longs[slot] = value;
+        present[slot / Long.SIZE] |= 1L << slot;
+    }
+
+    /**
+     * Sets the value of the given integer field.
+     *
+     * @param name
+     *            element name
+     * @param value
+     *            integer value
+     */
+    public void setLong(String name, long value) {
+        setLong(schema.fieldIndex(name), value);
+    }
+
+    /**
+     * Gets the value of the given field. Integers are boxed.
+     *
+     * @param field
+     *            field index
+     * @return value, or null if the field is not set
+     */
+    public Object get(int field) {
+        int slot = schema.getSlot(field);
+        if (schema.isPrimitive(field)) {
+            return isSet(field) ? longs[slot] : null;
+        }
+        return refs[slot];
+    }
+
+    /**
+     * Gets the value of the given field. Integers are boxed.
+     *
+     * @param name
+     *            element name
+     * @return value, or null if the field is not set
+     */
+    public Object get(String name) {
+        return get(schema.fieldIndex(name));
+    }
+
+    /**
+     * Sets the value of the given field. The value must match the {@link FieldKind} of the
+     * field, and must be a {@code List} for a list field.
+     *
+     * @param field
+     *            field index
+     * @param value
+     *            value, or null to clear the field
+     * @throws IllegalArgumentException
+     *             if the value does not match the field
+     */
+    public void set(int field, Object value) {
+        int slot = schema.getSlot(field);
+        if (value == null) {
+            if (schema.isPrimitive(field)) {
+                present[slot / Long.SIZE] &= ~(1L << slot);
+            }
+            else {
+                refs[slot] = null;
+            }
+            return;
+        }
+        if (schema.isPrimitive(field)) {
+            checkValue(field, value, Number.class);
+            setLong(field, ((Number) value).longValue());
+            return;
+        }
+        if (schema.isList(field)) {
+            checkValue(field, value, List.class);
+        }
+        else {
+            checkValue(field, value, getValueClass(schema.getFieldKind(field)));
+        }
+        clearOtherBranches(field);
+        refs[slot] = value;
+    }
+
+    /**
+     * Sets the value of the given field. The value must match the {@link FieldKind} of the
+     * field, and must be a {@code List} for a list field.
+     *
+     * @param name
+     *            element name
+     * @param value
+     *            value, or null to clear the field
+     * @throws IllegalArgumentException
+     *             if the value does not match the field
+     */
+    public void set(String name, Object value) {
+        set(schema.fieldIndex(name), value);
+    }
+
+    /**
+     * Gets the value of the given text field.
+     *
+     * @param name
+     *            element name
+     * @return text, or null if the field is not set
+     */
+    public String getText(String name) {
+        return (String) get(name);
+    }
+
+    /**
+     * Gets the value of the given sequence or choice field.
+     *
+     * @param name
+     *            element name
+     * @return nested record, or null if the field is not set
+     */
+    public GenericRecord getRecord(String name) {
+        return (GenericRecord) get(name);
+    }
+
+    /**
+     * Gets the items of the given list field. Integer items read from the input are stored in a
+     * {@link LongList}.
+     *
+     * @param field
+     *            field index
+     * @return list items, or null if the field is not set
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> getList(int field) {
+        return (List<Object>) get(field);
+    }
+
+    /**
+     * Gets the items of the given list field. Integer items read from the input are stored in a
+     * {@link LongList}.
+     *
+     * @param name
+     *            element name
+     * @return list items, or null if the field is not set
+     */
+    public List<Object> getList(String name) {
+        return getList(schema.fieldIndex(name));
+    }
+
+    /**
+     * Clears all fields.
+     */
+    public void clear() {
+        Arrays.fill(refs, null);
+        Arrays.fill(present, 0);
+    }
+
+    private void clearOtherBranches(int field) {
+        if (schema.isChoice()) {
+            for (int i = 0; i < schema.getNumFields(); i++) {
+                if (i != field) {
+                    set(i, null);
+                }
+            }
+        }
+    }
+
+    private static Class<?> getValueClass(FieldKind kind) {
+        switch (kind) {
+            case INTEGER:
+                return Number.class;
+            case TEXT:
+                return String.class;
+            case OPAQUE:
+                return byte[].class;
+            case RECORD:
+                return GenericRecord.class;
+            default:
+                return Object.class;
+        }
+    }
+
+    private void checkValue(int field, Object value, Class<?> valueClass) {
+        if (!valueClass.isInstance(value)) {
+            throw new IllegalArgumentException(describe(field) + " does not accept "
+                + value.getClass().getName());
+        }
+    }
+
+    private String describe(int field) {
+        return "field " + schema.getFieldName(field) + " of " + schema.getTypeName();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(schema.getTypeName()).append('{');
+        String separator = "";
+        for (int i = 0; i < schema.getNumFields(); i++) {
+            if (isSet(i)) {
+                Object value = get(i);
+                sb.append(separator).append(schema.getFieldName(i)).append('=');
+                sb.append((value instanceof byte[]) ? Arrays.toString((byte[]) value) : value);
+                separator = ", ";
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A pool of info model objects, used by {@link Unmarshaller#unmarshalInto(byte[], Object)} for
+ * nested objects detached from or newly attached to a reused object graph.
+ * <p>
+ * Pooled objects are not cleared. They are completely overwritten when taken from the pool.
+ * <p>
+ * This class is not thread-safe. Each unmarshaller should have its own pool.
+ *
+ * @author hwellmann
+ *
+ */
+public class InstancePool {
+
+    private static final int DEFAULT_MAX_INSTANCES = 64;
+
+    private Map<Class<?>, Deque<Object>> instances = new HashMap<>();
+
+    private int maxInstances;
+
+    /**
+     * Creates a pool holding at most 64 instances per class.
+     */
+    public InstancePool() {
+        this(DEFAULT_MAX_INSTANCES);
+    }
+
+    /**
+     * Creates a pool holding at most the given number of instances per class.
+     *
+     * @param maxInstances
+     *            maximum number of pooled instances per class
+     */
+    public InstancePool(int maxInstances) {
+        this.maxInstances = maxInstances;
+    }
+
+    /**
+     * Takes an instance of the given class from the pool.
+     *
+     * @param klass
+     *            info model class
+     * @return pooled instance, or null if the pool has no instance of this class
+     */
+    public <T> T acquire(Class<T> klass) {
+        Deque<Object> deque = instances.get(klass);
+        if (deque == null || deque.isEmpty()) {
+            return null;
+        }
+        return klass.cast(deque.pop());
+    }
+
+    /**
+     * Returns the given instance to the pool. The instance is discarded if the pool is full.
+     *
+     * @param instance
+     *            info model object no longer in use
+     */
+    public void release(Object instance) {
+        Deque<Object> deque = instances.computeIfAbsent(instance.getClass(),
+            k -> new ArrayDeque<>());
+        if (deque.size() < maxInstances) {
+            deque.push(instance);
+        }
+    }
+
+    /**
+     * Gets the number of pooled instances of the given class.
+     *
+     * @param klass
+     *            info model class
+     * @return number of pooled instances
+     */
+    public int size(Class<?> klass) {
+        Deque<Object> deque = instances.get(klass);
+        return (deque == null) ? 0 : deque.size();
+    }
+}
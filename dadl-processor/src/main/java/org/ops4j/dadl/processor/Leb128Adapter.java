@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.io.IOException;
+
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.BitStreamWriter;
+import org.ops4j.dadl.io.VarInts;
+
+/**
+ * Built-in adapter named {@code leb128} for unsigned integers encoded as LEB128 varints, as used
+ * for protobuf {@code uint32} and {@code uint64} values.
+ * <p>
+ * Each byte holds 7 bits of the value, least significant group first. The high bit is set on
+ * all bytes except the last one. Negative values are treated as unsigned 64 bit values.
+ *
+ * @author hwellmann
+ *
+ */
+public class Leb128Adapter implements LongDadlAdapter {
+
+    @Override
+    public void marshalLong(long value, BitStreamWriter writer) throws IOException {
+        VarInts.writeLeb128(value, writer);
+    }
+
+    @Override
+    public long unmarshalLong(BitStreamReader reader) throws IOException {
+        try {
+            return VarInts.readLeb128(reader);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(exc.getMessage());
+        }
+    }
+
+    @Override
+    public long sizeOfLong(long value) {
+        return VarInts.sizeOfLeb128(value);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.io.IOException;
+
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.BitStreamWriter;
+
+/**
+ * An adapter for integer types, reading and writing primitive {@code long} values.
+ * <p>
+ * For fields of a primitive integer type, the {@link Unmarshaller} and the {@link Marshaller}
+ * call the primitive methods of this interface, so that no boxed values are created. The generic
+ * methods inherited from {@link DadlAdapter} delegate to the primitive methods and are used for
+ * fields of a wrapper type.
+ *
+ * @author hwellmann
+ *
+ */
+public interface LongDadlAdapter extends DadlAdapter<Number> {
+
+    /**
+     * Marshals the given value to the given writer.
+     *
+     * @param value
+     *            integer value
+     * @param writer
+     *            bit stream writer
+     * @throws IOException
+     *             on write error
+     */
+    void marshalLong(long value, BitStreamWriter writer) throws IOException;
+
+    /**
+     * Unmarshals an integer value from the given reader.
+     *
+     * @param reader
+     *            bit stream reader
+     * @return integer value
+     * @throws IOException
+     *             on read error
+     */
+    long unmarshalLong(BitStreamReader reader) throws IOException;
+
+    /**
+     * Computes the number of bits required for marshalling the given value.
+     * <p>
+     * The default implementation returns -1, i.e. the size is unknown.
+     *
+     * @param value
+     *            integer value
+     * @return number of bits, or a negative value if the size is unknown
+     */
+    default long sizeOfLong(long value) {
+        return -1;
+    }
+
+    @Override
+    default void marshal(Number info, BitStreamWriter writer) throws IOException {
+        marshalLong(info.longValue(), writer);
+    }
+
+    @Override
+    default Number unmarshal(BitStreamReader reader) throws IOException {
+        return unmarshalLong(reader);
+    }
+
+    @Override
+    default long sizeOf(Number info) {
+        return sizeOfLong(info.longValue());
+    }
+}
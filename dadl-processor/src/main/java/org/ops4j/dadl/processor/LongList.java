@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of primitive {@code long} values, used by {@link GenericRecord} for list fields
+ * of integers. The primitive accessors avoid boxing. The {@link java.util.List} methods box the
+ * items, so that the list can be used like any other list.
+ *
+ * @author hwellmann
+ *
+ */
+public final class LongList extends AbstractList<Long> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] items;
+
+    private int size;
+
+    /**
+     * Creates an empty list.
+     */
+    public LongList() {
+        this.items = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Gets the item at the given index.
+     *
+     * @param index
+     *            item index
+     * @return item value
+     */
+    public long getLong(int index) {
+        checkIndex(index);
+        return items[index];
+    }
+
+    /**
+     * Replaces the item at the given index.
+     *
+     * @param index
+     *            item index
+     * @param value
+     *            new item value
+     * @return previous item value
+     */
+    public long setLong(int index, long value) {
+        checkIndex(index);
+        long previous = items[index];
+        items[index] = value;
+        return previous;
+    }
+
+    /**
+     * Appends an item.
+     *
+     * @param value
+     *            item value
+     */
+    public void addLong(long value) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, 2 * size);
+        }
+        items[size++] = value;
+        modCount++;
+    }
+
+    /**
+     * Copies the items to a new array.
+     *
+     * @return array of items
+     */
+    public long[] toLongArray() {
+        return Arrays.copyOf(items, size);
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public Long set(int index, Long value) {
+        return setLong(index, value);
+    }
+
+    @Override
+    public boolean add(Long value) {
+        addLong(value);
+        return true;
+    }
+
+    @Override
+    public Long remove(int index) {
+        long previous = getLong(index);
+        System.arraycopy(items, index + 1, items, index, size - index - 1);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+}
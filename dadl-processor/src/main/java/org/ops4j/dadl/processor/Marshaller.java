@@ -22,16 +22,20 @@ import static org.ops4j.dadl.io.Constants.HEX_BASE;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.util.IdentityHashMap;
 import java.util.List;
-
-import javax.el.ELProcessor;
+import java.util.Map;
 
 import org.ops4j.dadl.exc.MarshalException;
 import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.BitCountingWriter;
 import org.ops4j.dadl.io.BitStreamWriter;
-import org.ops4j.dadl.io.ByteArrayBitStreamWriter;
 import org.ops4j.dadl.io.OutputStreamBitStreamWriter;
+import org.ops4j.dadl.io.PrimitiveArrays;
+import org.ops4j.dadl.metamodel.gen.Checksum;
 import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.ChoiceElement;
 import org.ops4j.dadl.metamodel.gen.DadlType;
 import org.ops4j.dadl.metamodel.gen.Element;
 import org.ops4j.dadl.metamodel.gen.Enumeration;
@@ -62,6 +66,15 @@ public class Marshaller {
     private ValidatedModel model;
     private Evaluator evaluator;
     private SimpleTypeWriter simpleTypeWriter;
+    private ChecksumCalculator checksums = new ChecksumCalculator();
+
+    /**
+     * Payload sizes of nested length-prefixed tagged sequences, by info object. They are computed
+     * when sizing the payload of an enclosing sequence and consumed when writing it, so that each
+     * level of nesting is sized only once.
+     */
+    private Map<Object, Long> payloadSizes = new IdentityHashMap<>();
+    private RecordWriter recordWriter;
 
     Marshaller(DadlContext context, ValidatedModel model) {
         this.context = context;
@@ -70,6 +83,14 @@ public class Marshaller {
         this.simpleTypeWriter = new SimpleTypeWriter(context, evaluator);
     }
 
+    Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    SimpleTypeWriter getSimpleTypeWriter() {
+        return simpleTypeWriter;
+    }
+
     /**
      * Marshals (serializes) the given info model object to the given bit stream.
      *
@@ -81,11 +102,89 @@ public class Marshaller {
      *             on write error
      */
     public void marshal(Object info, OutputStream os) throws IOException {
+        if (info instanceof GenericRecord) {
+            marshal((GenericRecord) info, os);
+            return;
+        }
         String typeName = info.getClass().getSimpleName();
         DadlType type = model.getType(typeName);
         try (OutputStreamBitStreamWriter writer = new OutputStreamBitStreamWriter(os)) {
             marshal(info, type, writer);
         }
+        finally {
+            payloadSizes.clear();
+        }
+    }
+
+    /**
+     * Marshals (serializes) the given generic record to the given bit stream.
+     *
+     * @param record
+     *            generic record
+     * @param os
+     *            output stream
+     * @throws IOException
+     *             on write error
+     */
+    public void marshal(GenericRecord record, OutputStream os) throws IOException {
+        try (OutputStreamBitStreamWriter writer = new OutputStreamBitStreamWriter(os)) {
+            marshal(record, writer);
+        }
+    }
+
+    /**
+     * Marshals (serializes) the given generic record to the current position of the given
+     * writer. The writer is not closed.
+     *
+     * @param record
+     *            generic record
+     * @param writer
+     *            bit stream writer
+     * @throws IOException
+     *             on write error
+     */
+    public void marshal(GenericRecord record, BitStreamWriter writer) throws IOException {
+        if (recordWriter == null) {
+            recordWriter = new RecordWriter(context, model, this);
+        }
+        recordWriter.write(record, writer);
+    }
+
+    /**
+     * Computes the exact number of bits of the representation of the given info model object. The
+     * object is not written anywhere, and no buffers are allocated for its representation.
+     *
+     * @param info
+     *            info model object
+     * @return number of bits
+     * @throws IOException
+     *             on marshalling error
+     */
+    public long bitSizeOf(Object info) throws IOException {
+        String typeName = info.getClass().getSimpleName();
+        DadlType type = model.getType(typeName);
+        try (BitCountingWriter writer = new BitCountingWriter()) {
+            marshal(info, type, writer);
+            return writer.getBitPosition();
+        }
+        finally {
+            payloadSizes.clear();
+        }
+    }
+
+    /**
+     * Computes the exact number of bytes written by {@link #marshal(Object, OutputStream)} for
+     * the given info model object. A trailing partial byte is counted as a full byte.
+     *
+     * @param info
+     *            info model object
+     * @return number of bytes
+     * @throws IOException
+     *             on marshalling error
+     */
+    public long sizeOf(Object info) throws IOException {
+        long numBits = bitSizeOf(info);
+        return (numBits + BYTE_SIZE - 1) / BYTE_SIZE;
     }
 
     private void marshal(Object info, DadlType type, BitStreamWriter writer) throws IOException {
@@ -96,7 +195,7 @@ public class Marshaller {
                 marshalSequence((Sequence) type, writer);
             }
             else if (type instanceof TaggedSequence) {
-                marshalTaggedSequence((TaggedSequence) type, writer);
+                marshalTaggedSequence(info, (TaggedSequence) type, writer);
             }
             else if (type instanceof Choice) {
                 marshalChoice(info, (Choice) type, writer);
@@ -108,7 +207,7 @@ public class Marshaller {
         fillPadding(type, startPos, writer);
     }
 
-    private void fillPadding(DadlType type, long startPos, BitStreamWriter writer)
+    void fillPadding(DadlType type, long startPos, BitStreamWriter writer)
         throws IOException {
         boolean hasExactLength = (type.getLengthKind() == LengthKind.EXPLICIT);
         boolean hasMinLength = (type.getMinLength() != null);
@@ -132,18 +231,11 @@ public class Marshaller {
             throw new UnmarshalException("actual length of " + type.getName()
                 + " exceeds explicit length of " + numBits + " bits");
         }
-        long paddingBits = numBits - actualNumBits;
-        if (paddingBits % BYTE_SIZE != 0) {
-            throw new UnmarshalException("number of padding bits must be divisible by 8");
-        }
-        long paddingBytes = paddingBits / BYTE_SIZE;
         int fillByte = 0;
         if (type.getFillByte() != null) {
             fillByte = type.getFillByte();
         }
-        for (int i = 0; i < paddingBytes; i++) {
-            writer.write(fillByte);
-        }
+        writer.fillBits(fillByte, numBits - actualNumBits);
     }
 
     /**
@@ -164,51 +256,141 @@ public class Marshaller {
         }
     }
 
-    private void marshalTaggedSequence(TaggedSequence sequence, BitStreamWriter writer)
-        throws IOException {
+    private void marshalTaggedSequence(Object info, TaggedSequence sequence,
+        BitStreamWriter writer) throws IOException {
         log.debug("marshalling sequence {}", sequence.getName());
+        Checksum checksum = sequence.getChecksum();
+        int checksumDepth = checksums.getDepth();
         evaluator.pushStack();
         try {
+            startChecksum(checksum, ChecksumRegion.TAG, writer);
             Tag tag = sequence.getTag();
             if (tag != null) {
                 marshalTag(tag, writer);
             }
+            startChecksum(checksum, ChecksumRegion.LENGTH_FIELD, writer);
             LengthField lengthField = sequence.getLengthField();
             if (lengthField == null) {
+                startChecksum(checksum, ChecksumRegion.PAYLOAD, writer);
                 marshalTaggedSequencePayload(sequence, writer);
             }
             else {
-                ByteArrayBitStreamWriter payloadWriter = new ByteArrayBitStreamWriter();
-                marshalTaggedSequencePayload(sequence, payloadWriter);
-                long numPayloadBits = payloadWriter.getBitPosition();
-                marshalLengthField(lengthField, numPayloadBits, writer);
-                if (payloadWriter.getBitOffset() == 0) {
-                    writer.write(payloadWriter.toByteArray());
+                // a payload not ending on a byte boundary is padded with zero bits
+                Long knownSize = payloadSizes.remove(info);
+                long numPayloadBits = (knownSize == null)
+                    ? sizeOfTaggedSequencePayload(sequence) : knownSize;
+                long numPaddingBits = (BYTE_SIZE - numPayloadBits % BYTE_SIZE) % BYTE_SIZE;
+                marshalLengthField(lengthField, numPayloadBits + numPaddingBits, writer);
+                startChecksum(checksum, ChecksumRegion.PAYLOAD, writer);
+                if (writer instanceof BitCountingWriter) {
+                    // the payload has just been sized, so it is not counted again, and its size
+                    // is kept for writing it when the enclosing payload has been sized
+                    ((BitCountingWriter) writer).count(numPayloadBits);
+                    payloadSizes.put(info, numPayloadBits);
                 }
                 else {
-                    throw new UnsupportedOperationException(
-                        "payload bitoffset != 0 is not supported");
+                    marshalTaggedSequencePayload(sequence, writer);
                 }
+                writer.fillBits(0, numPaddingBits);
+            }
+            if (checksum != null) {
+                marshalChecksum(checksum, writer);
             }
         }
         finally {
+            checksums.unwind(checksumDepth, writer);
             evaluator.popStack();
         }
     }
 
+    /**
+     * Computes the payload size of a tagged sequence, so that the length field can be written
+     * before the payload, without buffering the payload representation.
+     *
+     * @param sequence
+     *            tagged sequence
+     * @return number of payload bits
+     * @throws IOException
+     */
+    private long sizeOfTaggedSequencePayload(TaggedSequence sequence) throws IOException {
+        try (BitCountingWriter counter = new BitCountingWriter()) {
+            marshalTaggedSequencePayload(sequence, counter);
+            return counter.getBitPosition();
+        }
+    }
+
+    /**
+     * Starts the region of the given checksum field at the current position, if the region
+     * starts at the given part of the tagged sequence. The checksum is updated while the region
+     * is written.
+     */
+    void startChecksum(Checksum checksum, ChecksumRegion part, BitStreamWriter writer)
+        throws IOException {
+        if (checksum == null || ChecksumRegion.startOf(checksum) != part) {
+            return;
+        }
+        try {
+            checksums.start(checksum.getAlgorithm(), writer);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new MarshalException("checksum region must start and end on a byte boundary",
+                exc);
+        }
+    }
+
+    /**
+     * Gets the number of checksum regions being written.
+     */
+    int getChecksumDepth() {
+        return checksums.getDepth();
+    }
+
+    /**
+     * Discards the checksum regions started beyond the given nesting depth.
+     */
+    void unwindChecksums(int depth, BitStreamWriter writer) throws IOException {
+        checksums.unwind(depth, writer);
+    }
+
+    /**
+     * Ends the region of the given checksum field and writes the field. The checksum has been
+     * updated while the region was written, so the region is not read back.
+     */
+    void marshalChecksum(Checksum checksum, BitStreamWriter writer) throws IOException {
+        DadlType type = model.getType(checksum.getType());
+        if (!(type instanceof SimpleType)) {
+            throw new MarshalException("checksum field must have simple type");
+        }
+        long value;
+        try {
+            value = checksums.end(writer);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new MarshalException("checksum region must start and end on a byte boundary",
+                exc);
+        }
+        simpleTypeWriter.writeIntegerValueAsBinary((SimpleType) type, value, writer);
+    }
+
     /**
      * @param lengthField
      * @param numPayloadBits
      * @param writer
      * @throws IOException
      */
-    private void marshalLengthField(LengthField lengthField, long numPayloadBits,
+    void marshalLengthField(LengthField lengthField, long numPayloadBits,
         BitStreamWriter writer) throws IOException {
         DadlType type = model.getType(lengthField.getType());
         if (type instanceof SimpleType) {
             SimpleType simpleType = (SimpleType) type;
-            simpleTypeWriter.writeIntegerValueAsBinary(simpleType, numPayloadBits / BYTE_SIZE,
-                writer);
+            LongDadlAdapter adapter = context.getLongAdapter(simpleType, null);
+            if (adapter == null) {
+                simpleTypeWriter.writeIntegerValueAsBinary(simpleType,
+                    numPayloadBits / BYTE_SIZE, writer);
+            }
+            else {
+                context.writeLongViaAdapter(adapter, numPayloadBits / BYTE_SIZE, writer);
+            }
         }
         else {
             throw new UnmarshalException("length field must have simple type");
@@ -220,20 +402,31 @@ public class Marshaller {
         log.debug("marshalling choice {}", choice.getType());
         evaluator.pushStack();
         try {
-            ELProcessor processor = new ELProcessor();
-            processor.defineBean("self", info);
-            boolean branchMatched = false;
-            for (Element element : choice.getElement()) {
-                Object fieldInfo = processor.eval("self." + element.getName());
+            Class<?> klass = info.getClass();
+            List<ChoiceElement> elements = choice.getElement();
+            ChoiceBranches branches = ChoiceBranches.of(klass);
+            if (branches.isTracked()) {
+                int branch = branches.getSelectedBranch(info);
+                if (branch < 0 || branch >= elements.size()) {
+                    throw new MarshalException("no branch selected in choice: " + info);
+                }
+                Element element = elements.get(branch);
+                Object fieldInfo = PropertyAccessor.of(klass, element.getName()).get(info);
+                if (fieldInfo == null) {
+                    throw new MarshalException("selected branch " + element.getName()
+                        + " is empty in choice: " + info);
+                }
+                marshalChoiceField(fieldInfo, element, writer);
+                return;
+            }
+            for (Element element : elements) {
+                Object fieldInfo = PropertyAccessor.of(klass, element.getName()).get(info);
                 if (fieldInfo != null) {
                     marshalChoiceField(fieldInfo, element, writer);
-                    branchMatched = true;
-                    break;
+                    return;
                 }
             }
-            if (!branchMatched) {
-                throw new MarshalException("all branches empty in choice: " + info);
-            }
+            throw new MarshalException("all branches empty in choice: " + info);
         }
         finally {
             evaluator.popStack();
@@ -245,7 +438,7 @@ public class Marshaller {
      * @param writer
      * @throws IOException
      */
-    private void marshalTag(Tag tag, BitStreamWriter writer) throws IOException {
+    void marshalTag(Tag tag, BitStreamWriter writer) throws IOException {
         String typeName = tag.getType();
         Object type = model.getType(typeName);
         if (type instanceof SimpleType) {
@@ -291,12 +484,34 @@ public class Marshaller {
                 marshalSequenceIndividualField(fieldInfo, element, writer);
             }
         }
+        else if (element.getOutputValueCalc() == null && isPrimitiveInteger(element)) {
+            long value = evaluator.getParentLong(element.getName());
+            LongDadlAdapter adapter = context.getLongAdapter(element);
+            if (adapter == null) {
+                simpleTypeWriter.writeStandardBinary(element, value, writer);
+            }
+            else {
+                context.writeLongViaAdapter(adapter, value, writer);
+            }
+        }
         else {
             Object fieldInfo = evaluator.getParentProperty(element.getName());
             marshalSequenceIndividualField(fieldInfo, element, writer);
         }
     }
 
+    /**
+     * Checks if the given element is a plain binary integer mapped to a primitive property, which
+     * can be written without boxing.
+     */
+    private boolean isPrimitiveInteger(SequenceElement element) {
+        if (!context.isPrimitiveInteger(element)) {
+            return false;
+        }
+        Object parent = evaluator.getParent();
+        return PropertyAccessor.of(parent.getClass(), element.getName()).isPrimitiveInteger();
+    }
+
     private void marshalSequenceIndividualField(Object fieldInfo, SequenceElement element,
         BitStreamWriter writer) throws IOException {
         log.debug("marshalling field {}", element.getName());
@@ -323,7 +538,12 @@ public class Marshaller {
     private void marshalSequenceListField(SequenceElement element, BitStreamWriter writer)
         throws IOException {
         log.debug("marshalling list field {}", element.getName());
-        List<Object> items = (List<Object>) evaluator.getParentProperty(element.getName());
+        Object property = evaluator.getParentProperty(element.getName());
+        if (property.getClass().isArray()) {
+            marshalSequenceArrayField(property, element, writer);
+            return;
+        }
+        List<Object> items = (List<Object>) property;
         int index = 0;
         for (Object item : items) {
             log.debug("index {}", index);
@@ -332,6 +552,32 @@ public class Marshaller {
         }
     }
 
+    /**
+     * Marshals a primitive array. Plain binary integers are written directly without boxing.
+     */
+    private void marshalSequenceArrayField(Object items, SequenceElement element,
+        BitStreamWriter writer) throws IOException {
+        int numItems = Array.getLength(items);
+        LongDadlAdapter adapter = context.getLongAdapter(element);
+        if (adapter != null) {
+            for (int i = 0; i < numItems; i++) {
+                context.writeLongViaAdapter(adapter, PrimitiveArrays.get(items, i), writer);
+            }
+        }
+        else if (context.isPrimitiveInteger(element)) {
+            int numBits = evaluator.computeLength(element);
+            if (element.getLengthUnit() == LengthUnit.BYTE) {
+                numBits *= BYTE_SIZE;
+            }
+            writer.writeArray(items, numItems, numBits);
+        }
+        else {
+            for (int i = 0; i < numItems; i++) {
+                marshalSequenceIndividualField(Array.get(items, i), element, writer);
+            }
+        }
+    }
+
     private void marshalChoiceField(Object fieldInfo, Element element, BitStreamWriter writer)
         throws IOException {
         log.debug("marshalling branch {}", element.getName());
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.ByteArrayBitStreamReader;
+
+/**
+ * Decodes a stream of top-level messages arriving in arbitrary chunks of bytes, without blocking.
+ * <p>
+ * Chunks are passed to {@link #offer(ByteBuffer)} as they arrive, and complete messages are taken
+ * from {@link #poll()}. Decoding is driven by demand: a message is only decoded when polled, and
+ * {@code poll()} returns null when the buffered bytes do not contain a complete message. A
+ * consumer requesting the next chunk from its source only in this case buffers at most one
+ * message and one chunk, so a slow consumer throttles reading.
+ * <p>
+ * After running out of bytes, a message is not decoded again before the buffered bytes cover the
+ * read which failed, or the entire message if its length is known from a fixed layout or from
+ * the length field of a tagged sequence.
+ * <p>
+ * A message is incomplete when decoding attempts to read beyond the buffered bytes, even if the
+ * message could be decoded without these bytes, e.g. by omitting a trailing optional element.
+ * Such a message is decoded from the bytes available only after {@link #endOfInput()}. Each
+ * message starts on a byte boundary. Types bounded only by the end of input cannot be framed
+ * in a stream.
+ * <p>
+ * A decoder is not thread-safe.
+ *
+ * @author hwellmann
+ *
+ * @param <T>
+ *            info model class of the messages
+ */
+public class MessageDecoder<T> {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private Unmarshaller unmarshaller;
+
+    private Class<T> klass;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    /** Index of the first byte not yet consumed by a decoded message. */
+    private int start;
+
+    /** Index after the last buffered byte. */
+    private int end;
+
+    /**
+     * Number of buffered bytes required by the last decoding attempt which ran out of bytes. The
+     * message is not decoded again before this number of bytes is available.
+     */
+    private long requiredBytes;
+
+    private boolean complete;
+
+    private int maxMessageSize = Integer.MAX_VALUE;
+
+    /**
+     * Creates a decoder for messages of the given class.
+     *
+     * @param unmarshaller
+     *            unmarshaller, to be used exclusively by this decoder
+     * @param klass
+     *            info model class
+     */
+    public MessageDecoder(Unmarshaller unmarshaller, Class<T> klass) {
+        this.unmarshaller = unmarshaller;
+        this.klass = klass;
+    }
+
+    /**
+     * Sets the maximum number of bytes buffered for an incomplete message. A source sending a
+     * malformed length field could otherwise make the decoder buffer its entire input.
+     *
+     * @param maxMessageSize
+     *            maximum message size in bytes
+     */
+    public void setMaxMessageSize(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Appends the remaining bytes of the given chunk to the input. The chunk is copied and may be
+     * reused by the caller.
+     *
+     * @param chunk
+     *            chunk of bytes, positioned at the first byte to be read
+     * @throws IllegalStateException
+     *             after {@link #endOfInput()}
+     */
+    public void offer(ByteBuffer chunk) {
+        if (complete) {
+            throw new IllegalStateException("input is complete");
+        }
+        int length = chunk.remaining();
+        if (start > 0 && end + length > buffer.length) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end + length > buffer.length) {
+            byte[] enlarged = new byte[Math.max(end + length, 2 * buffer.length)];
+            System.arraycopy(buffer, 0, enlarged, 0, end);
+            buffer = enlarged;
+        }
+        chunk.get(buffer, end, length);
+        end += length;
+    }
+
+    /**
+     * Signals the end of input. Buffered bytes are then decoded even if the decoder runs out of
+     * bytes, and any error is reported by {@link #poll()}.
+     */
+    public void endOfInput() {
+        complete = true;
+    }
+
+    /**
+     * Checks if all messages have been decoded.
+     *
+     * @return true if the input is complete and all buffered bytes have been consumed
+     */
+    public boolean isFinished() {
+        return complete && start == end;
+    }
+
+    /**
+     * Decodes the next message from the buffered bytes.
+     *
+     * @return next message, or null if more input is needed or all messages have been decoded
+     * @throws IOException
+     *             on read error
+     * @throws UnmarshalException
+     *             if the message cannot be decoded, or if an incomplete message exceeds the
+     *             maximum message size
+     */
+    public T poll() throws IOException {
+        if (start == end) {
+            return null;
+        }
+        if (!complete && end - start < requiredBytes) {
+            checkMessageSize();
+            return null;
+        }
+        ChunkReader reader = new ChunkReader(buffer, start, end - start, complete);
+        T message;
+        try {
+            message = unmarshaller.unmarshal(reader, klass);
+        }
+        catch (IOException | RuntimeException exc) {
+            if (reader.isUnderflow() && !complete) {
+                return awaitInput(reader);
+            }
+            throw exc;
+        }
+        if (reader.isUnderflow() && !complete) {
+            return awaitInput(reader);
+        }
+        start += (int) ((reader.getBitPosition() + BYTE_SIZE - 1) / BYTE_SIZE);
+        requiredBytes = 0;
+        return message;
+    }
+
+    private T awaitInput(ChunkReader reader) throws UnmarshalException {
+        checkMessageSize();
+        // the message length, if known, saves decoding attempts on each partial chunk
+        long recordEnd = unmarshaller.getRecordEnd();
+        long messageBytes = (recordEnd < 0) ? 0 : (recordEnd + BYTE_SIZE - 1) / BYTE_SIZE;
+        requiredBytes = Math.max(reader.getRequiredLength(), messageBytes);
+        return null;
+    }
+
+    private void checkMessageSize() throws UnmarshalException {
+        if (end - start > maxMessageSize) {
+            throw new UnmarshalException("incomplete message exceeds " + maxMessageSize
+                + " bytes");
+        }
+    }
+
+    /**
+     * A reader on the buffered bytes which notes any attempt to read beyond them. Until the end of
+     * input, the length of the stream is reported as unknown, so that bounds checks are done by
+     * reading.
+     */
+    private static class ChunkReader extends ByteArrayBitStreamReader {
+
+        private boolean lengthKnown;
+
+        /** Number of bytes required by the furthest read beyond the buffered bytes. */
+        private long requiredLength;
+
+        ChunkReader(byte[] b, int offset, int length, boolean lengthKnown) {
+            super(b, offset, length);
+            this.lengthKnown = lengthKnown;
+        }
+
+        boolean isUnderflow() {
+            return requiredLength > 0;
+        }
+
+        long getRequiredLength() {
+            return requiredLength;
+        }
+
+        private void require(long numBytes) {
+            requiredLength = Math.max(requiredLength, numBytes);
+        }
+
+        @Override
+        public long length() {
+            return lengthKnown ? super.length() : -1;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long pos = getStreamPosition();
+            int b = super.read();
+            if (b < 0) {
+                require(pos + 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long pos = getStreamPosition();
+            int numBytes = super.read(b, off, len);
+            if (numBytes < len) {
+                require(pos + len);
+            }
+            return numBytes;
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            if (pos > super.length()) {
+                require(pos);
+            }
+            super.seek(pos);
+        }
+
+        @Override
+        public long readBitsAt(long bitPosition, int numBits) throws IOException {
+            try {
+                return super.readBitsAt(bitPosition, numBits);
+            }
+            catch (EOFException exc) {
+                require((bitPosition + numBits + BYTE_SIZE - 1) / BYTE_SIZE);
+                throw exc;
+            }
+        }
+
+        @Override
+        public void readArray(Object array, int numItems, int numBits, boolean signed)
+            throws IOException {
+            long end = getBitPosition() + (long) numItems * numBits;
+            try {
+                super.readArray(array, numItems, numBits, signed);
+            }
+            catch (EOFException exc) {
+                require((end + BYTE_SIZE - 1) / BYTE_SIZE);
+                throw exc;
+            }
+        }
+    }
+}
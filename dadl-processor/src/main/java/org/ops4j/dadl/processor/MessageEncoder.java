@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes top-level messages to chunks of bytes, one chunk per message. This is the counterpart
+ * of {@link MessageDecoder}: the concatenated chunks can be decoded by a decoder for the same
+ * class.
+ * <p>
+ * An encoder is not thread-safe.
+ *
+ * @author hwellmann
+ *
+ * @param <T>
+ *            info model class of the messages
+ */
+public class MessageEncoder<T> {
+
+    private Marshaller marshaller;
+
+    private ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+    /**
+     * Creates an encoder.
+     *
+     * @param marshaller
+     *            marshaller, to be used exclusively by this encoder
+     */
+    public MessageEncoder(Marshaller marshaller) {
+        this.marshaller = marshaller;
+    }
+
+    /**
+     * Encodes the given message. A trailing partial byte is padded with zero bits.
+     *
+     * @param message
+     *            info model object
+     * @return new buffer with the encoded message, positioned at its first byte
+     * @throws IOException
+     *             on marshalling error
+     */
+    public ByteBuffer encode(T message) throws IOException {
+        os.reset();
+        marshaller.marshal(message, os);
+        return ByteBuffer.wrap(os.toByteArray());
+    }
+}
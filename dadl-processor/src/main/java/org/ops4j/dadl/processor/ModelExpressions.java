@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.DadlType;
+import org.ops4j.dadl.metamodel.gen.Element;
+import org.ops4j.dadl.metamodel.gen.Sequence;
+import org.ops4j.dadl.metamodel.gen.SequenceElement;
+import org.ops4j.dadl.metamodel.gen.TaggedSequence;
+import org.ops4j.dadl.model.ValidatedModel;
+
+/**
+ * Finds the identifiers occurring in the expressions of a DADL model. Elements with these names
+ * may be referenced by other elements, so their values must be available to the
+ * {@link Evaluator} when parsing.
+ *
+ * @author hwellmann
+ *
+ */
+final class ModelExpressions {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+
+    private ModelExpressions() {
+        // hidden utility class constructor
+    }
+
+    /**
+     * Finds the identifiers occurring in any length, minimum length, discriminator or occurs
+     * count expression of the given model.
+     *
+     * @param model
+     *            validated model
+     * @return set of identifiers
+     */
+    static Set<String> findReferencedNames(ValidatedModel model) {
+        Set<String> names = new HashSet<>();
+        for (DadlType type : model.getTypeMap().values()) {
+            addReferencedNames(type, names);
+            List<? extends Element> elements = getElements(type);
+            if (elements != null) {
+                elements.forEach(element -> addReferencedNames(element, names));
+            }
+        }
+        return names;
+    }
+
+    private static void addReferencedNames(DadlType type, Set<String> names) {
+        addReferencedNames(type.getLength(), names);
+        addReferencedNames(type.getMinLength(), names);
+        if (type.getDiscriminator() != null) {
+            addReferencedNames(type.getDiscriminator().getTest(), names);
+        }
+        if (type instanceof SequenceElement) {
+            addReferencedNames(((SequenceElement) type).getOccursCount(), names);
+        }
+    }
+
+    private static void addReferencedNames(String expression, Set<String> names) {
+        if (expression != null) {
+            Matcher matcher = IDENTIFIER.matcher(expression);
+            while (matcher.find()) {
+                names.add(matcher.group());
+            }
+        }
+    }
+
+    /**
+     * Gets the elements of the given complex type.
+     *
+     * @param type
+     *            DADL type
+     * @return list of elements, or null if the type is not a sequence or a choice
+     */
+    static List<? extends Element> getElements(DadlType type) {
+        if (type instanceof Sequence) {
+            return ((Sequence) type).getElement();
+        }
+        if (type instanceof TaggedSequence) {
+            return ((TaggedSequence) type).getElement();
+        }
+        if (type instanceof Choice) {
+            return ((Choice) type).getElement();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of element paths to be materialized by a partial unmarshal. A path is a dot-separated
+ * sequence of element names, relative to the root type, e.g. {@code header.id}. A path selects the
+ * given element with all its content.
+ * <p>
+ * Elements not selected by the projection are skipped where their length can be determined
+ * without decoding them, otherwise they are decoded as usual.
+ *
+ * @author hwellmann
+ *
+ */
+public final class Projection {
+
+    /** Projection selecting all elements. */
+    public static final Projection ALL = new Projection(null);
+
+    private Map<String, Projection> children;
+
+    private Projection(Map<String, Projection> children) {
+        this.children = children;
+    }
+
+    /**
+     * Creates a projection for the given element paths.
+     *
+     * @param paths
+     *            dot-separated element paths
+     * @return projection
+     */
+    public static Projection of(String... paths) {
+        return of(Arrays.asList(paths));
+    }
+
+    /**
+     * Creates a projection for the given element paths.
+     *
+     * @param paths
+     *            dot-separated element paths
+     * @return projection
+     */
+    public static Projection of(Collection<String> paths) {
+        Projection root = new Projection(new HashMap<>());
+        for (String path : paths) {
+            root.add(path.split("\\."), 0);
+        }
+        return root;
+    }
+
+    private void add(String[] names, int index) {
+        String name = names[index];
+        Projection child = children.get(name);
+        if (index == names.length - 1) {
+            children.put(name, ALL);
+        }
+        else if (child != ALL) {
+            if (child == null) {
+                child = new Projection(new HashMap<>());
+                children.put(name, child);
+            }
+            child.add(names, index + 1);
+        }
+    }
+
+    /**
+     * Checks if this projection selects all elements.
+     *
+     * @return true if all elements are selected
+     */
+    public boolean isAll() {
+        return children == null;
+    }
+
+    /**
+     * Checks if this projection selects the element with the given name, or any of its children.
+     *
+     * @param name
+     *            element name
+     * @return true if selected
+     */
+    public boolean includes(String name) {
+        return children == null || children.containsKey(name);
+    }
+
+    /**
+     * Gets the projection for the content of the element with the given name.
+     *
+     * @param name
+     *            element name
+     * @return child projection
+     */
+    public Projection getChild(String name) {
+        if (children == null) {
+            return ALL;
+        }
+        Projection child = children.get(name);
+        return (child == null) ? ALL : child;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.el.ELManager;
+
+import org.ops4j.dadl.exc.Exceptions;
+
+/**
+ * Reads and writes a property of a Java model class. Accessors are looked up once per class and
+ * property name and then cached.
+ * <p>
+ * Properties of type {@code int}, {@code long}, {@code short} or {@code byte} can be read and
+ * written as {@code long} values without boxing.
+ *
+ * @author hwellmann
+ *
+ */
+final class PropertyAccessor {
+
+    private static final ClassValue<Map<String, PropertyAccessor>> ACCESSORS =
+        new ClassValue<Map<String, PropertyAccessor>>() {
+
+        @Override
+        protected Map<String, PropertyAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Field field;
+
+    private final Method getter;
+
+    private final Class<?> type;
+
+    private PropertyAccessor(Class<?> klass, String propertyName) {
+        try {
+            this.field = klass.getDeclaredField(propertyName);
+            field.setAccessible(true);
+            this.type = field.getType();
+            this.getter = findGetter(klass, propertyName);
+        }
+        catch (NoSuchFieldException exc) {
+            throw Exceptions.unchecked(exc);
+        }
+    }
+
+    /**
+     * Gets the accessor for the given property of the given class.
+     *
+     * @param klass
+     *            Java model class
+     * @param propertyName
+     *            property name
+     * @return accessor
+     */
+    static PropertyAccessor of(Class<?> klass, String propertyName) {
+        Map<String, PropertyAccessor> accessors = ACCESSORS.get(klass);
+        PropertyAccessor accessor = accessors.get(propertyName);
+        if (accessor == null) {
+            accessor = new PropertyAccessor(klass, propertyName);
+            accessors.put(propertyName, accessor);
+        }
+        return accessor;
+    }
+
+    private static Method findGetter(Class<?> klass, String propertyName) {
+        StringBuilder buffer = new StringBuilder("get");
+        buffer.append(propertyName.substring(0, 1).toUpperCase());
+        buffer.append(propertyName.substring(1));
+        try {
+            return klass.getDeclaredMethod(buffer.toString());
+        }
+        catch (NoSuchMethodException exc) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the declared type of the property.
+     *
+     * @return property type
+     */
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Gets the declared generic type of the property.
+     *
+     * @return generic property type
+     */
+    Type getGenericType() {
+        return field.getGenericType();
+    }
+
+    /**
+     * Checks if the property has one of the types {@code int}, {@code long}, {@code short} or
+     * {@code byte}.
+     *
+     * @return true if the property is a primitive integer
+     */
+    boolean isPrimitiveInteger() {
+        return type == int.class || type == long.class || type == short.class
+            || type == byte.class;
+    }
+
+    /**
+     * Gets the property value. The getter is invoked if there is one, since getters of list
+     * properties initialize the list on demand.
+     *
+     * @param target
+     *            object owning the property
+     * @return property value
+     */
+    Object get(Object target) {
+        try {
+            if (getter == null) {
+                return field.get(target);
+            }
+            return getter.invoke(target);
+        }
+        catch (IllegalAccessException | InvocationTargetException exc) {
+            throw Exceptions.unchecked(exc);
+        }
+    }
+
+    /**
+     * Sets the property value. Numeric values are coerced to the property type, if required.
+     *
+     * @param target
+     *            object owning the property
+     * @param value
+     *            property value
+     */
+    void set(Object target, Object value) {
+        try {
+            try {
+                field.set(target, value);
+            }
+            catch (IllegalArgumentException exc) {
+                // calculated values may be of a different numeric type, e.g. Long for int
+                if (!(value instanceof Number)) {
+                    throw exc;
+                }
+                field.set(target, ELManager.getExpressionFactory().coerceToType(value, type));
+            }
+        }
+        catch (IllegalAccessException exc) {
+            throw Exceptions.unchecked(exc);
+        }
+    }
+
+    /**
+     * Gets the value of an integer property as a {@code long}. Primitive properties are read
+     * without boxing.
+     *
+     * @param target
+     *            object owning the property
+     * @return property value
+     */
+    long getLong(Object target) {
+        try {
+            if (type == int.class) {
+                return field.getInt(target);
+            }
+            if (type == long.class) {
+                return field.getLong(target);
+            }
+            if (type == short.class) {
+                return field.getShort(target);
+            }
+            if (type == byte.class) {
+                return field.getByte(target);
+            }
+            Object value = get(target);
+            return (value == null) ? 0 : ((Number) value).longValue();
+        }
+        catch (IllegalAccessException exc) {
+            throw Exceptions.unchecked(exc);
+        }
+    }
+
+    /**
+     * Sets the value of an integer property from a {@code long}, narrowing it to the property type.
+     * Primitive properties are written without boxing.
+     *
+     * @param target
+     *            object owning the property
+     * @param value
+     *            property value
+     */
+    void setLong(Object target, long value) {
+        try {
+            if (type == int.class) {
+                field.setInt(target, (int) value);
+            }
+            else if (type == long.class) {
+                field.setLong(target, value);
+            }
+            else if (type == short.class) {
+                field.setShort(target, (short) value);
+            }
+            else if (type == byte.class) {
+                field.setByte(target, (byte) value);
+            }
+            else {
+                set(target, value);
+            }
+        }
+        catch (IllegalAccessException exc) {
+            throw Exceptions.unchecked(exc);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ops4j.dadl.processor.RecordSchema.FieldKind;
+
+/**
+ * Builds a {@link GenericRecord} from the events reported by an {@link EventParser}.
+ * <p>
+ * The parser reports the fields of a record in the order of the schema, with the element names
+ * of the model. Thus, the field of an event is found by comparing the name with the names of the
+ * current and the following fields of the schema, which are the same instances, without a map
+ * lookup. Lists of integers are built as a {@link LongList} without boxing.
+ *
+ * @author hwellmann
+ *
+ */
+class RecordBuilder implements DadlEventHandler {
+
+    private static final int INITIAL_DEPTH = 8;
+
+    private DadlContext context;
+
+    /** Records of the enclosing sequences and choices, innermost last. */
+    private List<GenericRecord> records = new ArrayList<>();
+
+    /** Index of the field of the last event for each record in {@link #records}. */
+    private int[] fields = new int[INITIAL_DEPTH];
+
+    private GenericRecord root;
+
+    RecordBuilder(DadlContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Resets this builder before parsing a new record.
+     */
+    void reset() {
+        root = null;
+        records.clear();
+    }
+
+    /**
+     * Gets the root record built by the last parse.
+     *
+     * @return root record
+     */
+    GenericRecord getRecord() {
+        return root;
+    }
+
+    @Override
+    public void startSequence(String name, String typeName) {
+        startRecord(name, typeName);
+    }
+
+    @Override
+    public void endSequence(String name) {
+        records.remove(records.size() - 1);
+    }
+
+    @Override
+    public void startChoice(String name, String typeName) {
+        startRecord(name, typeName);
+    }
+
+    @Override
+    public void endChoice(String name) {
+        records.remove(records.size() - 1);
+    }
+
+    @Override
+    public void startList(String name) {
+        GenericRecord record = current();
+        int field = fieldIndex(name);
+        boolean integers = (record.getSchema().getFieldKind(field) == FieldKind.INTEGER);
+        record.set(field, integers ? new LongList() : new ArrayList<>());
+    }
+
+    @Override
+    public void integer(String name, long value) {
+        GenericRecord record = current();
+        int field = fieldIndex(name);
+        if (record.getSchema().isList(field)) {
+            ((LongList) record.get(field)).addLong(value);
+        }
+        else {
+            record.setLong(field, value);
+        }
+    }
+
+    @Override
+    public void text(String name, byte[] bytes, int offset, int length) {
+        GenericRecord record = current();
+        int field = fieldIndex(name);
+        String text = new String(bytes, offset, length,
+            context.getCharset(record.getSchema().getElement(field)));
+        put(record, field, text);
+    }
+
+    @Override
+    public void opaque(String name, byte[] bytes, int offset, int length) {
+        GenericRecord record = current();
+        put(record, fieldIndex(name), Arrays.copyOfRange(bytes, offset, offset + length));
+    }
+
+    @Override
+    public void value(String name, Object value) {
+        GenericRecord record = current();
+        int field = fieldIndex(name);
+        if (record.getSchema().getFieldKind(field) == FieldKind.INTEGER
+            && value instanceof Number) {
+            // a long adapter reports a value for elements with a discriminator
+            put(record, field, ((Number) value).longValue());
+        }
+        else {
+            put(record, field, value);
+        }
+    }
+
+    private void startRecord(String name, String typeName) {
+        GenericRecord record = new GenericRecord(context.getRecordSchema(typeName));
+        if (records.isEmpty()) {
+            root = record;
+        }
+        else {
+            put(current(), fieldIndex(name), record);
+        }
+        int depth = records.size();
+        if (depth == fields.length) {
+            fields = Arrays.copyOf(fields, 2 * depth);
+        }
+        fields[depth] = 0;
+        records.add(record);
+    }
+
+    private GenericRecord current() {
+        return records.get(records.size() - 1);
+    }
+
+    /**
+     * Gets the index of the field with the given name in the current record, starting with the
+     * field of the last event.
+     */
+    private int fieldIndex(String name) {
+        int depth = records.size() - 1;
+        RecordSchema schema = records.get(depth).getSchema();
+        int numFields = schema.getNumFields();
+        for (int field = fields[depth]; field < numFields; field++) {
+            // the parser reports the element names of the model, which the schema refers to
+            if (schema.getFieldName(field) == name) {
+                fields[depth] = field;
+                return field;
+            }
+        }
+        int field = schema.fieldIndex(name);
+        fields[depth] = field;
+        return field;
+    }
+
+    private void put(GenericRecord record, int field, Object value) {
+        if (record.getSchema().isList(field)) {
+            addItem(record, field, value);
+        }
+        else {
+            record.set(field, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addItem(GenericRecord record, int field, Object item) {
+        ((List<Object>) record.get(field)).add(item);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+/**
+ * A filter evaluated by the {@link Unmarshaller} on the values of simple elements as soon as they
+ * are parsed. When the filter rejects a value, the rest of the record is skipped and the record
+ * is not returned.
+ * <p>
+ * The tag of a tagged sequence is passed to the filter as an integer value with the path of the
+ * sequence followed by {@link #TAG}, e.g. {@code header.$tag}, or just {@code $tag} for the root
+ * type.
+ *
+ * @author hwellmann
+ *
+ */
+@FunctionalInterface
+public interface RecordFilter {
+
+    /** Name of the tag of a tagged sequence in the path passed to the filter. */
+    String TAG = "$tag";
+
+    /**
+     * Checks if the record containing the given value is accepted.
+     *
+     * @param path
+     *            dot-separated path of the element, relative to the root type, e.g.
+     *            {@code header.id}
+     * @param value
+     *            element value
+     * @return true if the record is accepted, false to reject it
+     */
+    boolean accept(String path, Object value);
+
+    /**
+     * Checks if the record containing the given integer value is accepted. This method is called
+     * without boxing for tags and for integer elements mapped to primitive properties. The
+     * default implementation passes the value to {@link #accept(String, Object)} as a
+     * {@code Long}.
+     *
+     * @param path
+     *            dot-separated path of the element, relative to the root type, e.g.
+     *            {@code header.id}
+     * @param value
+     *            element value
+     * @return true if the record is accepted, false to reject it
+     */
+    default boolean accept(String path, long value) {
+        return accept(path, (Object) value);
+    }
+}
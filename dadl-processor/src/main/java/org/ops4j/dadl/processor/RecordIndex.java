@@ -0,0 +1,370 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
+import static org.ops4j.dadl.io.Constants.HEX_BASE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.BitStreamWriter;
+import org.ops4j.dadl.io.ByteArrayBitStreamReader;
+import org.ops4j.dadl.io.OutputStreamBitStreamWriter;
+import org.ops4j.dadl.io.VarInts;
+import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.ChoiceElement;
+import org.ops4j.dadl.metamodel.gen.DadlType;
+import org.ops4j.dadl.metamodel.gen.Tag;
+import org.ops4j.dadl.metamodel.gen.TaggedSequence;
+import org.ops4j.dadl.model.ValidatedModel;
+
+/**
+ * An index of the records in a stream of top-level records of the same type, e.g. a large
+ * capture file. For each record, the index contains its byte offset, its tag and its choice
+ * branch. The index is built by a single scan of the stream and can be saved and reloaded, so
+ * that records can be accessed by number or by tag without scanning the stream again.
+ * <p>
+ * Each record starts on a byte boundary. The tag of a record is the tag of its type, if this is
+ * a tagged sequence, or the tag of the selected branch of its type, if this is a choice. It is
+ * {@link #NO_TAG} for records without a tag. The branch is {@link #NO_BRANCH} for records of
+ * other types than choices.
+ * <p>
+ * In the saved form, offsets are delta encoded, and all values are LEB128 varints, so that
+ * records of less than 128 bytes take a single byte per record.
+ *
+ * @author hwellmann
+ *
+ */
+public final class RecordIndex {
+
+    /** Tag of records without a tag. */
+    public static final long NO_TAG = -1;
+
+    /** Branch of records which are not choices. */
+    public static final int NO_BRANCH = ChoiceBranches.NO_BRANCH;
+
+    /** First four bytes of a saved index: {@code "DIDX"}. */
+    private static final int MAGIC = 0x44494458;
+
+    private static final int VERSION = 1;
+
+    private static final int HAS_TAGS = 1;
+
+    private static final int HAS_BRANCHES = 2;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private int size;
+
+    private long sourceLength;
+
+    private long[] offsets;
+
+    /** Tags of the records, or null if no record has a tag. */
+    private long[] tags;
+
+    /** Branches of the records, or null if no record is a choice. */
+    private int[] branches;
+
+    private RecordIndex(int capacity) {
+        this.offsets = new long[capacity];
+    }
+
+    /**
+     * Builds an index by scanning all records of the given reader, from its current position to
+     * its end. Records are unmarshalled with an empty projection, so that their elements are
+     * skipped without decoding where possible.
+     *
+     * @param context
+     *            DADL context
+     * @param klass
+     *            info model class of the records
+     * @param reader
+     *            bit stream reader with known length, positioned at the first record
+     * @return record index
+     * @throws IOException
+     *             on read error
+     * @throws IllegalArgumentException
+     *             if the length of the reader is unknown
+     */
+    public static RecordIndex build(DadlContext context, Class<?> klass, BitStreamReader reader)
+        throws IOException {
+        long length = reader.length();
+        if (length < 0) {
+            throw new IllegalArgumentException("stream length must be known");
+        }
+        ValidatedModel model = context.getModel();
+        DadlType type = model.getType(klass.getSimpleName());
+        Unmarshaller unmarshaller = context.createUnmarshaller();
+        ChoiceBranches choiceBranches = ChoiceBranches.of(klass);
+        Projection projection = Projection.of();
+
+        RecordIndex index = new RecordIndex(INITIAL_CAPACITY);
+        index.sourceLength = length;
+        long endPos = BYTE_SIZE * length;
+        long pos = roundUp(reader.getBitPosition());
+        while (pos < endPos) {
+            reader.setBitPosition(pos);
+            Object info = unmarshaller.unmarshal(reader, klass, projection);
+            int branch = choiceBranches.isTracked() ? choiceBranches.getSelectedBranch(info)
+                : NO_BRANCH;
+            index.add(pos / BYTE_SIZE, getTag(model, type, branch), branch);
+            long next = roundUp(reader.getBitPosition());
+            if (next == pos) {
+                throw new UnmarshalException("empty record at offset " + pos / BYTE_SIZE);
+            }
+            pos = next;
+        }
+        return index;
+    }
+
+    private static long roundUp(long bitPosition) {
+        return (bitPosition + BYTE_SIZE - 1) / BYTE_SIZE * BYTE_SIZE;
+    }
+
+    private static long getTag(ValidatedModel model, DadlType type, int branch) {
+        Tag tag = null;
+        if (type instanceof TaggedSequence) {
+            tag = ((TaggedSequence) type).getTag();
+        }
+        else if (type instanceof Choice && branch != NO_BRANCH) {
+            ChoiceElement element = ((Choice) type).getElement().get(branch);
+            tag = element.getTag();
+            DadlType branchType = model.getType(element.getType());
+            if (tag == null && branchType instanceof TaggedSequence) {
+                tag = ((TaggedSequence) branchType).getTag();
+            }
+        }
+        return (tag == null) ? NO_TAG : Long.parseUnsignedLong(tag.getHexValue(), HEX_BASE);
+    }
+
+    private void add(long offset, long tag, int branch) {
+        if (size == offsets.length) {
+            int capacity = 2 * size;
+            offsets = Arrays.copyOf(offsets, capacity);
+            if (tags != null) {
+                tags = Arrays.copyOf(tags, capacity);
+            }
+            if (branches != null) {
+                branches = Arrays.copyOf(branches, capacity);
+            }
+        }
+        if (tag != NO_TAG && tags == null) {
+            tags = new long[offsets.length];
+            Arrays.fill(tags, 0, size, NO_TAG);
+        }
+        if (branch != NO_BRANCH && branches == null) {
+            branches = new int[offsets.length];
+            Arrays.fill(branches, 0, size, NO_BRANCH);
+        }
+        offsets[size] = offset;
+        if (tags != null) {
+            tags[size] = tag;
+        }
+        if (branches != null) {
+            branches[size] = branch;
+        }
+        size++;
+    }
+
+    /**
+     * Gets the number of records.
+     *
+     * @return number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the length of the indexed stream in bytes. This can be compared with the current
+     * length of the stream, to detect a stale index.
+     *
+     * @return length in bytes
+     */
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * Gets the byte offset of the given record.
+     *
+     * @param n
+     *            record number, starting at 0
+     * @return byte offset
+     */
+    public long getOffset(int n) {
+        checkIndex(n);
+        return offsets[n];
+    }
+
+    /**
+     * Gets the tag of the given record.
+     *
+     * @param n
+     *            record number, starting at 0
+     * @return tag value, or {@link #NO_TAG}
+     */
+    public long getTag(int n) {
+        checkIndex(n);
+        return (tags == null) ? NO_TAG : tags[n];
+    }
+
+    /**
+     * Gets the selected choice branch of the given record.
+     *
+     * @param n
+     *            record number, starting at 0
+     * @return branch index, or {@link #NO_BRANCH}
+     */
+    public int getBranch(int n) {
+        checkIndex(n);
+        return (branches == null) ? NO_BRANCH : branches[n];
+    }
+
+    private void checkIndex(int n) {
+        if (n < 0 || n >= size) {
+            throw new IndexOutOfBoundsException("record " + n + ", size " + size);
+        }
+    }
+
+    /**
+     * Gets the numbers of all records with the given tag, in ascending order.
+     *
+     * @param tag
+     *            tag value
+     * @return record numbers
+     */
+    public IntStream recordsWithTag(long tag) {
+        if (tags == null) {
+            return IntStream.empty();
+        }
+        return IntStream.range(0, size).filter(n -> tags[n] == tag);
+    }
+
+    /**
+     * Unmarshals the given record.
+     *
+     * @param n
+     *            record number, starting at 0
+     * @param unmarshaller
+     *            unmarshaller
+     * @param reader
+     *            reader of the indexed stream
+     * @param klass
+     *            info model class of the records
+     * @return record
+     * @throws IOException
+     *             on read error
+     */
+    public <T> T get(int n, Unmarshaller unmarshaller, BitStreamReader reader, Class<T> klass)
+        throws IOException {
+        reader.setBitPosition(BYTE_SIZE * getOffset(n));
+        return unmarshaller.unmarshal(reader, klass);
+    }
+
+    /**
+     * Saves this index to the given stream. The stream is not closed.
+     *
+     * @param os
+     *            output stream
+     * @throws IOException
+     *             on write error
+     */
+    public void write(OutputStream os) throws IOException {
+        BitStreamWriter writer = new OutputStreamBitStreamWriter(os);
+        writer.writeInt(MAGIC);
+        writer.writeByte(VERSION);
+        int flags = (tags == null) ? 0 : HAS_TAGS;
+        if (branches != null) {
+            flags |= HAS_BRANCHES;
+        }
+        writer.writeByte(flags);
+        VarInts.writeLeb128(size, writer);
+        VarInts.writeLeb128(sourceLength, writer);
+        long previous = 0;
+        for (int n = 0; n < size; n++) {
+            VarInts.writeLeb128(offsets[n] - previous, writer);
+            previous = offsets[n];
+            if (tags != null) {
+                // shifted by one, so that NO_TAG takes a single byte
+                VarInts.writeLeb128(tags[n] + 1, writer);
+            }
+            if (branches != null) {
+                VarInts.writeLeb128(branches[n] + 1L, writer);
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Loads an index saved by {@link #write(OutputStream)}. The stream is not closed.
+     *
+     * @param is
+     *            input stream
+     * @return record index
+     * @throws IOException
+     *             on read error
+     * @throws UnmarshalException
+     *             if the stream does not contain a record index
+     */
+    public static RecordIndex read(InputStream is) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int n = is.read(buffer); n >= 0; n = is.read(buffer)) {
+            os.write(buffer, 0, n);
+        }
+        try (BitStreamReader reader = new ByteArrayBitStreamReader(os.toByteArray())) {
+            if (reader.readInt() != MAGIC || reader.readUnsignedByte() != VERSION) {
+                throw new UnmarshalException("not a record index");
+            }
+            int flags = reader.readUnsignedByte();
+            int size = (int) VarInts.readLeb128(reader);
+            RecordIndex index = new RecordIndex(size);
+            index.size = size;
+            index.sourceLength = VarInts.readLeb128(reader);
+            if ((flags & HAS_TAGS) != 0) {
+                index.tags = new long[size];
+            }
+            if ((flags & HAS_BRANCHES) != 0) {
+                index.branches = new int[size];
+            }
+            long offset = 0;
+            for (int n = 0; n < size; n++) {
+                offset += VarInts.readLeb128(reader);
+                index.offsets[n] = offset;
+                if (index.tags != null) {
+                    index.tags[n] = VarInts.readLeb128(reader) - 1;
+                }
+                if (index.branches != null) {
+                    index.branches[n] = (int) VarInts.readLeb128(reader) - 1;
+                }
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ops4j.dadl.exc.DadlException;
+import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.DadlType;
+import org.ops4j.dadl.metamodel.gen.Element;
+import org.ops4j.dadl.metamodel.gen.SequenceElement;
+import org.ops4j.dadl.metamodel.gen.SimpleType;
+import org.ops4j.dadl.model.ValidatedModel;
+
+/**
+ * Layout of the {@link GenericRecord} instances of a complex type, compiled from the model.
+ * <p>
+ * Each element of the type is a field with a fixed index. Single integer fields are stored in a
+ * primitive slot, all other fields in a reference slot. Lists are stored as {@code List<Object>}.
+ * Lists of integers read from the input are {@link LongList} instances with primitive items.
+ * <p>
+ * Schemas are obtained from {@link DadlContext#getRecordSchema(String)}. A schema is immutable
+ * and thread-safe.
+ *
+ * @author hwellmann
+ *
+ */
+public final class RecordSchema {
+
+    /**
+     * Kind of value of a field, or of the items of a list field.
+     */
+    public enum FieldKind {
+        /** Integer or enumeration value, as {@code long}. */
+        INTEGER,
+
+        /** Text value, as {@code String}. */
+        TEXT,
+
+        /** Opaque value, as {@code byte[]}. */
+        OPAQUE,
+
+        /** Sequence or choice, as {@link GenericRecord}. */
+        RECORD,
+
+        /** Value of a type with an adapter, as accepted by the adapter. */
+        VALUE
+    }
+
+    private DadlType type;
+
+    private Element[] elements;
+
+    private FieldKind[] kinds;
+
+    private boolean[] lists;
+
+    /** Index of the primitive or reference slot of each field. */
+    private int[] slots;
+
+    private Map<String, Integer> indexes = new HashMap<>();
+
+    private int numLongSlots;
+
+    private int numRefSlots;
+
+    RecordSchema(DadlContext context, ValidatedModel model, DadlType type) {
+        this.type = type;
+        List<? extends Element> typeElements = ModelExpressions.getElements(type);
+        if (typeElements == null || type.getAdapter() != null) {
+            throw new DadlException("no record schema for type " + type.getName());
+        }
+        int numFields = typeElements.size();
+        this.elements = typeElements.toArray(new Element[numFields]);
+        this.kinds = new FieldKind[numFields];
+        this.lists = new boolean[numFields];
+        this.slots = new int[numFields];
+        for (int i = 0; i < numFields; i++) {
+            Element element = elements[i];
+            kinds[i] = getFieldKind(context, model.getType(element.getType()));
+            lists[i] = element instanceof SequenceElement
+                && model.isList((SequenceElement) element);
+            slots[i] = (kinds[i] == FieldKind.INTEGER && !lists[i]) ? numLongSlots++
+                : numRefSlots++;
+            indexes.put(element.getName(), i);
+        }
+    }
+
+    private static FieldKind getFieldKind(DadlContext context, DadlType fieldType) {
+        if (!(fieldType instanceof SimpleType)) {
+            return (fieldType.getAdapter() == null) ? FieldKind.RECORD : FieldKind.VALUE;
+        }
+        SimpleType simpleType = (SimpleType) fieldType;
+        if (simpleType.getAdapter() != null) {
+            DadlAdapter<?> adapter = context.getAdapter(simpleType);
+            boolean primitive = adapter instanceof LongDadlAdapter;
+            return primitive ? FieldKind.INTEGER : FieldKind.VALUE;
+        }
+        switch (simpleType.getContentType()) {
+            case INTEGER:
+                return FieldKind.INTEGER;
+            case TEXT:
+                return FieldKind.TEXT;
+            case OPAQUE:
+                return FieldKind.OPAQUE;
+            default:
+                throw new UnsupportedOperationException(simpleType.getContentType().toString());
+        }
+    }
+
+    /**
+     * Gets the name of the type of this schema.
+     *
+     * @return type name
+     */
+    public String getTypeName() {
+        return type.getName();
+    }
+
+    /**
+     * Checks if the type of this schema is a choice. At most one field of a choice record is set.
+     *
+     * @return true for a choice
+     */
+    public boolean isChoice() {
+        return type instanceof Choice;
+    }
+
+    /**
+     * Gets the number of fields.
+     *
+     * @return number of fields
+     */
+    public int getNumFields() {
+        return elements.length;
+    }
+
+    /**
+     * Gets the index of the field with the given name.
+     *
+     * @param name
+     *            element name
+     * @return field index, or -1 if there is no such field
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Gets the element name of the given field.
+     *
+     * @param field
+     *            field index
+     * @return element name
+     */
+    public String getFieldName(int field) {
+        return elements[field].getName();
+    }
+
+    /**
+     * Gets the kind of value of the given field, or of its items for a list field.
+     *
+     * @param field
+     *            field index
+     * @return field kind
+     */
+    public FieldKind getFieldKind(int field) {
+        return kinds[field];
+    }
+
+    /**
+     * Checks if the given field is a list.
+     *
+     * @param field
+     *            field index
+     * @return true for a list field
+     */
+    public boolean isList(int field) {
+        return lists[field];
+    }
+
+    DadlType getType() {
+        return type;
+    }
+
+    Element getElement(int field) {
+        return elements[field];
+    }
+
+    /**
+     * Gets the index of the field with the given name.
+     *
+     * @throws IllegalArgumentException
+     *             if there is no such field
+     */
+    int fieldIndex(String name) {
+        Integer index = indexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("no field " + name + " in " + type.getName());
+        }
+        return index;
+    }
+
+    /**
+     * Checks if the given field is stored in a primitive slot.
+     */
+    boolean isPrimitive(int field) {
+        return kinds[field] == FieldKind.INTEGER && !lists[field];
+    }
+
+    int getSlot(int field) {
+        return slots[field];
+    }
+
+    int getNumLongSlots() {
+        return numLongSlots;
+    }
+
+    int getNumRefSlots() {
+        return numRefSlots;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ops4j.dadl.exc.MarshalException;
+import org.ops4j.dadl.io.BitStreamWriter;
+import org.ops4j.dadl.metamodel.gen.Element;
+import org.ops4j.dadl.metamodel.gen.SequenceElement;
+import org.ops4j.dadl.model.ValidatedModel;
+
+/**
+ * Writes a {@link GenericRecord} by walking its fields and feeding them to a
+ * {@link DadlWriterCursor}, which validates the structure and writes tags, length fields,
+ * checksums and padding.
+ * <p>
+ * Elements with an {@code outputValueCalc} expression are calculated from the record and stored
+ * in the record before being written, like the properties of an info model object.
+ *
+ * @author hwellmann
+ *
+ */
+class RecordWriter {
+
+    private DadlWriterCursor cursor;
+
+    /** Evaluator for output value expressions, with records as {@code self}. */
+    private Evaluator evaluator = new Evaluator();
+
+    RecordWriter(DadlContext context, ValidatedModel model, Marshaller engine) {
+        this.cursor = new DadlWriterCursor(context, model, engine);
+    }
+
+    void write(GenericRecord record, BitStreamWriter writer) throws IOException {
+        cursor.reset(writer, record.getSchema().getType());
+        writeRecord(record.getSchema().getTypeName(), record);
+    }
+
+    private void writeRecord(String name, GenericRecord record) throws IOException {
+        RecordSchema schema = record.getSchema();
+        evaluator.setSelf(new RecordView(record));
+        evaluator.pushStack();
+        try {
+            if (schema.isChoice()) {
+                cursor.startChoice(name);
+                writeBranch(record);
+                cursor.endChoice();
+            }
+            else {
+                cursor.startSequence(name);
+                for (int i = 0; i < schema.getNumFields(); i++) {
+                    calculateValue(record, i);
+                    if (record.isSet(i)) {
+                        writeField(record, i);
+                    }
+                }
+                cursor.endSequence();
+            }
+        }
+        finally {
+            evaluator.popStack();
+        }
+    }
+
+    private void writeBranch(GenericRecord record) throws IOException {
+        for (int i = 0; i < record.getSchema().getNumFields(); i++) {
+            if (record.isSet(i)) {
+                writeField(record, i);
+                return;
+            }
+        }
+        throw new MarshalException("no branch set in choice " + record.getSchema().getTypeName());
+    }
+
+    private void calculateValue(GenericRecord record, int field) {
+        Element element = record.getSchema().getElement(field);
+        if (element instanceof SequenceElement) {
+            String expr = ((SequenceElement) element).getOutputValueCalc();
+            if (expr != null) {
+                record.set(field, evaluator.evaluate(expr));
+            }
+        }
+    }
+
+    private void writeField(GenericRecord record, int field) throws IOException {
+        RecordSchema schema = record.getSchema();
+        String name = schema.getFieldName(field);
+        if (schema.isList(field)) {
+            cursor.startList(name);
+            Object items = record.get(field);
+            if (items instanceof LongList) {
+                writeLongs(name, (LongList) items);
+            }
+            else {
+                for (Object item : (List<?>) items) {
+                    writeValue(schema, field, name, item);
+                }
+            }
+            cursor.endList();
+        }
+        else if (schema.isPrimitive(field)) {
+            cursor.writeLong(name, record.getLong(field));
+        }
+        else {
+            writeValue(schema, field, name, record.get(field));
+        }
+    }
+
+    private void writeLongs(String name, LongList items) throws IOException {
+        for (int i = 0; i < items.size(); i++) {
+            cursor.writeLong(name, items.getLong(i));
+        }
+    }
+
+    private void writeValue(RecordSchema schema, int field, String name, Object value)
+        throws IOException {
+        switch (schema.getFieldKind(field)) {
+            case INTEGER:
+                cursor.writeLong(name, ((Number) value).longValue());
+                break;
+            case TEXT:
+                cursor.writeText(name, (String) value);
+                break;
+            case OPAQUE:
+                cursor.writeBytes(name, (byte[]) value);
+                break;
+            case RECORD:
+                writeRecord(name, (GenericRecord) value);
+                break;
+            default:
+                cursor.writeValue(name, value);
+        }
+    }
+
+    /**
+     * A read-only map view of a record, so that expressions can refer to its fields by name.
+     */
+    private static class RecordView extends AbstractMap<String, Object> {
+
+        private GenericRecord record;
+
+        RecordView(GenericRecord record) {
+            this.record = record;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int field = record.getSchema().indexOf((String) key);
+            return (field < 0) ? null : record.get(field);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return record.getSchema().indexOf((String) key) >= 0;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            RecordSchema schema = record.getSchema();
+            Set<Map.Entry<String, Object>> entries = new LinkedHashSet<>();
+            for (int i = 0; i < schema.getNumFields(); i++) {
+                entries.add(new SimpleImmutableEntry<>(schema.getFieldName(i), record.get(i)));
+            }
+            return entries;
+        }
+    }
+}
@@ -17,19 +17,21 @@
  */
 package org.ops4j.dadl.processor;
 
-import static org.ops4j.dadl.io.Constants.DEC_BASE;
+import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
 import static org.ops4j.dadl.io.Constants.NIBBLE_SIZE;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.nio.charset.StandardCharsets;
 
 import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.Bcd;
 import org.ops4j.dadl.io.BitStreamReader;
 import org.ops4j.dadl.io.Constants;
+import org.ops4j.dadl.io.TextCodec;
+import org.ops4j.dadl.io.TextNumbers;
 import org.ops4j.dadl.metamodel.gen.DadlType;
 import org.ops4j.dadl.metamodel.gen.Element;
 import org.ops4j.dadl.metamodel.gen.Enumeration;
+import org.ops4j.dadl.metamodel.gen.Justification;
 import org.ops4j.dadl.metamodel.gen.LengthKind;
 import org.ops4j.dadl.metamodel.gen.SimpleType;
 import org.slf4j.Logger;
@@ -45,8 +47,12 @@ public class SimpleTypeReader {
 
     private static Logger log = LoggerFactory.getLogger(SimpleTypeReader.class);
 
+    private static final int BCD_PAIR_BASE = 100;
+
     private DadlContext context;
     private Evaluator evaluator;
+    private TextNumbers.Parser textNumberParser = new TextNumbers.Parser();
+    private TextCodec textCodec = new TextCodec();
 
     SimpleTypeReader(DadlContext context, Evaluator evaluator) {
         this.context = context;
@@ -124,6 +130,8 @@ public class SimpleTypeReader {
                 return readIntegerValueAsStandardBinary(simpleType, klass, reader);
             case BCD:
                 return readIntegerValueAsBcdBinary(simpleType, klass, reader);
+            case PACKED:
+                return readIntegerValueAsPackedDecimal(simpleType, klass, reader);
             default:
                 throw new UnsupportedOperationException("unsupported binaryNumberRep = "
                     + simpleType.getBinaryNumberRep());
@@ -132,15 +140,28 @@ public class SimpleTypeReader {
 
     Number readIntegerValueAsStandardBinary(DadlType simpleType, Class<?> klass,
         BitStreamReader reader) throws IOException {
-        int numBits = evaluator.computeBitLength(simpleType, reader.getBitPosition());
-        long value;
-        if (Boolean.TRUE.equals(simpleType.isUnsigned())) {
-            value = reader.readBits(numBits);
+        return convertLong(readStandardBinary(simpleType, reader), klass);
+    }
+
+    /**
+     * Reads an integer in standard binary representation as a primitive value.
+     *
+     * @param type
+     *            type or element with representation properties
+     * @param reader
+     *            bit stream reader
+     * @return value
+     * @throws IOException
+     *             on read error
+     */
+    long readStandardBinary(DadlType type, BitStreamReader reader) throws IOException {
+        int numBits = evaluator.computeBitLength(type, reader.getBitPosition());
+        if (Boolean.TRUE.equals(type.isUnsigned())) {
+            return reader.readBits(numBits);
         }
         else {
-            value = reader.readSignedBits(numBits);
+            return reader.readSignedBits(numBits);
         }
-        return convertLong(value, klass);
     }
 
     Number readIntegerValueAsBcdBinary(DadlType simpleType, Class<?> klass,
@@ -149,43 +170,90 @@ public class SimpleTypeReader {
         if (numBits % NIBBLE_SIZE != 0) {
             throw new UnmarshalException("BCD bit length must be divisible by 4");
         }
-        int numDigits = numBits / NIBBLE_SIZE;
-        long value = 0;
-        for (int i = 0; i < numDigits; i++) {
-            value *= DEC_BASE;
-            long digit = reader.readBits(NIBBLE_SIZE);
-            // TODO signed numbers, assume non-negative for now
-            if (digit >= DEC_BASE) {
-                throw new UnmarshalException("illegal digit: " + digit);
+        return convertLong(readBcdDigits(numBits / NIBBLE_SIZE, reader), klass);
+    }
+
+    Number readIntegerValueAsPackedDecimal(DadlType simpleType, Class<?> klass,
+        BitStreamReader reader) throws IOException {
+        int numBits = evaluator.computeBitLength(simpleType, reader.getBitPosition());
+        if (numBits % NIBBLE_SIZE != 0 || numBits == 0) {
+            throw new UnmarshalException("packed decimal bit length must be divisible by 4");
+        }
+        long value = readBcdDigits(numBits / NIBBLE_SIZE - 1, reader);
+        try {
+            if (Bcd.isNegative((int) reader.readBits(NIBBLE_SIZE))) {
+                value = -value;
             }
-            value += digit;
         }
-
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(exc.getMessage());
+        }
         return convertLong(value, klass);
     }
 
+    /**
+     * Reads the given number of BCD digits, two digits at a time.
+     */
+    private long readBcdDigits(int numDigits, BitStreamReader reader) throws IOException {
+        try {
+            long value = 0;
+            int remaining = numDigits;
+            if (remaining % 2 != 0) {
+                value = Bcd.decodeNibble((int) reader.readBits(NIBBLE_SIZE));
+                remaining--;
+            }
+            for (; remaining > 0; remaining -= 2) {
+                value = value * BCD_PAIR_BASE + Bcd.decodeByte((int) reader.readBits(BYTE_SIZE));
+            }
+            return value;
+        }
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(exc.getMessage());
+        }
+    }
+
     Number readIntegerValueAsText(DadlType type, Class<?> klass,
         BitStreamReader reader) throws IOException {
         if (type.getLengthKind() == LengthKind.EXPLICIT) {
             long length = evaluator.computeBitLength(type, reader.getBitPosition());
-            byte[] bytes = readBytes(reader, length / Constants.BYTE_SIZE);
-            String s = new String(bytes, StandardCharsets.UTF_8);
-            return convertLong(Long.parseLong(s), klass);
+            return convertLong(readTextNumber(type, length / Constants.BYTE_SIZE, reader), klass);
         }
         throw new UnsupportedOperationException();
     }
 
+    private long readTextNumber(DadlType type, long numBytes, BitStreamReader reader)
+        throws IOException {
+        Justification justification = context.getTextNumberJustification(type);
+        textNumberParser.reset(context.getTextNumberPadCharacter(type),
+            justification != Justification.LEFT, justification != Justification.RIGHT);
+        try {
+            for (long i = 0; i < numBytes; i++) {
+                int b = reader.read();
+                if (b < 0) {
+                    String msg = String.format("expected %d bytes, read %d bytes", numBytes, i);
+                    throw new UnmarshalException(msg);
+                }
+                textNumberParser.accept(b);
+            }
+            return textNumberParser.getValue();
+        }
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(exc.getMessage());
+        }
+    }
+
     String readTextValue(SimpleType type, DadlType representation, BitStreamReader reader)
         throws IOException {
         if (representation.getLengthKind() != LengthKind.IMPLICIT) {
             long length = evaluator.computeBitLength(representation, reader.getBitPosition());
-            byte[] bytes = readBytes(reader, length / Constants.BYTE_SIZE);
-            try {
-                return new String(bytes, representation.getEncoding());
-            }
-            catch (UnsupportedEncodingException exc) {
-                throw new UnmarshalException(exc);
+            int numBytes = (int) (length / Constants.BYTE_SIZE);
+            byte[] bytes = textCodec.getByteBuffer(numBytes);
+            int numRead = reader.read(bytes, 0, numBytes);
+            if (numRead < numBytes) {
+                String msg = String.format("expected %d bytes, read %d bytes", numBytes, numRead);
+                throw new UnmarshalException(msg);
             }
+            return textCodec.decode(bytes, numBytes, context.getCharset(representation));
         }
         throw new UnsupportedOperationException();
     }
@@ -210,7 +278,16 @@ public class SimpleTypeReader {
         throws IOException {
         if (type.getLengthKind() == LengthKind.EXPLICIT) {
             long length = evaluator.computeBitLength(representation, reader.getBitPosition());
-            return readBytes(reader, length / Constants.BYTE_SIZE);
+            int numTailBits = (int) (length % BYTE_SIZE);
+            if (numTailBits == 0) {
+                return readBytes(reader, length / BYTE_SIZE);
+            }
+            // trailing bits are stored left aligned in an extra byte
+            byte[] bytes = new byte[(int) (length / BYTE_SIZE) + 1];
+            reader.readFully(bytes, 0, bytes.length - 1);
+            long tail = reader.readBits(numTailBits);
+            bytes[bytes.length - 1] = (byte) (tail << (BYTE_SIZE - numTailBits));
+            return bytes;
         }
         throw new UnsupportedOperationException();
     }
@@ -23,8 +23,10 @@ import static org.ops4j.dadl.io.Constants.NIBBLE_SIZE;
 import java.io.IOException;
 
 import org.ops4j.dadl.exc.MarshalException;
-import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.Bcd;
 import org.ops4j.dadl.io.BitStreamWriter;
+import org.ops4j.dadl.io.TextCodec;
+import org.ops4j.dadl.io.TextNumbers;
 import org.ops4j.dadl.metamodel.gen.DadlType;
 import org.ops4j.dadl.metamodel.gen.Element;
 import org.ops4j.dadl.metamodel.gen.Enumeration;
@@ -46,8 +48,16 @@ public class SimpleTypeWriter {
 
     private static Logger log = LoggerFactory.getLogger(SimpleTypeWriter.class);
 
+    private static final int BCD_PAIR_BASE = 100;
+
+    /** Maximum number of BCD digits written in one chunk. */
+    private static final int MAX_CHUNK_DIGITS = 14;
+
+    private static final long CHUNK_DIVISOR = 100_000_000_000_000L;
+
     private DadlContext context;
     private Evaluator evaluator;
+    private TextCodec textCodec = new TextCodec();
 
     SimpleTypeWriter(DadlContext context, Evaluator evaluator) {
         this.context = context;
@@ -65,6 +75,10 @@ public class SimpleTypeWriter {
         BitStreamWriter writer) throws IOException {
         log.debug("writing simple value of type {}", type.getName());
         Object calculatedValue = calculateValue(fieldInfo, element);
+        evaluator.setSelf(calculatedValue);
+        if (context.writeValueViaAdapter(type, calculatedValue, writer)) {
+            return;
+        }
         switch (type.getContentType()) {
             case INTEGER:
                 marshalIntegerField(calculatedValue, element, type, writer);
@@ -83,6 +97,10 @@ public class SimpleTypeWriter {
 
     void marshalEnumerationField(Object fieldInfo, Element element, Enumeration enumeration,
         BitStreamWriter writer) throws IOException {
+        evaluator.setSelf(fieldInfo);
+        if (context.writeValueViaAdapter(enumeration, fieldInfo, writer)) {
+            return;
+        }
         Object rawValue = evaluator.getEnumerationValue(fieldInfo);
         marshalSimpleField(rawValue, element, enumeration, writer);
     }
@@ -106,7 +124,7 @@ public class SimpleTypeWriter {
         return fieldInfo;
     }
 
-    private void marshalIntegerField(Object fieldInfo, Element element, SimpleType type,
+    void marshalIntegerField(Object fieldInfo, Element element, SimpleType type,
         BitStreamWriter writer) throws IOException {
         switch (type.getRepresentation()) {
             case BINARY:
@@ -121,13 +139,12 @@ public class SimpleTypeWriter {
         }
     }
 
-    private void marshalTextField(Object fieldInfo, Element element, BitStreamWriter writer)
+    void marshalTextField(Object fieldInfo, Element element, BitStreamWriter writer)
         throws IOException {
         if (fieldInfo instanceof String) {
             String text = (String) fieldInfo;
             verifyLength(element, text.length());
-            byte[] bytes = text.getBytes(element.getEncoding());
-            writer.write(bytes, 0, bytes.length);
+            textCodec.encode(text, context.getCharset(element), writer);
         }
     }
 
@@ -139,12 +156,24 @@ public class SimpleTypeWriter {
 
     }
 
-    private void marshalOpaqueField(Object fieldInfo, Element element, BitStreamWriter writer)
+    void marshalOpaqueField(Object fieldInfo, Element element, BitStreamWriter writer)
         throws IOException {
         if (fieldInfo instanceof byte[]) {
+            // a length in bits which is not a multiple of 8 is taken from the leading bits
+            // of the last byte
             byte[] bytes = (byte[]) fieldInfo;
-            verifyLength(element, bytes.length);
-            writer.write(bytes, 0, bytes.length);
+            long numBits = (long) BYTE_SIZE * bytes.length;
+            Integer length = evaluator.computeLength(element);
+            if (length != null) {
+                numBits = length;
+                if (element.getLengthUnit() == LengthUnit.BYTE) {
+                    numBits *= BYTE_SIZE;
+                }
+                if ((numBits + BYTE_SIZE - 1) / BYTE_SIZE != bytes.length) {
+                    throw new MarshalException("computed length does not match actual length");
+                }
+            }
+            writer.writeBits(bytes, 0, numBits);
         }
     }
 
@@ -157,6 +186,9 @@ public class SimpleTypeWriter {
             case BCD:
                 writeIntegerValueAsBcdBinary(type, info, writer);
                 break;
+            case PACKED:
+                writeIntegerValueAsPackedDecimal(type, info, writer);
+                break;
             default:
                 throw new UnsupportedOperationException("unsupported binaryNumberRep = "
                     + type.getBinaryNumberRep());
@@ -174,7 +206,23 @@ public class SimpleTypeWriter {
         if (info instanceof Number) {
             value = ((Number) info).longValue();
         }
+        writeStandardBinary(type, value, writer);
+    }
 
+    /**
+     * Writes a primitive integer value in standard binary representation.
+     *
+     * @param type
+     *            type or element with representation properties
+     * @param value
+     *            value
+     * @param writer
+     *            bit stream writer
+     * @throws IOException
+     *             on write error
+     */
+    void writeStandardBinary(DadlType type, long value, BitStreamWriter writer)
+        throws IOException {
         long numBits = evaluator.computeLength(type);
         if (type.getLengthUnit() == LengthUnit.BYTE) {
             numBits *= BYTE_SIZE;
@@ -192,26 +240,71 @@ public class SimpleTypeWriter {
         if (info instanceof Number) {
             value = ((Number) info).longValue();
         }
+        if (value < 0) {
+            throw new MarshalException("BCD value must not be negative: " + value);
+        }
+        writeBcdDigits(value, computeNumNibbles(type), writer);
+    }
+
+    private void writeIntegerValueAsPackedDecimal(DadlType type, Object info,
+        BitStreamWriter writer) throws IOException {
+        evaluator.setSelf(info);
+        if (context.writeValueViaAdapter(type, info, writer)) {
+            return;
+        }
+        long value = 0;
+        if (info instanceof Number) {
+            value = ((Number) info).longValue();
+        }
+        int numDigits = computeNumNibbles(type) - 1;
+        if (numDigits < 0 || value == Long.MIN_VALUE) {
+            throw new MarshalException("value too large for " + numDigits + " digits");
+        }
+        int sign;
+        if (value < 0) {
+            sign = Bcd.SIGN_NEGATIVE;
+        }
+        else {
+            sign = Boolean.TRUE.equals(type.isUnsigned()) ? Bcd.SIGN_UNSIGNED : Bcd.SIGN_POSITIVE;
+        }
+        writeBcdDigits(Math.abs(value), numDigits, writer);
+        writer.writeBits(sign, NIBBLE_SIZE);
+    }
 
+    private int computeNumNibbles(DadlType type) {
         long numBits = evaluator.computeLength(type);
         if (type.getLengthUnit() == LengthUnit.BYTE) {
             numBits *= BYTE_SIZE;
         }
         if (numBits % NIBBLE_SIZE != 0) {
-            throw new UnmarshalException("BCD bit length must be divisible by 4");
+            throw new MarshalException("BCD bit length must be divisible by 4");
         }
-        long numDigits = numBits / NIBBLE_SIZE;
-        String s = Long.toString(value);
-        long numPaddingDigits = numDigits - s.length();
-        if (numPaddingDigits < 0) {
-            throw new UnmarshalException("value too large for " + numDigits + " digits");
+        return (int) (numBits / NIBBLE_SIZE);
+    }
+
+    /**
+     * Writes a non-negative value with the given number of BCD digits, encoding two digits at a
+     * time. Up to {@value #MAX_CHUNK_DIGITS} digits are collected in a single {@code long} and
+     * written at once.
+     */
+    private void writeBcdDigits(long value, int numDigits, BitStreamWriter writer)
+        throws IOException {
+        if (numDigits > MAX_CHUNK_DIGITS) {
+            writeBcdDigits(value / CHUNK_DIVISOR, numDigits - MAX_CHUNK_DIGITS, writer);
+            writeBcdDigits(value % CHUNK_DIVISOR, MAX_CHUNK_DIGITS, writer);
+            return;
         }
-        for (int i = 0; i < numPaddingDigits; i++) {
-            writer.writeBits(0, NIBBLE_SIZE);
+        long bits = 0;
+        long remaining = value;
+        int numBits = numDigits * NIBBLE_SIZE;
+        for (int shift = 0; shift < numBits; shift += BYTE_SIZE) {
+            bits |= (long) Bcd.encodeByte((int) (remaining % BCD_PAIR_BASE)) << shift;
+            remaining /= BCD_PAIR_BASE;
         }
-        for (int i = 0; i < s.length(); i++) {
-            writer.writeBits(s.charAt(i) - '0', NIBBLE_SIZE);
+        if (remaining != 0 || (bits >>> numBits) != 0) {
+            throw new MarshalException("value too large for " + numDigits + " digits");
         }
+        writer.writeBits(bits, numBits);
     }
 
     private void writeIntegerValueAsText(DadlType type, Object info, BitStreamWriter writer)
@@ -220,47 +313,40 @@ public class SimpleTypeWriter {
         if (context.writeValueViaAdapter(type, info, writer)) {
             return;
         }
-        long value = 0;
         if (info instanceof Number) {
-            value = ((Number) info).longValue();
-            String s = Long.toString(value);
+            long value = ((Number) info).longValue();
             int numBytes = evaluator.computeLength(type);
-            if (s.length() > numBytes) {
-                throw new MarshalException(numBytes + " bytes are not sufficient for value " + s);
+            int length = TextNumbers.length(value);
+            if (length > numBytes) {
+                throw new MarshalException(numBytes + " bytes are not sufficient for value "
+                    + value);
             }
-            writeTextWithPadding(s, numBytes, type.getTextNumberJustification(),
-                type.getTextNumberPadCharacter(), writer);
+            int padCharacter = context.getTextNumberPadCharacter(type);
+            int totalPadding = numBytes - length;
+            int leftPadding = leftPadding(totalPadding, context.getTextNumberJustification(type));
+            writePadding(padCharacter, leftPadding, writer);
+            TextNumbers.write(value, writer);
+            writePadding(padCharacter, totalPadding - leftPadding, writer);
         }
     }
 
-    private void writeTextWithPadding(String s, int numBytes, Justification justification,
-        String padCharacter, BitStreamWriter writer) throws IOException {
-        int totalPadding = numBytes - s.length();
-        int leftPadding = totalPadding;
-        int rightPadding = totalPadding;
+    private int leftPadding(int totalPadding, Justification justification) {
         switch (justification) {
             case LEFT:
-                leftPadding = 0;
-                break;
+                return 0;
             case RIGHT:
-                rightPadding = 0;
-                break;
+                return totalPadding;
             case CENTER:
-                leftPadding /= 2;
-                rightPadding = leftPadding;
-                if (leftPadding + rightPadding < totalPadding) {
-                    leftPadding++;
-                }
-                break;
+                return totalPadding - totalPadding / 2;
             default:
                 throw new IllegalArgumentException(justification.toString());
         }
-        for (int i = 0; i < leftPadding; i++) {
-            writer.writeBytes(padCharacter);
-        }
-        writer.writeBytes(s);
-        for (int i = 0; i < rightPadding; i++) {
-            writer.writeBytes(padCharacter);
+    }
+
+    private void writePadding(int padCharacter, int numBytes, BitStreamWriter writer)
+        throws IOException {
+        for (int i = 0; i < numBytes; i++) {
+            writer.writeByte(padCharacter);
         }
     }
 }
@@ -21,16 +21,24 @@ import static org.ops4j.dadl.io.Constants.BYTE_SIZE;
 import static org.ops4j.dadl.io.Constants.HEX_BASE;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.lang.reflect.Array;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import org.ops4j.dadl.exc.Exceptions;
 import org.ops4j.dadl.exc.UnmarshalException;
 import org.ops4j.dadl.io.BitStreamReader;
 import org.ops4j.dadl.io.ByteArrayBitStreamReader;
 import org.ops4j.dadl.io.Constants;
+import org.ops4j.dadl.io.PrimitiveArrays;
+import org.ops4j.dadl.metamodel.gen.Checksum;
 import org.ops4j.dadl.metamodel.gen.Choice;
+import org.ops4j.dadl.metamodel.gen.ChoiceElement;
 import org.ops4j.dadl.metamodel.gen.DadlType;
 import org.ops4j.dadl.metamodel.gen.Discriminator;
 import org.ops4j.dadl.metamodel.gen.Element;
@@ -38,12 +46,14 @@ import org.ops4j.dadl.metamodel.gen.Enumeration;
 import org.ops4j.dadl.metamodel.gen.LengthField;
 import org.ops4j.dadl.metamodel.gen.LengthKind;
 import org.ops4j.dadl.metamodel.gen.LengthUnit;
+import org.ops4j.dadl.metamodel.gen.OccursCountKind;
 import org.ops4j.dadl.metamodel.gen.Sequence;
 import org.ops4j.dadl.metamodel.gen.SequenceElement;
 import org.ops4j.dadl.metamodel.gen.SimpleType;
 import org.ops4j.dadl.metamodel.gen.Tag;
 import org.ops4j.dadl.metamodel.gen.TaggedSequence;
 import org.ops4j.dadl.metamodel.gen.TestKind;
+import org.ops4j.dadl.model.FixedLayout;
 import org.ops4j.dadl.model.ValidatedModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,16 +69,97 @@ public class Unmarshaller {
 
     private static Logger log = LoggerFactory.getLogger(Unmarshaller.class);
 
+    private static final int INITIAL_ARRAY_SIZE = 16;
+
     private DadlContext context;
     private ValidatedModel model;
     private Evaluator evaluator;
     private SimpleTypeReader simpleTypeReader;
+    private ChecksumCalculator checksums = new ChecksumCalculator();
+
+    /**
+     * Fixed layouts of sequences which only contain binary integers and can be read directly at
+     * precomputed offsets.
+     */
+    private Map<String, FixedLayout> directLayouts = new HashMap<>();
+
+    /**
+     * Identifiers occurring in any expression of the model. Elements with these names are always
+     * materialized, even when not selected by the current projection.
+     */
+    private Set<String> referencedNames;
+
+    /**
+     * Types containing a discriminator or a tag, which may not be skipped without decoding.
+     */
+    private Map<String, Boolean> checkedTypes = new HashMap<>();
+
+    private Projection projection = Projection.ALL;
+
+    private RecordFilter filter;
+
+    /** Dot-separated paths of the current element and its ancestors, relative to the root type. */
+    private Deque<String> path = new ArrayDeque<>();
+
+    /** Dot-separated paths of child elements, keyed by parent path and element name. */
+    private Map<String, Map<String, String>> childPaths = new HashMap<>();
+
+    /** Has the current record been rejected by the filter? */
+    private boolean rejected;
+
+    /** Nesting depth of choices, optional elements and lists which may be backtracked. */
+    private int speculationDepth;
+
+    /** Bit position of the end of the current record, or -1 if not yet known. */
+    private long recordEnd;
+
+    private long recordStart;
+
+    /**
+     * Number of sequences enclosing the current element. A tagged sequence at depth 0 is the
+     * root type or the selected branch of a root choice.
+     */
+    private int sequenceDepth;
+
+    /** Are existing instances of the target graph being reused? */
+    private boolean reuse;
+
+    private InstancePool pool;
+
+    private EventParser eventParser;
+
+    private RecordBuilder recordBuilder;
 
     Unmarshaller(DadlContext context, ValidatedModel model) {
         this.context = context;
         this.model = model;
         this.evaluator = new Evaluator();
         this.simpleTypeReader = new SimpleTypeReader(context, evaluator);
+        findDirectLayouts();
+        this.referencedNames = ModelExpressions.findReferencedNames(model);
+    }
+
+    private void findDirectLayouts() {
+        for (DadlType type : model.getTypeMap().values()) {
+            if (type instanceof Sequence) {
+                FixedLayout layout = model.getFixedLayout(type.getName());
+                if (layout != null && hasOnlyBinaryIntegers((Sequence) type, layout)) {
+                    directLayouts.put(type.getName(), layout);
+                }
+            }
+        }
+    }
+
+    private boolean hasOnlyBinaryIntegers(Sequence sequence, FixedLayout layout) {
+        for (int i = 0; i < layout.getNumFields(); i++) {
+            SequenceElement element = sequence.getElement().get(i);
+            DadlType fieldType = model.getType(element.getType());
+            if (!context.isPlainBinaryInteger(fieldType, element)
+                || layout.getFieldLength(i) > Long.SIZE) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -104,21 +195,307 @@ public class Unmarshaller {
      *             on read error
      */
     public <T> T unmarshal(byte[] bytes, int offset, int length, Class<T> klass) throws IOException {
+        return unmarshal(bytes, offset, length, klass, Projection.ALL);
+    }
+
+    /**
+     * Partially unmarshals the given byte array into an info model object of the given class.
+     * Only the elements selected by the given projection are materialized. Other elements are
+     * skipped without decoding where possible and are left empty in the result.
+     * <p>
+     * Elements referenced by expressions of the model are always materialized.
+     *
+     * @param bytes
+     *            byte array
+     * @param klass
+     *            info model class
+     * @param projection
+     *            element paths to be materialized, or null for all elements
+     * @return instance of model class
+     * @throws IOException
+     *             on read error
+     */
+    public <T> T unmarshal(byte[] bytes, Class<T> klass, Projection projection)
+        throws IOException {
+        return unmarshal(bytes, 0, bytes.length, klass, projection);
+    }
+
+    /**
+     * Partially unmarshals the given byte array into an info model object of the given class.
+     * Only the elements selected by the given projection are materialized.
+     *
+     * @param bytes
+     *            byte array
+     * @param offset
+     *            offset of first byte to be read
+     * @param length
+     *            number of bytes to be read
+     * @param klass
+     *            info model class
+     * @param projection
+     *            element paths to be materialized, or null for all elements
+     * @return instance of model class
+     * @throws IOException
+     *             on read error
+     * @see #unmarshal(byte[], Class, Projection)
+     */
+    public <T> T unmarshal(byte[] bytes, int offset, int length, Class<T> klass,
+        Projection projection) throws IOException {
+        try (BitStreamReader reader = new ByteArrayBitStreamReader(bytes, offset, length)) {
+            return unmarshalRecord(reader, klass, projection, null);
+        }
+    }
+
+    /**
+     * Unmarshals the given byte array into an info model object of the given class, unless the
+     * given filter rejects any simple element value.
+     *
+     * @param bytes
+     *            byte array
+     * @param klass
+     *            info model class
+     * @param recordFilter
+     *            filter evaluated on each simple element value as soon as it is parsed, or null
+     *            to accept all records
+     * @return instance of model class, or null if the record was rejected
+     * @throws IOException
+     *             on read error
+     */
+    public <T> T unmarshalFiltered(byte[] bytes, Class<T> klass, RecordFilter recordFilter)
+        throws IOException {
+        try (BitStreamReader reader = new ByteArrayBitStreamReader(bytes)) {
+            return unmarshalRecord(reader, klass, Projection.ALL, recordFilter);
+        }
+    }
+
+    /**
+     * Unmarshals an info model object of the given class from the current position of the given
+     * reader. After returning, the reader is positioned at the end of the record. The reader is
+     * not closed.
+     *
+     * @param reader
+     *            bit stream reader
+     * @param klass
+     *            info model class
+     * @return instance of model class
+     * @throws IOException
+     *             on read error
+     */
+    public <T> T unmarshal(BitStreamReader reader, Class<T> klass) throws IOException {
+        return unmarshalRecord(reader, klass, Projection.ALL, null);
+    }
+
+    /**
+     * Partially unmarshals an info model object of the given class from the current position of
+     * the given reader. After returning, the reader is positioned at the end of the record. The
+     * reader is not closed.
+     *
+     * @param reader
+     *            bit stream reader
+     * @param klass
+     *            info model class
+     * @param projection
+     *            element paths to be materialized, or null for all elements
+     * @return instance of model class
+     * @throws IOException
+     *             on read error
+     * @see #unmarshal(byte[], Class, Projection)
+     */
+    public <T> T unmarshal(BitStreamReader reader, Class<T> klass, Projection projection)
+        throws IOException {
+        return unmarshalRecord(reader, klass, projection, null);
+    }
+
+    /**
+     * Unmarshals an info model object of the given class from the current position of the given
+     * reader, unless the given filter rejects any simple element value. After returning, the
+     * reader is positioned at the end of the record, whether or not the record was accepted.
+     * <p>
+     * When a value is rejected and the end of the record is known, the reader jumps to the end of
+     * the record immediately. The end of the record is known for types with a fixed layout and
+     * for tagged sequences with a length field. Otherwise, the rest of the record is skipped
+     * where possible, as with an empty {@link Projection}.
+     * <p>
+     * Within a choice branch, an optional element or a list item, rejection only takes effect
+     * when the enclosing element has been matched successfully.
+     *
+     * @param reader
+     *            bit stream reader
+     * @param klass
+     *            info model class
+     * @param recordFilter
+     *            filter evaluated on each simple element value as soon as it is parsed, or null
+     *            to accept all records
+     * @return instance of model class, or null if the record was rejected
+     * @throws IOException
+     *             on read error
+     */
+    public <T> T unmarshalFiltered(BitStreamReader reader, Class<T> klass,
+        RecordFilter recordFilter) throws IOException {
+        return unmarshalRecord(reader, klass, Projection.ALL, recordFilter);
+    }
+
+    /**
+     * Unmarshals a generic record of the given type from the given byte array, for models
+     * without info model classes.
+     *
+     * @param bytes
+     *            byte array
+     * @param typeName
+     *            name of a sequence or choice type of the current model
+     * @return generic record
+     * @throws IOException
+     *             on read error
+     */
+    public GenericRecord unmarshal(byte[] bytes, String typeName) throws IOException {
+        try (BitStreamReader reader = new ByteArrayBitStreamReader(bytes)) {
+            return unmarshal(reader, typeName);
+        }
+    }
+
+    /**
+     * Unmarshals a generic record of the given type from the current position of the given
+     * reader. After returning, the reader is positioned at the end of the record. The reader is
+     * not closed.
+     *
+     * @param reader
+     *            bit stream reader
+     * @param typeName
+     *            name of a sequence or choice type of the current model
+     * @return generic record
+     * @throws IOException
+     *             on read error
+     */
+    public GenericRecord unmarshal(BitStreamReader reader, String typeName) throws IOException {
+        if (model.getType(typeName) == null) {
+            throw new UnmarshalException("unknown type " + typeName);
+        }
+        // fails early for types without a record schema
+        context.getRecordSchema(typeName);
+        if (eventParser == null) {
+            eventParser = new EventParser(context, model);
+            recordBuilder = new RecordBuilder(context);
+        }
+        recordBuilder.reset();
+        eventParser.parse(reader, typeName, recordBuilder);
+        return recordBuilder.getRecord();
+    }
+
+    /**
+     * Unmarshals the given byte array into the given existing info model object, reusing the
+     * nested objects and lists already attached to it.
+     * <p>
+     * All fields of the target are overwritten. Optional elements and choice branches not present
+     * in the input are reset to null, lists are cleared in place. Nested objects detached from
+     * the target are returned to the instance pool, if any, and new nested objects are taken from
+     * the pool where possible. Thus, a consumer processing one message at a time can decode all
+     * messages into the same object graph.
+     *
+     * @param bytes
+     *            byte array
+     * @param target
+     *            info model object to be filled
+     * @return the target object
+     * @throws IOException
+     *             on read error
+     */
+    public <T> T unmarshalInto(byte[] bytes, T target) throws IOException {
+        try (BitStreamReader reader = new ByteArrayBitStreamReader(bytes)) {
+            return unmarshalInto(reader, target);
+        }
+    }
+
+    /**
+     * Unmarshals an info model object from the current position of the given reader into the
+     * given existing object. After returning, the reader is positioned at the end of the record.
+     * The reader is not closed.
+     *
+     * @param reader
+     *            bit stream reader
+     * @param target
+     *            info model object to be filled
+     * @return the target object
+     * @throws IOException
+     *             on read error
+     * @see #unmarshalInto(byte[], Object)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T unmarshalInto(BitStreamReader reader, T target) throws IOException {
+        reuse = true;
+        try {
+            return unmarshalRecord(reader, (Class<T>) target.getClass(), target, Projection.ALL,
+                null);
+        }
+        finally {
+            reuse = false;
+        }
+    }
+
+    /**
+     * Sets a pool of nested instances to be used by {@link #unmarshalInto(byte[], Object)}.
+     *
+     * @param instancePool
+     *            instance pool, or null to create all nested instances on demand
+     */
+    public void setInstancePool(InstancePool instancePool) {
+        this.pool = instancePool;
+    }
+
+    private <T> T unmarshalRecord(BitStreamReader reader, Class<T> klass,
+        Projection recordProjection, RecordFilter recordFilter) throws IOException {
+        return unmarshalRecord(reader, klass, null, recordProjection, recordFilter);
+    }
+
+    private <T> T unmarshalRecord(BitStreamReader reader, Class<T> klass, T target,
+        Projection recordProjection, RecordFilter recordFilter) throws IOException {
         String typeName = klass.getSimpleName();
         DadlType type = model.getType(typeName);
-        try (BitStreamReader reader = new ByteArrayBitStreamReader(bytes, offset, length)) {
-            return unmarshal(type, klass, reader);
+        this.projection = (recordProjection == null) ? Projection.ALL : recordProjection;
+        this.filter = recordFilter;
+        this.rejected = false;
+        this.speculationDepth = 0;
+        this.sequenceDepth = 0;
+        this.path.clear();
+        this.recordStart = reader.getBitPosition();
+        FixedLayout layout = model.getFixedLayout(typeName);
+        this.recordEnd = (layout == null) ? -1 : recordStart + layout.getBitLength();
+        try {
+            T info = unmarshal(type, klass, target, reader);
+            return rejected ? null : info;
+        }
+        catch (RecordRejectedException exc) {
+            log.debug("record rejected, skipping to {}", recordEnd);
+            reader.setBitPosition(recordEnd);
+            return null;
         }
+        finally {
+            this.projection = Projection.ALL;
+            this.filter = null;
+        }
+    }
+
+    /**
+     * Gets the end of the last record, as known from a fixed layout or from the length field of
+     * a root tagged sequence. This is also available when reading the record has failed.
+     *
+     * @return bit position of the end of the record, or -1 if not known
+     */
+    long getRecordEnd() {
+        return recordEnd;
     }
 
-    private <T> T unmarshal(DadlType type, Class<T> klass, BitStreamReader reader)
+    private <T> T unmarshal(DadlType type, Class<T> klass, Object target, BitStreamReader reader)
         throws IOException {
         long startPos = reader.getBitPosition();
         T info = context.readValueViaAdapter(type, reader);
         if (info == null) {
-            info = newInstance(klass);
+            info = obtainInstance(klass, target);
             evaluator.setSelf(info);
-            if (type instanceof Sequence) {
+            FixedLayout layout = directLayouts.get(type.getName());
+            if (layout != null) {
+                info = unmarshalFixedSequence(info, (Sequence) type, layout, klass, reader);
+            }
+            else if (type instanceof Sequence) {
                 info = unmarshalSequence(info, (Sequence) type, klass, reader);
             }
             else if (type instanceof TaggedSequence) {
@@ -163,6 +540,76 @@ public class Unmarshaller {
         reader.skipBits(paddingBits);
     }
 
+    /**
+     * Returns the given target for reuse, or else a pooled instance, or else a new instance.
+     */
+    private <T> T obtainInstance(Class<T> klass, Object target) {
+        if (target != null) {
+            return klass.cast(target);
+        }
+        if (reuse && pool != null) {
+            T pooled = pool.acquire(klass);
+            if (pooled != null) {
+                return pooled;
+            }
+        }
+        return newInstance(klass);
+    }
+
+    /**
+     * Takes a pooled instance for a complex element which may turn out not to be present in the
+     * input. The caller releases the instance again if it is not used.
+     */
+    private Object acquireSpeculativeTarget(Class<?> klass, Element element) {
+        if (!reuse || pool == null || isSimple(element)) {
+            return null;
+        }
+        return pool.acquire(klass);
+    }
+
+    /**
+     * Returns a pooled instance taken by {@link #acquireSpeculativeTarget(Class, Element)} to the
+     * pool, unless it has become the value of the element.
+     */
+    private void releaseUnusedTarget(Object pooled, Object used) {
+        if (pooled != null && pooled != used) {
+            pool.release(pooled);
+        }
+    }
+
+    /**
+     * Gets the current value of the given complex element for reuse.
+     */
+    private Object getReuseTarget(Element element) {
+        if (!reuse || isSimple(element)) {
+            return null;
+        }
+        return evaluator.getParentProperty(element.getName());
+    }
+
+    /**
+     * Resets the property for the given element of the reused parent, when the element is not
+     * present in the input. A detached nested object is returned to the pool.
+     */
+    private void resetProperty(Element element) {
+        if (!reuse) {
+            return;
+        }
+        Object parent = evaluator.getParent();
+        PropertyAccessor accessor = PropertyAccessor.of(parent.getClass(), element.getName());
+        if (accessor.isPrimitiveInteger()) {
+            accessor.setLong(parent, 0);
+            return;
+        }
+        Object value = accessor.get(parent);
+        if (value != null) {
+            if (pool != null && !isSimple(element)) {
+                pool.release(value);
+            }
+            accessor.set(parent, null);
+        }
+    }
+
     private <T> T newInstance(Class<T> klass) {
         try {
             return klass.newInstance();
@@ -176,11 +623,62 @@ public class Unmarshaller {
         BitStreamReader reader) throws IOException {
         log.debug("unmarshalling sequence {}", sequence.getName());
         evaluator.pushStack();
+        sequenceDepth++;
         try {
             for (SequenceElement element : sequence.getElement()) {
                 unmarshalSequenceField(klass, element, reader);
             }
         }
+        finally {
+            sequenceDepth--;
+            evaluator.popStack();
+        }
+        return info;
+    }
+
+    /**
+     * Unmarshals a sequence with a fixed layout of binary integers. There is a single bounds check
+     * for the entire sequence, and each field is read at its precomputed offset.
+     */
+    private <T> T unmarshalFixedSequence(T info, Sequence sequence, FixedLayout layout,
+        Class<T> klass, BitStreamReader reader) throws IOException {
+        log.debug("unmarshalling fixed sequence {}", sequence.getName());
+        long startPos = reader.getBitPosition();
+        long numBytes = reader.length();
+        if (numBytes >= 0 && BYTE_SIZE * numBytes - startPos < layout.getBitLength()) {
+            String msg = String.format("expected %d bits for %s, available %d bits",
+                layout.getBitLength(), sequence.getName(), BYTE_SIZE * numBytes - startPos);
+            throw new UnmarshalException(msg);
+        }
+        evaluator.pushStack();
+        try {
+            long endPos = startPos;
+            for (int i = 0; i < layout.getNumFields(); i++) {
+                SequenceElement element = sequence.getElement().get(i);
+                int numBits = (int) layout.getFieldLength(i);
+                endPos = startPos + layout.getFieldOffset(i) + numBits;
+                if (!isProjected(element)) {
+                    continue;
+                }
+                long value = reader.readBitsAt(startPos + layout.getFieldOffset(i), numBits);
+                if (!Boolean.TRUE.equals(element.isUnsigned()) && numBits > 0
+                    && numBits < Long.SIZE) {
+                    int shift = Long.SIZE - numBits;
+                    value = (value << shift) >> shift;
+                }
+                evaluator.setParentLong(element.getName(), value);
+                if (filter != null) {
+                    enterPath(element.getName());
+                    try {
+                        applyFilter(value);
+                    }
+                    finally {
+                        path.removeLast();
+                    }
+                }
+            }
+            reader.setBitPosition(endPos);
+        }
         finally {
             evaluator.popStack();
         }
@@ -190,36 +688,140 @@ public class Unmarshaller {
     private <T> T unmarshalTaggedSequence(T info, TaggedSequence sequence, Class<T> klass,
         BitStreamReader reader) throws IOException {
         log.debug("unmarshalling tagged sequence {}", sequence.getName());
+        Checksum checksum = sequence.getChecksum();
+        int checksumDepth = checksums.getDepth();
         evaluator.pushStack();
         try {
+            startChecksum(checksum, ChecksumRegion.TAG, reader);
             Tag tag = sequence.getTag();
             if (tag != null) {
-                unmarshalTag(tag, reader);
+                long tagValue = unmarshalTag(tag, reader);
+                if (filter != null) {
+                    enterPath(RecordFilter.TAG);
+                    try {
+                        applyFilter(tagValue);
+                    }
+                    finally {
+                        path.removeLast();
+                    }
+                }
             }
+            startChecksum(checksum, ChecksumRegion.LENGTH_FIELD, reader);
             LengthField lengthField = sequence.getLengthField();
+            long end = -1;
             if (lengthField != null) {
                 long length = unmarshalLengthField(lengthField, reader);
                 evaluator.setVariable("$length", length);
-                long start = reader.getBitPosition();
-                long end = start + length * Constants.BYTE_SIZE;
+                end = reader.getBitPosition() + length * Constants.BYTE_SIZE;
                 evaluator.setVariable("$end", end);
+                if (recordEnd < 0 && sequenceDepth == 0) {
+                    recordEnd = getRecordEnd(sequence, end);
+                    checkRejected();
+                }
             }
-            for (SequenceElement element : sequence.getElement()) {
-                unmarshalSequenceField(klass, element, reader);
+            startChecksum(checksum, ChecksumRegion.PAYLOAD, reader);
+            sequenceDepth++;
+            try {
+                for (SequenceElement element : sequence.getElement()) {
+                    unmarshalSequenceField(klass, element, reader);
+                }
+            }
+            finally {
+                sequenceDepth--;
+            }
+            if (end >= 0) {
+                skipPayloadPadding(end, reader);
+            }
+            if (checksum != null) {
+                verifyChecksum(sequence, checksum, reader);
             }
         }
         finally {
+            checksums.unwind(checksumDepth, reader);
             evaluator.popStack();
         }
         return info;
     }
 
     /**
-     * @param tag
-     * @param reader
-     * @throws IOException
+     * Computes the end of a record whose root is the given tagged sequence, from the end of its
+     * payload. Returns -1 if the end cannot be determined before parsing the whole record.
+     */
+    private long getRecordEnd(TaggedSequence sequence, long payloadEnd) {
+        if (sequence.getLengthKind() == LengthKind.EXPLICIT || sequence.getMinLength() != null) {
+            return -1;
+        }
+        Checksum checksum = sequence.getChecksum();
+        if (checksum == null) {
+            return payloadEnd;
+        }
+        Long checksumLength = model.getFixedBitLength(model.getType(checksum.getType()));
+        return (checksumLength == null) ? -1 : payloadEnd + checksumLength;
+    }
+
+    /**
+     * Starts the region of the given checksum field at the current position, if the region
+     * starts at the given part of the tagged sequence. The checksum is updated while the region
+     * is read.
+     */
+    private void startChecksum(Checksum checksum, ChecksumRegion part, BitStreamReader reader)
+        throws IOException {
+        if (checksum == null || ChecksumRegion.startOf(checksum) != part) {
+            return;
+        }
+        try {
+            checksums.start(checksum.getAlgorithm(), reader);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(
+                "checksum region must start and end on a byte boundary", exc);
+        }
+    }
+
+    /**
+     * Reads a checksum field and compares it to the running checksum of the bytes read since
+     * the start of the region.
      */
-    private void unmarshalTag(Tag tag, BitStreamReader reader) throws IOException {
+    private void verifyChecksum(TaggedSequence sequence, Checksum checksum,
+        BitStreamReader reader) throws IOException {
+        DadlType type = model.getType(checksum.getType());
+        if (!(type instanceof SimpleType)) {
+            throw new UnmarshalException("checksum field must have simple type");
+        }
+        long expected;
+        try {
+            expected = checksums.end(reader);
+        }
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(
+                "checksum region must start and end on a byte boundary", exc);
+        }
+        long actual = simpleTypeReader.readSimpleValue((SimpleType) type, null, Long.class,
+            reader);
+        if (actual != expected) {
+            String msg = String.format("checksum mismatch in %s: actual = %X, expected = %X",
+                sequence.getName(), actual, expected);
+            throw new UnmarshalException(msg);
+        }
+    }
+
+    /**
+     * Skips the padding bits of a payload which does not end on a byte boundary, up to the end
+     * given by the length field.
+     */
+    private void skipPayloadPadding(long end, BitStreamReader reader) throws IOException {
+        long numPaddingBits = end - reader.getBitPosition();
+        if (numPaddingBits > 0 && numPaddingBits < BYTE_SIZE) {
+            reader.setBitPosition(end);
+        }
+    }
+
+    /**
+     * Reads the tag of a tagged sequence and checks that it has the expected value.
+     *
+     * @return tag value
+     */
+    private long unmarshalTag(Tag tag, BitStreamReader reader) throws IOException {
         String typeName = tag.getType();
         Object type = model.getType(typeName);
         if (type instanceof SimpleType) {
@@ -232,6 +834,7 @@ public class Unmarshaller {
                     expectedTag);
                 throw new AssertionError(msg);
             }
+            return actualTag;
         }
         else {
             throw new UnmarshalException("tag type is not a simple type: " + typeName);
@@ -243,6 +846,10 @@ public class Unmarshaller {
         DadlType type = model.getType(lengthField.getType());
         if (type instanceof SimpleType) {
             SimpleType simpleType = (SimpleType) type;
+            LongDadlAdapter adapter = context.getLongAdapter(simpleType, null);
+            if (adapter != null) {
+                return adapter.unmarshalLong(reader);
+            }
             Long lengthValue = simpleTypeReader.readSimpleValue(simpleType, null, Long.class,
                 reader);
             log.debug("unmarshalled length field with value {}", lengthValue);
@@ -255,15 +862,94 @@ public class Unmarshaller {
         return Long.parseUnsignedLong(tag.getHexValue(), HEX_BASE);
     }
 
+    private boolean isProjected(Element element) {
+        if (rejected) {
+            return referencedNames.contains(element.getName());
+        }
+        return projection.includes(element.getName())
+            || referencedNames.contains(element.getName());
+    }
+
+    /**
+     * Evaluates the filter on the value of the current element.
+     */
+    private void applyFilter(Object value) {
+        if (filter == null || rejected) {
+            return;
+        }
+        if (!filter.accept(path.peekLast(), value)) {
+            log.debug("filter rejected {} = {}", path.peekLast(), value);
+            rejected = true;
+            checkRejected();
+        }
+    }
+
+    /**
+     * Evaluates the filter on the primitive integer value of the current element.
+     */
+    private void applyFilter(long value) {
+        if (filter == null || rejected) {
+            return;
+        }
+        if (!filter.accept(path.peekLast(), value)) {
+            log.debug("filter rejected {} = {}", path.peekLast(), value);
+            rejected = true;
+            checkRejected();
+        }
+    }
+
+    /**
+     * Makes the child element with the given name the current element of the path. The
+     * dot-separated path of each child is built only once per parent path.
+     */
+    private void enterPath(String name) {
+        String parentPath = path.peekLast();
+        if (parentPath == null) {
+            path.addLast(name);
+            return;
+        }
+        Map<String, String> children = childPaths.get(parentPath);
+        if (children == null) {
+            children = new HashMap<>();
+            childPaths.put(parentPath, children);
+        }
+        String childPath = children.get(name);
+        if (childPath == null) {
+            childPath = parentPath + "." + name;
+            children.put(name, childPath);
+        }
+        path.addLast(childPath);
+    }
+
+    /**
+     * Aborts the current record if it has been rejected, unless we are within a part of the
+     * record which may still be backtracked, or the end of the record is unknown.
+     */
+    private void checkRejected() {
+        if (rejected && speculationDepth == 0 && recordEnd >= 0) {
+            throw RecordRejectedException.INSTANCE;
+        }
+    }
+
     private void unmarshalSequenceField(Class<?> klass, SequenceElement element,
         BitStreamReader reader) throws IOException {
         if (log.isDebugEnabled()) {
             log.debug("unmarshalling sequence element {}", element.getName());
             log.debug("end = {}", evaluator.getVariable("$end", Long.class));
         }
+        if (!isProjected(element) && skipSequenceField(element, reader)) {
+            log.debug("skipped sequence element {}", element.getName());
+            return;
+        }
+        Projection parentProjection = projection;
+        projection = projection.getChild(element.getName());
+        enterPath(element.getName());
         try {
-            Field field = klass.getDeclaredField(element.getName());
-            if (model.isList(element)) {
+            PropertyAccessor field = PropertyAccessor.of(klass, element.getName());
+            if (model.isList(element) && field.getType().isArray()) {
+                unmarshalSequenceArrayField(field.getType().getComponentType(), element, reader);
+            }
+            else if (model.isList(element)) {
                 ParameterizedType type = (ParameterizedType) field.getGenericType();
                 Class<?> elementClass = (Class<?>) type.getActualTypeArguments()[0];
                 unmarshalSequenceListField(elementClass, element, reader);
@@ -274,35 +960,252 @@ public class Unmarshaller {
                 if (end == null || pos < end) {
                     unmarshalOptionalSequenceField(field.getType(), element, reader);
                 }
+                else {
+                    resetProperty(element);
+                }
+            }
+            else if (field.isPrimitiveInteger() && context.isPrimitiveInteger(element)) {
+                long value = readPrimitiveInteger(element, reader);
+                evaluator.setParentLong(element.getName(), value);
+                applyFilter(value);
             }
             else {
                 Object fieldValue = unmarshalSequenceIndividualField(field.getType(), element,
-                    reader);
+                    getReuseTarget(element), reader);
                 checkDiscriminator(element);
                 evaluator.setParentProperty(element.getName(), fieldValue);
+                if (isSimple(element)) {
+                    applyFilter(fieldValue);
+                }
+            }
+        }
+        finally {
+            projection = parentProjection;
+            path.removeLast();
+        }
+    }
+
+    private long readPrimitiveInteger(Element element, BitStreamReader reader)
+        throws IOException {
+        LongDadlAdapter adapter = context.getLongAdapter(element);
+        if (adapter == null) {
+            return simpleTypeReader.readStandardBinary(element, reader);
+        }
+        return adapter.unmarshalLong(reader);
+    }
+
+    private boolean isSimple(Element element) {
+        return model.getType(element.getType()) instanceof SimpleType;
+    }
+
+    /**
+     * Skips the given element without decoding it, if its length can be determined from the
+     * model, from already materialized elements or from a length field.
+     *
+     * @return true if the element was skipped
+     */
+    private boolean skipSequenceField(SequenceElement element, BitStreamReader reader)
+        throws IOException {
+        if (model.isOptional(element) || element.getDiscriminator() != null) {
+            return false;
+        }
+        DadlType type = model.getType(element.getType());
+        if (type instanceof TaggedSequence && !model.isList(element)) {
+            return skipTaggedSequence((TaggedSequence) type, reader);
+        }
+        if (hasChecks(type)) {
+            return false;
+        }
+        if (model.isList(element)) {
+            Long itemLength = model.getFixedBitLength(element);
+            if (element.getOccursCountKind() != OccursCountKind.EXPRESSION
+                || itemLength == null) {
+                return false;
+            }
+            Long numItems = evaluator.evaluate(element.getOccursCount(), Long.class);
+            reader.skipBits(numItems * itemLength);
+            return true;
+        }
+        if (type instanceof SimpleType) {
+            if (type.getAdapter() != null || element.getLengthKind() == LengthKind.IMPLICIT) {
+                return false;
             }
+            reader.skipBits(evaluator.computeBitLength(element, reader.getBitPosition()));
+            return true;
+        }
+        Long bitLength = model.getFixedBitLength(element);
+        if (bitLength == null) {
+            return false;
+        }
+        reader.skipBits(bitLength);
+        return true;
+    }
+
+    /**
+     * Skips a tagged sequence with a length field. The tag is still checked, so that a mismatch
+     * can be detected by an enclosing choice or optional element. Discriminators within the
+     * skipped payload are not evaluated. Sequences with a checksum are decoded, so that the
+     * checksum is verified.
+     */
+    private boolean skipTaggedSequence(TaggedSequence sequence, BitStreamReader reader)
+        throws IOException {
+        if (sequence.getLengthField() == null || sequence.getChecksum() != null
+            || sequence.getAdapter() != null
+            || sequence.getDiscriminator() != null
+            || sequence.getLengthKind() == LengthKind.EXPLICIT
+            || sequence.getMinLength() != null) {
+            return false;
+        }
+        if (sequence.getTag() != null) {
+            unmarshalTag(sequence.getTag(), reader);
+        }
+        long length = unmarshalLengthField(sequence.getLengthField(), reader);
+        reader.skipBits(length * BYTE_SIZE);
+        return true;
+    }
+
+    private boolean hasChecks(DadlType type) {
+        if (type.getDiscriminator() != null) {
+            return true;
         }
-        catch (NoSuchFieldException | SecurityException exc) {
-            throw Exceptions.unchecked(exc);
+        if (type instanceof Element) {
+            return hasChecks(model.getType(type.getType()));
         }
+        Boolean checked = checkedTypes.get(type.getName());
+        if (checked == null) {
+            checkedTypes.put(type.getName(), true);
+            List<? extends Element> elements = ModelExpressions.getElements(type);
+            checked = (type instanceof TaggedSequence && hasTagOrChecksum((TaggedSequence) type))
+                || (elements != null && elements.stream().anyMatch(this::hasChecks));
+            checkedTypes.put(type.getName(), checked);
+        }
+        return checked;
+    }
+
+    private static boolean hasTagOrChecksum(TaggedSequence sequence) {
+        return sequence.getTag() != null || sequence.getChecksum() != null;
     }
 
     private void unmarshalOptionalSequenceField(Class<?> klass, SequenceElement element,
         BitStreamReader reader) throws IOException {
         long startPos = reader.getBitPosition();
+        boolean wasRejected = rejected;
+        long savedRecordEnd = recordEnd;
+        Object target = getReuseTarget(element);
+        Object pooled = (target == null) ? acquireSpeculativeTarget(klass, element) : null;
+        speculationDepth++;
         try {
             Object fieldValue = unmarshalSequenceIndividualField(klass, element,
-                reader);
+                (target == null) ? pooled : target, reader);
             checkDiscriminator(element);
             evaluator.setParentProperty(element.getName(), fieldValue);
+            releaseUnusedTarget(pooled, fieldValue);
+            if (isSimple(element)) {
+                applyFilter(fieldValue);
+            }
         }
         catch (AssertionError | Exception exc) {
             reader.setBitPosition(startPos);
+            rejected = wasRejected;
+            recordEnd = savedRecordEnd;
+            resetProperty(element);
+            releaseUnusedTarget(pooled, null);
         }
+        finally {
+            speculationDepth--;
+        }
+        checkRejected();
+    }
+
+    /**
+     * Unmarshals a repeated simple element into a primitive array. Plain binary integers are read
+     * directly without boxing.
+     */
+    private void unmarshalSequenceArrayField(Class<?> componentType, SequenceElement element,
+        BitStreamReader reader) throws IOException {
+        SimpleType simpleType = (SimpleType) model.getType(element.getType());
+        Object array;
+        switch (element.getOccursCountKind()) {
+            case EXPRESSION:
+                int numItems = evaluator.evaluate(element.getOccursCount(), Long.class).intValue();
+                array = reuse ? evaluator.getParentProperty(element.getName()) : null;
+                if (array == null || Array.getLength(array) != numItems) {
+                    array = PrimitiveArrays.newArray(componentType, numItems);
+                }
+                if (context.isPlainBinaryInteger(simpleType, element)) {
+                    int numBits = evaluator.computeBitLength(element, reader.getBitPosition());
+                    boolean unsigned = Boolean.TRUE.equals(element.isUnsigned());
+                    reader.readArray(array, numItems, numBits, !unsigned);
+                }
+                else {
+                    for (int i = 0; i < numItems; i++) {
+                        PrimitiveArrays.set(array, i,
+                            readArrayItem(componentType, simpleType, element, reader));
+                    }
+                }
+                break;
+            case PARSED:
+                array = unmarshalArrayItems(componentType, simpleType, element, Long.MAX_VALUE,
+                    reader);
+                break;
+            case END_OF_PARENT:
+                array = unmarshalArrayItems(componentType, simpleType, element,
+                    evaluator.getEndOfParent(), reader);
+                break;
+            default:
+                throw new UnsupportedOperationException(element.getOccursCountKind().toString());
+        }
+        evaluator.setParentProperty(element.getName(), array);
+    }
+
+    private Object unmarshalArrayItems(Class<?> componentType, SimpleType simpleType,
+        SequenceElement element, long end, BitStreamReader reader) throws IOException {
+        long[] values = new long[INITIAL_ARRAY_SIZE];
+        int numItems = 0;
+        long startPos;
+        while ((startPos = reader.getBitPosition()) < end) {
+            boolean wasRejected = rejected;
+            speculationDepth++;
+            try {
+                long value = readArrayItem(componentType, simpleType, element, reader);
+                if (numItems == values.length) {
+                    values = Arrays.copyOf(values, 2 * numItems);
+                }
+                values[numItems++] = value;
+            }
+            catch (AssertionError | Exception exc) {
+                reader.setBitPosition(startPos);
+                rejected = wasRejected;
+                break;
+            }
+            finally {
+                speculationDepth--;
+            }
+        }
+        checkRejected();
+        return PrimitiveArrays.toArray(componentType, values, numItems);
+    }
+
+    private long readArrayItem(Class<?> componentType, SimpleType simpleType,
+        SequenceElement element, BitStreamReader reader) throws IOException {
+        LongDadlAdapter adapter = context.getLongAdapter(element);
+        if (adapter != null) {
+            return adapter.unmarshalLong(reader);
+        }
+        Object value = simpleTypeReader.readSimpleValue(simpleType, element, componentType,
+            reader);
+        return ((Number) value).longValue();
     }
 
     private void unmarshalSequenceListField(Class<?> klass, SequenceElement element,
         BitStreamReader reader) throws IOException {
+        if (reuse) {
+            List<?> list = (List<?>) evaluator.getParentProperty(element.getName());
+            if (pool != null && !isSimple(element)) {
+                list.forEach(pool::release);
+            }
+            list.clear();
+        }
         switch (element.getOccursCountKind()) {
             case EXPRESSION:
                 unmarshalSequenceListFieldByExpression(klass, element, reader);
@@ -326,8 +1229,20 @@ public class Unmarshaller {
         @SuppressWarnings("unchecked")
         List<Object> list = (List<Object>) evaluator.getParentProperty(element.getName());
 
+        Class<?> primitiveType = PrimitiveArrays.getPrimitiveType(klass);
+        if (primitiveType != null
+            && context.isPlainBinaryInteger(model.getType(element.getType()), element)) {
+            // decode all items in one pass, evaluating the item length only once
+            int numBits = evaluator.computeBitLength(element, reader.getBitPosition());
+            boolean unsigned = Boolean.TRUE.equals(element.isUnsigned());
+            Object array = PrimitiveArrays.newArray(primitiveType, numItems.intValue());
+            reader.readArray(array, numItems.intValue(), numBits, !unsigned);
+            PrimitiveArrays.addAll(list, array);
+            return;
+        }
+
         for (long i = 0; i < numItems; i++) {
-            Object fieldValue = unmarshalSequenceIndividualField(klass, element, reader);
+            Object fieldValue = unmarshalSequenceIndividualField(klass, element, null, reader);
             list.add(fieldValue);
         }
     }
@@ -340,15 +1255,26 @@ public class Unmarshaller {
 
         while (true) {
             long startPos = reader.getBitPosition();
+            boolean wasRejected = rejected;
+            Object pooled = acquireSpeculativeTarget(klass, element);
+            speculationDepth++;
             try {
-                Object fieldValue = unmarshalSequenceIndividualField(klass, element, reader);
+                Object fieldValue = unmarshalSequenceIndividualField(klass, element, pooled,
+                    reader);
                 list.add(fieldValue);
+                releaseUnusedTarget(pooled, fieldValue);
             }
             catch (AssertionError | Exception exc) {
                 reader.setBitPosition(startPos);
+                rejected = wasRejected;
+                releaseUnusedTarget(pooled, null);
                 break;
             }
+            finally {
+                speculationDepth--;
+            }
         }
+        checkRejected();
     }
 
     private void unmarshalSequenceListFieldEndOfParent(Class<?> klass, SequenceElement element,
@@ -360,19 +1286,30 @@ public class Unmarshaller {
         long end = evaluator.getEndOfParent();
         long startPos;
         while ((startPos = reader.getBitPosition()) < end) {
+            boolean wasRejected = rejected;
+            Object pooled = acquireSpeculativeTarget(klass, element);
+            speculationDepth++;
             try {
-                Object fieldValue = unmarshalSequenceIndividualField(klass, element, reader);
+                Object fieldValue = unmarshalSequenceIndividualField(klass, element, pooled,
+                    reader);
                 list.add(fieldValue);
+                releaseUnusedTarget(pooled, fieldValue);
             }
             catch (AssertionError | Exception exc) {
                 reader.setBitPosition(startPos);
+                rejected = wasRejected;
+                releaseUnusedTarget(pooled, null);
                 break;
             }
+            finally {
+                speculationDepth--;
+            }
         }
+        checkRejected();
     }
 
     private Object unmarshalSequenceIndividualField(Class<?> klass, Element element,
-        BitStreamReader reader) throws IOException {
+        Object target, BitStreamReader reader) throws IOException {
         DadlType fieldType = model.getType(element.getType());
         if (fieldType instanceof Enumeration) {
             return simpleTypeReader.readEnumerationValue((Enumeration) fieldType, element, klass,
@@ -382,7 +1319,7 @@ public class Unmarshaller {
             return simpleTypeReader.readSimpleValue((SimpleType) fieldType, element, klass, reader);
         }
         else {
-            return unmarshal(fieldType, klass, reader);
+            return unmarshal(fieldType, klass, target, reader);
         }
     }
 
@@ -393,20 +1330,41 @@ public class Unmarshaller {
         evaluator.pushStack();
 
         long startPos = reader.getBitPosition();
+        boolean wasRejected = rejected;
+        long savedRecordEnd = recordEnd;
+        Element matchedElement = null;
+        int matchedBranch = ChoiceBranches.NO_BRANCH;
         try {
-            for (Element element : choice.getElement()) {
+            List<ChoiceElement> elements = choice.getElement();
+            for (int branch = 0; branch < elements.size(); branch++) {
+                Element element = elements.get(branch);
                 log.debug("trying branch {}", element.getName());
+                speculationDepth++;
                 try {
                     branchMatched = unmarshalChoiceElement(element, klass, reader);
+                    matchedElement = element;
+                    matchedBranch = branch;
                     break;
                 }
                 catch (AssertionError | Exception exc) {
                     reader.setBitPosition(startPos);
+                    rejected = wasRejected;
+                    recordEnd = savedRecordEnd;
+                }
+                finally {
+                    speculationDepth--;
                 }
             }
             if (!branchMatched) {
                 throw new UnmarshalException("no branch matched on " + klass.getName());
             }
+            for (Element element : elements) {
+                if (element != matchedElement) {
+                    resetProperty(element);
+                }
+            }
+            ChoiceBranches.of(klass).setSelectedBranch(info, matchedBranch);
+            checkRejected();
             return info;
         }
         finally {
@@ -415,20 +1373,43 @@ public class Unmarshaller {
     }
 
     private <T> boolean unmarshalChoiceElement(Element element, Class<T> klass,
-        BitStreamReader reader) throws NoSuchFieldException, IOException {
+        BitStreamReader reader) throws IOException {
         boolean branchMatched;
         String fieldName = element.getName();
-        Field field = klass.getDeclaredField(fieldName);
+        PropertyAccessor field = PropertyAccessor.of(klass, fieldName);
         DadlType fieldType = model.getType(element.getType());
 
         Object fieldValue;
-        if (fieldType instanceof SimpleType) {
-            fieldValue = simpleTypeReader.readSimpleValue((SimpleType) fieldType,
-                element, field.getType(), reader);
+        enterPath(fieldName);
+        try {
+            if (fieldType instanceof SimpleType) {
+                fieldValue = simpleTypeReader.readSimpleValue((SimpleType) fieldType,
+                    element, field.getType(), reader);
+                applyFilter(fieldValue);
+            }
+            else {
+                Object target = getReuseTarget(element);
+                Object pooled = (target == null)
+                    ? acquireSpeculativeTarget(field.getType(), element) : null;
+                Projection parentProjection = projection;
+                projection = projection.getChild(fieldName);
+                try {
+                    fieldValue = unmarshal(fieldType, field.getType(),
+                        (target == null) ? pooled : target, reader);
+                    checkDiscriminator(element);
+                }
+                catch (AssertionError | IOException | RuntimeException exc) {
+                    releaseUnusedTarget(pooled, null);
+                    throw exc;
+                }
+                finally {
+                    projection = parentProjection;
+                }
+                releaseUnusedTarget(pooled, fieldValue);
+            }
         }
-        else {
-            fieldValue = unmarshal(fieldType, field.getType(), reader);
-            checkDiscriminator(element);
+        finally {
+            path.removeLast();
         }
         evaluator.setParentProperty(fieldName, fieldValue);
         branchMatched = true;
@@ -457,4 +1438,19 @@ public class Unmarshaller {
             throw new AssertionError(msg);
         }
     }
+
+    /**
+     * Thrown to abort unmarshalling a record rejected by the filter. This is a singleton without
+     * a stack trace, since it is used for control flow only.
+     */
+    private static final class RecordRejectedException extends RuntimeException {
+
+        private static final RecordRejectedException INSTANCE = new RecordRejectedException();
+
+        private static final long serialVersionUID = 1L;
+
+        private RecordRejectedException() {
+            super("record rejected", null, false, false);
+        }
+    }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import java.io.IOException;
+
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.BitStreamWriter;
+import org.ops4j.dadl.io.VarInts;
+
+/**
+ * Built-in adapter named {@code zigzag} for signed integers encoded as zigzag varints, as used
+ * for protobuf {@code sint32} and {@code sint64} values.
+ * <p>
+ * Signed values are mapped to unsigned values by {@code (n << 1) ^ (n >> 63)}, so that values
+ * of small magnitude have short encodings, and then encoded as LEB128 varints.
+ *
+ * @author hwellmann
+ *
+ */
+public class ZigZagAdapter implements LongDadlAdapter {
+
+    @Override
+    public void marshalLong(long value, BitStreamWriter writer) throws IOException {
+        VarInts.writeLeb128(VarInts.encodeZigZag(value), writer);
+    }
+
+    @Override
+    public long unmarshalLong(BitStreamReader reader) throws IOException {
+        try {
+            return VarInts.decodeZigZag(VarInts.readLeb128(reader));
+        }
+        catch (IllegalArgumentException exc) {
+            throw new UnmarshalException(exc.getMessage());
+        }
+    }
+
+    @Override
+    public long sizeOfLong(long value) {
+        return VarInts.sizeOfLeb128(VarInts.encodeZigZag(value));
+    }
+}
@@ -20,6 +20,7 @@ package org.ops4j.dadl.io;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.math.BigInteger;
 
@@ -40,6 +41,19 @@ public class ByteArrayBitStreamReaderTest {
         reader.close();
     }
 
+    @Test
+    public void shouldReadSignedBits() throws IOException {
+        byte[] bytes = { (byte) 0xF0, (byte) 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes);
+        assertThat(reader.readSignedBits(4), is(-1L));
+        assertThat(reader.readSignedBits(4), is(0L));
+        assertThat(reader.readSignedBits(64), is(0x7FFFFFFFFFFFFFFEL));
+        assertThat(reader.readSignedBits(64), is(-1L));
+        reader.close();
+    }
+
     @Test
     public void shouldReadUnsignedByte() throws IOException {
         byte[] bytes = { (byte) 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xF0 };
@@ -59,4 +73,85 @@ public class ByteArrayBitStreamReaderTest {
         assertThat(value, is(3));
         reader.close();
     }
+
+    @Test
+    public void shouldReadBitsAtPosition() throws IOException {
+        byte[] bytes = { (byte) 0x12, (byte) 0x34, (byte) 0x56, (byte) 0x78, (byte) 0x9A,
+            (byte) 0xBC, (byte) 0xDE, (byte) 0xF0, (byte) 0x11 };
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes);
+        reader.skipBits(3);
+        assertThat(reader.readBitsAt(4, 8), is(0x23L));
+        assertThat(reader.readBitsAt(9, 3), is(3L));
+        assertThat(reader.readBitsAt(8, 64), is(0x3456789ABCDEF011L));
+        assertThat(reader.readBitsAt(4, 64), is(0x23456789ABCDEF01L));
+        assertThat(reader.getBitPosition(), is(3L));
+        reader.close();
+    }
+
+    @Test
+    public void shouldReadBitsAtPositionInSegment() throws IOException {
+        byte[] bytes = { (byte) 0xFF, (byte) 0x12, (byte) 0x34, (byte) 0xFF };
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes, 1, 2);
+        assertThat(reader.readBitsAt(0, 16), is(0x1234L));
+        assertThat(reader.readBitsAt(12, 4), is(4L));
+        reader.close();
+    }
+
+    @Test(expected = EOFException.class)
+    public void shouldNotReadBitsAtPositionBeyondSegment() throws IOException {
+        byte[] bytes = { (byte) 0xFF, (byte) 0x12, (byte) 0x34, (byte) 0xFF };
+        try (ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes, 1, 2)) {
+            reader.readBitsAt(9, 8);
+        }
+    }
+
+    @Test
+    public void shouldReadArrays() throws IOException {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 73 + 5);
+        }
+        int numItems = 9;
+        for (int numBits = 1; numBits <= 64; numBits++) {
+            for (int prefixBits = 0; prefixBits < 8; prefixBits++) {
+                for (boolean signed : new boolean[] { false, true }) {
+                    ByteArrayBitStreamReader expected = new ByteArrayBitStreamReader(bytes);
+                    expected.skipBits(prefixBits);
+                    long[] values = new long[numItems];
+                    for (int i = 0; i < numItems; i++) {
+                        values[i] = signed ? expected.readSignedBits(numBits)
+                            : expected.readBits(numBits);
+                    }
+
+                    ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes);
+                    reader.skipBits(prefixBits);
+                    long[] longs = new long[numItems];
+                    reader.readArray(longs, numItems, numBits, signed);
+                    assertThat(longs, is(values));
+                    assertThat(reader.getBitPosition(), is(expected.getBitPosition()));
+
+                    reader.setBitPosition(prefixBits);
+                    int[] ints = new int[numItems];
+                    reader.readArray(ints, numItems, numBits, signed);
+                    for (int i = 0; i < numItems; i++) {
+                        assertThat(ints[i], is((int) values[i]));
+                    }
+
+                    reader.setBitPosition(prefixBits);
+                    short[] shorts = new short[numItems];
+                    reader.readArray(shorts, numItems, numBits, signed);
+                    for (int i = 0; i < numItems; i++) {
+                        assertThat(shorts[i], is((short) values[i]));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void shouldNotReadArrayBeyondSegment() throws IOException {
+        byte[] bytes = new byte[10];
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes, 2, 5);
+        reader.readArray(new int[3], 3, 16, true);
+    }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class ByteArrayBitStreamWriterTest {
+
+    private static final int SOURCE_LENGTH = 24;
+
+    private static byte[] createSource() {
+        byte[] source = new byte[SOURCE_LENGTH];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = (byte) (i * 37 + 11);
+        }
+        return source;
+    }
+
+    private static int bitAt(byte[] bytes, long bitPosition) {
+        return (bytes[(int) (bitPosition / 8)] >>> (7 - bitPosition % 8)) & 1;
+    }
+
+    private static byte[] copyBitByBit(byte[] source, int prefixBits, long offset, long numBits)
+        throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(1, prefixBits);
+        for (long i = 0; i < numBits; i++) {
+            writer.writeBit(bitAt(source, offset + i));
+        }
+        return writer.toByteArray();
+    }
+
+    @Test
+    public void shouldCopyBitsFromArray() throws IOException {
+        byte[] source = createSource();
+        for (int prefixBits = 0; prefixBits < 8; prefixBits++) {
+            for (int offset = 0; offset < 16; offset++) {
+                for (int numBits : new int[] { 0, 1, 7, 8, 13, 63, 64, 65, 121 }) {
+                    ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+                    writer.writeBits(1, prefixBits);
+                    writer.writeBits(source, offset, numBits);
+                    assertThat(writer.getBitPosition(), is((long) prefixBits + numBits));
+                    assertThat(writer.toByteArray(),
+                        is(copyBitByBit(source, prefixBits, offset, numBits)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldCopyBitsFromReader() throws IOException {
+        byte[] source = createSource();
+        for (int prefixBits = 0; prefixBits < 8; prefixBits++) {
+            for (int offset = 0; offset < 16; offset++) {
+                for (int numBits : new int[] { 0, 5, 8, 64, 77, 128 }) {
+                    ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(source);
+                    ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+                    writer.writeBits(1, prefixBits);
+                    writer.writeBits(reader, offset, numBits);
+                    assertThat(reader.getBitPosition(), is((long) offset + numBits));
+                    assertThat(writer.toByteArray(),
+                        is(copyBitByBit(source, prefixBits, offset, numBits)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldFillBits() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.fillBits(0xA5, 20);
+        writer.writeBits(0, 1);
+        writer.fillBits(0x0F, 75);
+        assertThat(writer.getBitPosition(), is(96L));
+        assertThat(writer.toByteArray(), is(new byte[] { (byte) 0xA5, (byte) 0xA5,
+            (byte) 0xA0, 0x78, 0x78, 0x78, 0x78, 0x78, 0x78, 0x78, 0x78, 0x78 }));
+    }
+
+    @Test
+    public void shouldWriteArrays() throws IOException {
+        int numItems = 11;
+        long[] values = new long[numItems];
+        for (int i = 0; i < numItems; i++) {
+            values[i] = 0x9E3779B97F4A7C15L * (i + 1);
+        }
+        for (int numBits = 1; numBits <= 64; numBits++) {
+            for (int prefixBits = 0; prefixBits < 8; prefixBits++) {
+                ByteArrayBitStreamWriter expected = new ByteArrayBitStreamWriter();
+                expected.writeBits(1, prefixBits);
+                for (int i = 0; i < numItems; i++) {
+                    expected.writeBits(values[i], numBits);
+                }
+
+                ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+                writer.writeBits(1, prefixBits);
+                writer.writeArray(values, numItems, numBits);
+                assertThat(writer.getBitPosition(), is(expected.getBitPosition()));
+                assertThat(writer.toByteArray(), is(expected.toByteArray()));
+
+                if (numBits <= 32) {
+                    int[] ints = new int[numItems];
+                    for (int i = 0; i < numItems; i++) {
+                        ints[i] = (int) values[i];
+                    }
+                    writer = new ByteArrayBitStreamWriter();
+                    writer.writeBits(1, prefixBits);
+                    writer.writeArray(ints, numItems, numBits);
+                    assertThat(writer.toByteArray(), is(expected.toByteArray()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldRoundtripPackedSamples() throws IOException {
+        short[] samples = new short[1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((i * 331) & 0xFFF);
+        }
+        for (int numBits : new int[] { 4, 10, 12 }) {
+            short[] truncated = new short[samples.length];
+            for (int i = 0; i < samples.length; i++) {
+                truncated[i] = (short) (samples[i] & ((1 << numBits) - 1));
+            }
+            ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+            writer.writeArray(samples, samples.length, numBits);
+            byte[] bytes = writer.toByteArray();
+            assertThat(bytes.length, is((samples.length * numBits + 7) / 8));
+
+            short[] decoded = new short[samples.length];
+            new ByteArrayBitStreamReader(bytes).readArray(decoded, samples.length, numBits,
+                false);
+            assertThat(decoded, is(truncated));
+        }
+    }
+
+    @Test
+    public void shouldWriteToOtherWriter() throws IOException {
+        byte[] source = createSource();
+        for (int prefixBits = 0; prefixBits < 8; prefixBits++) {
+            for (int numBits : new int[] { 0, 3, 8, 64, 77, 8 * SOURCE_LENGTH }) {
+                ByteArrayBitStreamWriter payload = new ByteArrayBitStreamWriter();
+                payload.writeBits(source, 0, numBits);
+                ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+                writer.writeBits(1, prefixBits);
+                payload.writeTo(writer, numBits);
+                assertThat(payload.getBitPosition(), is((long) numBits));
+                assertThat(writer.toByteArray(),
+                    is(copyBitByBit(source, prefixBits, 0, numBits)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldClearBytesOnReset() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(createSource(), 0, 8 * SOURCE_LENGTH);
+        writer.reset();
+        assertThat(writer.getBitPosition(), is(0L));
+        writer.writeBits(7, 3);
+        writer.skipBits(13);
+        writer.writeBits(1, 1);
+        ByteArrayBitStreamWriter target = new ByteArrayBitStreamWriter();
+        writer.writeTo(target, writer.getBitPosition());
+        assertThat(target.toByteArray(), is(new byte[] { (byte) 0xE0, 0, (byte) 0x80 }));
+    }
+
+    @Test
+    public void shouldCountCopiedBits() throws IOException {
+        BitCountingWriter writer = new BitCountingWriter();
+        writer.writeBits(1, 3);
+        writer.writeBits(createSource(), 5, 100);
+        writer.fillBits(0, 9);
+        writer.writeArray(new short[4], 4, 12);
+        assertThat(writer.getBitPosition(), is(160L));
+        writer.close();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Checksum;
+
+import org.junit.Test;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class ChecksumTest {
+
+    private static final byte[] CHECK_INPUT = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private static long checksumOf(Checksum checksum, byte[] bytes, int chunkSize) {
+        checksum.reset();
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            checksum.update(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+        }
+        return checksum.getValue();
+    }
+
+    private static byte[] createBytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31 + 7);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void shouldComputeCrc32c() {
+        Crc32c crc = new Crc32c();
+        assertThat(crc.getValue(), is(0L));
+        for (int chunkSize = 1; chunkSize <= CHECK_INPUT.length; chunkSize++) {
+            assertThat(checksumOf(crc, CHECK_INPUT, chunkSize), is(0xE3069283L));
+        }
+    }
+
+    @Test
+    public void shouldComputeCrc16Ccitt() {
+        Crc16Ccitt crc = new Crc16Ccitt();
+        assertThat(crc.getValue(), is(0xFFFFL));
+        for (int chunkSize = 1; chunkSize <= CHECK_INPUT.length; chunkSize++) {
+            assertThat(checksumOf(crc, CHECK_INPUT, chunkSize), is(0x29B1L));
+        }
+        crc.reset();
+        for (byte b : CHECK_INPUT) {
+            crc.update(b);
+        }
+        assertThat(crc.getValue(), is(0x29B1L));
+    }
+
+    @Test
+    public void shouldUpdateChecksumFromReaderAndWriter() throws Exception {
+        byte[] bytes = createBytes(10000);
+        Crc32c crc = new Crc32c();
+        crc.update(bytes, 100, 9000);
+        long expected = crc.getValue();
+
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes);
+        reader.skipBits(17);
+        crc.reset();
+        reader.updateChecksum(crc, 800, 9100 * 8);
+        assertThat(crc.getValue(), is(expected));
+        assertThat(reader.getBitPosition(), is(17L));
+
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.write(bytes);
+        writer.writeBits(5, 3);
+        crc.reset();
+        writer.updateChecksum(crc, 800, 9100 * 8);
+        assertThat(crc.getValue(), is(expected));
+        assertThat(writer.getBitPosition(), is(10000 * 8 + 3L));
+    }
+
+    @Test
+    public void shouldRunChecksumWhileReading() throws Exception {
+        byte[] bytes = createBytes(10000);
+        Crc32c expected = new Crc32c();
+        expected.update(bytes, 100, 9000);
+
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes);
+        reader.setBitPosition(800);
+        Crc32c crc = new Crc32c();
+        reader.startChecksum(crc);
+        reader.readBits(3);
+        reader.readFully(new byte[2000]);
+        reader.skipBits(8 * 3000);
+        reader.readLong();
+        reader.setBitPosition(9100 * 8);
+        reader.endChecksum(crc);
+        assertThat(crc.getValue(), is(expected.getValue()));
+    }
+
+    @Test
+    public void shouldRunChecksumAfterBacktracking() throws Exception {
+        byte[] bytes = createBytes(1000);
+        Crc32c expected = new Crc32c();
+        expected.update(bytes, 0, 500);
+
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes);
+        Crc32c crc = new Crc32c();
+        reader.startChecksum(crc);
+        reader.readFully(new byte[800]);
+        reader.setBitPosition(500 * 8);
+        reader.endChecksum(crc);
+        assertThat(crc.getValue(), is(expected.getValue()));
+    }
+
+    @Test
+    public void shouldRunNestedChecksumsWhileWriting() throws Exception {
+        byte[] bytes = createBytes(2000);
+        Crc32c outerExpected = new Crc32c();
+        outerExpected.update(bytes, 0, 2000);
+        outerExpected.update(0xA0);
+        Crc16Ccitt innerExpected = new Crc16Ccitt();
+        innerExpected.update(bytes, 1000, 1000);
+        innerExpected.update(0xA0);
+
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        Crc32c outer = new Crc32c();
+        Crc16Ccitt inner = new Crc16Ccitt();
+        writer.startChecksum(outer);
+        writer.write(bytes, 0, 1000);
+        writer.startChecksum(inner);
+        writer.write(bytes, 1000, 1000);
+        writer.writeBits(5, 3);
+        writer.writeBits(0, 5);
+        writer.endChecksum(inner);
+        writer.endChecksum(outer);
+        assertThat(inner.getValue(), is(innerExpected.getValue()));
+        assertThat(outer.getValue(), is(outerExpected.getValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnalignedChecksumStart() throws Exception {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(1, 1);
+        writer.startChecksum(new Crc32c());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnalignedRange() throws Exception {
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(new byte[4]);
+        reader.updateChecksum(new Crc32c(), 3, 16);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class TextCodecTest {
+
+    private TextCodec codec = new TextCodec();
+
+    private String roundTrip(String text, Charset charset) throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        int numBytes = codec.encode(text, charset, writer);
+        writer.close();
+        byte[] bytes = writer.toByteArray();
+        assertThat(bytes, is(text.getBytes(charset)));
+        assertThat(numBytes, is(bytes.length));
+        String decoded = codec.decode(bytes, bytes.length, charset);
+        assertThat(decoded, is(new String(bytes, charset)));
+        return decoded;
+    }
+
+    @Test
+    public void shouldCacheCharsets() {
+        assertThat(TextCodec.charset("ISO-8859-15"), is(Charset.forName("ISO-8859-15")));
+        assertThat(TextCodec.charset(null), is(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldRoundTripAscii() throws IOException {
+        assertThat(roundTrip("Hamburg", StandardCharsets.US_ASCII), is("Hamburg"));
+        assertThat(roundTrip("Hamburg", StandardCharsets.UTF_8), is("Hamburg"));
+        assertThat(roundTrip("Hamburg", StandardCharsets.ISO_8859_1), is("Hamburg"));
+    }
+
+    @Test
+    public void shouldRoundTripNonAscii() throws IOException {
+        assertThat(roundTrip("Gr\u00FC\u00DFe \u20AC", StandardCharsets.UTF_8),
+            is("Gr\u00FC\u00DFe \u20AC"));
+        assertThat(roundTrip("Gr\u00FC\u00DFe", StandardCharsets.ISO_8859_1),
+            is("Gr\u00FC\u00DFe"));
+        assertThat(roundTrip("\u20AC 5", Charset.forName("ISO-8859-15")), is("\u20AC 5"));
+    }
+
+    @Test
+    public void shouldReplaceUnmappableCharacters() throws IOException {
+        assertThat(roundTrip("Gr\u00FC\u00DFe", StandardCharsets.US_ASCII), is("Gr??e"));
+        assertThat(roundTrip("\u20AC \uD83D\uDE00", StandardCharsets.ISO_8859_1), is("? ?"));
+    }
+
+    @Test
+    public void shouldReplaceMalformedInput() {
+        byte[] bytes = { 'a', (byte) 0xC3, 'b' };
+        assertThat(codec.decode(bytes, 3, StandardCharsets.UTF_8),
+            is(new String(bytes, StandardCharsets.UTF_8)));
+        assertThat(codec.decode(bytes, 3, StandardCharsets.US_ASCII),
+            is(new String(bytes, StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void shouldCheckForAscii() {
+        byte[] bytes = "ASCII only".getBytes(StandardCharsets.US_ASCII);
+        assertThat(TextCodec.isAscii(bytes, bytes.length), is(true));
+        bytes[3] = (byte) 0x80;
+        assertThat(TextCodec.isAscii(bytes, bytes.length), is(false));
+        assertThat(TextCodec.isAscii(bytes, 3), is(true));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.io;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class VarIntsTest {
+
+    private static final long[] VALUES = { 0, 1, 127, 128, 300, 16383, 16384, 0x7FFF_FFFFL,
+        1L << 48, Long.MAX_VALUE, -1, Long.MIN_VALUE };
+
+    @Test
+    public void shouldRoundTripLeb128() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        for (long value : VALUES) {
+            VarInts.writeLeb128(value, writer);
+            assertThat(writer.getBitPosition() % 8, is(0L));
+        }
+        writer.close();
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(writer.toByteArray());
+        for (long value : VALUES) {
+            long start = reader.getBitPosition();
+            assertThat(VarInts.readLeb128(reader), is(value));
+            assertThat(reader.getBitPosition() - start, is(VarInts.sizeOfLeb128(value)));
+        }
+        reader.close();
+    }
+
+    @Test
+    public void shouldRoundTripZigZag() {
+        for (long value : VALUES) {
+            assertThat(VarInts.decodeZigZag(VarInts.encodeZigZag(value)), is(value));
+        }
+        assertThat(VarInts.encodeZigZag(-1), is(1L));
+        assertThat(VarInts.encodeZigZag(1), is(2L));
+        assertThat(VarInts.encodeZigZag(Long.MIN_VALUE), is(-1L));
+    }
+
+    @Test
+    public void shouldRoundTripBerTagNumbersUnaligned() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(5, 3);
+        for (long value : VALUES) {
+            if (value >= 0) {
+                VarInts.writeBerTagNumber(value, writer);
+            }
+        }
+        writer.close();
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(writer.toByteArray());
+        assertThat(reader.readBits(3), is(5L));
+        for (long value : VALUES) {
+            if (value >= 0) {
+                long start = reader.getBitPosition();
+                assertThat(VarInts.readBerTagNumber(reader), is(value));
+                assertThat(reader.getBitPosition() - start,
+                    is(VarInts.sizeOfBerTagNumber(value)));
+            }
+        }
+        reader.close();
+    }
+
+    @Test
+    public void shouldRoundTripBerLengths() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        for (long value : VALUES) {
+            if (value >= 0) {
+                VarInts.writeBerLength(value, writer);
+            }
+        }
+        writer.close();
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(writer.toByteArray());
+        for (long value : VALUES) {
+            if (value >= 0) {
+                long start = reader.getBitPosition();
+                assertThat(VarInts.readBerLength(reader), is(value));
+                assertThat(reader.getBitPosition() - start, is(VarInts.sizeOfBerLength(value)));
+            }
+        }
+        reader.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectOverlongLeb128() throws IOException {
+        byte[] bytes = new byte[12];
+        Arrays.fill(bytes, (byte) 0x80);
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(bytes);
+        VarInts.readLeb128(reader);
+    }
+}
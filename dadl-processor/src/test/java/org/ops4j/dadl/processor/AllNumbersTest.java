@@ -33,23 +33,29 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.ops4j.dadl.exc.MarshalException;
+import org.ops4j.dadl.exc.UnmarshalException;
 import org.ops4j.dadl.io.ByteArrayBitStreamReader;
 import org.ops4j.dadl.io.ByteArrayBitStreamWriter;
 
 import demo.simple.AllNumbers;
 import demo.simple.BcdSequence;
 import demo.simple.BitField;
+import demo.simple.BitPadded;
 import demo.simple.ChoiceWithDiscriminator;
 import demo.simple.Colour;
 import demo.simple.DecimalNumbers;
 import demo.simple.LongNumbers;
 import demo.simple.MyChoice;
+import demo.simple.NumberChoice;
 import demo.simple.NumberList;
 import demo.simple.NumberWithColour;
 import demo.simple.OpaqueContainer;
 import demo.simple.Option1;
 import demo.simple.Option2;
+import demo.simple.PackedSequence;
 import demo.simple.PaddedInner;
+import demo.simple.PaddedNumbers;
 import demo.simple.PaddedOuter;
 import demo.simple.ParsedNumberList;
 import demo.simple.SeqMinLength;
@@ -59,6 +65,8 @@ import demo.simple.ShortNumbers;
 import demo.simple.TaggedList;
 import demo.simple.TaggedListWithSuffix;
 import demo.simple.TaggedString;
+import demo.simple.UnalignedPayload;
+import demo.simple.UnalignedPayloadWithSuffix;
 
 /**
  * @author hwellmann
@@ -165,6 +173,7 @@ public class AllNumbersTest {
         assertThat(choice.getOpt2(), is(notNullValue()));
         assertThat(choice.getOpt2().getI21(), is(42));
         assertThat(choice.getOpt2().getI22(), is(12345678));
+        assertThat(choice.getSelectedBranch(), is(MyChoice.OPT2));
     }
 
     @Test
@@ -256,6 +265,51 @@ public class AllNumbersTest {
         reader.close();
     }
 
+    @Test
+    public void shouldTrackSelectedBranch() {
+        MyChoice myChoice = new MyChoice();
+        assertThat(myChoice.getSelectedBranch(), is(MyChoice.NO_BRANCH));
+
+        myChoice.setOpt1(new Option1());
+        assertThat(myChoice.getSelectedBranch(), is(MyChoice.OPT1));
+
+        myChoice.setOpt2(new Option2());
+        assertThat(myChoice.getSelectedBranch(), is(MyChoice.OPT2));
+        assertThat(myChoice.getOpt1(), is(nullValue()));
+
+        myChoice.setOpt1(null);
+        assertThat(myChoice.getSelectedBranch(), is(MyChoice.OPT2));
+
+        myChoice.setOpt2(null);
+        assertThat(myChoice.getSelectedBranch(), is(MyChoice.NO_BRANCH));
+    }
+
+    @Test
+    public void shouldMarshalSelectedPrimitiveBranch() throws Exception {
+        NumberChoice numberChoice = new NumberChoice();
+        numberChoice.setSmall(3);
+        numberChoice.setLarge(70000);
+        assertThat(numberChoice.getSelectedBranch(), is(NumberChoice.LARGE));
+        assertThat(numberChoice.getSmall(), is(0));
+
+        Marshaller marshaller = dadlContext.createMarshaller();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        marshaller.marshal(numberChoice, os);
+
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(os.toByteArray());
+        assertThat(reader.readInt(), is(70000));
+        assertThat(reader.length(), is(4L));
+        reader.close();
+    }
+
+    @Test
+    public void shouldNotMarshalChoiceWithoutBranch() throws Exception {
+        Marshaller marshaller = dadlContext.createMarshaller();
+        thrown.expect(MarshalException.class);
+        thrown.expectMessage("no branch selected in choice");
+        marshaller.marshal(new MyChoice(), new ByteArrayOutputStream());
+    }
+
     @Test
     public void shouldMarshalList() throws Exception {
         NumberList numberList = new NumberList();
@@ -392,6 +446,56 @@ public class AllNumbersTest {
         assertThat(marshalled, is("005612"));
     }
 
+    @Test
+    public void shouldMarshalPaddedNumbers() throws Exception {
+        PaddedNumbers numbers = new PaddedNumbers();
+        numbers.setLeft(-42);
+        numbers.setRight(123);
+        numbers.setCenter(-7);
+        numbers.setZero(0);
+
+        Marshaller marshaller = dadlContext.createMarshaller();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        marshaller.marshal(numbers, os);
+        String marshalled = os.toString();
+        assertThat(marshalled, is("-42      123**-7**000"));
+
+        PaddedNumbers result = dadlContext.createUnmarshaller().unmarshal(os.toByteArray(),
+            PaddedNumbers.class);
+        assertThat(result.getLeft(), is(-42L));
+        assertThat(result.getRight(), is(123L));
+        assertThat(result.getCenter(), is(-7L));
+        assertThat(result.getZero(), is(0));
+    }
+
+    @Test
+    public void shouldUnmarshalExtremePaddedNumbers() throws Exception {
+        String marshalled = "999999-99999*+123*007";
+        PaddedNumbers result = dadlContext.createUnmarshaller().unmarshal(marshalled.getBytes(),
+            PaddedNumbers.class);
+        assertThat(result.getLeft(), is(999999L));
+        assertThat(result.getRight(), is(-99999L));
+        assertThat(result.getCenter(), is(123L));
+        assertThat(result.getZero(), is(7));
+    }
+
+    @Test
+    public void shouldRejectEmbeddedPadding() throws Exception {
+        String marshalled = "1 2      0**0**000";
+        thrown.expect(UnmarshalException.class);
+        thrown.expectMessage("illegal character in text number: 32");
+        dadlContext.createUnmarshaller().unmarshal(marshalled.getBytes(), PaddedNumbers.class);
+    }
+
+    @Test
+    public void shouldNotMarshalTooLongTextNumber() throws Exception {
+        PaddedNumbers numbers = new PaddedNumbers();
+        numbers.setLeft(-100000);
+        thrown.expect(MarshalException.class);
+        thrown.expectMessage("6 bytes are not sufficient for value -100000");
+        dadlContext.createMarshaller().marshal(numbers, new ByteArrayOutputStream());
+    }
+
     @Test
     public void shouldUnmarshalNumberWithColour() throws Exception {
         ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
@@ -559,6 +663,49 @@ public class AllNumbersTest {
         reader.close();
     }
 
+    @Test
+    public void shouldMarshalPackedSequence() throws Exception {
+        PackedSequence packedSequence = new PackedSequence();
+        packedSequence.setP1(-1234);
+        packedSequence.setP2(567);
+        packedSequence.setBcd3(987);
+        packedSequence.setP19(-Long.MAX_VALUE);
+        Marshaller marshaller = dadlContext.createMarshaller();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        marshaller.marshal(packedSequence, os);
+        byte[] bytes = os.toByteArray();
+        assertThat(bytes.length, is(18));
+        assertThat(Arrays.copyOf(bytes, 8), is(new byte[] { 0x01, 0x23, 0x4D, 0x00, 0x56, 0x7F,
+            (byte) 0x98, 0x79 }));
+
+        Unmarshaller unmarshaller = dadlContext.createUnmarshaller();
+        PackedSequence result = unmarshaller.unmarshal(bytes, PackedSequence.class);
+        assertThat(result.getP1(), is(-1234));
+        assertThat(result.getP2(), is(567));
+        assertThat(result.getBcd3(), is(987));
+        assertThat(result.getP19(), is(-Long.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldRejectIllegalSignNibble() throws Exception {
+        byte[] bytes = new byte[18];
+        bytes[2] = 0x49;
+        Unmarshaller unmarshaller = dadlContext.createUnmarshaller();
+        thrown.expect(UnmarshalException.class);
+        thrown.expectMessage("illegal sign nibble: 9");
+        unmarshaller.unmarshal(bytes, PackedSequence.class);
+    }
+
+    @Test
+    public void shouldNotMarshalTooManyBcdDigits() throws Exception {
+        BcdSequence bcdSequence = new BcdSequence();
+        bcdSequence.setBcd(12345);
+        Marshaller marshaller = dadlContext.createMarshaller();
+        thrown.expect(MarshalException.class);
+        thrown.expectMessage("value too large for 4 digits");
+        marshaller.marshal(bcdSequence, new ByteArrayOutputStream());
+    }
+
     @Test
     public void shouldMarshalSeqMinLength() throws Exception {
         SeqMinLength sml = new SeqMinLength();
@@ -712,4 +859,41 @@ public class AllNumbersTest {
         assertThat(reader.readBits(32), is(999L));
         reader.close();
     }
+
+    @Test
+    public void shouldMarshalUnalignedPayload() throws IOException {
+        UnalignedPayload payload = new UnalignedPayload();
+        payload.setBits(new byte[] { (byte) 0xAB, (byte) 0xC8 });
+        UnalignedPayloadWithSuffix upws = new UnalignedPayloadWithSuffix();
+        upws.setPayload(payload);
+        upws.setSuffix(7);
+
+        Marshaller marshaller = dadlContext.createMarshaller();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        marshaller.marshal(upws, os);
+        byte[] bytes = os.toByteArray();
+        assertThat(bytes, is(new byte[] { 0x0C, 2, (byte) 0xAB, (byte) 0xC8, 7 }));
+
+        Unmarshaller unmarshaller = dadlContext.createUnmarshaller();
+        UnalignedPayloadWithSuffix result = unmarshaller.unmarshal(bytes,
+            UnalignedPayloadWithSuffix.class);
+        assertThat(result.getPayload().getBits(), is(payload.getBits()));
+        assertThat(result.getSuffix(), is(7));
+    }
+
+    @Test
+    public void shouldFillPaddingBits() throws IOException {
+        BitPadded bitPadded = new BitPadded();
+        bitPadded.setB3(5);
+
+        Marshaller marshaller = dadlContext.createMarshaller();
+        assertThat(marshaller.bitSizeOf(bitPadded), is(12L));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        marshaller.marshal(bitPadded, os);
+        byte[] bytes = os.toByteArray();
+        assertThat(bytes, is(new byte[] { (byte) 0xBF, (byte) 0xF0 }));
+
+        Unmarshaller unmarshaller = dadlContext.createUnmarshaller();
+        assertThat(unmarshaller.unmarshal(bytes, BitPadded.class).getB3(), is(5));
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.marshal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.BitStreamWriter;
+
+import demo.simple.Option1;
+import demo.simple.VarIntSequence;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class BuiltinAdapterTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    @Test
+    public void shouldMarshalVarInts() throws IOException {
+        VarIntSequence sequence = new VarIntSequence();
+        sequence.setUnsigned(300);
+        sequence.setSigned(-3);
+        sequence.setLength(435);
+        sequence.setTag(201);
+        byte[] bytes = marshal(dadlContext, sequence);
+        assertThat(bytes, is(new byte[] { (byte) 0xAC, 0x02, 0x05, (byte) 0x82, 0x01,
+            (byte) 0xB3, (byte) 0x81, 0x49 }));
+
+        VarIntSequence result = dadlContext.createUnmarshaller().unmarshal(bytes,
+            VarIntSequence.class);
+        assertThat(result.getUnsigned(), is(300L));
+        assertThat(result.getSigned(), is(-3L));
+        assertThat(result.getLength(), is(435L));
+        assertThat(result.getTag(), is(201));
+    }
+
+    @Test
+    public void shouldRoundTripExtremeValues() throws IOException {
+        VarIntSequence sequence = new VarIntSequence();
+        sequence.setUnsigned(-1);
+        sequence.setSigned(Long.MIN_VALUE);
+        sequence.setLength(Long.MAX_VALUE);
+        sequence.setTag(Integer.MAX_VALUE);
+        byte[] bytes = marshal(dadlContext, sequence);
+        assertThat(bytes.length, is(10 + 10 + 9 + 5));
+        assertThat(dadlContext.createMarshaller().sizeOf(sequence), is((long) bytes.length));
+
+        VarIntSequence result = dadlContext.createUnmarshaller().unmarshal(bytes,
+            VarIntSequence.class);
+        assertThat(result.getUnsigned(), is(-1L));
+        assertThat(result.getSigned(), is(Long.MIN_VALUE));
+        assertThat(result.getLength(), is(Long.MAX_VALUE));
+        assertThat(result.getTag(), is(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldRejectIndefiniteLength() throws IOException {
+        byte[] bytes = { 0x01, 0x02, (byte) 0x80, 0x00 };
+        thrown.expect(UnmarshalException.class);
+        thrown.expectMessage("indefinite length is not supported");
+        dadlContext.createUnmarshaller().unmarshal(bytes, VarIntSequence.class);
+    }
+
+    /**
+     * BER length adapter which fails when called with boxed values.
+     */
+    private static class PrimitiveOnlyAdapter extends BerLengthAdapter {
+
+        @Override
+        public void marshal(Number info, BitStreamWriter writer) throws IOException {
+            throw new AssertionError("boxed marshal");
+        }
+
+        @Override
+        public Number unmarshal(BitStreamReader reader) throws IOException {
+            throw new AssertionError("boxed unmarshal");
+        }
+    }
+
+    @Test
+    public void shouldUsePrimitiveAdapterMethods() throws IOException {
+        dadlContext.setAdapter("berLength", new PrimitiveOnlyAdapter());
+        VarIntSequence sequence = new VarIntSequence();
+        sequence.setLength(200);
+        byte[] bytes = marshal(dadlContext, sequence);
+        assertThat(bytes, is(new byte[] { 0, 0, (byte) 0x81, (byte) 200, 0 }));
+        VarIntSequence result = dadlContext.createUnmarshaller().unmarshal(bytes,
+            VarIntSequence.class);
+        assertThat(result.getLength(), is(200L));
+    }
+
+    @Test
+    public void shouldUsePrimitiveAdapterForLengthField() throws IOException {
+        dadlContext.setAdapter("varint", new PrimitiveOnlyAdapter());
+        Option1 option = new Option1();
+        option.setI11(1000);
+        option.setI12(-5);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        dadlContext.createMarshaller().marshal(option, os);
+        byte[] bytes = os.toByteArray();
+        assertThat(bytes, is(new byte[] { 0x0A, 0x03, 0x03, (byte) 0xE8, (byte) 0xFB }));
+
+        Option1 result = dadlContext.createUnmarshaller().unmarshal(bytes, Option1.class);
+        assertThat(result.getI11(), is(1000));
+        assertThat(result.getI12(), is(-5));
+    }
+
+    @Test
+    public void shouldOverrideBuiltinAdapter() throws IOException {
+        dadlContext.setAdapter("berLength", new VarIntAdapter());
+        VarIntSequence sequence = new VarIntSequence();
+        sequence.setLength(0x1234);
+        byte[] bytes = marshal(dadlContext, sequence);
+        assertThat(bytes, is(new byte[] { 0, 0, (byte) 0x82, 0x12, 0x34, 0 }));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.marshalCheckingSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.ops4j.dadl.exc.UnmarshalException;
+
+import demo.simple.Crc16Frame;
+import demo.simple.Crc32Frame;
+import demo.simple.Crc32cFrame;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class ChecksumFieldTest {
+
+    private static final byte[] CHECK_INPUT = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    private static byte[] frame(int tag, byte[] payload, int... checksum) {
+        byte[] bytes = new byte[2 + payload.length + checksum.length];
+        bytes[0] = (byte) tag;
+        bytes[1] = (byte) payload.length;
+        System.arraycopy(payload, 0, bytes, 2, payload.length);
+        for (int i = 0; i < checksum.length; i++) {
+            bytes[2 + payload.length + i] = (byte) checksum[i];
+        }
+        return bytes;
+    }
+
+    @Test
+    public void shouldWriteAndVerifyCrc32() throws IOException {
+        Crc32Frame frame = new Crc32Frame();
+        frame.setData(CHECK_INPUT);
+        byte[] bytes = marshalCheckingSize(dadlContext, frame);
+        assertThat(bytes, is(frame(0x31, CHECK_INPUT, 0xCB, 0xF4, 0x39, 0x26)));
+
+        Crc32Frame result = dadlContext.createUnmarshaller().unmarshal(bytes, Crc32Frame.class);
+        assertThat(result.getData(), is(CHECK_INPUT));
+    }
+
+    @Test
+    public void shouldWriteAndVerifyCrc32c() throws IOException {
+        Crc32cFrame frame = new Crc32cFrame();
+        frame.setData(CHECK_INPUT);
+        byte[] bytes = marshalCheckingSize(dadlContext, frame);
+        assertThat(bytes, is(frame(0x32, CHECK_INPUT, 0xE3, 0x06, 0x92, 0x83)));
+
+        Crc32cFrame result = dadlContext.createUnmarshaller().unmarshal(bytes,
+            Crc32cFrame.class);
+        assertThat(result.getData(), is(CHECK_INPUT));
+    }
+
+    @Test
+    public void shouldIncludeTagAndLengthInChecksum() throws IOException {
+        Crc16Frame frame = new Crc16Frame();
+        frame.setI8(-2);
+        frame.setU32(123456);
+        byte[] bytes = marshalCheckingSize(dadlContext, frame);
+        assertThat(bytes, is(frame(0x33, new byte[] { (byte) 0xFE, 0, 1, (byte) 0xE2, 0x40 },
+            0xCA, 0x1A)));
+
+        Crc16Frame result = dadlContext.createUnmarshaller().unmarshal(bytes, Crc16Frame.class);
+        assertThat(result.getI8(), is(-2));
+        assertThat(result.getU32(), is(123456L));
+    }
+
+    @Test
+    public void shouldRejectChecksumMismatch() throws IOException {
+        Crc16Frame frame = new Crc16Frame();
+        frame.setI8(-2);
+        frame.setU32(123456);
+        byte[] bytes = marshalCheckingSize(dadlContext, frame);
+        bytes[3] ^= 1;
+
+        thrown.expect(UnmarshalException.class);
+        thrown.expectMessage("checksum mismatch in Crc16Frame");
+        dadlContext.createUnmarshaller().unmarshal(bytes, Crc16Frame.class);
+    }
+}
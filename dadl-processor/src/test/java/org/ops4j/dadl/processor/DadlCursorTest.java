@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.ops4j.dadl.io.ByteArrayBitStreamReader;
+import org.ops4j.dadl.io.ByteArrayBitStreamWriter;
+import org.ops4j.dadl.processor.DadlCursor.Event;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class DadlCursorTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    private ByteArrayBitStreamReader writeAllNumbers(int numRecords) throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        for (int i = 0; i < numRecords; i++) {
+            writer.writeBits(-2 - i, 8);
+            writer.writeBits(200, 8);
+            writer.writeBits(-300, 16);
+            writer.writeBits(60000, 16);
+            writer.writeBits(-70000, 24);
+            writer.writeBits(8000000, 24);
+            writer.writeBits(-90000000, 32);
+            writer.writeBits(4000000000L + i, 32);
+        }
+        writer.close();
+        return new ByteArrayBitStreamReader(writer.toByteArray());
+    }
+
+    private void expect(DadlCursor cursor, Event event, String name, int depth)
+        throws IOException {
+        assertThat(cursor.next(), is(event));
+        assertThat(cursor.getName(), is(name));
+        assertThat(cursor.getDepth(), is(depth));
+    }
+
+    private void expectLong(DadlCursor cursor, String name, long value) throws IOException {
+        assertThat(cursor.next(), is(Event.VALUE));
+        assertThat(cursor.getName(), is(name));
+        assertThat(cursor.getLong(), is(value));
+    }
+
+    @Test
+    public void shouldPullNestedSequences() throws IOException {
+        DadlCursor cursor = dadlContext.createCursor(writeAllNumbers(1), "AllNumbers");
+        expect(cursor, Event.START_SEQUENCE, "AllNumbers", 0);
+        expect(cursor, Event.START_SEQUENCE, "shortNumbers", 1);
+        assertThat(cursor.getTypeName(), is("ShortNumbers"));
+        expectLong(cursor, "i8", -2);
+        assertThat(cursor.getTypeName(), is("Int8"));
+        assertThat(cursor.getDepth(), is(2));
+        expectLong(cursor, "u8", 200);
+        expectLong(cursor, "i16", -300);
+        expectLong(cursor, "u16", 60000);
+        expect(cursor, Event.END_SEQUENCE, "shortNumbers", 1);
+        expect(cursor, Event.START_SEQUENCE, "longNumbers", 1);
+        expectLong(cursor, "i24", -70000);
+        expectLong(cursor, "u24", 8000000);
+        expectLong(cursor, "i32", -90000000);
+        expectLong(cursor, "u32", 4000000000L);
+        expect(cursor, Event.END_SEQUENCE, "longNumbers", 1);
+        expect(cursor, Event.END_SEQUENCE, "AllNumbers", 0);
+        assertThat(cursor.hasNext(), is(true));
+        assertThat(cursor.next(), is(Event.END_DOCUMENT));
+        assertThat(cursor.hasNext(), is(false));
+    }
+
+    @Test
+    public void shouldSkipFixedLengthSequence() throws IOException {
+        ByteArrayBitStreamReader reader = writeAllNumbers(2);
+        DadlCursor cursor = dadlContext.createCursor(reader, "AllNumbers");
+        for (int i = 0; i < 2; i++) {
+            expect(cursor, Event.START_SEQUENCE, "AllNumbers", 0);
+            expect(cursor, Event.START_SEQUENCE, "shortNumbers", 1);
+            cursor.skipElement();
+            expect(cursor, Event.END_SEQUENCE, "shortNumbers", 1);
+            expect(cursor, Event.START_SEQUENCE, "longNumbers", 1);
+            expectLong(cursor, "i24", -70000);
+            expectLong(cursor, "u24", 8000000);
+            expectLong(cursor, "i32", -90000000);
+            expectLong(cursor, "u32", 4000000000L + i);
+            expect(cursor, Event.END_SEQUENCE, "longNumbers", 1);
+            expect(cursor, Event.END_SEQUENCE, "AllNumbers", 0);
+            assertThat(cursor.next(), is(Event.END_DOCUMENT));
+            cursor.restart();
+        }
+        assertThat(reader.getBitPosition(), is(2 * 20 * 8L));
+    }
+
+    @Test
+    public void shouldSkipTaggedSequenceByLengthField() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(0x0B, 8);
+        writer.writeBits(7, 8);
+        writer.writeBits(42, 24);
+        writer.writeBits(12345678, 32);
+        writer.close();
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(writer.toByteArray());
+
+        DadlCursor cursor = dadlContext.createCursor(reader, "MyChoice");
+        expect(cursor, Event.START_CHOICE, "MyChoice", 0);
+        expect(cursor, Event.START_SEQUENCE, "opt2", 1);
+        assertThat(reader.getBitPosition(), is(16L));
+        cursor.skipElement();
+        assertThat(reader.getBitPosition(), is(72L));
+        expect(cursor, Event.END_SEQUENCE, "opt2", 1);
+        expect(cursor, Event.END_CHOICE, "MyChoice", 0);
+        assertThat(cursor.next(), is(Event.END_DOCUMENT));
+    }
+
+    @Test
+    public void shouldSelectTaggedBranchByTag() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(0x0B, 8);
+        writer.writeBits(7, 8);
+        writer.writeBits(42, 24);
+        writer.writeBits(12345678, 32);
+        writer.close();
+        int[] numReads = new int[1];
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(writer.toByteArray()) {
+
+            @Override
+            public int read() throws IOException {
+                numReads[0]++;
+                return super.read();
+            }
+        };
+
+        DadlCursor cursor = dadlContext.createCursor(reader, "MyChoice");
+        expect(cursor, Event.START_CHOICE, "MyChoice", 0);
+        expect(cursor, Event.START_SEQUENCE, "opt2", 1);
+        // the tags of both branches are checked, the payload is not parsed ahead
+        assertThat(numReads[0], is(4));
+        expectLong(cursor, "i21", 42);
+        expectLong(cursor, "i22", 12345678);
+        expect(cursor, Event.END_SEQUENCE, "opt2", 1);
+        expect(cursor, Event.END_CHOICE, "MyChoice", 0);
+        assertThat(cursor.next(), is(Event.END_DOCUMENT));
+    }
+
+    @Test
+    public void shouldPullTextAndEnumeration() throws IOException {
+        String text = "Hello DADL!";
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeByte(0x0A);
+        writer.writeByte(2 + text.length());
+        writer.writeByte(22);
+        writer.writeByte(14);
+        writer.writeBytes(text);
+        writer.close();
+
+        DadlCursor cursor = dadlContext.createCursor(
+            new ByteArrayBitStreamReader(writer.toByteArray()), "TaggedString");
+        expect(cursor, Event.START_SEQUENCE, "TaggedString", 0);
+        expect(cursor, Event.START_SEQUENCE, "nwc", 1);
+        expectLong(cursor, "i1", 22);
+        expectLong(cursor, "c", 14);
+        expect(cursor, Event.END_SEQUENCE, "nwc", 1);
+        assertThat(cursor.next(), is(Event.VALUE));
+        assertThat(cursor.getText(), is(text));
+        assertThat(cursor.getByteLength(), is(text.length()));
+        assertThat(cursor.getValue(), is((Object) text));
+        expect(cursor, Event.END_SEQUENCE, "TaggedString", 0);
+
+        thrown.expect(IllegalStateException.class);
+        cursor.getLong();
+    }
+
+    @Test
+    public void shouldOmitMissingOptionalElement() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(0x0B, 8);
+        writer.writeBits(7, 8);
+        writer.writeBits(42, 24);
+        writer.writeBits(12345678, 32);
+        writer.close();
+
+        DadlCursor cursor = dadlContext.createCursor(
+            new ByteArrayBitStreamReader(writer.toByteArray()), "SequenceWithOptional");
+        expect(cursor, Event.START_SEQUENCE, "SequenceWithOptional", 0);
+        expect(cursor, Event.START_SEQUENCE, "opt2", 1);
+        expectLong(cursor, "i21", 42);
+        expectLong(cursor, "i22", 12345678);
+        expect(cursor, Event.END_SEQUENCE, "opt2", 1);
+        expect(cursor, Event.END_SEQUENCE, "SequenceWithOptional", 0);
+    }
+
+    @Test
+    public void shouldPullAndSkipLists() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(2, 8);
+        writer.writeInt(10);
+        writer.writeInt(-20);
+        writer.writeBits(3, 8);
+        writer.writeInt(1);
+        writer.writeInt(2);
+        writer.writeInt(3);
+        writer.close();
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(writer.toByteArray());
+
+        DadlCursor cursor = dadlContext.createCursor(reader, "NumberList");
+        expect(cursor, Event.START_SEQUENCE, "NumberList", 0);
+        expectLong(cursor, "numItems", 2);
+        expect(cursor, Event.START_LIST, "items", 1);
+        expectLong(cursor, "items", 10);
+        expectLong(cursor, "items", -20);
+        expect(cursor, Event.END_LIST, "items", 1);
+        expect(cursor, Event.END_SEQUENCE, "NumberList", 0);
+        assertThat(cursor.next(), is(Event.END_DOCUMENT));
+
+        cursor.restart();
+        expect(cursor, Event.START_SEQUENCE, "NumberList", 0);
+        expectLong(cursor, "numItems", 3);
+        expect(cursor, Event.START_LIST, "items", 1);
+        cursor.skipElement();
+        expect(cursor, Event.END_LIST, "items", 1);
+        expect(cursor, Event.END_SEQUENCE, "NumberList", 0);
+        assertThat(reader.getBitPosition(), is(8L * 22));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.marshal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.ops4j.dadl.exc.MarshalException;
+import org.ops4j.dadl.io.ByteArrayBitStreamWriter;
+
+import demo.simple.AllNumbers;
+import demo.simple.Crc32Frame;
+import demo.simple.MyChoice;
+import demo.simple.NumberList;
+import demo.simple.Option2;
+import demo.simple.SequenceWithOptional;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class DadlWriterCursorTest {
+
+    private static final byte[] CHECK_INPUT = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private DadlContext dadlContext;
+
+    private ByteArrayBitStreamWriter writer;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+        writer = new ByteArrayBitStreamWriter();
+    }
+
+    private Option2 createOption2(int i21, int i22) {
+        Option2 opt2 = new Option2();
+        opt2.setI21(i21);
+        opt2.setI22(i22);
+        return opt2;
+    }
+
+    private void writeOption2(DadlWriterCursor cursor, int i21, int i22) throws IOException {
+        cursor.startSequence("opt2");
+        cursor.writeInt("i21", i21);
+        cursor.writeInt("i22", i22);
+        cursor.endSequence();
+    }
+
+    @Test
+    public void shouldWriteNestedSequences() throws IOException {
+        DadlWriterCursor cursor = dadlContext.createWriterCursor(writer, "AllNumbers");
+        for (int i = 0; i < 2; i++) {
+            cursor.startSequence("AllNumbers");
+            cursor.startSequence("shortNumbers");
+            cursor.writeInt("i8", -2 - i);
+            cursor.writeInt("u8", 200);
+            cursor.writeInt("i16", -300);
+            cursor.writeInt("u16", 60000);
+            cursor.endSequence();
+            cursor.startSequence("longNumbers");
+            cursor.writeInt("i24", -70000);
+            cursor.writeInt("u24", 8000000);
+            cursor.writeInt("i32", -90000000);
+            cursor.writeLong("u32", 4000000000L + i);
+            cursor.endSequence();
+            cursor.endSequence();
+            assertThat(cursor.isComplete(), is(true));
+            cursor.restart();
+        }
+        byte[] bytes = writer.toByteArray();
+        assertThat(bytes.length, is(2 * 20));
+        AllNumbers an = dadlContext.createUnmarshaller().unmarshal(bytes, AllNumbers.class);
+        assertThat(an.getShortNumbers().getI8(), is(-2));
+        assertThat(an.getShortNumbers().getU16(), is(60000));
+        assertThat(an.getLongNumbers().getI32(), is(-90000000));
+        assertThat(an.getLongNumbers().getU32(), is(4000000000L));
+    }
+
+    @Test
+    public void shouldWriteChoiceWithLengthField() throws IOException {
+        DadlWriterCursor cursor = dadlContext.createWriterCursor(writer, "MyChoice");
+        cursor.startChoice("MyChoice");
+        writeOption2(cursor, 1000, -2000);
+        cursor.endChoice();
+
+        MyChoice choice = new MyChoice();
+        choice.setOpt2(createOption2(1000, -2000));
+        assertThat(writer.toByteArray(), is(marshal(dadlContext, choice)));
+    }
+
+    @Test
+    public void shouldOmitOptionalElement() throws IOException {
+        DadlWriterCursor cursor = dadlContext.createWriterCursor(writer, "SequenceWithOptional");
+        cursor.startSequence("SequenceWithOptional");
+        writeOption2(cursor, 42, 43);
+        cursor.endSequence();
+
+        SequenceWithOptional seq = new SequenceWithOptional();
+        seq.setOpt2(createOption2(42, 43));
+        assertThat(writer.toByteArray(), is(marshal(dadlContext, seq)));
+    }
+
+    @Test
+    public void shouldWriteListWithOccursCount() throws IOException {
+        DadlWriterCursor cursor = dadlContext.createWriterCursor(writer, "NumberList");
+        cursor.startSequence("NumberList");
+        cursor.writeInt("numItems", 3);
+        cursor.startList("items");
+        cursor.writeInt("items", 10);
+        cursor.writeInt("items", 20);
+        cursor.writeInt("items", 30);
+        cursor.endList();
+        cursor.endSequence();
+
+        NumberList numberList = new NumberList();
+        numberList.getItems().addAll(Arrays.asList(10, 20, 30));
+        assertThat(writer.toByteArray(), is(marshal(dadlContext, numberList)));
+    }
+
+    @Test
+    public void shouldWriteChecksum() throws IOException {
+        DadlWriterCursor cursor = dadlContext.createWriterCursor(writer, "Crc32Frame");
+        cursor.startSequence("Crc32Frame");
+        cursor.writeBytes("data", CHECK_INPUT);
+        cursor.endSequence();
+
+        Crc32Frame frame = new Crc32Frame();
+        frame.setData(CHECK_INPUT);
+        byte[] bytes = writer.toByteArray();
+        assertThat(bytes, is(marshal(dadlContext, frame)));
+        Crc32Frame result = dadlContext.createUnmarshaller().unmarshal(bytes, Crc32Frame.class);
+        assertThat(result.getData(), is(CHECK_INPUT));
+    }
+
+    @Test
+    public void shouldRejectUnexpectedElement() throws IOException {
+        DadlWriterCursor cursor = dadlContext.createWriterCursor(writer, "AllNumbers");
+        cursor.startSequence("AllNumbers");
+        cursor.startSequence("shortNumbers");
+        cursor.writeInt("i8", 1);
+
+        thrown.expect(MarshalException.class);
+        thrown.expectMessage("expected element u8 in ShortNumbers, found i16");
+        cursor.writeInt("i16", 2);
+    }
+
+    @Test
+    public void shouldRejectItemCountMismatch() throws IOException {
+        DadlWriterCursor cursor = dadlContext.createWriterCursor(writer, "NumberList");
+        cursor.startSequence("NumberList");
+        cursor.writeInt("numItems", 2);
+        cursor.startList("items");
+        cursor.writeInt("items", 10);
+
+        thrown.expect(MarshalException.class);
+        thrown.expectMessage("list items has 1 items, occurs count is 2");
+        cursor.endList();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Test;
+import org.ops4j.dadl.io.EnumerationMapping;
+
+import demo.simple.Colour;
+import demo.simple.Direction;
+import demo.simple.EnumValues;
+import demo.simple.Priority;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class EnumerationMappingTest {
+
+    @Test
+    public void shouldMapDenseValues() {
+        EnumerationMapping mapping = EnumerationMapping.of(Colour.class);
+        assertThat(mapping.fromValue(11L), is((Object) Colour.RED));
+        assertThat(mapping.fromValue(17L), is((Object) Colour.GREEN));
+        assertThat(mapping.fromValue(12L), is(nullValue()));
+        assertThat(mapping.fromValue(10L), is(nullValue()));
+        assertThat(mapping.fromValue(18L), is(nullValue()));
+        assertThat(mapping.toValue(Colour.YELLOW), is((Object) 14));
+    }
+
+    @Test
+    public void shouldMapSparseValues() {
+        EnumerationMapping mapping = EnumerationMapping.of(Priority.class);
+        assertThat(mapping.fromValue(256L), is((Object) Priority.NORMAL));
+        assertThat(mapping.fromValue(Integer.valueOf(9999)), is((Object) Priority.HIGH));
+        assertThat(mapping.fromValue(2L), is(nullValue()));
+    }
+
+    @Test
+    public void shouldMapTextValues() {
+        EnumerationMapping mapping = EnumerationMapping.of(Direction.class);
+        assertThat(mapping.fromValue("S"), is((Object) Direction.SOUTH));
+        assertThat(mapping.fromValue("X"), is(nullValue()));
+        assertThat(mapping.toValue(Direction.NORTH), is((Object) "N"));
+    }
+
+    @Test
+    public void shouldLookUpGeneratedEnums() {
+        assertThat(Colour.fromValue(14), is(Colour.YELLOW));
+        assertThat(Colour.fromValue(15), is(nullValue()));
+        assertThat(Colour.fromValue(null), is(nullValue()));
+        assertThat(Priority.fromValue(1), is(Priority.LOW));
+        assertThat(Direction.fromValue("N"), is(Direction.NORTH));
+    }
+
+    @Test
+    public void shouldMarshalEnumValues() throws IOException, JAXBException {
+        DadlContext dadlContext = DadlContext.newInstance(new File(
+            "src/test/resources/simpleModel.xml"));
+        EnumValues enumValues = new EnumValues();
+        enumValues.setColour(Colour.GREEN);
+        enumValues.setPriority(Priority.NORMAL);
+        enumValues.setDirection(Direction.SOUTH);
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        dadlContext.createMarshaller().marshal(enumValues, os);
+        byte[] bytes = os.toByteArray();
+        assertThat(bytes, is(new byte[] { 17, 1, 0, 'S' }));
+
+        EnumValues result = dadlContext.createUnmarshaller().unmarshal(bytes, EnumValues.class);
+        assertThat(result.getColour(), is(Colour.GREEN));
+        assertThat(result.getPriority(), is(Priority.NORMAL));
+        assertThat(result.getDirection(), is(Direction.SOUTH));
+    }
+}
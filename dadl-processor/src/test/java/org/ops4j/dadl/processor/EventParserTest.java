@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.ByteArrayBitStreamReader;
+import org.ops4j.dadl.io.ByteArrayBitStreamWriter;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class EventParserTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private DadlContext dadlContext;
+
+    private EventParser parser;
+
+    private List<String> events = new ArrayList<>();
+
+    private DadlEventHandler recorder = new DadlEventHandler() {
+
+        @Override
+        public void startSequence(String name, String typeName) {
+            events.add("<" + name + ":" + typeName + ">");
+        }
+
+        @Override
+        public void endSequence(String name) {
+            events.add("</" + name + ">");
+        }
+
+        @Override
+        public void startChoice(String name, String typeName) {
+            events.add("<" + name + ":" + typeName + "|>");
+        }
+
+        @Override
+        public void endChoice(String name) {
+            events.add("</" + name + "|>");
+        }
+
+        @Override
+        public void startList(String name) {
+            events.add("[" + name);
+        }
+
+        @Override
+        public void endList(String name) {
+            events.add(name + "]");
+        }
+
+        @Override
+        public void integer(String name, long value) {
+            events.add(name + "=" + value);
+        }
+
+        @Override
+        public void text(String name, byte[] bytes, int offset, int length) {
+            events.add(name + "='" + new String(bytes, offset, length, StandardCharsets.ISO_8859_1)
+                + "'");
+        }
+
+        @Override
+        public void opaque(String name, byte[] bytes, int offset, int length) {
+            events.add(name + "=" + Arrays.toString(Arrays.copyOfRange(bytes, offset,
+                offset + length)));
+        }
+    };
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+        parser = dadlContext.createEventParser();
+    }
+
+    private List<String> parse(ByteArrayBitStreamWriter writer, String typeName)
+        throws IOException {
+        writer.close();
+        parser.parse(writer.toByteArray(), typeName, recorder);
+        return events;
+    }
+
+    @Test
+    public void shouldReportNestedSequences() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(-2, 8);
+        writer.writeBits(200, 8);
+        writer.writeBits(-300, 16);
+        writer.writeBits(60000, 16);
+        writer.writeBits(-70000, 24);
+        writer.writeBits(8000000, 24);
+        writer.writeBits(-90000000, 32);
+        writer.writeBits(4000000000L, 32);
+
+        assertThat(parse(writer, "AllNumbers"), is(Arrays.asList(
+            "<AllNumbers:AllNumbers>",
+            "<shortNumbers:ShortNumbers>", "i8=-2", "u8=200", "i16=-300", "u16=60000",
+            "</shortNumbers>",
+            "<longNumbers:LongNumbers>", "i24=-70000", "u24=8000000", "i32=-90000000",
+            "u32=4000000000", "</longNumbers>",
+            "</AllNumbers>")));
+    }
+
+    @Test
+    public void shouldReportListItems() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(3, 8);
+        writer.writeInt(10);
+        writer.writeInt(-20);
+        writer.writeInt(30);
+
+        assertThat(parse(writer, "NumberList"), is(Arrays.asList(
+            "<NumberList:NumberList>", "numItems=3",
+            "[items", "items=10", "items=-20", "items=30", "items]",
+            "</NumberList>")));
+    }
+
+    @Test
+    public void shouldReportMatchedBranchOnly() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(0x0B, 8);
+        writer.writeBits(7, 8);
+        writer.writeBits(42, 24);
+        writer.writeBits(12345678, 32);
+
+        assertThat(parse(writer, "MyChoice"), is(Arrays.asList(
+            "<MyChoice:MyChoice|>",
+            "<opt2:Option2>", "i21=42", "i22=12345678", "</opt2>",
+            "</MyChoice|>")));
+    }
+
+    @Test
+    public void shouldParseMatchedBranchOnce() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(0x0B, 8);
+        writer.writeBits(7, 8);
+        writer.writeBits(42, 24);
+        writer.writeBits(12345678, 32);
+        writer.close();
+        int[] numReads = new int[1];
+        ByteArrayBitStreamReader reader = new ByteArrayBitStreamReader(writer.toByteArray()) {
+
+            @Override
+            public int read() throws IOException {
+                numReads[0]++;
+                return super.read();
+            }
+        };
+        parser.parse(reader, "MyChoice", recorder);
+        assertThat(events.size(), is(6));
+        assertThat(reader.getBitPosition(), is(72L));
+        // the tag of the first branch, and all bytes of the matched branch, once
+        assertThat(numReads[0], is(1 + 9));
+    }
+
+    @Test
+    public void shouldEvaluateDiscriminatorOnRawValue() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(40, 8);
+        writer.writeBits(-5, 24);
+        writer.writeInt(6);
+
+        assertThat(parse(writer, "ChoiceWithDiscriminator"), is(Arrays.asList(
+            "<ChoiceWithDiscriminator:ChoiceWithDiscriminator|>",
+            "<opt4:Option4>", "tag=40", "i41=-5", "i42=6", "</opt4>",
+            "</ChoiceWithDiscriminator|>")));
+    }
+
+    @Test
+    public void shouldReportTextAndOpaqueBytes() throws IOException {
+        String text = "Hello DADL!";
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeByte(0x0A);
+        writer.writeByte(2 + text.length());
+        writer.writeByte(22);
+        writer.writeByte(14);
+        writer.writeBytes(text);
+        assertThat(parse(writer, "TaggedString"), is(Arrays.asList(
+            "<TaggedString:TaggedString>",
+            "<nwc:NumberWithColour>", "i1=22", "c=14", "</nwc>",
+            "text='Hello DADL!'",
+            "</TaggedString>")));
+
+        events.clear();
+        writer = new ByteArrayBitStreamWriter();
+        writer.writeInt(3);
+        writer.writeBytes("abc");
+        assertThat(parse(writer, "OpaqueContainer"), is(Arrays.asList(
+            "<OpaqueContainer:OpaqueContainer>", "length=3", "content=[97, 98, 99]",
+            "</OpaqueContainer>")));
+    }
+
+    @Test
+    public void shouldRejectUnmatchedChoice() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(0x0C, 8);
+        writer.writeBits(0, 8);
+
+        thrown.expect(UnmarshalException.class);
+        parse(writer, "MyChoice");
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.ByteArrayBitStreamWriter;
+import org.ops4j.dadl.model.FixedLayout;
+import org.ops4j.dadl.model.ValidatedModel;
+
+import demo.simple.BitField;
+import demo.simple.LongNumbers;
+import demo.simple.PaddedOuter;
+import demo.simple.UnalignedPayloadWithSuffix;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class FixedLayoutTest {
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    @Test
+    public void shouldComputeFixedLayouts() {
+        ValidatedModel model = dadlContext.getModel();
+        FixedLayout layout = model.getFixedLayout("ShortNumbers");
+        assertThat(layout.getBitLength(), is(48L));
+        assertThat(layout.getNumFields(), is(4));
+        assertThat(layout.getFieldIndex("i16"), is(2));
+        assertThat(layout.getFieldOffset(2), is(16L));
+        assertThat(layout.getFieldLength(2), is(16L));
+
+        assertThat(model.getFixedLayout("AllNumbers").getBitLength(), is(160L));
+        assertThat(model.getFixedLayout("AllNumbers").getFieldOffset(1), is(48L));
+
+        layout = model.getFixedLayout("BitField");
+        assertThat(layout.getBitLength(), is(16L));
+        assertThat(layout.getFieldOffset(3), is(9L));
+        assertThat(layout.getFieldLength(3), is(7L));
+
+        assertThat(model.getFixedLayout("PaddedInner").getBitLength(), is(72L));
+        assertThat(model.getFixedLayout("PaddedOuter").getFieldOffset(1), is(72L));
+    }
+
+    @Test
+    public void shouldNotComputeVariableLayouts() {
+        ValidatedModel model = dadlContext.getModel();
+        assertThat(model.getFixedLayout("Option1"), is(nullValue()));
+        assertThat(model.getFixedLayout("NumberList"), is(nullValue()));
+        assertThat(model.getFixedLayout("TaggedString"), is(nullValue()));
+        assertThat(model.getFixedLayout("SeqMinLength"), is(nullValue()));
+        assertThat(model.getFixedLayout("OpaqueContainer"), is(nullValue()));
+        assertThat(model.getFixedLayout("MyChoice"), is(nullValue()));
+        assertThat(model.getFixedBitLength(model.getType("VarIntLength")), is(nullValue()));
+    }
+
+    @Test
+    public void shouldUnmarshalFixedLayout() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(-5_000_000, 24);
+        writer.writeBits(10_000_000, 24);
+        writer.writeInt(-100000);
+        writer.writeInt((int) 3_000_000_000L);
+        writer.close();
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        LongNumbers ln = parser.unmarshal(writer.toByteArray(), LongNumbers.class);
+        assertThat(ln.getI24(), is(-5_000_000));
+        assertThat(ln.getU24(), is(10_000_000));
+        assertThat(ln.getI32(), is(-100000));
+        assertThat(ln.getU32(), is(3_000_000_000L));
+    }
+
+    @Test
+    public void shouldUnmarshalUnalignedFixedLayout() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeBits(2, 2);
+        writer.writeBits(5, 3);
+        writer.writeBits(9, 4);
+        writer.writeBits(100, 7);
+        writer.close();
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        BitField bitField = parser.unmarshal(writer.toByteArray(), BitField.class);
+        assertThat(bitField.getB2(), is(2));
+        assertThat(bitField.getB3(), is(5));
+        assertThat(bitField.getB4(), is(9));
+        assertThat(bitField.getB7(), is(100));
+    }
+
+    @Test
+    public void shouldUnmarshalNestedFixedLayoutWithPadding() throws IOException {
+        ByteArrayBitStreamWriter writer = new ByteArrayBitStreamWriter();
+        writer.writeShort(-300);
+        writer.writeShort(400);
+        writer.write(new byte[5]);
+        writer.writeShort(500);
+        writer.close();
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        PaddedOuter outer = parser.unmarshal(writer.toByteArray(), PaddedOuter.class);
+        assertThat(outer.getInner().getA(), is(-300));
+        assertThat(outer.getInner().getB(), is(400));
+        assertThat(outer.getC(), is(500));
+    }
+
+    @Test
+    public void shouldUnmarshalFieldAfterPaddedPayload() throws IOException {
+        ValidatedModel model = dadlContext.getModel();
+        assertThat(model.getFixedLayout("UnalignedPayload").getBitLength(), is(32L));
+        assertThat(model.getFixedLayout("UnalignedPayloadWithSuffix").getFieldOffset(1),
+            is(32L));
+
+        byte[] bytes = new byte[] { 0x0C, 2, (byte) 0xAB, (byte) 0xC8, 5 };
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        UnalignedPayloadWithSuffix upws = parser.unmarshal(bytes,
+            UnalignedPayloadWithSuffix.class);
+        assertThat(upws.getPayload().getBits(), is(new byte[] { (byte) 0xAB, (byte) 0xC8 }));
+        assertThat(upws.getSuffix(), is(5));
+    }
+
+    @Test(expected = UnmarshalException.class)
+    public void shouldRejectTruncatedFixedLayout() throws IOException {
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        parser.unmarshal(new byte[13], LongNumbers.class);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import demo.simple.AllNumbers;
+import demo.simple.LongNumbers;
+import demo.simple.Option1;
+import demo.simple.Option2;
+import demo.simple.ShortNumbers;
+
+/**
+ * Test data shared by the processor tests.
+ *
+ * @author hwellmann
+ *
+ */
+final class Fixtures {
+
+    private Fixtures() {
+        // hidden utility class constructor
+    }
+
+    /**
+     * Marshals the given info model objects, one after the other.
+     *
+     * @param context
+     *            DADL context
+     * @param infos
+     *            info model objects
+     * @return encoded bytes
+     * @throws IOException
+     *             on write error
+     */
+    static byte[] marshal(DadlContext context, Object... infos) throws IOException {
+        Marshaller marshaller = context.createMarshaller();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (Object info : infos) {
+            marshaller.marshal(info, os);
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * Marshals the given info model object and checks that the computed size matches the number
+     * of bytes written.
+     *
+     * @param context
+     *            DADL context
+     * @param info
+     *            info model object
+     * @return encoded bytes
+     * @throws IOException
+     *             on write error
+     */
+    static byte[] marshalCheckingSize(DadlContext context, Object info) throws IOException {
+        byte[] bytes = marshal(context, info);
+        assertThat(context.createMarshaller().sizeOf(info), is((long) bytes.length));
+        return bytes;
+    }
+
+    static AllNumbers createAllNumbers(int i8, long u32) {
+        ShortNumbers sn = new ShortNumbers();
+        sn.setI8(i8);
+        sn.setU8(200);
+        sn.setI16(-1000);
+        sn.setU16(50000);
+
+        LongNumbers ln = new LongNumbers();
+        ln.setI24(-5_000_000);
+        ln.setU24(10_000_000);
+        ln.setI32(-100000);
+        ln.setU32(u32);
+
+        AllNumbers an = new AllNumbers();
+        an.setShortNumbers(sn);
+        an.setLongNumbers(ln);
+        return an;
+    }
+
+    static Option1 createOption1(int i11) {
+        Option1 opt1 = new Option1();
+        opt1.setI11(i11);
+        return opt1;
+    }
+
+    static Option2 createOption2(int i21) {
+        Option2 opt2 = new Option2();
+        opt2.setI21(i21);
+        return opt2;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.marshal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.ops4j.dadl.exc.DadlException;
+import org.ops4j.dadl.processor.RecordSchema.FieldKind;
+
+import demo.simple.Colour;
+import demo.simple.MyChoice;
+import demo.simple.NumberList;
+import demo.simple.NumberWithColour;
+import demo.simple.Option2;
+import demo.simple.TaggedString;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class GenericRecordTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    private GenericRecord createRecord(String typeName) {
+        return new GenericRecord(dadlContext.getRecordSchema(typeName));
+    }
+
+    @Test
+    public void shouldCompileSchema() {
+        RecordSchema schema = dadlContext.getRecordSchema("NumberList");
+        assertThat(schema.getTypeName(), is("NumberList"));
+        assertThat(schema.isChoice(), is(false));
+        assertThat(schema.getNumFields(), is(2));
+        assertThat(schema.indexOf("items"), is(1));
+        assertThat(schema.getFieldKind(1), is(FieldKind.INTEGER));
+        assertThat(schema.isList(1), is(true));
+        assertThat(schema.indexOf("foo"), is(-1));
+        assertThat(dadlContext.getRecordSchema("NumberList"), is(schema));
+        assertThat(dadlContext.getRecordSchema("MyChoice").isChoice(), is(true));
+    }
+
+    @Test
+    public void shouldWriteAndReadNestedRecords() throws IOException {
+        GenericRecord nwc = createRecord("NumberWithColour");
+        nwc.setLong("i1", 22);
+        nwc.setLong("c", 14);
+        GenericRecord record = createRecord("TaggedString");
+        record.set("nwc", nwc);
+        record.set("text", "Hello DADL!");
+
+        NumberWithColour expectedNwc = new NumberWithColour();
+        expectedNwc.setI1(22);
+        expectedNwc.setC(Colour.YELLOW);
+        TaggedString expected = new TaggedString();
+        expected.setNwc(expectedNwc);
+        expected.setText("Hello DADL!");
+        byte[] bytes = marshal(dadlContext, record);
+        assertThat(bytes, is(marshal(dadlContext, expected)));
+
+        GenericRecord result = dadlContext.createUnmarshaller().unmarshal(bytes, "TaggedString");
+        assertThat(result.getRecord("nwc").getLong("i1"), is(22L));
+        assertThat(result.getRecord("nwc").getLong("c"), is(14L));
+        assertThat(result.getText("text"), is("Hello DADL!"));
+    }
+
+    @Test
+    public void shouldCalculateOutputValue() throws IOException {
+        GenericRecord record = createRecord("NumberList");
+        record.set("items", new ArrayList<>(Arrays.asList(10L, 20L, 30L)));
+
+        NumberList expected = new NumberList();
+        expected.getItems().addAll(Arrays.asList(10, 20, 30));
+        byte[] bytes = marshal(dadlContext, record);
+        assertThat(bytes, is(marshal(dadlContext, expected)));
+        assertThat(record.getLong("numItems"), is(3L));
+
+        GenericRecord result = dadlContext.createUnmarshaller().unmarshal(bytes, "NumberList");
+        assertThat(result.getLong("numItems"), is(3L));
+        assertThat(result.getList("items"), is(Arrays.<Object> asList(10L, 20L, 30L)));
+        LongList items = (LongList) result.get("items");
+        assertThat(items.toLongArray(), is(new long[] { 10, 20, 30 }));
+        assertThat(marshal(dadlContext, result), is(bytes));
+    }
+
+    @Test
+    public void shouldWriteAndReadChoice() throws IOException {
+        GenericRecord opt2 = createRecord("Option2");
+        opt2.setLong("i21", 1000);
+        opt2.setLong("i22", -2000);
+        GenericRecord record = createRecord("MyChoice");
+        record.set("opt1", createRecord("Option1"));
+        record.set("opt2", opt2);
+        assertThat(record.isSet("opt1"), is(false));
+
+        Option2 expectedOpt2 = new Option2();
+        expectedOpt2.setI21(1000);
+        expectedOpt2.setI22(-2000);
+        MyChoice expected = new MyChoice();
+        expected.setOpt2(expectedOpt2);
+        byte[] bytes = marshal(dadlContext, record);
+        assertThat(bytes, is(marshal(dadlContext, expected)));
+
+        GenericRecord result = dadlContext.createUnmarshaller().unmarshal(bytes, "MyChoice");
+        assertThat(result.get("opt1"), is(nullValue()));
+        assertThat(result.getRecord("opt2").getLong("i21"), is(1000L));
+        assertThat(result.getRecord("opt2").getLong("i22"), is(-2000L));
+    }
+
+    @Test
+    public void shouldWriteAndReadOpaqueField() throws IOException {
+        GenericRecord record = createRecord("OpaqueContainer");
+        record.setLong("length", 3);
+        record.set("content", new byte[] { 1, 2, 3 });
+        byte[] bytes = marshal(dadlContext, record);
+
+        GenericRecord result = dadlContext.createUnmarshaller().unmarshal(bytes,
+            "OpaqueContainer");
+        assertThat(result.getLong("length"), is(3L));
+        assertThat((byte[]) result.get("content"), is(new byte[] { 1, 2, 3 }));
+    }
+
+    @Test
+    public void shouldRejectValueOfWrongKind() {
+        GenericRecord record = createRecord("TaggedString");
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("field text of TaggedString does not accept java.lang.Long");
+        record.set("text", 42L);
+    }
+
+    @Test
+    public void shouldRejectSimpleType() {
+        thrown.expect(DadlException.class);
+        dadlContext.getRecordSchema("Int8");
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.createAllNumbers;
+import static org.ops4j.dadl.processor.Fixtures.createOption1;
+import static org.ops4j.dadl.processor.Fixtures.createOption2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.ops4j.dadl.exc.UnmarshalException;
+import org.ops4j.dadl.io.BitStreamReader;
+
+import demo.simple.AllNumbers;
+import demo.simple.NestedLevel1;
+import demo.simple.SequenceWithOptional;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class MessageDecoderTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    private SequenceWithOptional createSequence(Integer i11, int i21) {
+        SequenceWithOptional seq = new SequenceWithOptional();
+        if (i11 != null) {
+            seq.setOpt1(createOption1(i11));
+        }
+        seq.setOpt2(createOption2(i21));
+        return seq;
+    }
+
+    private <T> List<T> decodeInChunks(MessageDecoder<T> decoder, byte[] bytes, int chunkSize)
+        throws IOException {
+        List<T> messages = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, bytes.length - offset);
+            decoder.offer(ByteBuffer.wrap(bytes, offset, length));
+            for (T message = decoder.poll(); message != null; message = decoder.poll()) {
+                messages.add(message);
+            }
+        }
+        decoder.endOfInput();
+        for (T message = decoder.poll(); message != null; message = decoder.poll()) {
+            messages.add(message);
+        }
+        assertThat(decoder.isFinished(), is(true));
+        return messages;
+    }
+
+    @Test
+    public void shouldDecodeMessagesInChunks() throws IOException {
+        MessageEncoder<AllNumbers> encoder =
+            new MessageEncoder<>(dadlContext.createMarshaller());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        int numMessages = 20;
+        for (int i = 0; i < numMessages; i++) {
+            ByteBuffer chunk = encoder.encode(createAllNumbers(i - 10, 1000L * i));
+            os.write(chunk.array(), chunk.position(), chunk.remaining());
+        }
+        byte[] bytes = os.toByteArray();
+
+        for (int chunkSize : new int[] { 1, 3, 7, 64, bytes.length }) {
+            MessageDecoder<AllNumbers> decoder =
+                new MessageDecoder<>(dadlContext.createUnmarshaller(), AllNumbers.class);
+            List<AllNumbers> messages = decodeInChunks(decoder, bytes, chunkSize);
+            assertThat(messages.size(), is(numMessages));
+            for (int i = 0; i < numMessages; i++) {
+                assertThat(messages.get(i).getShortNumbers().getI8(), is(i - 10));
+                assertThat(messages.get(i).getLongNumbers().getU32(), is(1000L * i));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotDecodeBeforeMessageLengthIsBuffered() throws IOException {
+        int[] numCalls = new int[1];
+        dadlContext.setAdapter("varint", new VarIntAdapter() {
+
+            @Override
+            public Long unmarshal(BitStreamReader reader) throws IOException {
+                numCalls[0]++;
+                return super.unmarshal(reader);
+            }
+        });
+        dadlContext.setAdapter("counted", new VarIntAdapter());
+        byte[] message = new byte[] { 0x41, 5, 0x42, 3, 0x43, 1, 5 };
+        byte[] bytes = new byte[2 * message.length];
+        System.arraycopy(message, 0, bytes, 0, message.length);
+        System.arraycopy(message, 0, bytes, message.length, message.length);
+
+        MessageDecoder<NestedLevel1> decoder =
+            new MessageDecoder<>(dadlContext.createUnmarshaller(), NestedLevel1.class);
+        List<NestedLevel1> messages = decodeInChunks(decoder, bytes, 1);
+        assertThat(messages.size(), is(2));
+        assertThat(messages.get(1).getLevel2().getLevel3().getValue(), is(5L));
+
+        // per message: one attempt each for the tag and the length field, one complete attempt
+        // reading all three length fields
+        assertThat(numCalls[0], is(2 * (1 + 1 + 3)));
+    }
+
+    @Test
+    public void shouldWaitForOptionalElement() throws IOException {
+        MessageEncoder<SequenceWithOptional> encoder =
+            new MessageEncoder<>(dadlContext.createMarshaller());
+        ByteBuffer first = encoder.encode(createSequence(null, 42));
+        ByteBuffer second = encoder.encode(createSequence(17, 43));
+
+        MessageDecoder<SequenceWithOptional> decoder = new MessageDecoder<>(
+            dadlContext.createUnmarshaller(), SequenceWithOptional.class);
+        decoder.offer(first);
+        decoder.offer(second);
+        SequenceWithOptional seq = decoder.poll();
+        assertThat(seq.getOpt1(), is(nullValue()));
+        assertThat(seq.getOpt2().getI21(), is(42));
+
+        seq = decoder.poll();
+        assertThat(seq.getOpt1(), is(notNullValue()));
+        assertThat(seq.getOpt1().getI11(), is(17));
+        assertThat(seq.getOpt2().getI21(), is(43));
+        assertThat(decoder.poll(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotBufferBeyondMaxMessageSize() throws IOException {
+        MessageDecoder<AllNumbers> decoder =
+            new MessageDecoder<>(dadlContext.createUnmarshaller(), AllNumbers.class);
+        decoder.setMaxMessageSize(4);
+        decoder.offer(ByteBuffer.wrap(new byte[4]));
+        assertThat(decoder.poll(), is(nullValue()));
+        decoder.offer(ByteBuffer.wrap(new byte[1]));
+
+        thrown.expect(UnmarshalException.class);
+        decoder.poll();
+    }
+
+    @Test
+    public void shouldReportTruncatedMessageAtEndOfInput() throws IOException {
+        MessageDecoder<AllNumbers> decoder =
+            new MessageDecoder<>(dadlContext.createUnmarshaller(), AllNumbers.class);
+        decoder.offer(ByteBuffer.wrap(new byte[3]));
+        assertThat(decoder.poll(), is(nullValue()));
+        decoder.endOfInput();
+
+        thrown.expect(UnmarshalException.class);
+        decoder.poll();
+    }
+}
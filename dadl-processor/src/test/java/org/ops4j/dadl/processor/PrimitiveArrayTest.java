@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.marshalCheckingSize;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import demo.primitive.DecimalArray;
+import demo.primitive.LongArray;
+import demo.primitive.NibbleArray;
+import demo.primitive.ParsedBytes;
+import demo.primitive.SampleArray;
+import demo.primitive.TaggedSamples;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class PrimitiveArrayTest {
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/primitiveModel.xml"));
+    }
+
+    @Test
+    public void shouldMarshalShortArray() throws IOException {
+        SampleArray sampleArray = new SampleArray();
+        sampleArray.setSamples(new short[] { 1, -2, 300 });
+
+        byte[] bytes = marshalCheckingSize(dadlContext, sampleArray);
+        assertThat(bytes, is(new byte[] { 0, 3, 0, 1, (byte) 0xFF, (byte) 0xFE, 1, 44 }));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        SampleArray result = parser.unmarshal(bytes, SampleArray.class);
+        assertThat(result.getNumSamples(), is(3));
+        assertThat(result.getSamples(), is(new short[] { 1, -2, 300 }));
+    }
+
+    @Test
+    public void shouldUnmarshalLargeShortArray() throws IOException {
+        short[] samples = new short[4096];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (i * 31 - 20000);
+        }
+        SampleArray sampleArray = new SampleArray();
+        sampleArray.setSamples(samples);
+
+        byte[] bytes = marshalCheckingSize(dadlContext, sampleArray);
+        assertThat(bytes.length, is(2 + 2 * samples.length));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        SampleArray result = parser.unmarshal(bytes, SampleArray.class);
+        assertThat(result.getNumSamples(), is(samples.length));
+        assertThat(result.getSamples(), is(samples));
+    }
+
+    @Test
+    public void shouldMarshalEmptyArray() throws IOException {
+        SampleArray sampleArray = new SampleArray();
+
+        byte[] bytes = marshalCheckingSize(dadlContext, sampleArray);
+        assertThat(bytes, is(new byte[] { 0, 0 }));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        SampleArray result = parser.unmarshal(bytes, SampleArray.class);
+        assertThat(result.getSamples().length, is(0));
+    }
+
+    @Test
+    public void shouldMarshalLongArray() throws IOException {
+        LongArray longArray = new LongArray();
+        longArray.setValues(new long[] { Long.MIN_VALUE, -1, Long.MAX_VALUE });
+
+        byte[] bytes = marshalCheckingSize(dadlContext, longArray);
+        assertThat(bytes.length, is(25));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        LongArray result = parser.unmarshal(bytes, LongArray.class);
+        assertThat(result.getValues(), is(new long[] { Long.MIN_VALUE, -1, Long.MAX_VALUE }));
+    }
+
+    @Test
+    public void shouldMarshalNibbleArray() throws IOException {
+        NibbleArray nibbleArray = new NibbleArray();
+        nibbleArray.setNibbles(new int[] { 1, 15, 7, 8 });
+
+        byte[] bytes = marshalCheckingSize(dadlContext, nibbleArray);
+        assertThat(bytes, is(new byte[] { 4, 0x1F, 0x78 }));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        NibbleArray result = parser.unmarshal(bytes, NibbleArray.class);
+        assertThat(result.getNibbles(), is(new int[] { 1, 15, 7, 8 }));
+    }
+
+    @Test
+    public void shouldUnmarshalParsedByteArray() throws IOException {
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i - 20);
+        }
+        ParsedBytes result = parser.unmarshal(bytes, ParsedBytes.class);
+        assertThat(result.getItems(), is(bytes));
+
+        assertThat(marshalCheckingSize(dadlContext, result), is(bytes));
+    }
+
+    @Test
+    public void shouldMarshalTextNumberArray() throws IOException {
+        DecimalArray decimalArray = new DecimalArray();
+        decimalArray.setDecimals(new int[] { 7, 42 });
+
+        byte[] bytes = marshalCheckingSize(dadlContext, decimalArray);
+        assertThat(bytes, is(new byte[] { 2, '0', '7', '4', '2' }));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        DecimalArray result = parser.unmarshal(bytes, DecimalArray.class);
+        assertThat(result.getDecimals(), is(new int[] { 7, 42 }));
+    }
+
+    @Test
+    public void shouldMarshalTaggedArray() throws IOException {
+        TaggedSamples taggedSamples = new TaggedSamples();
+        taggedSamples.setSamples(new short[] { 5, 6 });
+
+        byte[] bytes = marshalCheckingSize(dadlContext, taggedSamples);
+        assertThat(bytes, is(new byte[] { 0x0C, 4, 0, 5, 0, 6 }));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        TaggedSamples result = parser.unmarshal(bytes, TaggedSamples.class);
+        assertThat(result.getSamples(), is(new short[] { 5, 6 }));
+    }
+
+    @Test
+    public void shouldSkipUnprojectedArray() throws IOException {
+        SampleArray sampleArray = new SampleArray();
+        sampleArray.setSamples(new short[] { 1, -2, 300 });
+        byte[] bytes = marshalCheckingSize(dadlContext, sampleArray);
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        SampleArray result = parser.unmarshal(bytes, SampleArray.class,
+            Projection.of("numSamples"));
+        assertThat(result.getNumSamples(), is(3));
+        assertThat(result.getSamples().length, is(0));
+    }
+}
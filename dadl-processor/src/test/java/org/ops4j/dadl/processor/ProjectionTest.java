@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.marshal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import demo.simple.AllNumbers;
+import demo.simple.Colour;
+import demo.simple.LongNumbers;
+import demo.simple.MyChoice;
+import demo.simple.NumberList;
+import demo.simple.NumberWithColour;
+import demo.simple.Option1;
+import demo.simple.SeqMinLength;
+import demo.simple.SeqMinLengthSuffix;
+import demo.simple.ShortNumbers;
+import demo.simple.TaggedList;
+import demo.simple.TaggedListWithSuffix;
+import demo.simple.TaggedString;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class ProjectionTest {
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    @Test
+    public void shouldProjectFixedLayoutFields() throws IOException {
+        ShortNumbers sn = new ShortNumbers();
+        sn.setI8(5);
+        sn.setU8(200);
+        sn.setI16(1000);
+        sn.setU16(50000);
+        LongNumbers ln = new LongNumbers();
+        ln.setI24(-5_000_000);
+        ln.setU24(10_000_000);
+        ln.setI32(-100000);
+        ln.setU32(3_000_000_000L);
+        AllNumbers an = new AllNumbers();
+        an.setShortNumbers(sn);
+        an.setLongNumbers(ln);
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        AllNumbers result = parser.unmarshal(marshal(dadlContext, an), AllNumbers.class,
+            Projection.of("longNumbers.u32", "longNumbers.i24"));
+        assertThat(result.getShortNumbers(), is(nullValue()));
+        assertThat(result.getLongNumbers().getI24(), is(-5_000_000));
+        assertThat(result.getLongNumbers().getU24(), is(0));
+        assertThat(result.getLongNumbers().getI32(), is(0));
+        assertThat(result.getLongNumbers().getU32(), is(3_000_000_000L));
+    }
+
+    @Test
+    public void shouldSkipListWithKnownLength() throws IOException {
+        NumberList numberList = new NumberList();
+        numberList.getItems().addAll(Arrays.asList(10, 20, 30));
+        SeqMinLength sml = new SeqMinLength();
+        sml.setNumberList(numberList);
+        SeqMinLengthSuffix smls = new SeqMinLengthSuffix();
+        smls.setSml(sml);
+        smls.setSuffix(99);
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        SeqMinLengthSuffix result = parser.unmarshal(marshal(dadlContext, smls),
+            SeqMinLengthSuffix.class, Projection.of("sml.numberList.numItems", "suffix"));
+        assertThat(result.getSml().getNumberList().getNumItems(), is(3));
+        assertThat(result.getSml().getNumberList().getItems(), is(empty()));
+        assertThat(result.getSuffix(), is(99));
+    }
+
+    @Test
+    public void shouldMaterializeReferencedFields() throws IOException {
+        NumberList numberList = new NumberList();
+        numberList.getItems().addAll(Arrays.asList(10, 20, 30));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        NumberList result = parser.unmarshal(marshal(dadlContext, numberList), NumberList.class,
+            Projection.of("items"));
+        assertThat(result.getNumItems(), is(3));
+        assertThat(result.getItems(), contains(10, 20, 30));
+    }
+
+    @Test
+    public void shouldSkipTaggedSequenceWithLengthField() throws IOException {
+        TaggedList tl = new TaggedList();
+        tl.getIndexes().addAll(Arrays.asList(500, 600, 700, 800));
+        TaggedListWithSuffix tlws = new TaggedListWithSuffix();
+        tlws.setTaggedList(tl);
+        tlws.setSuffix(123456);
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        TaggedListWithSuffix result = parser.unmarshal(marshal(dadlContext, tlws),
+            TaggedListWithSuffix.class, Projection.of("suffix"));
+        assertThat(result.getTaggedList(), is(nullValue()));
+        assertThat(result.getSuffix(), is(123456));
+    }
+
+    @Test
+    public void shouldSkipFieldsInTaggedSequence() throws IOException {
+        NumberWithColour nwc = new NumberWithColour();
+        nwc.setI1(42);
+        nwc.setC(Colour.GREEN);
+        TaggedString taggedString = new TaggedString();
+        taggedString.setNwc(nwc);
+        taggedString.setText("Hello DADL!");
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        TaggedString result = parser.unmarshal(marshal(dadlContext, taggedString),
+            TaggedString.class, Projection.of("text"));
+        assertThat(result.getNwc(), is(nullValue()));
+        assertThat(result.getText(), is("Hello DADL!"));
+    }
+
+    @Test
+    public void shouldProjectChoiceBranch() throws IOException {
+        Option1 opt1 = new Option1();
+        opt1.setI11(17);
+        opt1.setI12(22);
+        MyChoice choice = new MyChoice();
+        choice.setOpt1(opt1);
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        MyChoice result = parser.unmarshal(marshal(dadlContext, choice), MyChoice.class,
+            Projection.of("opt1.i12"));
+        assertThat(result.getOpt1().getI11(), is(0));
+        assertThat(result.getOpt1().getI12(), is(22));
+        assertThat(result.getOpt2(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldUnmarshalAllWithoutProjection() throws IOException {
+        NumberWithColour nwc = new NumberWithColour();
+        nwc.setI1(42);
+        nwc.setC(Colour.RED);
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        parser.unmarshal(marshal(dadlContext, nwc), NumberWithColour.class, Projection.of("i1"));
+        NumberWithColour result = parser.unmarshal(marshal(dadlContext, nwc),
+            NumberWithColour.class);
+        assertThat(result.getI1(), is(42));
+        assertThat(result.getC(), is(Colour.RED));
+    }
+
+    @Test
+    public void shouldMaterializeAllElementsWithNullProjection() throws IOException {
+        NumberList numberList = new NumberList();
+        numberList.getItems().addAll(Arrays.asList(10, 20, 30));
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        NumberList result = parser.unmarshal(marshal(dadlContext, numberList), NumberList.class,
+            null);
+        assertThat(result.getNumItems(), is(3));
+        assertThat(result.getItems(), is(Arrays.asList(10, 20, 30)));
+    }
+}
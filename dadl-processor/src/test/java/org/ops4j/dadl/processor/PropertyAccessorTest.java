@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import demo.primitive.SampleArray;
+import demo.simple.LongNumbers;
+import demo.simple.NumberList;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class PropertyAccessorTest {
+
+    @Test
+    public void shouldCacheAccessors() {
+        assertThat(PropertyAccessor.of(LongNumbers.class, "u32"),
+            is(sameInstance(PropertyAccessor.of(LongNumbers.class, "u32"))));
+    }
+
+    @Test
+    public void shouldSetPrimitiveIntegers() {
+        LongNumbers ln = new LongNumbers();
+        PropertyAccessor i32 = PropertyAccessor.of(LongNumbers.class, "i32");
+        PropertyAccessor u32 = PropertyAccessor.of(LongNumbers.class, "u32");
+        assertThat(i32.isPrimitiveInteger(), is(true));
+        i32.setLong(ln, -5L);
+        u32.setLong(ln, 0xFFFFFFFFL);
+        assertThat(ln.getI32(), is(-5));
+        assertThat(ln.getU32(), is(0xFFFFFFFFL));
+        assertThat(i32.getLong(ln), is(-5L));
+        assertThat(u32.getLong(ln), is(0xFFFFFFFFL));
+    }
+
+    @Test
+    public void shouldCoerceNumericValue() {
+        SampleArray sampleArray = new SampleArray();
+        PropertyAccessor numSamples = PropertyAccessor.of(SampleArray.class, "numSamples");
+        numSamples.set(sampleArray, 7L);
+        assertThat(sampleArray.getNumSamples(), is(7));
+    }
+
+    @Test
+    public void shouldInvokeGetter() {
+        NumberList nl = new NumberList();
+        PropertyAccessor items = PropertyAccessor.of(NumberList.class, "items");
+        assertThat(items.isPrimitiveInteger(), is(false));
+        nl.getItems().addAll(Arrays.asList(1, 2));
+        assertThat(items.get(nl), is(sameInstance((Object) nl.getItems())));
+    }
+}
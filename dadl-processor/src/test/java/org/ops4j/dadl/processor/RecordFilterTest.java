@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.marshal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.ByteArrayBitStreamReader;
+
+import demo.simple.AllNumbers;
+import demo.simple.Colour;
+import demo.simple.Crc16Frame;
+import demo.simple.LongNumbers;
+import demo.simple.MyChoice;
+import demo.simple.NumberList;
+import demo.simple.NumberWithColour;
+import demo.simple.Option1;
+import demo.simple.Option2;
+import demo.simple.ShortNumbers;
+import demo.simple.TaggedList;
+import demo.simple.TaggedListWithSuffix;
+import demo.simple.TaggedString;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class RecordFilterTest {
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    private <T> List<T> unmarshalAll(byte[] bytes, Class<T> klass, RecordFilter filter)
+        throws IOException {
+        List<T> result = new ArrayList<>();
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        try (BitStreamReader reader = new ByteArrayBitStreamReader(bytes)) {
+            while (reader.getBitPosition() < 8 * reader.length()) {
+                result.add(parser.unmarshalFiltered(reader, klass, filter));
+            }
+        }
+        return result;
+    }
+
+    private TaggedString createTaggedString(Colour colour, String text) {
+        NumberWithColour nwc = new NumberWithColour();
+        nwc.setI1(text.length());
+        nwc.setC(colour);
+        TaggedString taggedString = new TaggedString();
+        taggedString.setNwc(nwc);
+        taggedString.setText(text);
+        return taggedString;
+    }
+
+    @Test
+    public void shouldSkipRejectedTaggedSequences() throws IOException {
+        byte[] bytes = marshal(dadlContext, createTaggedString(Colour.RED, "one"),
+            createTaggedString(Colour.GREEN, "two"), createTaggedString(Colour.RED, "three"));
+        List<String> paths = new ArrayList<>();
+        List<TaggedString> result = unmarshalAll(bytes, TaggedString.class, (path, value) -> {
+            paths.add(path);
+            return !path.equals("nwc.c") || value == Colour.GREEN;
+        });
+        assertThat(result.size(), is(3));
+        assertThat(result.get(0), is(nullValue()));
+        assertThat(result.get(1).getText(), is("two"));
+        assertThat(result.get(2), is(nullValue()));
+        assertThat(paths, contains("$tag", "nwc.i1", "nwc.c", "$tag", "nwc.i1", "nwc.c", "text",
+            "$tag", "nwc.i1", "nwc.c"));
+    }
+
+    @Test
+    public void shouldSkipRejectedFixedLayout() throws IOException {
+        List<AllNumbers> infos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ShortNumbers sn = new ShortNumbers();
+            sn.setI8(i);
+            LongNumbers ln = new LongNumbers();
+            ln.setU32(100L * i);
+            AllNumbers an = new AllNumbers();
+            an.setShortNumbers(sn);
+            an.setLongNumbers(ln);
+            infos.add(an);
+        }
+        List<String> paths = new ArrayList<>();
+        List<AllNumbers> result = unmarshalAll(marshal(dadlContext, infos.toArray()),
+            AllNumbers.class, (path, value) -> {
+                paths.add(path);
+                return !path.equals("shortNumbers.i8") || ((Number) value).intValue() % 2 == 1;
+            });
+        assertThat(result.size(), is(5));
+        assertThat(result.get(0), is(nullValue()));
+        assertThat(result.get(1).getLongNumbers().getU32(), is(100L));
+        assertThat(result.get(2), is(nullValue()));
+        assertThat(result.get(3).getLongNumbers().getU32(), is(300L));
+        assertThat(result.get(4), is(nullValue()));
+        assertThat(paths.size(), is(3 + 2 * 8));
+    }
+
+    @Test
+    public void shouldSkipRejectedRecordWithUnknownEnd() throws IOException {
+        NumberList nl1 = new NumberList();
+        nl1.getItems().addAll(Arrays.asList(1, 2, 3));
+        NumberList nl2 = new NumberList();
+        nl2.getItems().addAll(Arrays.asList(4, 5));
+        List<NumberList> result = unmarshalAll(marshal(dadlContext, nl1, nl2, nl1),
+            NumberList.class, (path, value) -> !path.equals("numItems") || value.equals(2L));
+        assertThat(result.size(), is(3));
+        assertThat(result.get(0), is(nullValue()));
+        assertThat(result.get(1).getItems(), contains(4, 5));
+        assertThat(result.get(2), is(nullValue()));
+    }
+
+    @Test
+    public void shouldSkipRejectedChoiceBranch() throws IOException {
+        Option1 opt1 = new Option1();
+        opt1.setI11(17);
+        opt1.setI12(22);
+        MyChoice choice1 = new MyChoice();
+        choice1.setOpt1(opt1);
+
+        Option2 opt2 = new Option2();
+        opt2.setI21(1000);
+        opt2.setI22(2000);
+        MyChoice choice2 = new MyChoice();
+        choice2.setOpt2(opt2);
+
+        List<MyChoice> result = unmarshalAll(marshal(dadlContext, choice1, choice2, choice1),
+            MyChoice.class, (path, value) -> !path.startsWith("opt1"));
+        assertThat(result.size(), is(3));
+        assertThat(result.get(0), is(nullValue()));
+        assertThat(result.get(1).getOpt2().getI22(), is(2000));
+        assertThat(result.get(2), is(nullValue()));
+    }
+
+    @Test
+    public void shouldAcceptNullFilter() throws IOException {
+        byte[] bytes = marshal(dadlContext, createTaggedString(Colour.RED, "one"));
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        assertThat(parser.unmarshalFiltered(bytes, TaggedString.class, null).getText(),
+            is("one"));
+    }
+
+    private TaggedListWithSuffix createTaggedListWithSuffix(int suffix) {
+        TaggedList taggedList = new TaggedList();
+        taggedList.getIndexes().addAll(Arrays.asList(suffix, 2 * suffix));
+        TaggedListWithSuffix tlws = new TaggedListWithSuffix();
+        tlws.setTaggedList(taggedList);
+        tlws.setSuffix(suffix);
+        return tlws;
+    }
+
+    @Test
+    public void shouldRejectAfterNestedTaggedSequence() throws IOException {
+        byte[] bytes = marshal(dadlContext, createTaggedListWithSuffix(1),
+            createTaggedListWithSuffix(2), createTaggedListWithSuffix(3));
+        List<TaggedListWithSuffix> result = unmarshalAll(bytes, TaggedListWithSuffix.class,
+            (path, value) -> !path.equals("suffix") || value.equals(2L));
+        assertThat(result.size(), is(3));
+        assertThat(result.get(0), is(nullValue()));
+        assertThat(result.get(1).getTaggedList().getIndexes(), contains(2, 4));
+        assertThat(result.get(1).getSuffix(), is(2));
+        assertThat(result.get(2), is(nullValue()));
+    }
+
+    @Test
+    public void shouldSkipRejectedChecksummedSequences() throws IOException {
+        List<Crc16Frame> infos = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Crc16Frame frame = new Crc16Frame();
+            frame.setI8(i);
+            frame.setU32(1000L * i);
+            infos.add(frame);
+        }
+        List<Crc16Frame> result = unmarshalAll(marshal(dadlContext, infos.toArray()),
+            Crc16Frame.class, (path, value) -> !path.equals("i8") || ((Number) value).intValue() != 1);
+        assertThat(result.size(), is(3));
+        assertThat(result.get(0).getU32(), is(0L));
+        assertThat(result.get(1), is(nullValue()));
+        assertThat(result.get(2).getU32(), is(2000L));
+    }
+
+    @Test
+    public void shouldPassPrimitiveValuesWithoutBoxing() throws IOException {
+        List<Crc16Frame> infos = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Crc16Frame frame = new Crc16Frame();
+            frame.setI8(i);
+            frame.setU32(1000L * i);
+            infos.add(frame);
+        }
+        List<String> paths = new ArrayList<>();
+        List<Crc16Frame> result = unmarshalAll(marshal(dadlContext, infos.toArray()),
+            Crc16Frame.class, new RecordFilter() {
+
+                @Override
+                public boolean accept(String path, Object value) {
+                    throw new AssertionError("boxed value of " + path);
+                }
+
+                @Override
+                public boolean accept(String path, long value) {
+                    paths.add(path);
+                    return !path.equals("i8") || value != 2;
+                }
+            });
+        assertThat(result.size(), is(3));
+        assertThat(result.get(1).getU32(), is(1000L));
+        assertThat(result.get(2), is(nullValue()));
+        assertThat(paths, contains("$tag", "i8", "u32", "$tag", "i8", "u32", "$tag", "i8"));
+    }
+
+    @Test
+    public void shouldFilterNestedTags() throws IOException {
+        byte[] bytes = marshal(dadlContext, createTaggedListWithSuffix(1));
+        List<String> paths = new ArrayList<>();
+        unmarshalAll(bytes, TaggedListWithSuffix.class, (path, value) -> paths.add(path));
+        assertThat(paths, hasItem("taggedList.$tag"));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ops4j.dadl.io.BitStreamReader;
+import org.ops4j.dadl.io.FileBitStreamReader;
+
+import demo.simple.MyChoice;
+import demo.simple.Option1;
+import demo.simple.Option2;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class RecordIndexTest {
+
+    private static final int NUM_RECORDS = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DadlContext dadlContext;
+
+    private Path captureFile;
+
+    @Before
+    public void before() throws JAXBException, IOException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+        captureFile = folder.newFile("capture.bin").toPath();
+        Marshaller marshaller = dadlContext.createMarshaller();
+        try (OutputStream os = Files.newOutputStream(captureFile)) {
+            for (int i = 0; i < NUM_RECORDS; i++) {
+                marshaller.marshal(createRecord(i), os);
+            }
+        }
+    }
+
+    private static MyChoice createRecord(int i) {
+        MyChoice choice = new MyChoice();
+        if (i % 3 == 0) {
+            Option2 opt2 = new Option2();
+            opt2.setI21(i);
+            opt2.setI22(-i);
+            choice.setOpt2(opt2);
+        }
+        else {
+            Option1 opt1 = new Option1();
+            opt1.setI11(i);
+            opt1.setI12(i % 100);
+            choice.setOpt1(opt1);
+        }
+        return choice;
+    }
+
+    private BitStreamReader openCapture() throws IOException {
+        // a small window, so that records span window boundaries
+        return new FileBitStreamReader(FileChannel.open(captureFile, StandardOpenOption.READ), 64);
+    }
+
+    @Test
+    public void shouldIndexRecords() throws IOException {
+        RecordIndex index;
+        try (BitStreamReader reader = openCapture()) {
+            index = RecordIndex.build(dadlContext, MyChoice.class, reader);
+        }
+        assertThat(index.size(), is(NUM_RECORDS));
+        assertThat(index.getSourceLength(), is(Files.size(captureFile)));
+        assertThat(index.getOffset(0), is(0L));
+        for (int n = 0; n < NUM_RECORDS; n++) {
+            boolean isOpt2 = n % 3 == 0;
+            assertThat(index.getTag(n), is(isOpt2 ? 0x0BL : 0x0AL));
+            assertThat(index.getBranch(n), is(isOpt2 ? MyChoice.OPT2 : MyChoice.OPT1));
+        }
+        assertThat(index.recordsWithTag(0x0B).count(), is((long) (NUM_RECORDS + 2) / 3));
+        assertThat(index.recordsWithTag(0x0C).count(), is(0L));
+    }
+
+    @Test
+    public void shouldGetRecordsByNumber() throws IOException {
+        try (BitStreamReader reader = openCapture()) {
+            RecordIndex index = RecordIndex.build(dadlContext, MyChoice.class, reader);
+            Unmarshaller unmarshaller = dadlContext.createUnmarshaller();
+            for (int n : new int[] { 999, 0, 500, 3, 998 }) {
+                MyChoice choice = index.get(n, unmarshaller, reader, MyChoice.class);
+                if (n % 3 == 0) {
+                    assertThat(choice.getOpt2().getI21(), is(n));
+                    assertThat(choice.getOpt2().getI22(), is(-n));
+                }
+                else {
+                    assertThat(choice.getOpt1().getI11(), is(n));
+                    assertThat(choice.getOpt1().getI12(), is(n % 100));
+                }
+            }
+            int[] opt2Records = index.recordsWithTag(0x0B).limit(3).toArray();
+            assertThat(opt2Records, is(new int[] { 0, 3, 6 }));
+        }
+    }
+
+    @Test
+    public void shouldSaveAndLoadIndex() throws IOException {
+        RecordIndex index;
+        try (BitStreamReader reader = openCapture()) {
+            index = RecordIndex.build(dadlContext, MyChoice.class, reader);
+        }
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        index.write(os);
+        byte[] bytes = os.toByteArray();
+        assertThat(bytes.length, lessThan(3 * NUM_RECORDS + 20));
+
+        RecordIndex loaded = RecordIndex.read(new ByteArrayInputStream(bytes));
+        assertThat(loaded.size(), is(index.size()));
+        assertThat(loaded.getSourceLength(), is(index.getSourceLength()));
+        for (int n = 0; n < NUM_RECORDS; n++) {
+            assertThat(loaded.getOffset(n), is(index.getOffset(n)));
+            assertThat(loaded.getTag(n), is(index.getTag(n)));
+            assertThat(loaded.getBranch(n), is(index.getBranch(n)));
+        }
+    }
+}
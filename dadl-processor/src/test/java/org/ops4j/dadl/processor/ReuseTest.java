@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.createAllNumbers;
+import static org.ops4j.dadl.processor.Fixtures.createOption1;
+import static org.ops4j.dadl.processor.Fixtures.createOption2;
+import static org.ops4j.dadl.processor.Fixtures.marshal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import demo.simple.AllNumbers;
+import demo.simple.LongNumbers;
+import demo.simple.MyChoice;
+import demo.simple.NumberList;
+import demo.simple.Option1;
+import demo.simple.Option2;
+import demo.simple.SequenceWithOptional;
+import demo.simple.ShortNumbers;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class ReuseTest {
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    @Test
+    public void shouldReuseNestedObjects() throws IOException {
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        AllNumbers target = new AllNumbers();
+
+        AllNumbers result = parser.unmarshalInto(marshal(dadlContext, createAllNumbers(3, 100)),
+            target);
+        assertThat(result, is(sameInstance(target)));
+        ShortNumbers sn = target.getShortNumbers();
+        LongNumbers ln = target.getLongNumbers();
+        assertThat(sn.getI8(), is(3));
+        assertThat(ln.getU32(), is(100L));
+
+        parser.unmarshalInto(marshal(dadlContext, createAllNumbers(-7, 200)), target);
+        assertThat(target.getShortNumbers(), is(sameInstance(sn)));
+        assertThat(target.getLongNumbers(), is(sameInstance(ln)));
+        assertThat(sn.getI8(), is(-7));
+        assertThat(ln.getU32(), is(200L));
+    }
+
+    @Test
+    public void shouldClearListInPlace() throws IOException {
+        NumberList nl1 = new NumberList();
+        nl1.getItems().addAll(Arrays.asList(1, 2, 3));
+        NumberList nl2 = new NumberList();
+        nl2.getItems().addAll(Arrays.asList(4, 5));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        NumberList target = new NumberList();
+        List<Integer> items = target.getItems();
+        parser.unmarshalInto(marshal(dadlContext, nl1), target);
+        assertThat(target.getItems(), contains(1, 2, 3));
+        parser.unmarshalInto(marshal(dadlContext, nl2), target);
+        assertThat(target.getItems(), is(sameInstance(items)));
+        assertThat(target.getItems(), contains(4, 5));
+    }
+
+    @Test
+    public void shouldResetUnmatchedChoiceBranch() throws IOException {
+        MyChoice choice1 = new MyChoice();
+        choice1.setOpt1(createOption1(11));
+        MyChoice choice2 = new MyChoice();
+        choice2.setOpt2(createOption2(22));
+
+        InstancePool pool = new InstancePool();
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        parser.setInstancePool(pool);
+        MyChoice target = new MyChoice();
+
+        parser.unmarshalInto(marshal(dadlContext, choice1), target);
+        Option1 opt1 = target.getOpt1();
+        assertThat(opt1.getI11(), is(11));
+        assertThat(target.getOpt2(), is(nullValue()));
+
+        parser.unmarshalInto(marshal(dadlContext, choice2), target);
+        assertThat(target.getOpt1(), is(nullValue()));
+        assertThat(target.getOpt2().getI21(), is(22));
+        assertThat(target.getSelectedBranch(), is(MyChoice.OPT2));
+        assertThat(pool.size(Option1.class), is(1));
+
+        parser.unmarshalInto(marshal(dadlContext, choice1), target);
+        assertThat(target.getOpt1(), is(sameInstance(opt1)));
+        assertThat(target.getOpt2(), is(nullValue()));
+        assertThat(target.getSelectedBranch(), is(MyChoice.OPT1));
+        assertThat(pool.size(Option1.class), is(0));
+        assertThat(pool.size(Option2.class), is(1));
+    }
+
+    @Test
+    public void shouldResetMissingOptionalElement() throws IOException {
+        SequenceWithOptional swo1 = new SequenceWithOptional();
+        swo1.setOpt1(createOption1(11));
+        swo1.setOpt2(createOption2(21));
+        SequenceWithOptional swo2 = new SequenceWithOptional();
+        swo2.setOpt2(createOption2(22));
+
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        SequenceWithOptional target = new SequenceWithOptional();
+        parser.unmarshalInto(marshal(dadlContext, swo1), target);
+        assertThat(target.getOpt1().getI11(), is(11));
+        Option2 opt2 = target.getOpt2();
+
+        parser.unmarshalInto(marshal(dadlContext, swo2), target);
+        assertThat(target.getOpt1(), is(nullValue()));
+        assertThat(target.getOpt2(), is(sameInstance(opt2)));
+        assertThat(opt2.getI21(), is(22));
+    }
+
+    @Test
+    public void shouldReleasePooledInstanceOfUnmatchedBranch() throws IOException {
+        MyChoice choice2 = new MyChoice();
+        choice2.setOpt2(createOption2(22));
+
+        InstancePool pool = new InstancePool();
+        pool.release(new Option1());
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        parser.setInstancePool(pool);
+        MyChoice target = new MyChoice();
+
+        parser.unmarshalInto(marshal(dadlContext, choice2), target);
+        assertThat(target.getOpt1(), is(nullValue()));
+        assertThat(target.getOpt2().getI21(), is(22));
+        assertThat(pool.size(Option1.class), is(1));
+    }
+
+    @Test
+    public void shouldReleasePooledInstanceOfMissingOptionalElement() throws IOException {
+        SequenceWithOptional swo = new SequenceWithOptional();
+        swo.setOpt2(createOption2(22));
+
+        InstancePool pool = new InstancePool();
+        pool.release(new Option1());
+        Unmarshaller parser = dadlContext.createUnmarshaller();
+        parser.setInstancePool(pool);
+        SequenceWithOptional target = new SequenceWithOptional();
+
+        parser.unmarshalInto(marshal(dadlContext, swo), target);
+        assertThat(target.getOpt1(), is(nullValue()));
+        assertThat(target.getOpt2().getI21(), is(22));
+        assertThat(pool.size(Option1.class), is(1));
+    }
+}
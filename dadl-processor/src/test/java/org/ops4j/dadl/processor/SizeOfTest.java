@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.marshalCheckingSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.dadl.io.BitCountingWriter;
+import org.ops4j.dadl.io.BitStreamWriter;
+
+import demo.simple.AllNumbers;
+import demo.simple.BitField;
+import demo.simple.Colour;
+import demo.simple.LongNumbers;
+import demo.simple.NestedLevel1;
+import demo.simple.NestedLevel2;
+import demo.simple.NestedLevel3;
+import demo.simple.NumberList;
+import demo.simple.NumberWithColour;
+import demo.simple.Option1;
+import demo.simple.PaddedInner;
+import demo.simple.PaddedOuter;
+import demo.simple.SeqMinLength;
+import demo.simple.ShortNumbers;
+import demo.simple.TaggedList;
+import demo.simple.TaggedListWithSuffix;
+import demo.simple.TaggedString;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class SizeOfTest {
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    private void assertSize(Object info, long numBits) throws IOException {
+        assertThat(dadlContext.createMarshaller().bitSizeOf(info), is(numBits));
+        marshalCheckingSize(dadlContext, info);
+    }
+
+    @Test
+    public void shouldComputeSizeOfAllNumbers() throws IOException {
+        AllNumbers an = new AllNumbers();
+        an.setShortNumbers(new ShortNumbers());
+        an.setLongNumbers(new LongNumbers());
+        assertSize(an, 160);
+    }
+
+    @Test
+    public void shouldComputeSizeOfBitField() throws IOException {
+        BitField bitField = new BitField();
+        bitField.setB2(3);
+        bitField.setB3(6);
+        assertSize(bitField, 16);
+    }
+
+    @Test
+    public void shouldComputeSizeOfList() throws IOException {
+        NumberList numberList = new NumberList();
+        numberList.getItems().addAll(Arrays.asList(16, 25, 36));
+        assertSize(numberList, 8 + 3 * 32);
+    }
+
+    @Test
+    public void shouldComputeSizeWithPadding() throws IOException {
+        PaddedInner inner = new PaddedInner();
+        PaddedOuter outer = new PaddedOuter();
+        outer.setInner(inner);
+        assertSize(outer, 11 * 8);
+
+        SeqMinLength sml = new SeqMinLength();
+        sml.setNumberList(new NumberList());
+        sml.getNumberList().getItems().add(17);
+        assertSize(sml, 20 * 8);
+    }
+
+    @Test
+    public void shouldComputeSizeOfTaggedText() throws IOException {
+        NumberWithColour nwc = new NumberWithColour();
+        nwc.setC(Colour.GREEN);
+        TaggedString taggedString = new TaggedString();
+        taggedString.setNwc(nwc);
+        taggedString.setText("Hello DADL!");
+        assertSize(taggedString, (4 + 11) * 8);
+    }
+
+    @Test
+    public void shouldComputeSizeOfTaggedList() throws IOException {
+        TaggedListWithSuffix tlws = new TaggedListWithSuffix();
+        TaggedList tl = new TaggedList();
+        tlws.setTaggedList(tl);
+        tl.getIndexes().addAll(Arrays.asList(500, 600, 700, 800));
+        assertSize(tlws, 14 * 8);
+    }
+
+    @Test
+    public void shouldUseAdapterSizeHook() throws IOException {
+        dadlContext.setAdapter("varint", new VarIntAdapter() {
+
+            @Override
+            public long sizeOf(Long info) {
+                return 8;
+            }
+
+            @Override
+            public void marshal(Long info, BitStreamWriter writer) throws IOException {
+                if (writer instanceof BitCountingWriter) {
+                    throw new AssertionError("size hook not used");
+                }
+                super.marshal(info, writer);
+            }
+        });
+        Option1 opt1 = new Option1();
+        opt1.setI11(17);
+        opt1.setI12(22);
+        assertSize(opt1, 5 * 8);
+    }
+
+    @Test
+    public void shouldSizeEachNestedPayloadOnce() throws IOException {
+        int[] numCalls = new int[1];
+        dadlContext.setAdapter("counted", new VarIntAdapter() {
+
+            @Override
+            public void marshal(Long info, BitStreamWriter writer) throws IOException {
+                numCalls[0]++;
+                super.marshal(info, writer);
+            }
+        });
+        NestedLevel3 level3 = new NestedLevel3();
+        level3.setValue(5);
+        NestedLevel2 level2 = new NestedLevel2();
+        level2.setLevel3(level3);
+        NestedLevel1 level1 = new NestedLevel1();
+        level1.setLevel2(level2);
+
+        Marshaller marshaller = dadlContext.createMarshaller();
+        assertThat(marshaller.bitSizeOf(level1), is(7 * 8L));
+        assertThat(numCalls[0], is(1));
+
+        numCalls[0] = 0;
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        marshaller.marshal(level1, os);
+        assertThat(os.toByteArray(), is(new byte[] { 0x41, 5, 0x42, 3, 0x43, 1, 5 }));
+        assertThat(numCalls[0], is(2));
+    }
+}
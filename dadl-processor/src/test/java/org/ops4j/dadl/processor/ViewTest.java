@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 OPS4J Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.dadl.processor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.ops4j.dadl.processor.Fixtures.createAllNumbers;
+import static org.ops4j.dadl.processor.Fixtures.marshal;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+
+import javax.xml.bind.JAXBException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import demo.simple.AllNumbersView;
+import demo.simple.BcdSequence;
+import demo.simple.BcdSequenceView;
+import demo.simple.BitField;
+import demo.simple.BitFieldView;
+import demo.simple.Colour;
+import demo.simple.DecimalNumbers;
+import demo.simple.DecimalNumbersView;
+import demo.simple.FixedText;
+import demo.simple.FixedTextView;
+import demo.simple.NumberWithColour;
+import demo.simple.NumberWithColourView;
+import demo.simple.PackedSequence;
+import demo.simple.PackedSequenceView;
+import demo.simple.PaddedInner;
+import demo.simple.PaddedNumbersView;
+import demo.simple.PaddedOuter;
+import demo.simple.PaddedOuterView;
+import demo.simple.UnalignedPayload;
+import demo.simple.UnalignedPayloadWithSuffix;
+import demo.simple.UnalignedPayloadWithSuffixView;
+
+/**
+ * @author hwellmann
+ *
+ */
+public class ViewTest {
+
+    private DadlContext dadlContext;
+
+    @Before
+    public void before() throws JAXBException {
+        dadlContext = DadlContext.newInstance(new File("src/test/resources/simpleModel.xml"));
+        dadlContext.setAdapter("varint", new VarIntAdapter());
+    }
+
+    @Test
+    public void shouldReadNestedView() throws IOException {
+        byte[] bytes = marshal(dadlContext, createAllNumbers(-5, 3_000_000_000L));
+        AllNumbersView view = new AllNumbersView().wrap(bytes, 0);
+        assertThat(view.getBitLength(), is(160L));
+        assertThat(view.getShortNumbers().getI8(), is(-5));
+        assertThat(view.getShortNumbers().getU8(), is(200));
+        assertThat(view.getShortNumbers().getI16(), is(-1000));
+        assertThat(view.getShortNumbers().getU16(), is(50000));
+        assertThat(view.getLongNumbers().getI24(), is(-5_000_000));
+        assertThat(view.getLongNumbers().getU24(), is(10_000_000));
+        assertThat(view.getLongNumbers().getI32(), is(-100000));
+        assertThat(view.getLongNumbers().getU32(), is(3_000_000_000L));
+    }
+
+    @Test
+    public void shouldRepointView() throws IOException {
+        byte[] bytes = marshal(dadlContext, createAllNumbers(1, 10L), createAllNumbers(2, 20L),
+            createAllNumbers(3, 30L));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        AllNumbersView view = new AllNumbersView();
+        int numBytes = (int) (view.getBitLength() / 8);
+        for (int i = 0; i < 3; i++) {
+            view.wrap(buffer, i * numBytes);
+            assertThat(view.getShortNumbers().getI8(), is(i + 1));
+            assertThat(view.getLongNumbers().getU32(), is(10L * (i + 1)));
+        }
+    }
+
+    @Test
+    public void shouldReadUnalignedView() throws IOException {
+        BitField bitField = new BitField();
+        bitField.setB2(1);
+        bitField.setB3(6);
+        bitField.setB4(11);
+        bitField.setB7(99);
+        BitFieldView view = new BitFieldView().wrap(marshal(dadlContext, bitField), 0);
+        assertThat(view.getB2(), is(1));
+        assertThat(view.getB3(), is(6));
+        assertThat(view.getB4(), is(11));
+        assertThat(view.getB7(), is(99));
+    }
+
+    @Test
+    public void shouldReadViewWithPadding() throws IOException {
+        PaddedInner inner = new PaddedInner();
+        inner.setA(12);
+        inner.setB(34);
+        PaddedOuter outer = new PaddedOuter();
+        outer.setInner(inner);
+        outer.setC(56);
+        PaddedOuterView view = new PaddedOuterView().wrap(marshal(dadlContext, outer), 0);
+        assertThat(view.getBitLength(), is(88L));
+        assertThat(view.getInner().getA(), is(12));
+        assertThat(view.getInner().getB(), is(34));
+        assertThat(view.getC(), is(56));
+    }
+
+    @Test
+    public void shouldReadViewAfterPaddedPayload() throws IOException {
+        UnalignedPayload payload = new UnalignedPayload();
+        payload.setBits(new byte[] { (byte) 0xAB, (byte) 0xC8 });
+        UnalignedPayloadWithSuffix upws = new UnalignedPayloadWithSuffix();
+        upws.setPayload(payload);
+        upws.setSuffix(5);
+        UnalignedPayloadWithSuffixView view = new UnalignedPayloadWithSuffixView()
+            .wrap(marshal(dadlContext, upws), 0);
+        assertThat(view.getBitLength(), is(40L));
+        assertThat(view.getSuffix(), is(5));
+    }
+
+    @Test
+    public void shouldReadTextView() throws IOException, ReflectiveOperationException {
+        FixedText fixedText = new FixedText();
+        fixedText.setCode("AB12");
+        fixedText.setName("Gr\u00fc\u00dfe!");
+        fixedText.setI8(-3);
+        FixedTextView view = new FixedTextView().wrap(marshal(dadlContext, fixedText), 0);
+        assertThat(view.getCode(), is("AB12"));
+        assertThat(view.getName(), is("Gr\u00fc\u00dfe!"));
+        assertThat(view.getI8(), is(-3));
+
+        int modifiers = FixedTextView.class.getDeclaredField("CHARSET_ISO_8859_1").getModifiers();
+        assertThat(Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers), is(true));
+    }
+
+    @Test
+    public void shouldReadEnumerationView() throws IOException {
+        NumberWithColour nwc = new NumberWithColour();
+        nwc.setI1(42);
+        nwc.setC(Colour.YELLOW);
+        NumberWithColourView view = new NumberWithColourView().wrap(marshal(dadlContext, nwc), 0);
+        assertThat(view.getI1(), is(42));
+        assertThat(view.getC(), is(Colour.YELLOW));
+    }
+
+    @Test
+    public void shouldReadDecimalViews() throws IOException {
+        DecimalNumbers decimalNumbers = new DecimalNumbers();
+        decimalNumbers.setD1(1234);
+        decimalNumbers.setD2(56);
+        DecimalNumbersView decimalView = new DecimalNumbersView()
+            .wrap(marshal(dadlContext, decimalNumbers), 0);
+        assertThat(decimalView.getD1(), is(1234));
+        assertThat(decimalView.getD2(), is(56));
+
+        PaddedNumbersView paddedView = new PaddedNumbersView()
+            .wrap("-42      123**-7**007".getBytes(), 0);
+        assertThat(paddedView.getLeft(), is(-42L));
+        assertThat(paddedView.getRight(), is(123L));
+        assertThat(paddedView.getCenter(), is(-7L));
+        assertThat(paddedView.getZero(), is(7));
+
+        BcdSequence bcdSequence = new BcdSequence();
+        bcdSequence.setI16(17);
+        bcdSequence.setBcd(9876);
+        BcdSequenceView bcdView = new BcdSequenceView().wrap(marshal(dadlContext, bcdSequence), 0);
+        assertThat(bcdView.getI16(), is(17));
+        assertThat(bcdView.getBcd(), is(9876));
+
+        PackedSequence packedSequence = new PackedSequence();
+        packedSequence.setP1(-4321);
+        packedSequence.setP2(99999);
+        packedSequence.setBcd3(5);
+        packedSequence.setP19(1234567890123456789L);
+        PackedSequenceView packedView = new PackedSequenceView()
+            .wrap(marshal(dadlContext, packedSequence), 0);
+        assertThat(packedView.getP1(), is(-4321));
+        assertThat(packedView.getP2(), is(99999));
+        assertThat(packedView.getBcd3(), is(5));
+        assertThat(packedView.getP19(), is(1234567890123456789L));
+    }
+}